@@ -0,0 +1,75 @@
+package org.dataingest.rfc.server;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.dataingest.rfc.server.archive.ArchiveLookup;
+import org.dataingest.rfc.server.archive.ArchiveRecord;
+
+/**
+ * IDoc Archive Lookup Tool
+ *
+ * Prints archived IDoc XML to stdout, e.g. for an archive written by the server
+ * (archive.dir) or by SimpleIDocCapture (idocs):
+ *
+ *   ArchiveLookupTool archive tid 0A1B2C3D4E5F000123456789
+ *   ArchiveLookupTool archive docnum 0000000012345678
+ *   ArchiveLookupTool archive mestyp ORDERS [limit]
+ *
+ * The mestyp query lists the matching transactions instead of their XML.
+ */
+public class ArchiveLookupTool {
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: ArchiveLookupTool <archive dir> tid|docnum|mestyp <key> [limit]");
+            System.exit(2);
+        }
+        ArchiveLookup lookup = new ArchiveLookup(Paths.get(args[0]));
+        String key = args[2];
+
+        try {
+            switch (args[1]) {
+                case "tid": {
+                    List<ArchiveRecord> records = lookup.findByTid(key, 1);
+                    if (!records.isEmpty()) {
+                        System.out.write(records.get(0).getPayload());
+                        System.out.flush();
+                        return;
+                    }
+                    break;
+                }
+                case "docnum": {
+                    List<ArchiveRecord> records = lookup.findByDocumentNumber(key, 1);
+                    if (!records.isEmpty()) {
+                        System.out.write(ArchiveLookup.idocXml(records.get(0), key));
+                        System.out.flush();
+                        return;
+                    }
+                    break;
+                }
+                case "mestyp": {
+                    int limit = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+                    List<ArchiveRecord> records = lookup.findByMessageType(key, limit);
+                    for (ArchiveRecord record : records) {
+                        System.out.println(record);
+                    }
+                    if (!records.isEmpty()) {
+                        return;
+                    }
+                    break;
+                }
+                default:
+                    System.err.println("Unknown query type: " + args[1]);
+                    System.exit(2);
+            }
+        } catch (IOException e) {
+            System.err.println("Lookup failed: " + e.getMessage());
+            System.exit(1);
+        }
+
+        System.err.println("Not found: " + args[1] + " " + key);
+        System.exit(1);
+    }
+}
@@ -1,11 +1,8 @@
 package org.dataingest.rfc.server;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 import com.sap.conn.idoc.IDocDocumentList;
 import com.sap.conn.idoc.IDocXMLProcessor;
@@ -20,18 +17,30 @@ import com.sap.conn.jco.server.JCoServerContextInfo;
 import com.sap.conn.jco.server.JCoServerErrorListener;
 import com.sap.conn.jco.server.JCoServerExceptionListener;
 import com.sap.conn.jco.server.JCoServerTIDHandler;
+import org.dataingest.rfc.server.archive.ArchiveCompression;
+import org.dataingest.rfc.server.archive.ArchivePosition;
+import org.dataingest.rfc.server.archive.SegmentedArchive;
+import org.dataingest.rfc.server.codec.DirectBufferPool;
+import org.dataingest.rfc.server.xml.IDocXmlBuffer;
 
 /**
  * Simple IDoc Capture Program
  *
- * Receives IDocs from SAP and stores them as XML files on disk.
- * Based on SAP's IDocServerExample.
+ * Receives IDocs from SAP and appends their XML to a rolling segmented archive
+ * on disk (see SegmentedArchive). Based on SAP's IDocServerExample.
  */
 public class SimpleIDocCapture {
 
     private static final String OUTPUT_DIR = "idocs"; // Directory to store captured IDocs
     private static final String SERVER_NAME = "IDOC_SERVER"; // SAP server configuration name
 
+    // Archive of captured IDocs: 256 MB or hourly segments, no compression, no retention
+    private static final SegmentedArchive ARCHIVE = new SegmentedArchive(Paths.get(OUTPUT_DIR),
+            256L * 1024 * 1024, TimeUnit.HOURS.toMillis(1), ArchiveCompression.NONE, 0, 0, false, 10000);
+
+    // Off-heap buffers for the rendered XML, reused across transactions
+    private static final DirectBufferPool BUFFER_POOL = new DirectBufferPool();
+
     public static void main(String[] args) {
         try {
             // Create output directory if it doesn't exist
@@ -46,6 +55,9 @@ public class SimpleIDocCapture {
             System.out.println("Server name: " + SERVER_NAME);
             System.out.println();
 
+            // Seal the current archive segment on shutdown
+            Runtime.getRuntime().addShutdownHook(new Thread(ARCHIVE::close, "idoc-archive-shutdown"));
+
             // Get the IDoc server from JCo configuration
             JCoIDocServer server = JCoIDoc.getServer(SERVER_NAME);
 
@@ -77,41 +89,26 @@ public class SimpleIDocCapture {
 
         @Override
         public void handleRequest(JCoServerContext serverCtx, IDocDocumentList idocList) {
-            FileOutputStream fos = null;
-            OutputStreamWriter osw = null;
-
             try {
                 String tid = serverCtx.getTID();
-                String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-                String filename = OUTPUT_DIR + File.separator + timestamp + "_" + tid + ".xml";
 
                 System.out.println("\n→ Received IDoc(s):");
                 System.out.println("  Transaction ID: " + tid);
                 System.out.println("  Number of IDocs: " + idocList.size());
-                System.out.println("  Saving to: " + filename);
 
-                // Create XML processor to convert IDoc to XML format
+                // Render into a pooled off-heap XML buffer (compact, no pretty printing)
                 IDocXMLProcessor xmlProcessor = JCoIDoc.getIDocFactory().getIDocXMLProcessor();
-
-                // Write IDoc to file
-                fos = new FileOutputStream(filename);
-                osw = new OutputStreamWriter(fos, "UTF-8");
-                xmlProcessor.render(idocList, osw, IDocXMLProcessor.RENDER_WITH_TABS_AND_CRLF);
-                osw.flush();
+                try (IDocXmlBuffer xml = IDocXmlBuffer.render(BUFFER_POOL, xmlProcessor, idocList, 0)) {
+                    // Append to the archive straight from the buffer
+                    ArchivePosition position = ARCHIVE.append(tid, idocList.getNumDocuments(), xml.data());
+                    System.out.println("  Archived at: " + position);
+                }
 
                 System.out.println("  ✓ IDoc saved successfully!");
 
             } catch (Throwable thr) {
                 System.err.println("  ✗ ERROR saving IDoc:");
                 thr.printStackTrace();
-            } finally {
-                // Clean up resources
-                try {
-                    if (osw != null) osw.close();
-                    if (fos != null) fos.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
             }
         }
     }
@@ -0,0 +1,38 @@
+package org.dataingest.rfc.server.archive;
+
+/**
+ * Compression applied to the record payloads of an archive segment.
+ *
+ * The compression is chosen per segment (stored in the segment header) and applied
+ * per record, so single records can still be read without inflating the segment.
+ */
+public enum ArchiveCompression {
+    NONE(0),
+    DEFLATE(1);
+
+    private final int id;
+
+    ArchiveCompression(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the compression stored under the given header id.
+     *
+     * @param id the id from the segment header
+     * @return the compression
+     * @throws IllegalArgumentException if the id is unknown
+     */
+    public static ArchiveCompression forId(int id) {
+        for (ArchiveCompression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown archive compression id: " + id);
+    }
+}
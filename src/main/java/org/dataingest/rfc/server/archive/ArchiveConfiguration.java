@@ -0,0 +1,63 @@
+package org.dataingest.rfc.server.archive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spring configuration of the IDoc archive.
+ *
+ * The archive directory is only created once the first record is written, i.e. when
+ * the "archive" XML sink is enabled (idoc.xml.sinks=archive).
+ */
+@Configuration
+public class ArchiveConfiguration {
+
+    /**
+     * Creates the segmented IDoc archive.
+     *
+     * @param dir archive directory
+     * @param segmentMaxBytes segment size that triggers a roll
+     * @param segmentMaxAgeMinutes segment age that triggers a roll (0 = size only)
+     * @param compression payload compression (none or deflate)
+     * @param retentionHours age after which sealed segments are deleted (0 = keep)
+     * @param retentionMaxBytes total size of sealed segments to keep (0 = unlimited)
+     * @param fsync force every append to disk
+     * @param maintenanceIntervalMs interval of the sealing/retention thread
+     * @return the archive
+     */
+    @Bean(destroyMethod = "close")
+    public SegmentedArchive idocArchive(
+            @Value("${archive.dir:archive}") String dir,
+            @Value("${archive.segment.max-bytes:268435456}") long segmentMaxBytes,
+            @Value("${archive.segment.max-age-minutes:60}") long segmentMaxAgeMinutes,
+            @Value("${archive.compression:none}") String compression,
+            @Value("${archive.retention.hours:0}") long retentionHours,
+            @Value("${archive.retention.max-bytes:0}") long retentionMaxBytes,
+            @Value("${archive.fsync:false}") boolean fsync,
+            @Value("${archive.maintenance.interval.ms:10000}") long maintenanceIntervalMs) {
+
+        return new SegmentedArchive(
+                Paths.get(dir),
+                segmentMaxBytes,
+                TimeUnit.MINUTES.toMillis(segmentMaxAgeMinutes),
+                ArchiveCompression.valueOf(compression.trim().toUpperCase()),
+                TimeUnit.HOURS.toMillis(retentionHours),
+                retentionMaxBytes,
+                fsync,
+                maintenanceIntervalMs);
+    }
+
+    /**
+     * Creates the lookup service over the archive, including its unsealed segments.
+     *
+     * @param idocArchive the archive
+     * @return the lookup service
+     */
+    @Bean
+    public ArchiveLookup archiveLookup(SegmentedArchive idocArchive) {
+        return new ArchiveLookup(idocArchive);
+    }
+}
@@ -0,0 +1,218 @@
+package org.dataingest.rfc.server.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sidecar index of a sealed archive segment (seg-{id}.idx).
+ *
+ * The index holds three sorted sections of fixed-width entries (32 byte key, 8 byte
+ * record offset): TID, DOCNUM and MESTYP. It is memory-mapped for lookups, so a key
+ * is found by binary search without reading the segment. Keys longer than 32 bytes
+ * are truncated; callers verify the record they read.
+ *
+ * Layout:
+ * - header: magic "IDIX", version, segment id, entry count per section (32 bytes)
+ * - TID entries, DOCNUM entries, MESTYP entries
+ */
+public final class ArchiveIndex {
+
+    /**
+     * Index sections.
+     */
+    public enum Section {
+        TID,
+        DOCNUM,
+        MESTYP
+    }
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x49444958;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int KEY_SIZE = 32;
+    private static final int ENTRY_SIZE = KEY_SIZE + 8;
+
+    private final MappedByteBuffer buffer;
+    private final long segmentId;
+    private final int[] counts = new int[Section.values().length];
+    private final int[] starts = new int[Section.values().length];
+
+    private ArchiveIndex(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an IDoc archive index");
+        }
+        this.segmentId = buffer.getLong(8);
+        int position = HEADER_SIZE;
+        for (Section section : Section.values()) {
+            counts[section.ordinal()] = buffer.getInt(16 + 4 * section.ordinal());
+            starts[section.ordinal()] = position;
+            position += counts[section.ordinal()] * ENTRY_SIZE;
+        }
+        if (position > buffer.capacity()) {
+            throw new IOException("Truncated IDoc archive index");
+        }
+    }
+
+    /**
+     * Memory-maps an index file.
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IOException if the file cannot be mapped or is not an index
+     */
+    public static ArchiveIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ArchiveIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Builds the index of a segment by scanning its records.
+     *
+     * @param segment the segment file
+     * @param indexFile the index file to write
+     * @throws IOException if the segment cannot be read or the index not written
+     */
+    public static void build(Path segment, Path indexFile) throws IOException {
+        List<List<byte[]>> entries = new ArrayList<>();
+        for (int i = 0; i < Section.values().length; i++) {
+            entries.add(new ArrayList<>());
+        }
+        ArchiveSegments.scan(segment, record -> {
+            entries.get(Section.TID.ordinal()).add(entry(record.getTid(), record.getOffset()));
+            for (String[] fields : ControlFieldScanner.controlFields(record.getPayload())) {
+                if (fields[0] != null) {
+                    entries.get(Section.DOCNUM.ordinal()).add(entry(fields[0], record.getOffset()));
+                }
+                if (fields[1] != null) {
+                    entries.get(Section.MESTYP.ordinal()).add(entry(fields[1], record.getOffset()));
+                }
+            }
+        });
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(ArchiveSegments.segmentId(segment));
+        for (List<byte[]> section : entries) {
+            section.sort(Arrays::compareUnsigned);
+            header.putInt(section.size());
+        }
+        header.putInt(0); // reserved
+        header.flip();
+
+        // Unique name, the maintenance thread and a lookup may build the same index
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + "." + System.nanoTime() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(channel, header);
+            ByteBuffer block = ByteBuffer.allocate(ENTRY_SIZE * 1024);
+            for (List<byte[]> section : entries) {
+                for (byte[] entry : section) {
+                    if (!block.hasRemaining()) {
+                        block.flip();
+                        writeFully(channel, block);
+                        block.clear();
+                    }
+                    block.put(entry);
+                }
+            }
+            block.flip();
+            writeFully(channel, block);
+            channel.force(true);
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public long getSegmentId() {
+        return segmentId;
+    }
+
+    /**
+     * Returns the number of entries in a section.
+     */
+    public int size(Section section) {
+        return counts[section.ordinal()];
+    }
+
+    /**
+     * Returns the record offsets stored under a key, in ascending order.
+     *
+     * @param section the section to search
+     * @param key the key (TID, DOCNUM or message type)
+     * @return the record offsets in ascending order, empty if the key is not indexed
+     */
+    public long[] find(Section section, String key) {
+        byte[] probe = key(key);
+        int start = starts[section.ordinal()];
+        int low = 0;
+        int high = counts[section.ordinal()];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareKey(start + mid * ENTRY_SIZE, probe) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        long[] offsets = new long[0];
+        int count = 0;
+        for (int i = low; i < counts[section.ordinal()]; i++) {
+            int entry = start + i * ENTRY_SIZE;
+            if (compareKey(entry, probe) != 0) {
+                break;
+            }
+            long offset = buffer.getLong(entry + KEY_SIZE);
+            if (count > 0 && offsets[count - 1] == offset) {
+                continue;
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(4, count * 2));
+            }
+            offsets[count++] = offset;
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    private int compareKey(int entry, byte[] probe) {
+        for (int i = 0; i < KEY_SIZE; i++) {
+            int a = buffer.get(entry + i) & 0xFF;
+            int b = probe[i] & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+
+    private static byte[] key(String value) {
+        byte[] key = new byte[KEY_SIZE];
+        Arrays.fill(key, (byte) ' ');
+        byte[] bytes = value.trim().getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, key, 0, Math.min(bytes.length, KEY_SIZE));
+        return key;
+    }
+
+    private static byte[] entry(String key, long offset) {
+        byte[] entry = Arrays.copyOf(key(key), ENTRY_SIZE);
+        ByteBuffer.wrap(entry, KEY_SIZE, 8).putLong(offset);
+        return entry;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
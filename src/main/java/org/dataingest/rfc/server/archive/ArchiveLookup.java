@@ -0,0 +1,210 @@
+package org.dataingest.rfc.server.archive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Point lookups in the IDoc archive by TID, document number or message type.
+ *
+ * Segments are searched newest first and the search stops once the limit is
+ * reached. Sealed segments are searched through their memory-mapped index (built on
+ * demand if it is missing, mapped once and kept until the segment is deleted), so a
+ * lookup costs a binary search plus one positioned read per hit. Segments not sealed
+ * yet are searched through the in-memory index of the archive that writes them; only
+ * open segments without one (e.g., left by a crash, or when the lookup runs outside
+ * the server) are scanned sequentially.
+ *
+ * Index hits are verified against the record itself, so a stale or foreign index
+ * can never return a wrong IDoc.
+ */
+public class ArchiveLookup {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveLookup.class);
+
+    private final Path dir;
+    private final SegmentedArchive archive;
+    private final Map<Long, ArchiveIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a lookup over an archive directory written by another process.
+     *
+     * @param dir the archive directory
+     */
+    public ArchiveLookup(Path dir) {
+        this.dir = dir;
+        this.archive = null;
+    }
+
+    /**
+     * Creates a lookup over the archive written by this process, using its in-memory
+     * index of the segments not sealed yet.
+     *
+     * @param archive the archive
+     */
+    public ArchiveLookup(SegmentedArchive archive) {
+        this.dir = archive.getDirectory();
+        this.archive = archive;
+    }
+
+    /**
+     * Returns the records of the given transaction (normally one; more if SAP resent it).
+     *
+     * @param tid the transaction id
+     * @param limit the maximum number of records
+     * @return the matching records, newest first
+     * @throws IOException if the archive cannot be read
+     */
+    public List<ArchiveRecord> findByTid(String tid, int limit) throws IOException {
+        return find(ArchiveIndex.Section.TID, tid, limit, record -> tid.equals(record.getTid()));
+    }
+
+    /**
+     * Returns the records containing the IDoc with the given document number.
+     *
+     * @param documentNumber the DOCNUM of the IDoc
+     * @param limit the maximum number of records
+     * @return the matching records, newest first
+     * @throws IOException if the archive cannot be read
+     */
+    public List<ArchiveRecord> findByDocumentNumber(String documentNumber, int limit) throws IOException {
+        return find(ArchiveIndex.Section.DOCNUM, documentNumber, limit,
+                record -> hasControlField(record, 0, documentNumber));
+    }
+
+    /**
+     * Returns the most recent records containing IDocs of the given message type.
+     *
+     * @param messageType the MESTYP (e.g., ORDERS)
+     * @param limit the maximum number of records
+     * @return the matching records, newest first
+     * @throws IOException if the archive cannot be read
+     */
+    public List<ArchiveRecord> findByMessageType(String messageType, int limit) throws IOException {
+        return find(ArchiveIndex.Section.MESTYP, messageType, limit,
+                record -> hasControlField(record, 1, messageType));
+    }
+
+    /**
+     * Returns the XML of a single IDoc of an archived transaction.
+     *
+     * @param record the archived transaction
+     * @param documentNumber the DOCNUM of the IDoc
+     * @return the IDOC element, or the whole payload if it cannot be isolated
+     */
+    public static byte[] idocXml(ArchiveRecord record, String documentNumber) {
+        byte[] element = ControlFieldScanner.idocElement(record.getPayload(), documentNumber);
+        return element != null ? element : record.getPayload();
+    }
+
+    private List<ArchiveRecord> find(ArchiveIndex.Section section, String key, int limit,
+                                     Predicate<ArchiveRecord> matches) throws IOException {
+        List<ArchiveRecord> result = new ArrayList<>();
+        List<Path> segments = ArchiveSegments.list(dir);
+        if (!indexes.isEmpty()) {
+            // Retention deletes the oldest segments, drop their mappings
+            long oldest = segments.isEmpty() ? Long.MAX_VALUE : ArchiveSegments.segmentId(segments.get(0));
+            indexes.keySet().removeIf(segmentId -> segmentId < oldest);
+        }
+        for (int i = segments.size() - 1; i >= 0 && result.size() < limit; i--) {
+            Path segment = segments.get(i);
+            long segmentId = ArchiveSegments.segmentId(segment);
+            int remaining = limit - result.size();
+            List<ArchiveRecord> hits = new ArrayList<>();
+            try {
+                OpenSegmentIndex openIndex = archive != null ? archive.openIndex(segmentId) : null;
+                if (openIndex != null) {
+                    // The segment may have been renamed to .seg since the listing
+                    Path file = archive.segmentFile(segmentId);
+                    read(file != null ? file : segment, segmentId, openIndex.find(section, key), remaining,
+                            matches, hits);
+                } else if (ArchiveSegments.isSealed(segment)) {
+                    read(segment, segmentId, index(segment, segmentId).find(section, key), remaining,
+                            matches, hits);
+                } else {
+                    ArchiveSegments.scan(segment, record -> {
+                        if (matches.test(record)) {
+                            hits.add(record);
+                        }
+                    });
+                    Collections.reverse(hits);
+                }
+            } catch (IOException e) {
+                if (!Files.exists(segment)) {
+                    // Sealed or deleted by the maintenance thread meanwhile
+                    LOGGER.debug("Archive segment {} disappeared during lookup", segment.getFileName());
+                    continue;
+                }
+                throw e;
+            }
+            for (ArchiveRecord hit : hits) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(hit);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the mapped index of a sealed segment, mapping (and if needed building) it
+     * on first use.
+     */
+    private ArchiveIndex index(Path segment, long segmentId) throws IOException {
+        ArchiveIndex index = indexes.get(segmentId);
+        if (index != null) {
+            return index;
+        }
+        Path indexFile = dir.resolve(ArchiveSegments.fileName(segmentId, ArchiveIndex.INDEX_SUFFIX));
+        if (!Files.exists(indexFile)) {
+            LOGGER.info("Building missing index for archive segment {}", segment.getFileName());
+            ArchiveIndex.build(segment, indexFile);
+        }
+
+        index = ArchiveIndex.open(indexFile);
+        if (index.getSegmentId() != segmentId) {
+            throw new IOException("Index " + indexFile.getFileName() + " belongs to segment " + index.getSegmentId());
+        }
+        indexes.put(segmentId, index);
+        return index;
+    }
+
+    /**
+     * Reads the records at the given offsets newest first, until the limit is reached.
+     */
+    private static void read(Path segment, long segmentId, long[] offsets, int limit,
+                             Predicate<ArchiveRecord> matches, List<ArchiveRecord> hits) throws IOException {
+        if (offsets.length == 0) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ArchiveCompression compression = ArchiveSegments.readSegmentHeader(channel);
+            for (int i = offsets.length - 1; i >= 0 && hits.size() < limit; i--) {
+                ArchiveRecord record = ArchiveSegments.readRecord(channel, segmentId, offsets[i], compression);
+                if (matches.test(record)) {
+                    hits.add(record);
+                }
+            }
+        }
+    }
+
+    private static boolean hasControlField(ArchiveRecord record, int field, String value) {
+        for (String[] fields : ControlFieldScanner.controlFields(record.getPayload())) {
+            if (value.equals(fields[field])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
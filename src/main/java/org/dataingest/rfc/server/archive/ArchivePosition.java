@@ -0,0 +1,28 @@
+package org.dataingest.rfc.server.archive;
+
+/**
+ * Location of a record in the archive: segment id and file offset.
+ */
+public class ArchivePosition {
+
+    private final long segmentId;
+    private final long offset;
+
+    public ArchivePosition(long segmentId, long offset) {
+        this.segmentId = segmentId;
+        this.offset = offset;
+    }
+
+    public long getSegmentId() {
+        return segmentId;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return segmentId + ":" + offset;
+    }
+}
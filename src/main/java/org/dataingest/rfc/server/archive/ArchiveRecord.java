@@ -0,0 +1,64 @@
+package org.dataingest.rfc.server.archive;
+
+/**
+ * A single archived transaction: the IDoc XML of one TID plus its position.
+ */
+public class ArchiveRecord {
+
+    private final long segmentId;
+    private final long offset;
+    private final long timestamp;
+    private final String tid;
+    private final int numDocuments;
+    private final byte[] payload;
+
+    public ArchiveRecord(long segmentId, long offset, long timestamp, String tid, int numDocuments, byte[] payload) {
+        this.segmentId = segmentId;
+        this.offset = offset;
+        this.timestamp = timestamp;
+        this.tid = tid;
+        this.numDocuments = numDocuments;
+        this.payload = payload;
+    }
+
+    public long getSegmentId() {
+        return segmentId;
+    }
+
+    /**
+     * Returns the file offset of the record within its segment.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getTid() {
+        return tid;
+    }
+
+    public int getNumDocuments() {
+        return numDocuments;
+    }
+
+    /**
+     * Returns the uncompressed payload (UTF-8 IDoc XML).
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String toString() {
+        return "ArchiveRecord{" +
+                "segmentId=" + segmentId +
+                ", offset=" + offset +
+                ", tid='" + tid + '\'' +
+                ", numDocuments=" + numDocuments +
+                ", bytes=" + payload.length +
+                '}';
+    }
+}
@@ -0,0 +1,329 @@
+package org.dataingest.rfc.server.archive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * On-disk format of IDoc archive segments.
+ *
+ * Segment file (seg-{id}.open while written, seg-{id}.seg once sealed):
+ * - header: magic "IDAR", version, compression id, 2 reserved bytes, creation time (16 bytes)
+ * - records, appended back to back
+ *
+ * Record:
+ * - magic "REC1" (4), body length (4)
+ * - body: timestamp (8), number of IDocs (4), uncompressed payload length (4),
+ *   TID length (2), TID (UTF-8), stored payload, CRC32 of the body before the CRC (4)
+ *
+ * Sealed segments have a sidecar seg-{id}.sha256 in sha256sum format and a lookup
+ * index seg-{id}.idx (see ArchiveIndex).
+ */
+public final class ArchiveSegments {
+
+    public static final String OPEN_SUFFIX = ".open";
+    public static final String SEALED_SUFFIX = ".seg";
+    public static final String CHECKSUM_SUFFIX = ".sha256";
+
+    public static final int SEGMENT_HEADER_SIZE = 16;
+
+    static final int SEGMENT_MAGIC = 0x49444152;
+    static final int RECORD_MAGIC = 0x52454331;
+    static final int RECORD_PREFIX_SIZE = 8;
+    static final int RECORD_FIXED_BODY_SIZE = 8 + 4 + 4 + 2;
+    static final int CRC_SIZE = 4;
+
+    private static final byte VERSION = 1;
+    private static final String PREFIX = "seg-";
+
+    /**
+     * Receives the records of a segment scan.
+     */
+    public interface RecordVisitor {
+        void record(ArchiveRecord record) throws IOException;
+    }
+
+    private ArchiveSegments() {
+    }
+
+    /**
+     * Returns the file name of a segment.
+     *
+     * @param segmentId the segment id
+     * @param suffix OPEN_SUFFIX, SEALED_SUFFIX or CHECKSUM_SUFFIX
+     * @return the file name
+     */
+    public static String fileName(long segmentId, String suffix) {
+        return String.format("%s%020d%s", PREFIX, segmentId, suffix);
+    }
+
+    /**
+     * Returns the segment id of a segment file, or -1 if the file is not a segment.
+     */
+    public static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        int end = name.lastIndexOf('.');
+        if (!name.startsWith(PREFIX) || end <= PREFIX.length()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns all segment files (sealed and open) of an archive directory, oldest first.
+     *
+     * @param dir the archive directory
+     * @return the segment files ordered by segment id
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<Path> list(Path dir) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SEALED_SUFFIX) || name.endsWith(OPEN_SUFFIX)) {
+                    segments.add(file);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(ArchiveSegments::segmentId));
+        return segments;
+    }
+
+    /**
+     * Returns whether a segment file is sealed.
+     */
+    public static boolean isSealed(Path file) {
+        return file.getFileName().toString().endsWith(SEALED_SUFFIX);
+    }
+
+    static ByteBuffer segmentHeader(ArchiveCompression compression, long created) {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC).put(VERSION).put((byte) compression.getId()).putShort((short) 0).putLong(created);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Reads and validates the header of a segment.
+     *
+     * @param channel the segment channel
+     * @return the compression used by the segment
+     * @throws IOException if the header is missing or invalid
+     */
+    public static ArchiveCompression readSegmentHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getInt() != SEGMENT_MAGIC) {
+            throw new IOException("Not an IDoc archive segment");
+        }
+        byte version = header.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported archive segment version: " + version);
+        }
+        return ArchiveCompression.forId(header.get());
+    }
+
+    /**
+     * Reads a single record.
+     *
+     * @param channel the segment channel
+     * @param segmentId the segment id (reported in the record)
+     * @param offset the record offset
+     * @param compression the segment compression
+     * @return the record with its uncompressed payload
+     * @throws IOException if the record cannot be read or fails its checksum
+     */
+    public static ArchiveRecord readRecord(FileChannel channel, long segmentId, long offset,
+                                           ArchiveCompression compression) throws IOException {
+        ByteBuffer body = readBody(channel, offset, channel.size());
+        if (body == null) {
+            throw new IOException("No valid archive record at segment " + segmentId + " offset " + offset);
+        }
+        return decode(body, segmentId, offset, compression);
+    }
+
+    /**
+     * Reads all valid records of a segment in order, stopping at the first truncated
+     * or corrupt record.
+     *
+     * @param file the segment file
+     * @param visitor receives every record
+     * @return the end offset of the last valid record
+     * @throws IOException if the segment cannot be read
+     */
+    public static long scan(Path file, RecordVisitor visitor) throws IOException {
+        long segmentId = segmentId(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ArchiveCompression compression = readSegmentHeader(channel);
+            long size = channel.size();
+            long offset = SEGMENT_HEADER_SIZE;
+            while (offset < size) {
+                ByteBuffer body = readBody(channel, offset, size);
+                if (body == null) {
+                    break;
+                }
+                long next = offset + RECORD_PREFIX_SIZE + body.limit();
+                if (visitor != null) {
+                    visitor.record(decode(body, segmentId, offset, compression));
+                }
+                offset = next;
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * Reads all valid records of a segment in order like scan, but through a read-only
+     * memory mapping of the whole segment instead of one read call per record. Meant
+     * for bulk reads such as replays.
+     *
+     * @param file the segment file
+     * @param visitor receives every record
+     * @return the end offset of the last valid record
+     * @throws IOException if the segment cannot be mapped or read
+     */
+    public static long scanMapped(Path file, RecordVisitor visitor) throws IOException {
+        long segmentId = segmentId(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ArchiveCompression compression = readSegmentHeader(channel);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Archive segment " + file.getFileName() + " is too large to map");
+            }
+            ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int offset = SEGMENT_HEADER_SIZE;
+            while (offset < size) {
+                ByteBuffer body = mappedBody(segment, offset);
+                if (body == null) {
+                    break;
+                }
+                int next = offset + RECORD_PREFIX_SIZE + body.limit();
+                if (visitor != null) {
+                    visitor.record(decode(body, segmentId, offset, compression));
+                }
+                offset = next;
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * Reads and verifies a record body; returns null if no complete, valid record
+     * starts at the offset.
+     */
+    private static ByteBuffer readBody(FileChannel channel, long offset, long size) throws IOException {
+        if (offset + RECORD_PREFIX_SIZE > size) {
+            return null;
+        }
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX_SIZE);
+        readFully(channel, prefix, offset);
+        prefix.flip();
+        int magic = prefix.getInt();
+        int bodyLength = prefix.getInt();
+        if (magic != RECORD_MAGIC || bodyLength < RECORD_FIXED_BODY_SIZE + CRC_SIZE
+                || offset + RECORD_PREFIX_SIZE + bodyLength > size) {
+            return null;
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        readFully(channel, body, offset + RECORD_PREFIX_SIZE);
+        body.flip();
+        return isValid(body) ? body : null;
+    }
+
+    /**
+     * Returns the body of the record at the offset of a mapped segment, or null if no
+     * complete, valid record starts there.
+     */
+    private static ByteBuffer mappedBody(ByteBuffer segment, int offset) {
+        int size = segment.limit();
+        if (offset + RECORD_PREFIX_SIZE > size) {
+            return null;
+        }
+        int magic = segment.getInt(offset);
+        int bodyLength = segment.getInt(offset + 4);
+        if (magic != RECORD_MAGIC || bodyLength < RECORD_FIXED_BODY_SIZE + CRC_SIZE
+                || bodyLength > size - offset - RECORD_PREFIX_SIZE) {
+            return null;
+        }
+        ByteBuffer body = segment.duplicate();
+        body.position(offset + RECORD_PREFIX_SIZE).limit(offset + RECORD_PREFIX_SIZE + bodyLength);
+        body = body.slice();
+        return isValid(body) ? body : null;
+    }
+
+    private static boolean isValid(ByteBuffer body) {
+        int crcPosition = body.limit() - CRC_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate().limit(crcPosition));
+        return (int) crc.getValue() == body.getInt(crcPosition);
+    }
+
+    private static ArchiveRecord decode(ByteBuffer body, long segmentId, long offset,
+                                        ArchiveCompression compression) throws IOException {
+        long timestamp = body.getLong();
+        int numDocuments = body.getInt();
+        int rawLength = body.getInt();
+        byte[] tidBytes = new byte[body.getShort() & 0xFFFF];
+        body.get(tidBytes);
+        String tid = new String(tidBytes, StandardCharsets.UTF_8);
+        ByteBuffer stored = body.duplicate().limit(body.limit() - CRC_SIZE);
+
+        byte[] payload = new byte[rawLength];
+        if (compression == ArchiveCompression.NONE) {
+            stored.get(payload);
+        } else {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                int inflated = 0;
+                while (inflated < rawLength && !inflater.finished()) {
+                    int n = inflater.inflate(payload, inflated, rawLength - inflated);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != rawLength) {
+                    throw new IOException("Truncated compressed record at segment " + segmentId + " offset " + offset);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt compressed record at segment " + segmentId + " offset " + offset, e);
+            } finally {
+                inflater.end();
+            }
+        }
+        return new ArchiveRecord(segmentId, offset, timestamp, tid, numDocuments, payload);
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of archive segment");
+            }
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.dataingest.rfc.server.archive;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.xml.IIDocXmlSink;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * XML sink appending each transaction to the segmented IDoc archive.
+ */
+@Component
+public class ArchiveXmlSink implements IIDocXmlSink {
+
+    public static final String NAME = "archive";
+
+    @Autowired
+    protected SegmentedArchive archive;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void write(String tid, int numDocuments, ByteBuffer data) throws IOException {
+        archive.append(tid, numDocuments, data);
+    }
+}
@@ -0,0 +1,125 @@
+package org.dataingest.rfc.server.archive;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Byte-level scanner for the control records in rendered IDoc XML.
+ *
+ * Finds every EDI_DC40 element and reads its DOCNUM and MESTYP values without
+ * parsing the document, so archive segments can be indexed cheaply. Also locates
+ * the IDOC element of a single document inside a multi-IDoc transaction.
+ */
+final class ControlFieldScanner {
+
+    private static final byte[] DC40_START = ascii("<EDI_DC40");
+    private static final byte[] DC40_END = ascii("</EDI_DC40>");
+    private static final byte[] IDOC_START = ascii("<IDOC");
+    private static final byte[] IDOC_END = ascii("</IDOC>");
+
+    private ControlFieldScanner() {
+    }
+
+    /**
+     * Returns DOCNUM and MESTYP of every control record in the XML.
+     *
+     * @param xml the rendered IDoc XML
+     * @return one {DOCNUM, MESTYP} pair per IDoc, values may be null
+     */
+    static List<String[]> controlFields(byte[] xml) {
+        return controlFields(ByteBuffer.wrap(xml));
+    }
+
+    /**
+     * Returns DOCNUM and MESTYP of every control record in the XML between the
+     * buffer's position and limit; the buffer's position is left unchanged.
+     *
+     * @param xml the rendered IDoc XML, in a heap or direct buffer
+     * @return one {DOCNUM, MESTYP} pair per IDoc, values may be null
+     */
+    static List<String[]> controlFields(ByteBuffer xml) {
+        List<String[]> result = new ArrayList<>();
+        int from = xml.position();
+        while (true) {
+            int start = indexOf(xml, DC40_START, from, xml.limit());
+            if (start < 0) {
+                break;
+            }
+            int end = indexOf(xml, DC40_END, start, xml.limit());
+            if (end < 0) {
+                break;
+            }
+            result.add(new String[] {elementText(xml, "DOCNUM", start, end), elementText(xml, "MESTYP", start, end)});
+            from = end + DC40_END.length;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the IDOC element holding the given document number, or null if the
+     * XML has no such IDOC element.
+     *
+     * @param xml the rendered IDoc XML of a transaction
+     * @param documentNumber the DOCNUM to look for
+     * @return the bytes of the matching IDOC element
+     */
+    static byte[] idocElement(byte[] xml, String documentNumber) {
+        ByteBuffer buffer = ByteBuffer.wrap(xml);
+        int from = 0;
+        while (true) {
+            int start = indexOf(buffer, IDOC_START, from, xml.length);
+            if (start < 0) {
+                return null;
+            }
+            int end = indexOf(buffer, IDOC_END, start, xml.length);
+            if (end < 0) {
+                return null;
+            }
+            end += IDOC_END.length;
+            if (documentNumber.equals(elementText(buffer, "DOCNUM", start, end))) {
+                byte[] element = new byte[end - start];
+                System.arraycopy(xml, start, element, 0, element.length);
+                return element;
+            }
+            from = end;
+        }
+    }
+
+    private static String elementText(ByteBuffer xml, String name, int from, int to) {
+        byte[] open = ascii("<" + name + ">");
+        int start = indexOf(xml, open, from, to);
+        if (start < 0) {
+            return null;
+        }
+        start += open.length;
+        int end = indexOf(xml, ascii("</" + name + ">"), start, to);
+        if (end < 0) {
+            return null;
+        }
+        byte[] text = new byte[end - start];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = xml.get(start + i);
+        }
+        return new String(text, StandardCharsets.UTF_8).trim();
+    }
+
+    private static int indexOf(ByteBuffer data, byte[] pattern, int from, int to) {
+        int last = to - pattern.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data.get(i + j) != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,84 @@
+package org.dataingest.rfc.server.archive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory lookup index of an archive segment that is not sealed yet.
+ *
+ * SegmentedArchive adds every record it appends, so lookups in the open segment
+ * read only the matching records instead of scanning the segment. The index is
+ * dropped once the segment is sealed and its ArchiveIndex file is written. Keys are
+ * trimmed like in ArchiveIndex but not truncated; callers still verify the record
+ * they read.
+ */
+final class OpenSegmentIndex {
+
+    private final List<Map<String, long[]>> sections = new ArrayList<>();
+
+    OpenSegmentIndex() {
+        for (int i = 0; i < ArchiveIndex.Section.values().length; i++) {
+            sections.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Adds a record.
+     *
+     * @param tid the TID of the record
+     * @param controlFields the {DOCNUM, MESTYP} pairs of its IDocs
+     * @param offset the record offset
+     */
+    synchronized void add(String tid, List<String[]> controlFields, long offset) {
+        add(ArchiveIndex.Section.TID, tid, offset);
+        for (String[] fields : controlFields) {
+            add(ArchiveIndex.Section.DOCNUM, fields[0], offset);
+            add(ArchiveIndex.Section.MESTYP, fields[1], offset);
+        }
+    }
+
+    /**
+     * Returns the record offsets stored under a key, in ascending order.
+     *
+     * @param section the section to search
+     * @param key the key (TID, DOCNUM or message type)
+     * @return the record offsets in ascending order, empty if the key is not indexed
+     */
+    synchronized long[] find(ArchiveIndex.Section section, String key) {
+        long[] offsets = sections.get(section.ordinal()).get(key.trim());
+        if (offsets == null) {
+            return new long[0];
+        }
+        // The first element holds the count
+        long[] result = new long[(int) offsets[0]];
+        System.arraycopy(offsets, 1, result, 0, result.length);
+        return result;
+    }
+
+    private void add(ArchiveIndex.Section section, String key, long offset) {
+        if (key == null) {
+            return;
+        }
+        Map<String, long[]> entries = sections.get(section.ordinal());
+        String trimmed = key.trim();
+        long[] offsets = entries.get(trimmed);
+        if (offsets == null) {
+            entries.put(trimmed, new long[] {1, offset});
+            return;
+        }
+        int count = (int) offsets[0];
+        if (offsets[count] == offset) {
+            // Several IDocs of one record with the same key
+            return;
+        }
+        if (count + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            entries.put(trimmed, offsets);
+        }
+        offsets[count + 1] = offset;
+        offsets[0] = count + 1;
+    }
+}
@@ -0,0 +1,521 @@
+package org.dataingest.rfc.server.archive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Rolling, segmented archive of received IDoc transactions.
+ *
+ * Records are appended to the current segment through a FileChannel (gathering
+ * writes, no per-record files). A segment is rolled once it reaches the configured
+ * size or age; finished segments are handed to a background thread which forces
+ * them to disk, renames them from .open to .seg, writes a SHA-256 checksum file and
+ * builds the segment's lookup index (ArchiveIndex). Until then appended records are
+ * kept in an in-memory index (OpenSegmentIndex), so lookups need not scan the
+ * segment.
+ * The same thread rolls idle segments, applies retention and, after a crash, seals
+ * leftover .open segments truncated to their last valid record.
+ *
+ * Handles:
+ * - Size and time based rolling
+ * - Optional per-record deflate compression (chosen per segment)
+ * - Retention by age and by total size
+ * - Random access reads by segment id and offset
+ */
+public class SegmentedArchive implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentedArchive.class);
+
+    private final Path dir;
+    private final long maxSegmentBytes;
+    private final long maxSegmentAgeMs;
+    private final ArchiveCompression compression;
+    private final long retentionMs;
+    private final long retentionBytes;
+    private final boolean fsync;
+    private final long maintenanceIntervalMs;
+
+    private final Object lock = new Object();
+    private final Queue<Long> pendingSeal = new ConcurrentLinkedQueue<>();
+    private final Map<Long, OpenSegmentIndex> openIndexes = new ConcurrentHashMap<>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer headerBuffer = ByteBuffer.allocate(256);
+    private final ByteBuffer crcBuffer = ByteBuffer.allocate(ArchiveSegments.CRC_SIZE);
+    private Deflater deflater;
+    private byte[] compressBuffer = new byte[0];
+
+    private ScheduledExecutorService maintenance;
+    private FileChannel current;
+    private long currentId = -1;
+    private long currentSize;
+    private long currentCreated;
+    private long nextId;
+    private boolean opened;
+    private boolean closed;
+
+    /**
+     * Creates an archive; the directory is opened on the first append or read.
+     *
+     * @param dir the archive directory
+     * @param maxSegmentBytes roll the segment once it reaches this size
+     * @param maxSegmentAgeMs roll the segment once it is this old (0 = never)
+     * @param compression payload compression for new segments
+     * @param retentionMs delete sealed segments older than this (0 = keep)
+     * @param retentionBytes delete the oldest sealed segments beyond this total size (0 = unlimited)
+     * @param fsync force every append to disk
+     * @param maintenanceIntervalMs interval of the sealing/retention thread
+     */
+    public SegmentedArchive(Path dir, long maxSegmentBytes, long maxSegmentAgeMs, ArchiveCompression compression,
+                            long retentionMs, long retentionBytes, boolean fsync, long maintenanceIntervalMs) {
+        this.dir = dir;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentAgeMs = maxSegmentAgeMs;
+        this.compression = compression;
+        this.retentionMs = retentionMs;
+        this.retentionBytes = retentionBytes;
+        this.fsync = fsync;
+        this.maintenanceIntervalMs = maintenanceIntervalMs;
+    }
+
+    /**
+     * Appends the XML of one transaction.
+     *
+     * @param tid the transaction ID
+     * @param numDocuments number of IDocs in the XML
+     * @param data buffer holding the XML
+     * @param offset start of the XML in the buffer
+     * @param length length of the XML
+     * @return the position of the new record
+     * @throws IOException if the record cannot be written
+     */
+    public ArchivePosition append(String tid, int numDocuments, byte[] data, int offset, int length)
+            throws IOException {
+        return append(tid, numDocuments, ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Appends the XML of one transaction from a (heap or direct) buffer.
+     *
+     * The XML between position and limit is checksummed, compressed and written
+     * straight from the buffer; the buffer's position is left unchanged.
+     *
+     * @param tid the transaction ID
+     * @param numDocuments number of IDocs in the XML
+     * @param data the XML, between position and limit
+     * @return the position of the new record
+     * @throws IOException if the record cannot be written
+     */
+    public ArchivePosition append(String tid, int numDocuments, ByteBuffer data) throws IOException {
+        int length = data.remaining();
+        byte[] tidBytes = tid.getBytes(StandardCharsets.UTF_8);
+        if (tidBytes.length > 0xFFFF) {
+            throw new IOException("TID too long for archive record: " + tidBytes.length + " bytes");
+        }
+        // Scanned outside the lock, the XML is only read
+        List<String[]> controlFields = ControlFieldScanner.controlFields(data);
+
+        synchronized (lock) {
+            ensureOpen();
+            long now = System.currentTimeMillis();
+            if (current != null && maxSegmentAgeMs > 0 && now - currentCreated >= maxSegmentAgeMs) {
+                finishCurrent();
+            }
+            if (current == null) {
+                openSegment(now);
+            }
+
+            ByteBuffer stored = data.duplicate();
+            int storedLength = length;
+            if (compression == ArchiveCompression.DEFLATE) {
+                storedLength = deflate(data.duplicate(), length);
+                stored = ByteBuffer.wrap(compressBuffer, 0, storedLength);
+            }
+
+            int headerLength = ArchiveSegments.RECORD_PREFIX_SIZE + ArchiveSegments.RECORD_FIXED_BODY_SIZE + tidBytes.length;
+            int bodyLength = ArchiveSegments.RECORD_FIXED_BODY_SIZE + tidBytes.length + storedLength
+                    + ArchiveSegments.CRC_SIZE;
+            if (headerBuffer.capacity() < headerLength) {
+                headerBuffer = ByteBuffer.allocate(headerLength);
+            }
+            ByteBuffer header = headerBuffer;
+            header.clear();
+            header.putInt(ArchiveSegments.RECORD_MAGIC).putInt(bodyLength)
+                    .putLong(now).putInt(numDocuments).putInt(length).putShort((short) tidBytes.length).put(tidBytes);
+            header.flip();
+
+            crc.reset();
+            crc.update(header.array(), ArchiveSegments.RECORD_PREFIX_SIZE, headerLength - ArchiveSegments.RECORD_PREFIX_SIZE);
+            crc.update(stored.duplicate());
+            crcBuffer.clear();
+            crcBuffer.putInt((int) crc.getValue()).flip();
+
+            long recordOffset = currentSize;
+            ByteBuffer[] buffers = {header, stored, crcBuffer};
+            try {
+                long remaining = ArchiveSegments.RECORD_PREFIX_SIZE + (long) bodyLength;
+                while (remaining > 0) {
+                    remaining -= current.write(buffers);
+                }
+                if (fsync) {
+                    current.force(false);
+                }
+            } catch (IOException e) {
+                discardPartialRecord(recordOffset);
+                throw e;
+            }
+            currentSize += ArchiveSegments.RECORD_PREFIX_SIZE + (long) bodyLength;
+            openIndexes.get(currentId).add(tid, controlFields, recordOffset);
+
+            ArchivePosition position = new ArchivePosition(currentId, recordOffset);
+            if (currentSize >= maxSegmentBytes) {
+                finishCurrent();
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Reads the record at the given position.
+     *
+     * @param position the record position
+     * @return the record
+     * @throws IOException if the segment is gone or the record is invalid
+     */
+    public ArchiveRecord read(ArchivePosition position) throws IOException {
+        Path file = segmentFile(position.getSegmentId());
+        if (file == null) {
+            throw new IOException("Archive segment " + position.getSegmentId() + " not found");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ArchiveCompression segmentCompression = ArchiveSegments.readSegmentHeader(channel);
+            return ArchiveSegments.readRecord(channel, position.getSegmentId(), position.getOffset(), segmentCompression);
+        }
+    }
+
+    /**
+     * Returns the file of a segment (sealed or still open), or null if it does not exist.
+     */
+    public Path segmentFile(long segmentId) {
+        Path sealed = dir.resolve(ArchiveSegments.fileName(segmentId, ArchiveSegments.SEALED_SUFFIX));
+        if (Files.exists(sealed)) {
+            return sealed;
+        }
+        Path open = dir.resolve(ArchiveSegments.fileName(segmentId, ArchiveSegments.OPEN_SUFFIX));
+        return Files.exists(open) ? open : null;
+    }
+
+    /**
+     * Returns all segment files (sealed and open), oldest first.
+     *
+     * @return the segment files ordered by segment id
+     * @throws IOException if the directory cannot be listed
+     */
+    public List<Path> segments() throws IOException {
+        return ArchiveSegments.list(dir);
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    /**
+     * Returns the in-memory index of a segment appended to by this archive and not
+     * yet indexed on disk, or null.
+     */
+    OpenSegmentIndex openIndex(long segmentId) {
+        return openIndexes.get(segmentId);
+    }
+
+    /**
+     * Finishes the current segment, seals all pending segments and stops the
+     * maintenance thread.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!opened) {
+                return;
+            }
+            finishCurrent();
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        maintenance.shutdown();
+        try {
+            maintenance.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sealPending();
+        LOGGER.info("IDoc archive {} closed", dir.toAbsolutePath());
+    }
+
+    /**
+     * Creates the directory, recovers leftover open segments and starts the
+     * maintenance thread. Called under the lock.
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("IDoc archive is closed");
+        }
+        if (opened) {
+            return;
+        }
+        Files.createDirectories(dir);
+
+        long maxId = -1;
+        for (Path file : segments()) {
+            long id = ArchiveSegments.segmentId(file);
+            maxId = Math.max(maxId, id);
+            if (file.getFileName().toString().endsWith(ArchiveSegments.OPEN_SUFFIX)) {
+                recover(file);
+                pendingSeal.add(id);
+            }
+        }
+        nextId = maxId + 1;
+
+        if (compression == ArchiveCompression.DEFLATE) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "idoc-archive-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::maintain, maintenanceIntervalMs, maintenanceIntervalMs,
+                TimeUnit.MILLISECONDS);
+        opened = true;
+        LOGGER.info("IDoc archive opened at {} (next segment {}, compression {}, {} segment(s) to seal)",
+                dir.toAbsolutePath(), nextId, compression, pendingSeal.size());
+    }
+
+    /**
+     * Truncates a segment left open by a crash to its last valid record.
+     */
+    private void recover(Path file) {
+        try {
+            long validEnd = ArchiveSegments.scan(file, null);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                if (channel.size() > validEnd) {
+                    LOGGER.warn("Truncating archive segment {} from {} to {} bytes", file.getFileName(), channel.size(), validEnd);
+                    channel.truncate(validEnd);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not recover archive segment {}: {}", file.getFileName(), e.getMessage(), e);
+        }
+    }
+
+    private void openSegment(long now) throws IOException {
+        long id = nextId++;
+        Path file = dir.resolve(ArchiveSegments.fileName(id, ArchiveSegments.OPEN_SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ArchiveSegments.segmentHeader(compression, now);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        openIndexes.put(id, new OpenSegmentIndex());
+        current = channel;
+        currentId = id;
+        currentSize = ArchiveSegments.SEGMENT_HEADER_SIZE;
+        currentCreated = now;
+        LOGGER.info("Opened archive segment {}", file.getFileName());
+    }
+
+    /**
+     * Closes the current segment and queues it for sealing. Called under the lock.
+     */
+    private void finishCurrent() {
+        if (current == null) {
+            return;
+        }
+        try {
+            current.close();
+        } catch (IOException e) {
+            LOGGER.error("Error closing archive segment {}: {}", currentId, e.getMessage(), e);
+        }
+        pendingSeal.add(currentId);
+        current = null;
+        currentId = -1;
+    }
+
+    /**
+     * Removes the bytes of a failed append so the segment stays readable.
+     */
+    private void discardPartialRecord(long recordOffset) {
+        try {
+            current.truncate(recordOffset);
+            current.position(recordOffset);
+        } catch (IOException e) {
+            LOGGER.error("Could not truncate archive segment {} after failed append, rolling it: {}",
+                    currentId, e.getMessage());
+            finishCurrent();
+        }
+    }
+
+    private int deflate(ByteBuffer data, int length) {
+        int bound = length + (length >> 3) + 64;
+        if (compressBuffer.length < bound) {
+            compressBuffer = new byte[bound];
+        }
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == compressBuffer.length) {
+                byte[] grown = new byte[compressBuffer.length * 2];
+                System.arraycopy(compressBuffer, 0, grown, 0, size);
+                compressBuffer = grown;
+            }
+            size += deflater.deflate(compressBuffer, size, compressBuffer.length - size);
+        }
+        return size;
+    }
+
+    /**
+     * Periodic work of the maintenance thread: roll aged segments, seal finished
+     * segments, apply retention.
+     */
+    private void maintain() {
+        try {
+            synchronized (lock) {
+                if (current != null && maxSegmentAgeMs > 0
+                        && System.currentTimeMillis() - currentCreated >= maxSegmentAgeMs) {
+                    finishCurrent();
+                }
+            }
+            sealPending();
+            applyRetention();
+        } catch (Exception e) {
+            LOGGER.error("IDoc archive maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void sealPending() {
+        Long id;
+        while ((id = pendingSeal.peek()) != null) {
+            try {
+                seal(id);
+                pendingSeal.poll();
+            } catch (IOException e) {
+                LOGGER.error("Could not seal archive segment {}, will retry: {}", id, e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forces a finished segment to disk, renames it to .seg and writes its checksum.
+     */
+    private void seal(long segmentId) throws IOException {
+        Path open = dir.resolve(ArchiveSegments.fileName(segmentId, ArchiveSegments.OPEN_SUFFIX));
+        Path sealed = dir.resolve(ArchiveSegments.fileName(segmentId, ArchiveSegments.SEALED_SUFFIX));
+        if (!Files.exists(open)) {
+            openIndexes.remove(segmentId);
+            return;
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+        long size;
+        try (FileChannel channel = FileChannel.open(open, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.force(true);
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            size = channel.size();
+            long position = 0;
+            while (position < size) {
+                buffer.clear();
+                int n = channel.read(buffer, position);
+                if (n < 0) {
+                    break;
+                }
+                digest.update(buffer.array(), 0, n);
+                position += n;
+            }
+        }
+
+        Files.move(open, sealed, StandardCopyOption.ATOMIC_MOVE);
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        Path checksum = dir.resolve(ArchiveSegments.fileName(segmentId, ArchiveSegments.CHECKSUM_SUFFIX));
+        Path tmp = dir.resolve(checksum.getFileName() + ".tmp");
+        Files.write(tmp, (hex + "  " + sealed.getFileName() + "\n").getBytes(StandardCharsets.US_ASCII));
+        Files.move(tmp, checksum, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        LOGGER.info("Sealed archive segment {} ({} bytes)", sealed.getFileName(), size);
+
+        try {
+            ArchiveIndex.build(sealed, dir.resolve(ArchiveSegments.fileName(segmentId, ArchiveIndex.INDEX_SUFFIX)));
+            openIndexes.remove(segmentId);
+        } catch (IOException e) {
+            // The index is rebuilt on the first lookup of this segment
+            LOGGER.error("Could not index archive segment {}: {}", sealed.getFileName(), e.getMessage(), e);
+        }
+    }
+
+    private void applyRetention() throws IOException {
+        if (retentionMs <= 0 && retentionBytes <= 0) {
+            return;
+        }
+        List<Path> sealed = new ArrayList<>();
+        long totalBytes = 0;
+        for (Path file : segments()) {
+            if (ArchiveSegments.isSealed(file)) {
+                sealed.add(file);
+                totalBytes += Files.size(file);
+            }
+        }
+
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        for (Path file : sealed) {
+            boolean expired = retentionMs > 0 && Files.getLastModifiedTime(file).toMillis() < cutoff;
+            boolean overSize = retentionBytes > 0 && totalBytes > retentionBytes;
+            if (!expired && !overSize) {
+                break;
+            }
+            long size = Files.size(file);
+            long segmentId = ArchiveSegments.segmentId(file);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir.resolve(ArchiveSegments.fileName(segmentId, ArchiveSegments.CHECKSUM_SUFFIX)));
+            Files.deleteIfExists(dir.resolve(ArchiveSegments.fileName(segmentId, ArchiveIndex.INDEX_SUFFIX)));
+            openIndexes.remove(segmentId);
+            totalBytes -= size;
+            LOGGER.info("Deleted archive segment {} by retention ({} bytes)", file.getFileName(), size);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.dataingest.rfc.server.codec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.model.SAPBWDataRequest;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Schema-driven binary payload codec (Avro-style encoding).
+ *
+ * Each record is written as:
+ * - 1 byte format version
+ * - 8 byte schema fingerprint (big-endian), resolvable through the schema store
+ * - the field values in schema order, without field names or tags
+ *
+ * Value encoding:
+ * - LONG / INT: zig-zag varint
+ * - BOOLEAN: single byte 0 or 1
+ * - STRING: varint (length + 1) followed by UTF-8 bytes, 0 for null
+ * - STRING_LIST: varint (count + 1) followed by the strings, 0 for null
+ * - STRING_MAP: varint (count + 1) followed by key/value strings, 0 for null
+ *
+ * Schemas are registered per IDOC type and version (or BW data source) so each
+ * topic's layout can evolve on its own.
+ */
+@Component
+public class BinaryPayloadCodec implements IPayloadCodec {
+
+    public static final String NAME = "binary";
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final Pattern SUBJECT_ILLEGAL_CHARS = Pattern.compile("[^a-zA-Z0-9_.-]");
+
+    @Autowired
+    protected SchemaRegistry schemaRegistry;
+
+    private final ThreadLocal<PayloadBuffer> buffers = PayloadBuffer.threadLocal(4 * 1024);
+    private final Map<String, String> subjects = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/x-sap-binary";
+    }
+
+    @Override
+    public void encode(Object payload, OutputStream out) throws IOException {
+        RecordSchema schema = schemaRegistry.getSchema(subjectOf(payload), payload.getClass());
+
+        byte[] varint = new byte[10];
+        varint[0] = FORMAT_VERSION;
+        long fingerprint = schema.getFingerprint();
+        for (int i = 1; i <= 8; i++) {
+            varint[i] = (byte) (fingerprint >>> (64 - 8 * i));
+        }
+        out.write(varint, 0, 9);
+
+        for (int i = 0; i < schema.getFields().size(); i++) {
+            Object value;
+            try {
+                value = schema.accessor(i).invoke(payload);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IOException("Cannot read field " + schema.getFields().get(i).getName(), e);
+            }
+            writeValue(schema.getFields().get(i).getType(), value, varint, out);
+        }
+    }
+
+    @Override
+    public byte[] encode(Object payload) throws IOException {
+        PayloadBuffer buffer = buffers.get();
+        buffer.reset();
+        encode(payload, buffer);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Returns the schema subject for a payload: model name plus IDOC type or data source.
+     */
+    private String subjectOf(Object payload) {
+        String key;
+        if (payload instanceof SAPIDOCDocument) {
+            SAPIDOCDocument document = (SAPIDOCDocument) payload;
+            key = document.getMessageType() + "_" + document.getMessageTypeVersion();
+        } else if (payload instanceof SAPBWDataRequest) {
+            key = ((SAPBWDataRequest) payload).getDataSourceName();
+        } else {
+            key = "DEFAULT";
+        }
+        return subjects.computeIfAbsent(payload.getClass().getSimpleName() + "." + key,
+                subject -> SUBJECT_ILLEGAL_CHARS.matcher(subject).replaceAll("_"));
+    }
+
+    private static void writeValue(RecordSchema.FieldType type, Object value, byte[] varint, OutputStream out)
+            throws IOException {
+        switch (type) {
+            case LONG:
+            case INT:
+                writeVarLong(value != null ? ((Number) value).longValue() : 0L, varint, out);
+                break;
+            case BOOLEAN:
+                out.write(Boolean.TRUE.equals(value) ? 1 : 0);
+                break;
+            case STRING:
+                writeString((String) value, varint, out);
+                break;
+            case STRING_LIST:
+                if (value == null) {
+                    writeVarLong(0L, varint, out);
+                } else {
+                    Collection<?> list = (Collection<?>) value;
+                    writeVarLong(list.size() + 1L, varint, out);
+                    for (Object element : list) {
+                        writeString(element != null ? element.toString() : null, varint, out);
+                    }
+                }
+                break;
+            case STRING_MAP:
+                if (value == null) {
+                    writeVarLong(0L, varint, out);
+                } else {
+                    Map<?, ?> map = (Map<?, ?>) value;
+                    writeVarLong(map.size() + 1L, varint, out);
+                    for (Map.Entry<?, ?> entry : map.entrySet()) {
+                        writeString(String.valueOf(entry.getKey()), varint, out);
+                        writeString(entry.getValue() != null ? entry.getValue().toString() : null, varint, out);
+                    }
+                }
+                break;
+            default:
+                throw new IOException("Unsupported field type: " + type);
+        }
+    }
+
+    private static void writeString(String value, byte[] varint, OutputStream out) throws IOException {
+        if (value == null) {
+            writeVarLong(0L, varint, out);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1L, varint, out);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes a zig-zag varint with a single write call (byte-wise writes are
+     * synchronized on the usual ByteArrayOutputStream targets).
+     *
+     * @param varint scratch array of at least 10 bytes, reused for every value of a record
+     */
+    private static void writeVarLong(long value, byte[] varint, OutputStream out) throws IOException {
+        int length = 0;
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            varint[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        varint[length++] = (byte) zigzag;
+        out.write(varint, 0, length);
+    }
+}
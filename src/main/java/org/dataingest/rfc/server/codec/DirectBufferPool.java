@@ -0,0 +1,236 @@
+package org.dataingest.rfc.server.codec;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of off-heap (direct) byte buffers for in-flight payloads.
+ *
+ * Buffers come in power-of-two size classes from 64 KiB up to the maximum pooled
+ * size; a released buffer goes back to its class, so large payloads are written into
+ * memory outside the heap that is allocated once and reused, instead of growing
+ * byte arrays that end up in the old generation. Larger requests get an unpooled
+ * direct buffer that is dropped on release, as does a released buffer that would
+ * take the idle buffers of all classes together above the pooled-bytes limit.
+ *
+ * The pool covers rendered IDoc XML up to the sinks. Kafka record values do not come
+ * from it: a producer serializer returns one byte[] per record, so every value is an
+ * exactly sized heap array whatever it was built in. The Kafka XML sink copies its
+ * buffer into that array once; the payload codecs (JSON, binary, flat file) encode into
+ * a reused per-thread PayloadBuffer and copy once as well.
+ *
+ * Every acquired buffer must be released (closed) once its payload is sent. With
+ * leak detection on (meant for test runs), a buffer that becomes unreachable without
+ * having been released is reported with the stack trace of its acquisition.
+ *
+ * Handles:
+ * - Metrics: gauges rfc.buffer.pool.in-use-bytes, rfc.buffer.pool.pooled-bytes and
+ *   rfc.buffer.pool.leaks
+ *
+ * Configuration:
+ * - buffer.pool.max-buffer-size: largest pooled size class (default: 16777216)
+ * - buffer.pool.max-pooled-per-class: idle buffers kept per size class (default: 4)
+ * - buffer.pool.max-pooled-bytes: idle buffers kept in all classes together (default: 67108864)
+ * - buffer.pool.leak-detection: report buffers never released (default: false)
+ */
+@Component
+public class DirectBufferPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectBufferPool.class);
+
+    private static final int MIN_CLASS_SHIFT = 16;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${buffer.pool.max-buffer-size:16777216}")
+    private int maxBufferSize = 16 * 1024 * 1024;
+
+    @Value("${buffer.pool.max-pooled-per-class:4}")
+    private int maxPooledPerClass = 4;
+
+    @Value("${buffer.pool.max-pooled-bytes:67108864}")
+    private long maxPooledBytes = 64 * 1024 * 1024;
+
+    @Value("${buffer.pool.leak-detection:false}")
+    private boolean leakDetection;
+
+    @SuppressWarnings("unchecked")
+    private final ConcurrentLinkedDeque<ByteBuffer>[] classes = new ConcurrentLinkedDeque[32];
+    private final AtomicInteger[] pooledCounts = new AtomicInteger[32];
+    private final AtomicLong inUseBytes = new AtomicLong();
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicInteger leaks = new AtomicInteger();
+    private volatile Cleaner cleaner;
+
+    public DirectBufferPool() {
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ConcurrentLinkedDeque<>();
+            pooledCounts[i] = new AtomicInteger();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry != null) {
+            Gauge.builder("rfc.buffer.pool.in-use-bytes", inUseBytes, AtomicLong::get).register(meterRegistry);
+            Gauge.builder("rfc.buffer.pool.pooled-bytes", pooledBytes, AtomicLong::get).register(meterRegistry);
+            Gauge.builder("rfc.buffer.pool.leaks", leaks, AtomicInteger::get).register(meterRegistry);
+        }
+        if (leakDetection) {
+            LOGGER.warn("Direct buffer leak detection enabled, buffer acquisition records stack traces");
+        }
+    }
+
+    /**
+     * Acquires a cleared buffer of at least the given capacity.
+     *
+     * @param minCapacity the required capacity in bytes
+     * @return the buffer, to be closed once its content is sent
+     */
+    public PooledBuffer acquire(int minCapacity) {
+        int shift = Math.max(MIN_CLASS_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, minCapacity) - 1));
+        ByteBuffer buffer;
+        if (shift < 31 && (1 << shift) <= maxBufferSize) {
+            buffer = classes[shift].pollFirst();
+            if (buffer != null) {
+                pooledCounts[shift].decrementAndGet();
+                pooledBytes.addAndGet(-buffer.capacity());
+                buffer.clear();
+            } else {
+                buffer = ByteBuffer.allocateDirect(1 << shift);
+            }
+        } else {
+            shift = -1;
+            buffer = ByteBuffer.allocateDirect(minCapacity);
+        }
+        inUseBytes.addAndGet(buffer.capacity());
+        return new PooledBuffer(buffer, shift);
+    }
+
+    private void release(ByteBuffer buffer, int shift) {
+        inUseBytes.addAndGet(-buffer.capacity());
+        if (shift < 0 || pooledCounts[shift].incrementAndGet() > maxPooledPerClass) {
+            if (shift >= 0) {
+                pooledCounts[shift].decrementAndGet();
+            }
+            return;
+        }
+        if (pooledBytes.addAndGet(buffer.capacity()) > maxPooledBytes) {
+            // The idle buffers are at their limit: drop this one
+            pooledBytes.addAndGet(-buffer.capacity());
+            pooledCounts[shift].decrementAndGet();
+            return;
+        }
+        classes[shift].offerFirst(buffer);
+    }
+
+    private Cleaner getCleaner() {
+        Cleaner current = cleaner;
+        if (current == null) {
+            synchronized (this) {
+                if (cleaner == null) {
+                    cleaner = Cleaner.create();
+                }
+                current = cleaner;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the number of buffers reported as leaked.
+     */
+    public int getLeaks() {
+        return leaks.get();
+    }
+
+    /**
+     * Returns the pool usage for status endpoints.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("inUseBytes", inUseBytes.get());
+        status.put("pooledBytes", pooledBytes.get());
+        status.put("maxPooledBytes", maxPooledBytes);
+        status.put("leakDetection", leakDetection);
+        status.put("leaks", leaks.get());
+        return status;
+    }
+
+    /**
+     * A buffer taken from the pool. Closing it returns the buffer; it must not be used afterwards.
+     */
+    public final class PooledBuffer implements AutoCloseable {
+        private final ByteBuffer buffer;
+        private final int shift;
+        private final LeakCheck leakCheck;
+        private final Cleaner.Cleanable cleanable;
+        private boolean closed;
+
+        private PooledBuffer(ByteBuffer buffer, int shift) {
+            this.buffer = buffer;
+            this.shift = shift;
+            if (leakDetection) {
+                leakCheck = new LeakCheck(buffer.capacity(), new Throwable("Direct buffer acquired here"));
+                cleanable = getCleaner().register(this, leakCheck);
+            } else {
+                leakCheck = null;
+                cleanable = null;
+            }
+        }
+
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (leakCheck != null) {
+                leakCheck.released = true;
+                cleanable.clean();
+            }
+            release(buffer, shift);
+        }
+    }
+
+    /**
+     * Cleaner action of a tracked buffer, reports it unless it was released.
+     */
+    private final class LeakCheck implements Runnable {
+        private final int capacity;
+        private final Throwable acquisition;
+        private volatile boolean released;
+
+        LeakCheck(int capacity, Throwable acquisition) {
+            this.capacity = capacity;
+            this.acquisition = acquisition;
+        }
+
+        @Override
+        public void run() {
+            if (!released) {
+                leaks.incrementAndGet();
+                inUseBytes.addAndGet(-capacity);
+                LOGGER.error("LEAK: direct buffer of {} bytes was never released", capacity, acquisition);
+            }
+        }
+    }
+}
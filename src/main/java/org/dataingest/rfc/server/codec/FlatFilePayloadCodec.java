@@ -0,0 +1,229 @@
+package org.dataingest.rfc.server.codec;
+
+import com.sap.conn.idoc.IDocDocument;
+import com.sap.conn.idoc.IDocFieldNotFoundException;
+import com.sap.conn.idoc.IDocRecordMetaData;
+import com.sap.conn.idoc.IDocSegment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.idoc.ISegmentVisitor;
+import org.dataingest.rfc.server.idoc.SegmentTraversal;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SAP IDoc flat-file payload codec.
+ *
+ * Writes the classic fixed-width IDoc file layout: one EDI_DC40 control record
+ * followed by one EDI_DD40 data record per segment, each padded to its full width
+ * and terminated by a line separator. No XML rendering is involved.
+ *
+ * Record sources:
+ * - IDocs received as RFC tables: the IDOC_CONTROL_REC_40 / IDOC_DATA_REC_40 rows
+ * - IDocs received through the IDoc API: the IDocDocument and its segment tree
+ *
+ * Records are assembled in a per-thread line buffer and encoded into a per-thread
+ * PayloadBuffer, so encoding allocates nothing but the final payload array.
+ *
+ * Configuration:
+ * - codec.flat.charset: character set of the file (default: UTF-8)
+ * - codec.flat.line-separator: CRLF or LF (default: CRLF)
+ */
+@Component
+public class FlatFilePayloadCodec implements IPayloadCodec {
+
+    public static final String NAME = "flat";
+
+    @Value("${codec.flat.charset:UTF-8}")
+    private String charsetName;
+
+    @Value("${codec.flat.line-separator:CRLF}")
+    private String lineSeparatorName;
+
+    private Charset charset;
+    private byte[] lineSeparator;
+
+    private final ThreadLocal<RecordWriter> writers = ThreadLocal.withInitial(RecordWriter::new);
+    private final ThreadLocal<PayloadBuffer> buffers = PayloadBuffer.threadLocal(64 * 1024);
+
+    @PostConstruct
+    public void init() {
+        charset = Charset.forName(charsetName);
+        lineSeparator = "LF".equalsIgnoreCase(lineSeparatorName) ? new byte[] {'\n'} : new byte[] {'\r', '\n'};
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/x-sap-idoc-flat; charset=" + charset.name();
+    }
+
+    @Override
+    public void encode(Object payload, OutputStream out) throws IOException {
+        if (!(payload instanceof SAPIDOCDocument)) {
+            throw new IOException("Flat-file format supports IDOC documents only, got "
+                    + (payload != null ? payload.getClass().getSimpleName() : "null"));
+        }
+        SAPIDOCDocument document = (SAPIDOCDocument) payload;
+        RecordWriter writer = writers.get();
+
+        if (document.getSourceDocument() != null) {
+            writeDocument(document.getSourceDocument(), writer, out);
+        } else if (document.getControlRecord() != null) {
+            writeTables(document.getControlRecord(), document.getDataRecords(), writer, out);
+        } else {
+            throw new IOException("IDOC " + document.getDocumentNumber()
+                    + " carries no control record, cannot write flat file");
+        }
+    }
+
+    @Override
+    public byte[] encode(Object payload) throws IOException {
+        PayloadBuffer buffer = buffers.get();
+        buffer.reset();
+        encode(payload, buffer);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Writes an IDoc received as RFC tables, copying the row fields in layout order.
+     */
+    private void writeTables(Map<String, String> controlRecord, List<Map<String, String>> dataRecords,
+                             RecordWriter writer, OutputStream out) throws IOException {
+        FlatRecordLayout dc40 = FlatRecordLayout.EDI_DC40;
+        writer.begin(dc40);
+        for (int i = 0; i < dc40.getNumFields(); i++) {
+            writer.put(dc40.getOffset(i), dc40.getLength(i), controlRecord.get(dc40.getName(i)));
+        }
+        writer.end(out);
+
+        if (dataRecords == null) {
+            return;
+        }
+        FlatRecordLayout dd40 = FlatRecordLayout.EDI_DD40;
+        for (Map<String, String> dataRecord : dataRecords) {
+            writer.begin(dd40);
+            for (int i = 0; i < dd40.getNumFields(); i++) {
+                writer.put(dd40.getOffset(i), dd40.getLength(i), dataRecord.get(dd40.getName(i)));
+            }
+            writer.end(out);
+        }
+    }
+
+    /**
+     * Writes an IDoc received through the IDoc API. Segment numbers, parent segment
+     * numbers and hierarchy levels are assigned in document order.
+     */
+    private void writeDocument(IDocDocument idoc, RecordWriter writer, OutputStream out) throws IOException {
+        FlatRecordLayout dc40 = FlatRecordLayout.EDI_DC40;
+        writer.begin(dc40);
+        for (int i = 0; i < dc40.getNumFields(); i++) {
+            try {
+                writer.put(dc40.getOffset(i), dc40.getLength(i), idoc.getString(dc40.getName(i)));
+            } catch (IDocFieldNotFoundException e) {
+                // Field not part of this control record version, leave blank
+            }
+        }
+        writer.end(out);
+
+        FlatRecordLayout dd40 = FlatRecordLayout.EDI_DD40;
+        String client = idoc.getClient();
+        String documentNumber = idoc.getIDocNumber();
+        int sdataOffset = dd40.getOffset(FlatRecordLayout.SDATA);
+        int sdataLength = dd40.getLength(FlatRecordLayout.SDATA);
+
+        SegmentTraversal.walkChildren(idoc.getRootSegment(), new ISegmentVisitor() {
+            private int segmentNumber;
+            private int[] levelNumbers = new int[16];
+
+            @Override
+            public boolean enterSegment(IDocSegment segment, int depth) throws IOException {
+                if (depth >= levelNumbers.length) {
+                    levelNumbers = Arrays.copyOf(levelNumbers, levelNumbers.length * 2);
+                }
+                int number = ++segmentNumber;
+                levelNumbers[depth] = number;
+
+                writer.begin(dd40);
+                writer.put(dd40.getOffset(0), dd40.getLength(0), segment.getType());
+                writer.put(dd40.getOffset(1), dd40.getLength(1), client);
+                writer.put(dd40.getOffset(2), dd40.getLength(2), documentNumber);
+                writer.putNumber(dd40.getOffset(3), dd40.getLength(3), number);
+                writer.putNumber(dd40.getOffset(4), dd40.getLength(4), depth > 0 ? levelNumbers[depth - 1] : 0);
+                // Top level segments have hierarchy level 02, the control record is level 01
+                writer.putNumber(dd40.getOffset(5), dd40.getLength(5), depth + 2);
+
+                IDocRecordMetaData metaData = segment.getRecordMetaData();
+                int numFields = segment.getNumFields();
+                for (int i = 0; i < numFields; i++) {
+                    int offset = metaData.getOffset(i);
+                    if (offset >= sdataLength) {
+                        break;
+                    }
+                    int length = Math.min(metaData.getLength(i), sdataLength - offset);
+                    writer.put(sdataOffset + offset, length, segment.getString(i));
+                }
+                writer.end(out);
+                return true;
+            }
+
+            @Override
+            public void exitSegment(IDocSegment segment, int depth) {
+            }
+        });
+    }
+
+    /**
+     * Per-thread fixed-width line assembly and character encoding.
+     */
+    private final class RecordWriter {
+        private final int maxWidth = Math.max(FlatRecordLayout.EDI_DC40.getWidth(), FlatRecordLayout.EDI_DD40.getWidth());
+        private final char[] line = new char[maxWidth];
+        private final CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer bytes = ByteBuffer.allocate((int) Math.ceil(maxWidth * encoder.maxBytesPerChar()));
+        private int width;
+
+        void begin(FlatRecordLayout layout) {
+            width = layout.getWidth();
+            Arrays.fill(line, 0, width, ' ');
+        }
+
+        void put(int offset, int length, String value) {
+            if (value != null) {
+                value.getChars(0, Math.min(length, value.length()), line, offset);
+            }
+        }
+
+        void putNumber(int offset, int length, int value) {
+            for (int i = offset + length - 1; i >= offset; i--) {
+                line[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+
+        void end(OutputStream out) throws IOException {
+            bytes.clear();
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(line, 0, width), bytes, true);
+            encoder.flush(bytes);
+            out.write(bytes.array(), 0, bytes.position());
+            out.write(lineSeparator);
+        }
+    }
+}
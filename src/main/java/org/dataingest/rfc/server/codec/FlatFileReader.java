@@ -0,0 +1,124 @@
+package org.dataingest.rfc.server.codec;
+
+import org.dataingest.rfc.server.idoc.IIDOCDocumentReader;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming reader for SAP IDoc flat files (EDI_DC40 / EDI_DD40 records).
+ *
+ * Every EDI_DC40 control record starts a new document; the following data records
+ * belong to it. Documents are built like IDocs received as RFC tables, so they
+ * carry the control record, the data records and the SDATA lines, and can be
+ * written again by the flat-file codec unchanged.
+ *
+ * Handles:
+ * - CRLF and LF line separators
+ * - Records with trailing blanks stripped (missing positions are read as blanks)
+ * - Field values are trimmed at the end, as JCo returns CHAR fields
+ */
+public class FlatFileReader implements IIDOCDocumentReader {
+
+    private static final String CONTROL_RECORD = "EDI_DC40";
+
+    private final BufferedReader lines;
+    private final String senderSystem;
+    private String pendingControlLine;
+    private int lineNumber;
+
+    /**
+     * @param in the flat file
+     * @param charset character set of the file
+     * @param senderSystem sender system set on the documents
+     */
+    public FlatFileReader(InputStream in, Charset charset, String senderSystem) {
+        this.lines = new BufferedReader(new InputStreamReader(in, charset), 64 * 1024);
+        this.senderSystem = senderSystem;
+    }
+
+    @Override
+    public SAPIDOCDocument read() throws IOException {
+        String controlLine = pendingControlLine;
+        pendingControlLine = null;
+        while (controlLine == null) {
+            String line = nextLine();
+            if (line == null) {
+                return null;
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (!line.startsWith(CONTROL_RECORD)) {
+                throw new IOException("Line " + lineNumber + ": data record without control record");
+            }
+            controlLine = line;
+        }
+
+        Map<String, String> controlRecord = fields(FlatRecordLayout.EDI_DC40, controlLine);
+        String documentNumber = controlRecord.get("DOCNUM");
+        String messageType = controlRecord.get("MESTYP");
+
+        SAPIDOCDocument document = new SAPIDOCDocument();
+        document.setControlRecord(controlRecord);
+        document.setDocumentNumber(documentNumber);
+        document.setMessageType(messageType);
+        document.setMessageTypeVersion(controlRecord.get("MESCOD"));
+        document.setSenderSystem(senderSystem);
+        document.addSegment(CONTROL_RECORD + "|" + controlRecord.get("TABNAM") + "|" + documentNumber
+                + "|" + messageType + "|" + messageType);
+
+        List<Map<String, String>> dataRecords = new ArrayList<>();
+        String line;
+        while ((line = nextLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith(CONTROL_RECORD)) {
+                pendingControlLine = line;
+                break;
+            }
+            Map<String, String> dataRecord = fields(FlatRecordLayout.EDI_DD40, line);
+            dataRecords.add(dataRecord);
+            String segmentData = dataRecord.get("SDATA");
+            if (!segmentData.trim().isEmpty()) {
+                document.addSegment(segmentData);
+            }
+        }
+        document.setDataRecords(dataRecords);
+        return document;
+    }
+
+    private String nextLine() throws IOException {
+        String line = lines.readLine();
+        if (line != null) {
+            lineNumber++;
+        }
+        return line;
+    }
+
+    private static Map<String, String> fields(FlatRecordLayout layout, String line) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 0; i < layout.getNumFields(); i++) {
+            int start = Math.min(layout.getOffset(i), line.length());
+            int end = Math.min(start + layout.getLength(i), line.length());
+            while (end > start && line.charAt(end - 1) == ' ') {
+                end--;
+            }
+            fields.put(layout.getName(i), line.substring(start, end));
+        }
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lines.close();
+    }
+}
@@ -0,0 +1,75 @@
+package org.dataingest.rfc.server.codec;
+
+/**
+ * Fixed-width record layouts of the SAP IDoc flat file (release 4.0 and later).
+ *
+ * - EDI_DC40: control record, 524 characters
+ * - EDI_DD40: data record, 1063 characters (1000 characters of segment data)
+ */
+public final class FlatRecordLayout {
+
+    /** EDI_DC40 control record */
+    public static final FlatRecordLayout EDI_DC40 = new FlatRecordLayout(
+            new String[] {
+                "TABNAM", "MANDT", "DOCNUM", "DOCREL", "STATUS", "DIRECT", "OUTMOD", "EXPRSS", "TEST",
+                "IDOCTYP", "CIMTYP", "MESTYP", "MESCOD", "MESFCT", "STD", "STDVRS", "STDMES",
+                "SNDPOR", "SNDPRT", "SNDPFC", "SNDPRN", "SNDSAD", "SNDLAD",
+                "RCVPOR", "RCVPRT", "RCVPFC", "RCVPRN", "RCVSAD", "RCVLAD",
+                "CREDAT", "CRETIM", "REFINT", "REFGRP", "REFMES", "ARCKEY", "SERIAL"
+            },
+            new int[] {
+                10, 3, 16, 4, 2, 1, 1, 1, 1,
+                30, 30, 30, 3, 3, 1, 6, 6,
+                10, 2, 2, 10, 21, 70,
+                10, 2, 2, 10, 21, 70,
+                8, 6, 14, 14, 14, 70, 20
+            });
+
+    /** EDI_DD40 data record */
+    public static final FlatRecordLayout EDI_DD40 = new FlatRecordLayout(
+            new String[] {"SEGNAM", "MANDT", "DOCNUM", "SEGNUM", "PSGNUM", "HLEVEL", "SDATA"},
+            new int[] {30, 3, 16, 6, 6, 2, 1000});
+
+    /** Position of SDATA in the EDI_DD40 layout */
+    public static final int SDATA = 6;
+
+    private final String[] names;
+    private final int[] lengths;
+    private final int[] offsets;
+    private final int width;
+
+    private FlatRecordLayout(String[] names, int[] lengths) {
+        this.names = names;
+        this.lengths = lengths;
+        this.offsets = new int[lengths.length];
+        int offset = 0;
+        for (int i = 0; i < lengths.length; i++) {
+            offsets[i] = offset;
+            offset += lengths[i];
+        }
+        this.width = offset;
+    }
+
+    public int getNumFields() {
+        return names.length;
+    }
+
+    public String getName(int field) {
+        return names[field];
+    }
+
+    public int getLength(int field) {
+        return lengths[field];
+    }
+
+    public int getOffset(int field) {
+        return offsets[field];
+    }
+
+    /**
+     * Returns the record width in characters.
+     */
+    public int getWidth() {
+        return width;
+    }
+}
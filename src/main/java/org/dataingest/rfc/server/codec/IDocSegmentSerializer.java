@@ -0,0 +1,81 @@
+package org.dataingest.rfc.server.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.sap.conn.idoc.IDocSegment;
+import org.dataingest.rfc.server.idoc.ISegmentVisitor;
+import org.dataingest.rfc.server.idoc.SegmentTraversal;
+import java.io.IOException;
+
+/**
+ * Jackson serializer writing an IDoc segment tree as nested JSON.
+ *
+ * The children of the given segment (for a document: the root segment) are written
+ * as an array of segment nodes:
+ *
+ * [ { "segment": "E1MARAM", "fields": { "MATNR": "..." }, "children": [ ... ] } ]
+ *
+ * Handles:
+ * - Streaming straight into the JsonGenerator, no intermediate list or tree
+ * - Non-recursive walk through SegmentTraversal, so the depth of the IDoc does not
+ *   translate into Java stack depth
+ * - Empty field values are omitted, "children" only appears on parent segments
+ */
+public class IDocSegmentSerializer extends StdSerializer<IDocSegment> {
+
+    private static final long serialVersionUID = 1L;
+
+    public IDocSegmentSerializer() {
+        super(IDocSegment.class);
+    }
+
+    @Override
+    public void serialize(IDocSegment parent, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        writeChildren(parent, gen);
+    }
+
+    /**
+     * Writes the children of the given segment as a nested JSON array.
+     *
+     * @param parent the segment whose subtree is written (usually the root segment)
+     * @param gen the target generator
+     * @throws IOException if writing fails
+     */
+    public static void writeChildren(IDocSegment parent, JsonGenerator gen) throws IOException {
+        gen.writeStartArray();
+        SegmentTraversal.walkChildren(parent, new ISegmentVisitor() {
+            @Override
+            public boolean enterSegment(IDocSegment segment, int depth) throws IOException {
+                gen.writeStartObject();
+                gen.writeStringField("segment", segment.getType());
+                writeFields(segment, gen);
+                if (segment.getNumChildren() > 0) {
+                    gen.writeArrayFieldStart("children");
+                }
+                return true;
+            }
+
+            @Override
+            public void exitSegment(IDocSegment segment, int depth) throws IOException {
+                if (segment.getNumChildren() > 0) {
+                    gen.writeEndArray();
+                }
+                gen.writeEndObject();
+            }
+        });
+        gen.writeEndArray();
+    }
+
+    private static void writeFields(IDocSegment segment, JsonGenerator gen) throws IOException {
+        gen.writeObjectFieldStart("fields");
+        int numFields = segment.getNumFields();
+        for (int i = 0; i < numFields; i++) {
+            String value = segment.getString(i);
+            if (value != null && !value.isEmpty()) {
+                gen.writeStringField(segment.getName(i), value);
+            }
+        }
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,51 @@
+package org.dataingest.rfc.server.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Interface for encoding IDOC and BW payloads into Kafka record values.
+ *
+ * Implementations are registered as Spring components and looked up by name
+ * through the PayloadCodecRegistry, so new wire formats can be added without
+ * touching the publishers.
+ */
+public interface IPayloadCodec {
+
+    /**
+     * Gets the name of this codec as used in configuration (e.g., "json", "binary").
+     *
+     * @return the codec name
+     */
+    String getName();
+
+    /**
+     * Gets the content type written to the record header so consumers can pick a decoder.
+     *
+     * @return the content type (e.g., "application/json")
+     */
+    String getContentType();
+
+    /**
+     * Encodes the payload into the given output stream.
+     *
+     * @param payload the model object to encode (SAPIDOCDocument or SAPBWDataRequest)
+     * @param out the stream to write the encoded bytes to
+     * @throws IOException if encoding fails
+     */
+    void encode(Object payload, OutputStream out) throws IOException;
+
+    /**
+     * Encodes the payload into a new byte array.
+     *
+     * @param payload the model object to encode
+     * @return the encoded bytes
+     * @throws IOException if encoding fails
+     */
+    default byte[] encode(Object payload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        encode(payload, out);
+        return out.toByteArray();
+    }
+}
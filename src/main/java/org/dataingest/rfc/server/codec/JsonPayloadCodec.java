@@ -0,0 +1,64 @@
+package org.dataingest.rfc.server.codec;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JSON payload codec using the shared Jackson ObjectMapper.
+ *
+ * This is the default wire format and produces the same JSON documents
+ * that were previously published as strings. Payloads are streamed through
+ * the per-class writers of the JsonWriterFactory instead of the reflective
+ * bean serializer.
+ *
+ * The generator is flushed but never closes the caller's stream, and encode(Object)
+ * renders into a buffer reused per thread.
+ */
+@Component
+public class JsonPayloadCodec implements IPayloadCodec {
+
+    public static final String NAME = "json";
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @Autowired
+    protected JsonWriterFactory writerFactory;
+
+    private final ThreadLocal<PayloadBuffer> buffers = PayloadBuffer.threadLocal(4 * 1024);
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/json";
+    }
+
+    @Override
+    public void encode(Object payload, OutputStream out) throws IOException {
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            if (payload == null) {
+                gen.writeNull();
+            } else {
+                writerFactory.writerFor(payload.getClass()).write(payload, gen);
+            }
+        }
+    }
+
+    @Override
+    public byte[] encode(Object payload) throws IOException {
+        PayloadBuffer buffer = buffers.get();
+        buffer.reset();
+        encode(payload, buffer);
+        return buffer.toByteArray();
+    }
+}
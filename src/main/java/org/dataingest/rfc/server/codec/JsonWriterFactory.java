@@ -0,0 +1,238 @@
+package org.dataingest.rfc.server.codec;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotation;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.conn.idoc.IDocSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory for specialized JSON writers per model class.
+ *
+ * On first sight of a class the bean properties are resolved once into a chain of
+ * precompiled MethodHandles, each paired with a value writer chosen from the property
+ * type. Encoding then streams straight into a Jackson JsonGenerator without going
+ * through the reflective BeanSerializer on every document.
+ *
+ * Output matches the default ObjectMapper bean serialization: every public getter
+ * becomes a field (including derived values such as topicName), nulls are written
+ * as null, and properties appear in field declaration order.
+ *
+ * Properties whose getter is annotated with @JsonIgnore are skipped. Falls back to
+ * the plain ObjectMapper for classes that carry any other Jackson annotation (their
+ * serialization is customized) or when disabled (codec.json.generated-writers=false).
+ */
+@Component
+public class JsonWriterFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonWriterFactory.class);
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * Writes a model object into a JsonGenerator.
+     */
+    public interface RecordWriter {
+        void write(Object value, JsonGenerator gen) throws IOException;
+    }
+
+    /**
+     * Writes a single property value of a known type.
+     */
+    private interface ValueWriter {
+        void write(Object value, JsonGenerator gen) throws IOException;
+    }
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @Value("${codec.json.generated-writers:true}")
+    private boolean generatedWritersEnabled;
+
+    private final Map<Class<?>, RecordWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the writer for the given class, building it on first use.
+     *
+     * @param type the model class
+     * @return the specialized writer, or an ObjectMapper-backed writer as fallback
+     */
+    public RecordWriter writerFor(Class<?> type) {
+        RecordWriter writer = writers.get(type);
+        if (writer != null) {
+            return writer;
+        }
+        return writers.computeIfAbsent(type, this::buildWriter);
+    }
+
+    private RecordWriter buildWriter(Class<?> type) {
+        RecordWriter fallback = (value, gen) -> objectMapper.writeValue(gen, value);
+        if (!generatedWritersEnabled || hasJacksonAnnotations(type)) {
+            LOGGER.info("Using ObjectMapper serialization for {}", type.getName());
+            return fallback;
+        }
+
+        try {
+            List<PropertyDescriptor> properties = orderedProperties(type);
+            int count = properties.size();
+            String[] names = new String[count];
+            MethodHandle[] getters = new MethodHandle[count];
+            ValueWriter[] valueWriters = new ValueWriter[count];
+
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            for (int i = 0; i < count; i++) {
+                PropertyDescriptor property = properties.get(i);
+                names[i] = property.getName();
+                getters[i] = lookup.unreflect(property.getReadMethod()).asType(GETTER_TYPE);
+                valueWriters[i] = valueWriterFor(property.getPropertyType());
+            }
+
+            LOGGER.info("Built JSON writer for {} with {} properties", type.getSimpleName(), count);
+            return (value, gen) -> {
+                gen.writeStartObject();
+                for (int i = 0; i < count; i++) {
+                    Object propertyValue;
+                    try {
+                        propertyValue = (Object) getters[i].invokeExact(value);
+                    } catch (Throwable t) {
+                        throw new IOException("Cannot read property " + names[i] + " of " + type.getSimpleName(), t);
+                    }
+                    gen.writeFieldName(names[i]);
+                    if (propertyValue == null) {
+                        gen.writeNull();
+                    } else {
+                        valueWriters[i].write(propertyValue, gen);
+                    }
+                }
+                gen.writeEndObject();
+            };
+        } catch (IntrospectionException | IllegalAccessException e) {
+            LOGGER.warn("Cannot build JSON writer for {}, using ObjectMapper: {}", type.getName(), e.getMessage());
+            return fallback;
+        }
+    }
+
+    /**
+     * Returns the readable, not ignored properties in field declaration order,
+     * followed by getter-only (derived) properties.
+     */
+    private static List<PropertyDescriptor> orderedProperties(Class<?> type) throws IntrospectionException {
+        BeanInfo beanInfo = Introspector.getBeanInfo(type, Object.class);
+        Map<String, PropertyDescriptor> byName = new LinkedHashMap<>();
+        for (PropertyDescriptor property : beanInfo.getPropertyDescriptors()) {
+            if (property.getReadMethod() != null && !isIgnored(property.getReadMethod())) {
+                byName.put(property.getName(), property);
+            }
+        }
+
+        List<PropertyDescriptor> ordered = new ArrayList<>(byName.size());
+        for (Field field : type.getDeclaredFields()) {
+            PropertyDescriptor property = byName.remove(field.getName());
+            if (property != null) {
+                ordered.add(property);
+            }
+        }
+        ordered.addAll(byName.values());
+        return ordered;
+    }
+
+    private ValueWriter valueWriterFor(Class<?> javaType) {
+        if (javaType == String.class) {
+            return (value, gen) -> gen.writeString((String) value);
+        } else if (javaType == long.class || javaType == Long.class) {
+            return (value, gen) -> gen.writeNumber((Long) value);
+        } else if (javaType == int.class || javaType == Integer.class) {
+            return (value, gen) -> gen.writeNumber((Integer) value);
+        } else if (javaType == boolean.class || javaType == Boolean.class) {
+            return (value, gen) -> gen.writeBoolean((Boolean) value);
+        } else if (IDocSegment.class.isAssignableFrom(javaType)) {
+            return (value, gen) -> IDocSegmentSerializer.writeChildren((IDocSegment) value, gen);
+        } else if (List.class.isAssignableFrom(javaType)) {
+            return (value, gen) -> {
+                Collection<?> list = (Collection<?>) value;
+                gen.writeStartArray();
+                for (Object element : list) {
+                    if (element instanceof String) {
+                        gen.writeString((String) element);
+                    } else {
+                        objectMapper.writeValue(gen, element);
+                    }
+                }
+                gen.writeEndArray();
+            };
+        } else if (Map.class.isAssignableFrom(javaType)) {
+            return (value, gen) -> {
+                gen.writeStartObject();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    gen.writeFieldName(String.valueOf(entry.getKey()));
+                    Object entryValue = entry.getValue();
+                    if (entryValue == null) {
+                        gen.writeNull();
+                    } else if (entryValue instanceof String) {
+                        gen.writeString((String) entryValue);
+                    } else {
+                        objectMapper.writeValue(gen, entryValue);
+                    }
+                }
+                gen.writeEndObject();
+            };
+        }
+        // Dates and other types keep the ObjectMapper's configured handling
+        return (value, gen) -> objectMapper.writeValue(gen, value);
+    }
+
+    private static boolean hasJacksonAnnotations(Class<?> type) {
+        if (isJacksonAnnotated(type)) {
+            return true;
+        }
+        for (Field field : type.getDeclaredFields()) {
+            if (isJacksonAnnotated(field)) {
+                return true;
+            }
+        }
+        for (Method method : type.getMethods()) {
+            if (isJacksonAnnotated(method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isIgnored(Method getter) {
+        JsonIgnore ignore = getter.getAnnotation(JsonIgnore.class);
+        return ignore != null && ignore.value();
+    }
+
+    private static boolean isJacksonAnnotated(AnnotatedElement element) {
+        for (Annotation annotation : element.getAnnotations()) {
+            if (annotation.annotationType() != JsonIgnore.class
+                    && annotation.annotationType().isAnnotationPresent(JacksonAnnotation.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
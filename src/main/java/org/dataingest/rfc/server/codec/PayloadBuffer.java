@@ -0,0 +1,49 @@
+package org.dataingest.rfc.server.codec;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Growable byte buffer reused across encodings on the same thread.
+ *
+ * Codecs keep one instance per thread (ThreadLocal) and call reset() before each
+ * record, so the backing array is allocated once and only grows for the largest
+ * payload seen. Only the final toByteArray() copy handed to Kafka is allocated
+ * per record.
+ */
+public class PayloadBuffer extends ByteArrayOutputStream {
+
+    /** Buffers grown beyond this size are dropped after use instead of being kept */
+    private static final int MAX_RETAINED_SIZE = 4 * 1024 * 1024;
+
+    public PayloadBuffer(int initialSize) {
+        super(initialSize);
+    }
+
+    /**
+     * Returns a ThreadLocal holding one reusable buffer per thread.
+     *
+     * @param initialSize the initial capacity of each buffer
+     * @return the thread-local buffer holder
+     */
+    public static ThreadLocal<PayloadBuffer> threadLocal(int initialSize) {
+        return ThreadLocal.withInitial(() -> new PayloadBuffer(initialSize));
+    }
+
+    /**
+     * Clears the buffer for the next record, releasing an oversized backing array.
+     */
+    @Override
+    public synchronized void reset() {
+        if (buf.length > MAX_RETAINED_SIZE) {
+            buf = new byte[MAX_RETAINED_SIZE / 16];
+        }
+        super.reset();
+    }
+
+    /**
+     * Returns the backing array; valid bytes are [0, size()).
+     */
+    public byte[] array() {
+        return buf;
+    }
+}
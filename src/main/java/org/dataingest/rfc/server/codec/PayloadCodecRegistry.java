@@ -0,0 +1,159 @@
+package org.dataingest.rfc.server.codec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the available payload codecs.
+ *
+ * Collects every IPayloadCodec component and resolves the codec configured
+ * for publishing (kafka.payload.format, default: json). Single topics can use
+ * another codec with kafka.payload.format.{topic} (e.g.,
+ * kafka.payload.format.SAP.IDOCS.ORDERS_05=flat).
+ *
+ * The binary codec derives its schemas from the model's bean properties and cannot
+ * carry the segment tree of idoc.segment.output=tree, so startup fails when the
+ * default format or a topic format is binary while the segment output is tree.
+ */
+@Component
+public class PayloadCodecRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PayloadCodecRegistry.class);
+
+    /** Kafka record header carrying the codec content type */
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+
+    @Autowired
+    private List<IPayloadCodec> codecs;
+
+    @Value("${kafka.payload.format:json}")
+    private String defaultFormat;
+
+    @Autowired
+    private Environment environment;
+
+    private final Map<String, IPayloadCodec> codecsByName = new HashMap<>();
+    private final Map<String, IPayloadCodec> codecsByTopic = new ConcurrentHashMap<>();
+    private final Map<String, String> configuredFormats = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (IPayloadCodec codec : codecs) {
+            codecsByName.put(codec.getName(), codec);
+        }
+        if (!codecsByName.containsKey(defaultFormat)) {
+            throw new IllegalStateException("Unknown payload format '" + defaultFormat
+                    + "', available: " + codecsByName.keySet());
+        }
+        configuredFormats.put("kafka.payload.format", defaultFormat);
+        configuredFormats.putAll(topicFormats());
+        checkSegmentOutput();
+        LOGGER.info("Payload codecs available: {}, default: {}", codecsByName.keySet(), defaultFormat);
+    }
+
+    /**
+     * Returns the kafka.payload.format.{topic} properties of the environment.
+     */
+    private Map<String, String> topicFormats() {
+        Map<String, String> formats = new LinkedHashMap<>();
+        if (environment instanceof ConfigurableEnvironment) {
+            for (PropertySource<?> source : ((ConfigurableEnvironment) environment).getPropertySources()) {
+                if (!(source instanceof EnumerablePropertySource)) {
+                    continue;
+                }
+                for (String name : ((EnumerablePropertySource<?>) source).getPropertyNames()) {
+                    if (name.startsWith("kafka.payload.format.")) {
+                        formats.putIfAbsent(name, environment.getProperty(name));
+                    }
+                }
+            }
+        }
+        return formats;
+    }
+
+    /**
+     * Rejects binary payloads combined with segment trees, which the binary schema
+     * would silently leave out.
+     */
+    private void checkSegmentOutput() {
+        if (!"tree".equalsIgnoreCase(environment.getProperty("idoc.segment.output", "flat"))) {
+            return;
+        }
+
+        Set<String> binaryFormats = new LinkedHashSet<>();
+        for (Map.Entry<String, String> format : configuredFormats.entrySet()) {
+            if (BinaryPayloadCodec.NAME.equals(format.getValue())) {
+                binaryFormats.add(format.getKey());
+            }
+        }
+        if (!binaryFormats.isEmpty()) {
+            throw new IllegalStateException("idoc.segment.output=tree is not supported by the binary payload format ("
+                    + String.join(", ", binaryFormats) + "), use json or flat for IDoc topics");
+        }
+    }
+
+    /**
+     * Tells whether the codec is the default or configured for any topic.
+     *
+     * @param name the codec name (e.g., "flat")
+     * @return true if some topic may be published with the codec
+     */
+    public boolean isConfigured(String name) {
+        return configuredFormats.containsValue(name);
+    }
+
+    /**
+     * Returns the codec used for publishing.
+     *
+     * @return the configured default codec
+     */
+    public IPayloadCodec getCodec() {
+        return codecsByName.get(defaultFormat);
+    }
+
+    /**
+     * Returns the codec with the given name.
+     *
+     * @param name the codec name (e.g., "json", "binary")
+     * @return the codec
+     * @throws IllegalArgumentException if no codec with that name is registered
+     */
+    public IPayloadCodec getCodec(String name) {
+        IPayloadCodec codec = codecsByName.get(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown payload format: " + name);
+        }
+        return codec;
+    }
+
+    /**
+     * Returns the codec used for publishing to the given topic.
+     *
+     * @param topic the Kafka topic name
+     * @return the codec configured for the topic, or the default codec
+     * @throws IllegalArgumentException if the topic configures an unknown codec
+     */
+    public IPayloadCodec getCodecForTopic(String topic) {
+        IPayloadCodec codec = codecsByTopic.get(topic);
+        if (codec != null) {
+            return codec;
+        }
+        return codecsByTopic.computeIfAbsent(topic,
+                t -> getCodec(environment.getProperty("kafka.payload.format." + t, defaultFormat)));
+    }
+}
@@ -0,0 +1,242 @@
+package org.dataingest.rfc.server.codec;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Record schema used by the binary payload codec.
+ *
+ * A schema is derived once per model class from its readable and writable bean
+ * properties (derived values such as the topic name and @JsonIgnore properties
+ * are skipped). Fields are sorted
+ * by name so the layout and its fingerprint are stable across JVMs. The resolved
+ * getter methods are kept alongside the schema so encoding does not repeat the
+ * bean introspection for every record.
+ *
+ * Fingerprint: CRC-64-AVRO over the canonical form "name:TYPE;name:TYPE;..."
+ */
+public class RecordSchema {
+
+    /**
+     * Field types supported by the binary codec.
+     */
+    public enum FieldType {
+        STRING,
+        LONG,
+        INT,
+        BOOLEAN,
+        STRING_LIST,
+        STRING_MAP
+    }
+
+    /**
+     * Name and type of a single schema field.
+     */
+    public static class FieldSchema {
+        private String name;
+        private FieldType type;
+
+        public FieldSchema() {
+        }
+
+        public FieldSchema(String name, FieldType type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public FieldType getType() {
+            return type;
+        }
+
+        public void setType(FieldType type) {
+            this.type = type;
+        }
+    }
+
+    private static final long EMPTY_FINGERPRINT = 0xc15d213aa4d7a795L;
+    private static final long[] FINGERPRINT_TABLE = new long[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            long fp = i;
+            for (int j = 0; j < 8; j++) {
+                fp = (fp >>> 1) ^ (EMPTY_FINGERPRINT & -(fp & 1L));
+            }
+            FINGERPRINT_TABLE[i] = fp;
+        }
+    }
+
+    private String subject;
+    private String recordName;
+    private long fingerprint;
+    private List<FieldSchema> fields;
+    private Method[] accessors;
+
+    public RecordSchema() {
+        this.fields = new ArrayList<>();
+        this.accessors = new Method[0];
+    }
+
+    /**
+     * Derives a schema for the given model class.
+     *
+     * @param subject the schema subject (e.g., SAPIDOCDocument.ORDERS_05)
+     * @param type the model class
+     * @return the derived schema
+     */
+    public static RecordSchema forClass(String subject, Class<?> type) {
+        List<PropertyDescriptor> properties = new ArrayList<>();
+        try {
+            BeanInfo beanInfo = Introspector.getBeanInfo(type, Object.class);
+            for (PropertyDescriptor property : beanInfo.getPropertyDescriptors()) {
+                if (property.getReadMethod() != null && property.getWriteMethod() != null
+                        && !JsonWriterFactory.isIgnored(property.getReadMethod())
+                        && toFieldType(property.getPropertyType()) != null) {
+                    properties.add(property);
+                }
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalArgumentException("Cannot derive schema for " + type.getName(), e);
+        }
+        properties.sort(Comparator.comparing(PropertyDescriptor::getName));
+
+        RecordSchema schema = new RecordSchema();
+        schema.subject = subject;
+        schema.recordName = type.getSimpleName();
+        schema.accessors = new Method[properties.size()];
+        for (int i = 0; i < properties.size(); i++) {
+            PropertyDescriptor property = properties.get(i);
+            schema.fields.add(new FieldSchema(property.getName(), toFieldType(property.getPropertyType())));
+            schema.accessors[i] = property.getReadMethod();
+        }
+        schema.fingerprint = fingerprint(schema.canonicalForm());
+        return schema;
+    }
+
+    /**
+     * Maps a Java property type to the codec field type.
+     *
+     * @param javaType the property type
+     * @return the field type, or null if the property type is not supported
+     */
+    private static FieldType toFieldType(Class<?> javaType) {
+        if (javaType == String.class) {
+            return FieldType.STRING;
+        } else if (javaType == long.class || javaType == Long.class) {
+            return FieldType.LONG;
+        } else if (javaType == int.class || javaType == Integer.class) {
+            return FieldType.INT;
+        } else if (javaType == boolean.class || javaType == Boolean.class) {
+            return FieldType.BOOLEAN;
+        } else if (List.class.isAssignableFrom(javaType)) {
+            return FieldType.STRING_LIST;
+        } else if (Map.class.isAssignableFrom(javaType)) {
+            return FieldType.STRING_MAP;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the canonical form used for fingerprinting.
+     */
+    String canonicalForm() {
+        StringBuilder sb = new StringBuilder(recordName).append('{');
+        for (FieldSchema field : fields) {
+            sb.append(field.getName()).append(':').append(field.getType()).append(';');
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Computes the CRC-64-AVRO fingerprint of the given canonical schema text.
+     */
+    static long fingerprint(String canonicalForm) {
+        long fp = EMPTY_FINGERPRINT;
+        for (byte b : canonicalForm.getBytes(StandardCharsets.UTF_8)) {
+            fp = (fp >>> 8) ^ FINGERPRINT_TABLE[(int) (fp ^ b) & 0xff];
+        }
+        return fp;
+    }
+
+    /**
+     * Returns the getter for the field at the given position.
+     */
+    Method accessor(int index) {
+        return accessors[index];
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getRecordName() {
+        return recordName;
+    }
+
+    public void setRecordName(String recordName) {
+        this.recordName = recordName;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(long fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public List<FieldSchema> getFields() {
+        return Collections.unmodifiableList(fields);
+    }
+
+    public void setFields(List<FieldSchema> fields) {
+        this.fields = new ArrayList<>(fields);
+    }
+
+    /**
+     * Returns a copy of this schema registered under another subject.
+     *
+     * @param otherSubject the subject for the copy
+     * @return the schema copy sharing the same layout and accessors
+     */
+    public RecordSchema withSubject(String otherSubject) {
+        RecordSchema copy = new RecordSchema();
+        copy.subject = otherSubject;
+        copy.recordName = recordName;
+        copy.fingerprint = fingerprint;
+        copy.fields = fields;
+        copy.accessors = accessors;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordSchema{" +
+                "subject='" + subject + '\'' +
+                ", recordName='" + recordName + '\'' +
+                ", fingerprint=" + Long.toHexString(fingerprint) +
+                ", fields=" + fields.size() +
+                '}';
+    }
+}
@@ -0,0 +1,165 @@
+package org.dataingest.rfc.server.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Local, file-backed store for binary codec schemas.
+ *
+ * Schemas are derived on first sight of a subject (model class plus IDOC type or
+ * data source name) and cached in memory. Every new fingerprint is written once to
+ * the store directory as {subject}.{fingerprint}.json (the directory is created with
+ * the first schema) and, when configured, published
+ * to a schema topic keyed by subject. The schema topic is expected to be created
+ * with cleanup.policy=compact so consumers always find the latest schema per subject.
+ *
+ * A schema is only handed out once it is persisted: the file is written and the
+ * schema topic has acknowledged the record, so no data record can carry a fingerprint
+ * consumers cannot resolve. If persisting fails, the schema is not cached and the
+ * encode fails; the next payload of the subject retries the registration.
+ *
+ * Configuration:
+ * - codec.schema.store.dir: directory holding the schema files (default: schemas)
+ * - codec.schema.topic: compacted topic for schema sync (default: disabled)
+ * - kafka.request.timeout.ms: maximum wait for the schema topic acknowledgement (default: 30000)
+ */
+@Component
+public class SchemaRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaRegistry.class);
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @Autowired
+    protected Producer<String, byte[]> kafkaProducer;
+
+    @Value("${codec.schema.store.dir:schemas}")
+    private String storeDir;
+
+    @Value("${codec.schema.topic:}")
+    private String schemaTopic;
+
+    @Value("${kafka.request.timeout.ms:30000}")
+    private int kafkaTimeoutMs;
+
+    private final Map<Class<?>, RecordSchema> layouts = new ConcurrentHashMap<>();
+    private final Map<String, RecordSchema> schemas = new ConcurrentHashMap<>();
+    private final Set<String> storedSchemas = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Loads the schema files already present in the store directory.
+     */
+    @PostConstruct
+    public void init() {
+        File dir = new File(storeDir);
+        if (!dir.isDirectory()) {
+            return;
+        }
+
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".json"));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            try {
+                RecordSchema schema = objectMapper.readValue(file, RecordSchema.class);
+                storedSchemas.add(storeKey(schema.getSubject(), schema.getFingerprint()));
+            } catch (IOException e) {
+                LOGGER.warn("Skipping unreadable schema file {}: {}", file.getName(), e.getMessage());
+            }
+        }
+        LOGGER.info("Schema store {} loaded with {} schema(s)", dir.getAbsolutePath(), storedSchemas.size());
+    }
+
+    /**
+     * Returns the schema for the given subject, deriving and registering it on first use.
+     *
+     * Registration runs outside the cache: the first payload of a subject persists the
+     * schema while later lookups of registered subjects stay lock-free.
+     *
+     * @param subject the schema subject
+     * @param type the model class the schema is derived from
+     * @return the registered schema
+     * @throws IOException if a new schema cannot be persisted
+     */
+    public RecordSchema getSchema(String subject, Class<?> type) throws IOException {
+        RecordSchema schema = schemas.get(subject);
+        if (schema != null) {
+            return schema;
+        }
+        synchronized (this) {
+            schema = schemas.get(subject);
+            if (schema == null) {
+                RecordSchema layout = layouts.computeIfAbsent(type, t -> RecordSchema.forClass(t.getSimpleName(), t));
+                schema = layout.withSubject(subject);
+                store(schema);
+                schemas.put(subject, schema);
+            }
+            return schema;
+        }
+    }
+
+    /**
+     * Returns the number of subjects registered since startup.
+     */
+    public int size() {
+        return schemas.size();
+    }
+
+    /**
+     * Persists a new schema to the store directory and the schema topic, waiting for
+     * the topic's acknowledgement.
+     */
+    private void store(RecordSchema schema) throws IOException {
+        String key = storeKey(schema.getSubject(), schema.getFingerprint());
+        if (storedSchemas.contains(key)) {
+            return;
+        }
+
+        LOGGER.info("Registering new schema {}", schema);
+        byte[] json = objectMapper.writeValueAsBytes(schema);
+        if (schemaTopic != null && !schemaTopic.isEmpty()) {
+            try {
+                kafkaProducer.send(new ProducerRecord<>(schemaTopic, schema.getSubject(), json))
+                        .get(kafkaTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while publishing schema " + schema.getSubject(), e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to publish schema " + schema.getSubject()
+                        + " to topic " + schemaTopic, e.getCause());
+            } catch (TimeoutException e) {
+                throw new IOException("No acknowledgement for schema " + schema.getSubject() + " from topic "
+                        + schemaTopic + " within " + kafkaTimeoutMs + " ms", e);
+            }
+        }
+
+        // Written last: a schema file marks the schema as persisted after a restart
+        File dir = new File(storeDir);
+        if (!dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Could not create schema store directory: " + dir.getAbsolutePath());
+        }
+        objectMapper.writeValue(new File(dir, key + ".json"), schema);
+        storedSchemas.add(key);
+    }
+
+    private static String storeKey(String subject, long fingerprint) {
+        return subject + "." + Long.toHexString(fingerprint);
+    }
+}
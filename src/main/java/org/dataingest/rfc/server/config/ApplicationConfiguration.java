@@ -2,14 +2,19 @@ package org.dataingest.rfc.server.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sap.conn.idoc.IDocSegment;
+import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.dataingest.rfc.server.codec.IDocSegmentSerializer;
 import java.util.Properties;
 
 /**
@@ -20,10 +25,20 @@ import java.util.Properties;
 @Configuration
 public class ApplicationConfiguration {
 
+    /** Connection and security settings shared by all Kafka clients, read from kafka.{setting} */
+    private static final String[] CLIENT_SETTINGS = {
+        "security.protocol", "client.dns.lookup",
+        "sasl.mechanism", "sasl.jaas.config", "sasl.kerberos.service.name", "sasl.login.callback.handler.class",
+        "ssl.truststore.location", "ssl.truststore.password", "ssl.truststore.type",
+        "ssl.keystore.location", "ssl.keystore.password", "ssl.keystore.type", "ssl.key.password",
+        "ssl.endpoint.identification.algorithm"
+    };
+
     /**
      * Creates and configures the Jackson ObjectMapper for JSON serialization.
      *
-     * Includes JavaTimeModule for proper serialization of Java 8 date/time types.
+     * Includes JavaTimeModule for proper serialization of Java 8 date/time types
+     * and a streaming serializer for IDoc segment trees.
      *
      * @return Configured ObjectMapper instance
      */
@@ -37,6 +52,11 @@ public class ApplicationConfiguration {
         // Disable writing dates as timestamps (use ISO-8601 format instead)
         mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
 
+        // Write IDoc segment trees as nested JSON (idoc.segment.output=tree)
+        SimpleModule idocModule = new SimpleModule("IDocModule");
+        idocModule.addSerializer(IDocSegment.class, new IDocSegmentSerializer());
+        mapper.registerModule(idocModule);
+
         return mapper;
     }
 
@@ -46,53 +66,73 @@ public class ApplicationConfiguration {
      * Uses synchronous publishing with all-acks configuration to ensure delivery
      * before SAP transaction commits. All configuration comes from application.properties.
      *
-     * @param bootstrapServers Kafka bootstrap servers
-     * @param acks Acknowledgment mode
-     * @param retries Number of retries
-     * @param maxInFlightRequests Max in-flight requests per connection
-     * @param compressionType Compression type
-     * @param enableIdempotence Enable idempotent producer
-     * @param requestTimeoutMs Request timeout in milliseconds
-     * @param deliveryTimeoutMs Delivery timeout in milliseconds
+     * Record values are raw bytes so that any payload codec (JSON, binary) can be used.
+     *
+     * @param environment the application environment holding the kafka.* settings
      * @return Configured KafkaProducer instance
      */
     @Bean
-    public Producer<String, String> kafkaProducer(
-            @Value("${kafka.bootstrap.servers:localhost:9092}") String bootstrapServers,
-            @Value("${kafka.acks:all}") String acks,
-            @Value("${kafka.retries:3}") int retries,
-            @Value("${kafka.max.in.flight.requests.per.connection:1}") int maxInFlightRequests,
-            @Value("${kafka.compression.type:gzip}") String compressionType,
-            @Value("${kafka.enable.idempotence:true}") boolean enableIdempotence,
-            @Value("${kafka.request.timeout.ms:30000}") int requestTimeoutMs,
-            @Value("${kafka.delivery.timeout.ms:120000}") int deliveryTimeoutMs) {
-
-        Properties props = new Properties();
+    public Producer<String, byte[]> kafkaProducer(Environment environment) {
+        return new KafkaProducer<>(producerProperties(environment));
+    }
 
-        // Bootstrap servers for Kafka cluster
-        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+    /**
+     * Builds the producer configuration from the kafka.* settings.
+     *
+     * Shared by the default producer and the dedicated producers of the priority lanes.
+     *
+     * @param environment the application environment
+     * @return the producer properties
+     */
+    public static Properties producerProperties(Environment environment) {
+        Properties props = clientProperties(environment);
 
         // Serializers for key and value
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
 
         // Reliability settings for RFC (require all in-sync replicas to acknowledge)
-        props.put(ProducerConfig.ACKS_CONFIG, acks);
-        props.put(ProducerConfig.RETRIES_CONFIG, retries);
+        props.put(ProducerConfig.ACKS_CONFIG, environment.getProperty("kafka.acks", "all"));
+        props.put(ProducerConfig.RETRIES_CONFIG, environment.getProperty("kafka.retries", Integer.class, 3));
 
         // Ensure ordering by limiting in-flight requests
-        props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, maxInFlightRequests);
+        props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION,
+                environment.getProperty("kafka.max.in.flight.requests.per.connection", Integer.class, 1));
 
         // Compression settings
-        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, environment.getProperty("kafka.compression.type", "gzip"));
 
         // Idempotent producer for exactly-once semantics
-        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, enableIdempotence);
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG,
+                environment.getProperty("kafka.enable.idempotence", Boolean.class, true));
 
         // Request and delivery timeouts
-        props.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, requestTimeoutMs);
-        props.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, deliveryTimeoutMs);
+        props.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, environment.getProperty("kafka.request.timeout.ms", Integer.class, 30000));
+        props.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, environment.getProperty("kafka.delivery.timeout.ms", Integer.class, 120000));
+
+        return props;
+    }
 
-        return new KafkaProducer<>(props);
+    /**
+     * Builds the connection settings of a Kafka client (producer or consumer): the
+     * bootstrap servers and the security settings (kafka.security.protocol,
+     * kafka.sasl.*, kafka.ssl.*), so every client reaches the same cluster the same way.
+     *
+     * @param environment the application environment
+     * @return the client properties
+     */
+    public static Properties clientProperties(Environment environment) {
+        Properties props = new Properties();
+
+        // Bootstrap servers for Kafka cluster
+        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, environment.getProperty("kafka.bootstrap.servers", "localhost:9092"));
+
+        for (String setting : CLIENT_SETTINGS) {
+            String value = environment.getProperty("kafka." + setting);
+            if (value != null) {
+                props.put(setting, value);
+            }
+        }
+        return props;
     }
 }
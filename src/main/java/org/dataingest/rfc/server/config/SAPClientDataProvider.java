@@ -4,23 +4,60 @@ import com.sap.conn.jco.ext.DestinationDataProvider;
 import com.sap.conn.jco.ext.DestinationDataEventListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 /**
  * SAP JCo DestinationDataProvider for RFC Client configuration.
  *
  * Supplies client destination configuration to the SAP JCo environment.
- * This is required by RFC servers to retrieve function metadata from SAP.
+ * This is required by RFC servers to retrieve function metadata from SAP
+ * and by the outbound IDoc sender.
+ *
+ * Every destination gets the logon settings (jco.client.*) plus connection pool
+ * and repository settings, so repository lookups and outbound calls reuse pooled
+ * connections instead of opening a new connection per call.
+ *
+ * Named destinations (jco.destinations=SAP_CLIENT,ERP2,...) override single
+ * settings with jco.destinations.{NAME}.{setting}, e.g. jco.destinations.ERP2.ashost.
+ * Unlisted destination names get the base settings.
+ *
+ * Configuration:
+ * - jco.client.pool_capacity: idle connections kept open (default: 5)
+ * - jco.client.peak_limit: maximum connections in use at once (default: 10)
+ * - jco.client.max_get_client_time: wait for a free connection in ms (default: 30000)
+ * - jco.client.expiration_time: idle time in ms before a pooled connection is closed (default: 600000)
+ * - jco.client.repository_destination: destination used for metadata lookups (default: own)
  */
 @Component
 public class SAPClientDataProvider implements DestinationDataProvider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SAPClientDataProvider.class);
 
+    /** Logon settings, passed as jco.client.{setting} */
+    private static final String[] CLIENT_SETTINGS = {
+        "ashost", "sysnr", "mshost", "msserv", "r3name", "group", "saprouter",
+        "client", "user", "passwd", "lang", "trace"
+    };
+
+    /** Pool and repository settings, passed as jco.destination.{setting} */
+    private static final String[] DESTINATION_SETTINGS = {
+        "pool_capacity", "peak_limit", "max_get_client_time", "expiration_time", "repository_destination"
+    };
+
     private DestinationDataEventListener eventListener;
 
+    @Autowired
+    private Environment environment;
+
+    @Value("${jco.destinations:SAP_CLIENT}")
+    private String destinationList;
+
     // RFC Client Configuration
     @Value("${jco.client.ashost:localhost}")
     private String ashost;
@@ -43,6 +80,19 @@ public class SAPClientDataProvider implements DestinationDataProvider {
     @Value("${jco.client.trace:0}")
     private int trace;
 
+    // Connection pool configuration
+    @Value("${jco.client.pool_capacity:5}")
+    private int poolCapacity;
+
+    @Value("${jco.client.peak_limit:10}")
+    private int peakLimit;
+
+    @Value("${jco.client.max_get_client_time:30000}")
+    private long maxGetClientTime;
+
+    @Value("${jco.client.expiration_time:600000}")
+    private long expirationTime;
+
     /**
      * Returns the client destination properties for the specified destination name.
      *
@@ -64,11 +114,58 @@ public class SAPClientDataProvider implements DestinationDataProvider {
         props.setProperty("jco.client.sysnr", sysnr);
         props.setProperty("jco.client.trace", String.valueOf(trace));
 
-        LOGGER.debug("Destination properties for {}: ashost={}, client={}, sysnr={}",
-                     destinationName, ashost, client, sysnr);
+        // Connection pool: keep connections open for repository lookups and outbound calls
+        props.setProperty("jco.destination.pool_capacity", String.valueOf(poolCapacity));
+        props.setProperty("jco.destination.peak_limit", String.valueOf(peakLimit));
+        props.setProperty("jco.destination.max_get_client_time", String.valueOf(maxGetClientTime));
+        props.setProperty("jco.destination.expiration_time", String.valueOf(expirationTime));
+        String repositoryDestination = environment.getProperty("jco.client.repository_destination", "");
+        if (!repositoryDestination.isEmpty()) {
+            props.setProperty("jco.destination.repository_destination", repositoryDestination);
+        }
+
+        // Named destination overrides
+        for (String setting : CLIENT_SETTINGS) {
+            String value = environment.getProperty("jco.destinations." + destinationName + "." + setting);
+            if (value != null) {
+                props.setProperty("jco.client." + setting, value);
+            }
+        }
+        for (String setting : DESTINATION_SETTINGS) {
+            String value = environment.getProperty("jco.destinations." + destinationName + "." + setting);
+            if (value != null) {
+                props.setProperty("jco.destination." + setting, value);
+            }
+        }
+
+        // The peak limit can never be below the pool capacity
+        int capacity = Integer.parseInt(props.getProperty("jco.destination.pool_capacity"));
+        if (Integer.parseInt(props.getProperty("jco.destination.peak_limit")) < capacity) {
+            props.setProperty("jco.destination.peak_limit", String.valueOf(capacity));
+        }
+
+        LOGGER.debug("Destination properties for {}: ashost={}, client={}, sysnr={}, pool_capacity={}, peak_limit={}",
+                     destinationName, props.getProperty("jco.client.ashost"), props.getProperty("jco.client.client"),
+                     props.getProperty("jco.client.sysnr"), props.getProperty("jco.destination.pool_capacity"),
+                     props.getProperty("jco.destination.peak_limit"));
         return props;
     }
 
+    /**
+     * Returns the configured destination names (jco.destinations).
+     *
+     * @return the destination names in configuration order
+     */
+    public List<String> getDestinationNames() {
+        List<String> names = new ArrayList<>();
+        for (String name : destinationList.split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        return names;
+    }
+
     /**
      * Sets the event listener for destination data change events.
      *
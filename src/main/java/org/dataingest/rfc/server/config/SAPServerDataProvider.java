@@ -4,22 +4,59 @@ import com.sap.conn.jco.ext.ServerDataProvider;
 import com.sap.conn.jco.ext.ServerDataEventListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * SAP JCo ServerDataProvider for RFC Server configuration.
  *
  * Supplies server configuration properties to the SAP JCo environment.
  * This is required by JCoServerFactory to configure RFC server instances.
+ *
+ * The connection and worker thread counts can be changed at runtime: updated values
+ * are kept as overrides of the configured ones and announced to JCo through the
+ * ServerDataEventListener, which makes the running server re-read its properties
+ * and re-register with the gateway without an application restart.
+ *
+ * Several servers can run in one process (jco.servers=ERP_IDOC,CRM_IDOC,...). The
+ * server name is the program ID unless jco.servers.{NAME}.progid says otherwise, and
+ * single settings are overridden with jco.servers.{NAME}.{setting}, e.g.
+ * jco.servers.CRM_IDOC.gwhost. Without jco.servers, one server named after
+ * jco.server.progid is run.
  */
 @Component
 public class SAPServerDataProvider implements ServerDataProvider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SAPServerDataProvider.class);
 
-    private ServerDataEventListener eventListener;
+    /** Server properties that can be changed at runtime */
+    public static final List<String> RUNTIME_PROPERTIES = Arrays.asList(
+            "jco.server.connection_count", "jco.server.worker_thread_count", "jco.server.worker_thread_min_count");
+
+    /** Server settings, passed as jco.server.{setting}, that can be overridden per named server */
+    private static final String[] SERVER_SETTINGS = {
+        "gwhost", "gwserv", "progid", "connection_count", "worker_thread_count", "worker_thread_min_count",
+        "saprouter", "trace", "repository_destination", "repository_file"
+    };
+
+    private volatile ServerDataEventListener eventListener;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${jco.servers:}")
+    private String serverList;
+
+    private final Map<String, Map<String, String>> runtimeOverrides = new ConcurrentHashMap<>();
 
     // RFC Server Configuration
     @Value("${jco.server.gwhost:localhost}")
@@ -122,11 +159,87 @@ public class SAPServerDataProvider implements ServerDataProvider {
             props.setProperty("jco.server.repository_file", repositoryFile);
         }
 
-        LOGGER.debug("Server properties for {}: gwhost={}, gwserv={}, connection_count={}, repository_destination={}",
-                     serverName, gwhost, gwserv, connectionCount, repositoryDestination);
+        // Named server overrides
+        for (String setting : SERVER_SETTINGS) {
+            String value = environment.getProperty("jco.servers." + serverName + "." + setting);
+            if (value != null) {
+                props.setProperty("jco.server." + setting, value);
+            }
+        }
+
+        // Values changed at runtime
+        Map<String, String> overrides = runtimeOverrides.get(serverName);
+        if (overrides != null) {
+            overrides.forEach(props::setProperty);
+        }
+
+        LOGGER.debug("Server properties for {}: gwhost={}, gwserv={}, progid={}, connection_count={}, repository_destination={}",
+                     serverName, props.getProperty("jco.server.gwhost"), props.getProperty("jco.server.gwserv"),
+                     props.getProperty("jco.server.progid"), props.getProperty("jco.server.connection_count"),
+                     props.getProperty("jco.server.repository_destination"));
         return props;
     }
 
+    /**
+     * Returns the names of the servers to run (jco.servers, default: jco.server.progid).
+     *
+     * @return the server names in configuration order
+     */
+    public List<String> getServerNames() {
+        List<String> names = new ArrayList<>();
+        for (String name : serverList.split(",")) {
+            if (!name.trim().isEmpty() && !names.contains(name.trim())) {
+                names.add(name.trim());
+            }
+        }
+        if (names.isEmpty()) {
+            names.add(progid);
+        }
+        return names;
+    }
+
+    /**
+     * Changes connection and worker thread counts of a server at runtime.
+     *
+     * The new values replace the configured ones for this server and are pushed to
+     * JCo through the ServerDataEventListener.
+     *
+     * @param serverName the server (program ID) to reconfigure
+     * @param changes new values, keyed by property name (see RUNTIME_PROPERTIES)
+     * @throws IllegalArgumentException if a property cannot be changed at runtime or a value is invalid
+     * @throws IllegalStateException if JCo has not registered a listener for server data events
+     */
+    public synchronized void updateServerProperties(String serverName, Map<String, String> changes) {
+        ServerDataEventListener listener = eventListener;
+        if (listener == null) {
+            throw new IllegalStateException("No ServerDataEventListener registered by JCo");
+        }
+
+        Properties current = getServerProperties(serverName);
+        Map<String, String> overrides = new HashMap<>(runtimeOverrides.getOrDefault(serverName, new HashMap<>()));
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            if (!RUNTIME_PROPERTIES.contains(change.getKey())) {
+                throw new IllegalArgumentException(change.getKey() + " cannot be changed at runtime");
+            }
+            int value = Integer.parseInt(change.getValue());
+            if (value < 1) {
+                throw new IllegalArgumentException(change.getKey() + " must be positive: " + value);
+            }
+            overrides.put(change.getKey(), String.valueOf(value));
+            current.setProperty(change.getKey(), String.valueOf(value));
+        }
+        String workers = current.getProperty("jco.server.worker_thread_count");
+        String minWorkers = current.getProperty("jco.server.worker_thread_min_count");
+        if (workers != null && minWorkers != null && Integer.parseInt(minWorkers) > Integer.parseInt(workers)) {
+            throw new IllegalArgumentException("worker_thread_min_count " + minWorkers
+                    + " exceeds worker_thread_count " + workers);
+        }
+
+        runtimeOverrides.put(serverName, overrides);
+        LOGGER.info("Reconfiguring server {}: {}", serverName, changes);
+        listener.updated(serverName);
+    }
+
     /**
      * Sets the event listener for server data change events.
      *
@@ -145,6 +258,6 @@ public class SAPServerDataProvider implements ServerDataProvider {
      */
     @Override
     public boolean supportsEvents() {
-        return false;  // We don't support dynamic event notifications for now
+        return true;  // Runtime changes are announced through updateServerProperties
     }
 }
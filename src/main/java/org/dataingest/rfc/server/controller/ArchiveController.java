@@ -0,0 +1,70 @@
+package org.dataingest.rfc.server.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.dataingest.rfc.server.archive.ArchiveLookup;
+import org.dataingest.rfc.server.archive.ArchiveRecord;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IDoc archive lookup endpoints
+ *
+ * - GET /archive/tid/{tid}: XML of the newest archived transaction with that TID
+ * - GET /archive/docnum/{docnum}: XML of the single IDoc with that document number
+ * - GET /archive/mestyp/{mestyp}?limit=n: newest transactions containing that message type
+ */
+@RestController
+@RequestMapping("/archive")
+public class ArchiveController {
+
+    @Autowired
+    private ArchiveLookup archiveLookup;
+
+    @GetMapping("tid/{tid}")
+    public ResponseEntity<byte[]> byTid(@PathVariable String tid) throws IOException {
+        List<ArchiveRecord> records = archiveLookup.findByTid(tid, 1);
+        if (records.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return xml(records.get(0).getPayload());
+    }
+
+    @GetMapping("docnum/{docnum}")
+    public ResponseEntity<byte[]> byDocumentNumber(@PathVariable String docnum) throws IOException {
+        List<ArchiveRecord> records = archiveLookup.findByDocumentNumber(docnum, 1);
+        if (records.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return xml(ArchiveLookup.idocXml(records.get(0), docnum));
+    }
+
+    @GetMapping("mestyp/{mestyp}")
+    public List<Map<String, Object>> byMessageType(@PathVariable String mestyp,
+                                                   @RequestParam(defaultValue = "100") int limit) throws IOException {
+        List<Map<String, Object>> response = new ArrayList<>();
+        for (ArchiveRecord record : archiveLookup.findByMessageType(mestyp, limit)) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("tid", record.getTid());
+            entry.put("timestamp", record.getTimestamp());
+            entry.put("numDocuments", record.getNumDocuments());
+            entry.put("segment", record.getSegmentId());
+            entry.put("offset", record.getOffset());
+            response.add(entry);
+        }
+        return response;
+    }
+
+    private static ResponseEntity<byte[]> xml(byte[] body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_XML).body(body);
+    }
+}
@@ -4,7 +4,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.dataingest.rfc.server.codec.DirectBufferPool;
+import org.dataingest.rfc.server.outbound.IDocOutboundSender;
+import org.dataingest.rfc.server.sap.SAPDestinationManager;
 import org.dataingest.rfc.server.sap.SAPRFCServerImpl;
+import org.dataingest.rfc.server.scheduling.AdmissionController;
+import org.dataingest.rfc.server.scheduling.MemoryBudget;
+import org.dataingest.rfc.server.scheduling.PriorityLanes;
+import org.dataingest.rfc.server.scheduling.PublishExecutor;
+import org.dataingest.rfc.server.scheduling.SenderScheduler;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,6 +26,30 @@ public class HealthController {
     @Autowired(required = false)
     private SAPRFCServerImpl rfcServer;
 
+    @Autowired(required = false)
+    private IDocOutboundSender outboundSender;
+
+    @Autowired(required = false)
+    private SAPDestinationManager destinationManager;
+
+    @Autowired(required = false)
+    private SenderScheduler senderScheduler;
+
+    @Autowired(required = false)
+    private PriorityLanes priorityLanes;
+
+    @Autowired(required = false)
+    private AdmissionController admissionController;
+
+    @Autowired(required = false)
+    private MemoryBudget memoryBudget;
+
+    @Autowired(required = false)
+    private DirectBufferPool bufferPool;
+
+    @Autowired(required = false)
+    private PublishExecutor publishExecutor;
+
     @GetMapping("health")
     public Map<String, Object> health() {
         Map<String, Object> response = new HashMap<>();
@@ -46,6 +78,46 @@ public class HealthController {
         response.put("idoc.publishing", "enabled");
         response.put("bw.publishing", "enabled");
 
+        // SAP client destinations (connection slots in use, exhaustion)
+        if (destinationManager != null) {
+            response.put("sap.destinations", destinationManager.getStatus());
+        }
+
+        // Inbound calls per sender system (bulkheads)
+        if (senderScheduler != null) {
+            response.put("senders", senderScheduler.getStatus());
+        }
+
+        // Queued publishing work per priority lane
+        if (priorityLanes != null) {
+            response.put("priority.lanes", priorityLanes.getStatus());
+        }
+
+        // Load shedding under Kafka pressure
+        if (admissionController != null) {
+            response.put("admission", admissionController.getStatus());
+        }
+
+        // Memory held by received, unpublished payloads
+        if (memoryBudget != null) {
+            response.put("memory.budget", memoryBudget.getStatus());
+        }
+
+        // Off-heap buffers of in-flight IDoc XML
+        if (bufferPool != null) {
+            response.put("buffer.pool", bufferPool.getStatus());
+        }
+
+        // Threads running the per-IDoc publish tasks
+        if (publishExecutor != null) {
+            response.put("publish.threads", publishExecutor.getStatus());
+        }
+
+        // Outbound IDoc sending (Kafka to SAP)
+        if (outboundSender != null) {
+            response.put("idoc.outbound", outboundSender.getStatus());
+        }
+
         return response;
     }
 }
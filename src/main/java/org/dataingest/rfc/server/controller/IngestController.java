@@ -0,0 +1,151 @@
+package org.dataingest.rfc.server.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.dataingest.rfc.server.codec.FlatFileReader;
+import org.dataingest.rfc.server.exception.KafkaPublishException;
+import org.dataingest.rfc.server.idoc.IIDOCDocumentReader;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import org.dataingest.rfc.server.publisher.IDocKafkaPublisher;
+import org.dataingest.rfc.server.xml.IDocXmlReader;
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bulk IDoc ingest for senders without access to the SAP gateway
+ *
+ * POST /ingest/idoc accepts multi-IDoc payloads as IDoc XML or SAP flat file, also
+ * with chunked transfer encoding. The request body is read as a stream: every IDoc
+ * is parsed and published (IDocKafkaPublisher, synchronous) before the next one is
+ * read, so the body is never buffered and a slow Kafka cluster slows down the upload
+ * through TCP flow control.
+ *
+ * - format: xml or flat; default from the Content-Type (xml types, text/plain or
+ *   application/x-sap-idoc-flat)
+ * - X-Sender-System header: sender system of the documents (default: ingest.sender-system)
+ *
+ * Responds with the number of published documents. IDocs published before a parse
+ * or publish error stay published; the response reports how many.
+ *
+ * Configuration:
+ * - ingest.max-concurrent-requests: parallel uploads, further requests get 429 (default: 4)
+ * - ingest.sender-system: default sender system (default: HTTP)
+ * - codec.flat.charset: character set of flat files (default: UTF-8)
+ */
+@RestController
+@RequestMapping("/ingest")
+public class IngestController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestController.class);
+
+    private static final String FORMAT_XML = "xml";
+    private static final String FORMAT_FLAT = "flat";
+
+    @Autowired
+    private IDocKafkaPublisher idocPublisher;
+
+    @Value("${ingest.max-concurrent-requests:4}")
+    private int maxConcurrentRequests;
+
+    @Value("${ingest.sender-system:HTTP}")
+    private String defaultSenderSystem;
+
+    @Value("${codec.flat.charset:UTF-8}")
+    private String flatCharset;
+
+    private Semaphore requests;
+
+    @PostConstruct
+    public void init() {
+        requests = new Semaphore(maxConcurrentRequests);
+    }
+
+    @PostMapping("idoc")
+    public ResponseEntity<Map<String, Object>> ingestIDocs(
+            HttpServletRequest request,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = "X-Sender-System", required = false) String senderSystem) {
+
+        String resolvedFormat = format != null ? format.toLowerCase() : formatOf(request.getContentType());
+        if (!FORMAT_XML.equals(resolvedFormat) && !FORMAT_FLAT.equals(resolvedFormat)) {
+            return response(HttpStatus.UNSUPPORTED_MEDIA_TYPE, 0,
+                    "Unsupported IDoc format, use IDoc XML or flat file (format=xml|flat)");
+        }
+        if (!requests.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(result(0, "Too many concurrent ingest requests"));
+        }
+
+        String sender = senderSystem != null ? senderSystem : defaultSenderSystem;
+        int published = 0;
+        try (IIDOCDocumentReader reader = open(resolvedFormat, request.getInputStream(), sender)) {
+            SAPIDOCDocument document;
+            while ((document = reader.read()) != null) {
+                idocPublisher.publishSAPDocument(document);
+                published++;
+            }
+            LOGGER.info("Ingested {} IDoc(s) ({}) from {}", published, resolvedFormat, request.getRemoteAddr());
+            return response(HttpStatus.OK, published, null);
+        } catch (IOException e) {
+            LOGGER.warn("IDoc ingest from {} failed after {} document(s): {}",
+                    request.getRemoteAddr(), published, e.getMessage());
+            return response(HttpStatus.BAD_REQUEST, published, e.getMessage());
+        } catch (KafkaPublishException e) {
+            LOGGER.error("IDoc ingest from {} failed after {} document(s): {}",
+                    request.getRemoteAddr(), published, e.getMessage(), e);
+            return response(HttpStatus.SERVICE_UNAVAILABLE, published, e.getMessage());
+        } finally {
+            requests.release();
+        }
+    }
+
+    private IIDOCDocumentReader open(String format, InputStream in, String senderSystem) throws IOException {
+        return FORMAT_XML.equals(format)
+                ? new IDocXmlReader(in, senderSystem)
+                : new FlatFileReader(in, Charset.forName(flatCharset), senderSystem);
+    }
+
+    private static String formatOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String type = contentType.toLowerCase();
+        if (type.contains("xml")) {
+            return FORMAT_XML;
+        }
+        if (type.startsWith("text/plain") || type.startsWith("application/x-sap-idoc-flat")) {
+            return FORMAT_FLAT;
+        }
+        return null;
+    }
+
+    private static ResponseEntity<Map<String, Object>> response(HttpStatus status, int published, String error) {
+        return ResponseEntity.status(status).body(result(published, error));
+    }
+
+    private static Map<String, Object> result(int published, String error) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("published", published);
+        if (error != null) {
+            result.put("error", error);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,97 @@
+package org.dataingest.rfc.server.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.dataingest.rfc.server.replay.IDocReplayer;
+import org.dataingest.rfc.server.replay.ReplayJob;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Replay endpoints for archived IDocs
+ *
+ * - POST /replay?source=dir[&rate=n][&topic=t][&from=ms][&to=ms]: start a replay
+ *   (rate in documents per second, 0 = as fast as possible)
+ * - GET /replay: status of the running or last replay
+ * - DELETE /replay: stop the running replay
+ *
+ * The source must lie inside one of the configured replay roots (replay.roots,
+ * default: the archive directory); other paths are rejected with 400.
+ */
+@RestController
+@RequestMapping("/replay")
+public class ReplayController {
+
+    @Autowired
+    private IDocReplayer replayer;
+
+    @Value("${archive.dir:archive}")
+    private String defaultSource;
+
+    @Value("${replay.roots:${archive.dir:archive}}")
+    private String roots;
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> start(@RequestParam(required = false) String source,
+                                                     @RequestParam(defaultValue = "0") double rate,
+                                                     @RequestParam(required = false) String topic,
+                                                     @RequestParam(defaultValue = "0") long from,
+                                                     @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to) throws IOException {
+        Path path = resolve(source != null ? source : defaultSource);
+        if (!isUnderRoot(path)) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error",
+                    "Replay source " + path + " is outside the replay roots (replay.roots)"));
+        }
+        try {
+            ReplayJob job = replayer.start(path, rate, topic, from, to);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toMap());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> status() {
+        ReplayJob job = replayer.getCurrentJob();
+        return job != null ? ResponseEntity.ok(job.toMap()) : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Map<String, Object>> cancel() {
+        ReplayJob job = replayer.getCurrentJob();
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        job.cancel();
+        return ResponseEntity.ok(job.toMap());
+    }
+
+    /**
+     * Returns the absolute, normalized path with symbolic links resolved as far as it exists.
+     */
+    private static Path resolve(String location) throws IOException {
+        Path path = Paths.get(location).toAbsolutePath().normalize();
+        return Files.exists(path) ? path.toRealPath() : path;
+    }
+
+    private boolean isUnderRoot(Path path) throws IOException {
+        for (String root : roots.split(",")) {
+            if (!root.trim().isEmpty() && path.startsWith(resolve(root.trim()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
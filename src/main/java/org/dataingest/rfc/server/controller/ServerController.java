@@ -0,0 +1,107 @@
+package org.dataingest.rfc.server.controller;
+
+import com.sap.conn.jco.server.JCoServer;
+import com.sap.conn.jco.server.JCoServerMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.dataingest.rfc.server.config.SAPServerDataProvider;
+import org.dataingest.rfc.server.sap.SAPRFCServerImpl;
+import org.dataingest.rfc.server.sap.ServerAutoscaler;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runtime configuration endpoints of the RFC servers
+ *
+ * - GET /server/config: connection and worker thread settings and thread usage per server,
+ *   autoscaler state
+ * - PUT /server/config?[server=NAME][&connectionCount=n][&workerThreadCount=n][&workerThreadMinCount=n]:
+ *   reconfigure a running server without restart (server may be omitted if only one is configured)
+ */
+@RestController
+@RequestMapping("/server")
+public class ServerController {
+
+    @Autowired
+    private SAPRFCServerImpl rfcServer;
+
+    @Autowired
+    private SAPServerDataProvider serverDataProvider;
+
+    @Autowired
+    private ServerAutoscaler autoscaler;
+
+    @GetMapping("config")
+    public ResponseEntity<Map<String, Object>> config() {
+        Map<String, Object> servers = new HashMap<>();
+        for (String serverName : rfcServer.getServerNames()) {
+            servers.put(serverName, serverConfig(serverName));
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("servers", servers);
+        response.put("autoscaler", autoscaler.getStatus());
+        return ResponseEntity.ok(response);
+    }
+
+    private Map<String, Object> serverConfig(String serverName) {
+        Map<String, Object> response = new HashMap<>();
+        Properties properties = serverDataProvider.getServerProperties(serverName);
+        for (String property : SAPServerDataProvider.RUNTIME_PROPERTIES) {
+            response.put(property, properties.getProperty(property));
+        }
+        JCoServer server = rfcServer.getServer(serverName);
+        response.put("running", server != null);
+        if (server != null) {
+            JCoServerMonitor monitor = server.getMonitor();
+            response.put("usedServerThreads", monitor.getUsedServerThreadCount());
+            response.put("maxUsedServerThreads", monitor.getMaxUsedServerThreadCount());
+            response.put("serverThreads", monitor.getServerThreadCount());
+        }
+        return response;
+    }
+
+    @PutMapping("config")
+    public ResponseEntity<Map<String, Object>> update(@RequestParam(required = false) String server,
+                                                      @RequestParam(required = false) Integer connectionCount,
+                                                      @RequestParam(required = false) Integer workerThreadCount,
+                                                      @RequestParam(required = false) Integer workerThreadMinCount) {
+        List<String> serverNames = rfcServer.getServerNames();
+        if (server == null && serverNames.size() == 1) {
+            server = serverNames.get(0);
+        }
+        if (server == null || !serverNames.contains(server)) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error",
+                    "Unknown server '" + server + "', configured: " + serverNames));
+        }
+        Map<String, String> changes = new HashMap<>();
+        if (connectionCount != null) {
+            changes.put("jco.server.connection_count", String.valueOf(connectionCount));
+        }
+        if (workerThreadCount != null) {
+            changes.put("jco.server.worker_thread_count", String.valueOf(workerThreadCount));
+        }
+        if (workerThreadMinCount != null) {
+            changes.put("jco.server.worker_thread_min_count", String.valueOf(workerThreadMinCount));
+        }
+        if (changes.isEmpty()) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "Nothing to change"));
+        }
+        try {
+            serverDataProvider.updateServerProperties(server, changes);
+            return ResponseEntity.ok(serverConfig(server));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.dataingest.rfc.server.exception;
+
+/**
+ * Exception thrown when a received payload does not fit into the in-flight memory budget.
+ *
+ * Raised when the budget stays exhausted for longer than the configured wait. The call
+ * is refused so SAP retries it later, instead of the payload adding to the heap held
+ * by unpublished transactions.
+ */
+public class MemoryBudgetExceededException extends Exception {
+
+    /**
+     * Constructs a MemoryBudgetExceededException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public MemoryBudgetExceededException(String message) {
+        super(message);
+    }
+}
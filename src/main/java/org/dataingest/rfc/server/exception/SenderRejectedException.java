@@ -0,0 +1,20 @@
+package org.dataingest.rfc.server.exception;
+
+/**
+ * Exception thrown when a call of a sender system is not admitted for processing.
+ *
+ * Raised when the sender's bulkhead queue is full or the call waited too long for
+ * a processing slot. The call is refused so SAP retries the tRFC/qRFC LUW later,
+ * instead of the sender holding on to more server worker threads.
+ */
+public class SenderRejectedException extends Exception {
+
+    /**
+     * Constructs a SenderRejectedException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public SenderRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package org.dataingest.rfc.server.idoc;
+
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads IDOC documents one at a time from a stream (IDoc XML or flat file).
+ *
+ * Implementations hold at most one document in memory, so arbitrarily large inputs
+ * can be processed as they arrive.
+ */
+public interface IIDOCDocumentReader extends Closeable {
+
+    /**
+     * Reads the next IDOC document.
+     *
+     * @return the document, or null at the end of the stream
+     * @throws IOException if the stream cannot be read or is malformed
+     */
+    SAPIDOCDocument read() throws IOException;
+}
@@ -0,0 +1,33 @@
+package org.dataingest.rfc.server.idoc;
+
+import com.sap.conn.idoc.IDocSegment;
+import java.io.IOException;
+
+/**
+ * Visitor for IDoc segment trees walked by SegmentTraversal.
+ *
+ * Every visited segment gets one enterSegment() call before its children and one
+ * exitSegment() call after its subtree (or right after enterSegment() for leaves
+ * and skipped subtrees).
+ */
+public interface ISegmentVisitor {
+
+    /**
+     * Called when a segment is reached, before any of its children.
+     *
+     * @param segment the segment
+     * @param depth the nesting depth relative to the start of the traversal
+     * @return true to visit the children of this segment, false to skip them
+     * @throws IOException if the visitor fails writing output
+     */
+    boolean enterSegment(IDocSegment segment, int depth) throws IOException;
+
+    /**
+     * Called after the segment and all visited children have been processed.
+     *
+     * @param segment the segment
+     * @param depth the nesting depth relative to the start of the traversal
+     * @throws IOException if the visitor fails writing output
+     */
+    void exitSegment(IDocSegment segment, int depth) throws IOException;
+}
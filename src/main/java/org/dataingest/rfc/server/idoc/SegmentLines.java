@@ -0,0 +1,57 @@
+package org.dataingest.rfc.server.idoc;
+
+import com.sap.conn.idoc.IDocSegment;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Flat text form of an IDoc's segments (segment output "flat").
+ *
+ * One SEGMENT line per segment, indented by two spaces per level below the root
+ * segment, followed by a DATA line with the segment's content (IDocSegment.toString()).
+ * Shared by the IDoc API receiver and the IDoc XML reader, so documents published
+ * from both look the same.
+ */
+public final class SegmentLines {
+
+    private SegmentLines() {
+    }
+
+    /**
+     * Writes the lines of a segment and its whole subtree.
+     *
+     * @param segment the start segment (usually the root segment), written at level 0
+     * @param lines receives the lines
+     * @throws IOException never thrown by this visitor, declared by the traversal
+     */
+    public static void extract(IDocSegment segment, List<String> lines) throws IOException {
+        SegmentTraversal.walk(segment, new ISegmentVisitor() {
+            @Override
+            public boolean enterSegment(IDocSegment current, int depth) {
+                // The segment as string contains all field data
+                add(lines, depth, current.getType(), current.toString());
+                return true;
+            }
+
+            @Override
+            public void exitSegment(IDocSegment current, int depth) {
+            }
+        });
+    }
+
+    /**
+     * Writes the lines of one segment.
+     *
+     * @param lines receives the lines
+     * @param depth the level below the root segment (0 = root segment)
+     * @param type the segment type
+     * @param data the segment content, no DATA line if null or blank
+     */
+    public static void add(List<String> lines, int depth, String type, String data) {
+        String indent = "  ".repeat(depth);
+        lines.add(indent + "SEGMENT: " + type);
+        if (data != null && !data.trim().isEmpty()) {
+            lines.add(indent + "  DATA: " + data);
+        }
+    }
+}
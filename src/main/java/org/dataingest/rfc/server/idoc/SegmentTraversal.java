@@ -0,0 +1,100 @@
+package org.dataingest.rfc.server.idoc;
+
+import com.sap.conn.idoc.IDocSegment;
+import com.sap.conn.idoc.IDocSegmentIterator;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Non-recursive depth-first traversal of IDoc segment trees.
+ *
+ * Shared by all segment extractors and serializers. The walk keeps an explicit stack
+ * of IDocSegmentIterator instances (one per open level) instead of recursing, so
+ * deeply nested or very wide IDocs (e.g. BOMEXPL) cost neither Java stack depth nor a
+ * try/catch per child access. Segments are reported to an ISegmentVisitor in document
+ * order with enter/exit callbacks.
+ */
+public final class SegmentTraversal {
+
+    private SegmentTraversal() {
+    }
+
+    /**
+     * Visits the given segment and its whole subtree. The segment itself has depth 0.
+     *
+     * @param segment the start segment (e.g., the root segment of an IDoc)
+     * @param visitor the visitor
+     * @throws IOException if the visitor fails
+     */
+    public static void walk(IDocSegment segment, ISegmentVisitor visitor) throws IOException {
+        if (segment == null) {
+            return;
+        }
+        Deque<IDocSegment> open = new ArrayDeque<>();
+        Deque<IDocSegmentIterator> iterators = new ArrayDeque<>();
+        if (enter(segment, 0, visitor)) {
+            open.push(segment);
+            iterators.push(segment.getChildrenIterator());
+            run(open, iterators, 0, visitor);
+        }
+    }
+
+    /**
+     * Visits the subtrees of all children of the given segment, without the segment
+     * itself. The children have depth 0.
+     *
+     * @param parent the parent segment (e.g., the root segment of an IDoc)
+     * @param visitor the visitor
+     * @throws IOException if the visitor fails
+     */
+    public static void walkChildren(IDocSegment parent, ISegmentVisitor visitor) throws IOException {
+        if (parent == null || parent.getNumChildren() == 0) {
+            return;
+        }
+        Deque<IDocSegment> open = new ArrayDeque<>();
+        Deque<IDocSegmentIterator> iterators = new ArrayDeque<>();
+        open.push(parent);
+        iterators.push(parent.getChildrenIterator());
+        run(open, iterators, -1, visitor);
+    }
+
+    /**
+     * Runs the depth-first loop. The open stack holds the segment owning each iterator;
+     * depthOffset maps the stack size to the depth reported to the visitor.
+     */
+    private static void run(Deque<IDocSegment> open, Deque<IDocSegmentIterator> iterators,
+                            int depthOffset, ISegmentVisitor visitor) throws IOException {
+        while (!iterators.isEmpty()) {
+            IDocSegmentIterator children = iterators.peek();
+            if (!children.hasNext()) {
+                iterators.pop();
+                IDocSegment owner = open.pop();
+                int ownerDepth = open.size() + depthOffset;
+                if (ownerDepth >= 0) {
+                    visitor.exitSegment(owner, ownerDepth);
+                }
+                continue;
+            }
+
+            IDocSegment child = children.next();
+            if (enter(child, open.size() + depthOffset, visitor)) {
+                open.push(child);
+                iterators.push(child.getChildrenIterator());
+            }
+        }
+    }
+
+    /**
+     * Enters a segment and reports whether its children have to be walked.
+     * Leaves and skipped subtrees are exited right away.
+     */
+    private static boolean enter(IDocSegment segment, int depth, ISegmentVisitor visitor) throws IOException {
+        boolean descend = visitor.enterSegment(segment, depth);
+        if (descend && segment.getNumChildren() > 0) {
+            return true;
+        }
+        visitor.exitSegment(segment, depth);
+        return false;
+    }
+}
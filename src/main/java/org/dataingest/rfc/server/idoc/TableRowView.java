@@ -0,0 +1,120 @@
+package org.dataingest.rfc.server.idoc;
+
+import com.sap.conn.jco.JCoMetaData;
+import com.sap.conn.jco.JCoTable;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map over one row of a JCo table, e.g. an IDOC_CONTROL_REC_40
+ * (EDI_DC40) or IDOC_DATA_REC_40 (EDI_DD40) record.
+ *
+ * The row's values are copied into an array on the thread of the JCo call, while the
+ * field name index is built once per table and shared by all rows, so a row costs one
+ * String array instead of a hash map with an entry per field. The view keeps no
+ * reference to the JCo table: it stays valid after the call and can be handed to
+ * publisher threads.
+ *
+ * Java serialization replaces it with a detached LinkedHashMap copy.
+ */
+public class TableRowView extends AbstractMap<String, String> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] names;
+    private final Map<String, Integer> index;
+    private final String[] values;
+
+    private TableRowView(String[] names, Map<String, Integer> index, String[] values) {
+        this.names = names;
+        this.index = index;
+        this.values = values;
+    }
+
+    /**
+     * Copies all rows of a table.
+     *
+     * @param table the JCo table (e.g., IDOC_CONTROL_REC_40)
+     * @return one view per row, sharing the field name index
+     */
+    public static TableRowView[] forTable(JCoTable table) {
+        JCoMetaData metaData = table.getRecordMetaData();
+        int fieldCount = metaData.getFieldCount();
+        String[] names = new String[fieldCount];
+        Map<String, Integer> index = new HashMap<>(fieldCount * 2);
+        for (int i = 0; i < fieldCount; i++) {
+            names[i] = metaData.getName(i);
+            index.put(names[i], i);
+        }
+
+        TableRowView[] views = new TableRowView[table.getNumRows()];
+        for (int row = 0; row < views.length; row++) {
+            table.setRow(row);
+            String[] values = new String[fieldCount];
+            for (int field = 0; field < fieldCount; field++) {
+                values[field] = table.getString(field);
+            }
+            views[row] = new TableRowView(names, index, values);
+        }
+        return views;
+    }
+
+    @Override
+    public String get(Object key) {
+        Integer field = index.get(key);
+        return field != null ? values[field] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < names.length;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (next >= names.length) {
+                            throw new NoSuchElementException();
+                        }
+                        int field = next++;
+                        return new SimpleImmutableEntry<>(names[field], values[field]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return names.length;
+            }
+        };
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new LinkedHashMap<>(this);
+    }
+}
@@ -11,11 +11,21 @@ import com.sap.conn.idoc.IDocSegment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.codec.FlatFilePayloadCodec;
+import org.dataingest.rfc.server.codec.PayloadCodecRegistry;
+import org.dataingest.rfc.server.exception.MemoryBudgetExceededException;
+import org.dataingest.rfc.server.exception.SenderRejectedException;
 import org.dataingest.rfc.server.model.SAPIDOCDocument;
 import org.dataingest.rfc.server.publisher.IDocKafkaPublisher;
+import org.dataingest.rfc.server.scheduling.AdmissionController;
+import org.dataingest.rfc.server.scheduling.MemoryBudget;
+import org.dataingest.rfc.server.scheduling.PriorityLanes;
+import org.dataingest.rfc.server.scheduling.SenderScheduler;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -30,7 +40,11 @@ import java.util.Map;
  *
  * When SAP sends IDOC_INBOUND_ASYNCHRONOUS RFC call:
  * 1. SAP JCo invokes getCallHandler() to get a handler instance
- * 2. SAP JCo invokes handleRequest() on the handler with RFC function data
+ * 2. SAP JCo invokes handleRequest() on the handler with RFC function data;
+ *    while Kafka is overloaded, IDocs without a protected priority lane raise
+ *    KAFKA_OVERLOADED (AdmissionController), then the call reserves in-flight memory for
+ *    its tables (MemoryBudget, else MEMORY_BUDGET_EXCEEDED) and takes a publishing slot
+ *    of its sender system (SenderScheduler), a rejected call raises SENDER_BUSY
  * 3. We extract IDOC_CONTROL_REC_40 and IDOC_DATA_REC_40 tables
  * 4. We parse the tables into IDOC documents
  * 5. We publish to Kafka
@@ -53,6 +67,28 @@ public class UnifiedIDOCReceiver implements JCoServerFunctionHandler, JCoServerF
     @Autowired
     private IDocKafkaPublisher idocPublisher;
 
+    @Autowired
+    private SenderScheduler senderScheduler;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private PriorityLanes priorityLanes;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Autowired
+    private PayloadCodecRegistry codecRegistry;
+
+    /**
+     * Segment output mode for IDocs received through the IDoc API:
+     * flat (indented text lines) or tree (nested JSON streamed at publish time).
+     */
+    @Value("${idoc.segment.output:flat}")
+    private String segmentOutput;
+
     /**
      * JCoServerFunctionHandlerFactory method - called when SAP JCo needs a handler.
      * Returns this instance as the handler for all function calls.
@@ -135,28 +171,36 @@ public class UnifiedIDOCReceiver implements JCoServerFunctionHandler, JCoServerF
             LOGGER.info("Thread: {}", Thread.currentThread().getName());
             LOGGER.info("Timestamp: {}", System.currentTimeMillis());
 
-            // Extract IDOC data from RFC function tables
-            LOGGER.info("→ Extracting IDOC data from RFC function tables...");
-            List<SAPIDOCDocument> idocs = extractIdocsFromFunction(function, senderSystem);
-            LOGGER.info("← IDOC extraction completed. Total IDOCs: {}", idocs.size());
-
-            if (idocs.isEmpty()) {
-                LOGGER.warn("⚠️  NO IDOC DATA FOUND in RFC function: {}", functionName);
-                return;
+            // Refused before any work, SAP reschedules the LUW instead of holding the connection
+            if (!admissionController.admit(priorityLanes.getLane(messageTypes(function)))) {
+                LOGGER.warn("RFC {} (TID {}) from {} refused, Kafka is overloaded", functionName, tid, senderSystem);
+                throw new AbapException("KAFKA_OVERLOADED", "Kafka is overloaded, retry later");
             }
 
-            // Publish each IDOC to Kafka
-            LOGGER.info("→ Publishing {} IDOC(s) to Kafka...", idocs.size());
-            for (SAPIDOCDocument idoc : idocs) {
+            // Extract and publish within the memory budget and a publishing slot of the sender system
+            List<SAPIDOCDocument> idocs;
+            try (MemoryBudget.Reservation reservation = memoryBudget.reserve(tableBytes(function));
+                 SenderScheduler.Permit permit = senderScheduler.acquire(senderSystem)) {
+                // Extract IDOC data from RFC function tables
+                LOGGER.info("→ Extracting IDOC data from RFC function tables...");
+                idocs = extractIdocsFromFunction(function, senderSystem);
+                LOGGER.info("← IDOC extraction completed. Total IDOCs: {}", idocs.size());
+
+                if (idocs.isEmpty()) {
+                    LOGGER.warn("⚠️  NO IDOC DATA FOUND in RFC function: {}", functionName);
+                    return;
+                }
+
+                // Publish the IDOCs to Kafka, one publish task per IDOC
+                LOGGER.info("→ Publishing {} IDOC(s) to Kafka...", idocs.size());
                 try {
-                    idocPublisher.publishSAPDocument(idoc);
-                    LOGGER.info("  ✓ Published IDOC: {}", idoc.getMessageType());
+                    idocPublisher.publishTransaction(idocs);
                 } catch (Exception e) {
-                    LOGGER.error("  ✗ Failed to publish IDOC: {}", e.getMessage(), e);
+                    LOGGER.error("  ✗ Failed to publish IDOCs: {}", e.getMessage(), e);
                     throw e;
                 }
+                LOGGER.info("← All IDOCs published to Kafka successfully");
             }
-            LOGGER.info("← All IDOCs published to Kafka successfully");
 
             // Send response back to SAP
             try {
@@ -173,6 +217,15 @@ public class UnifiedIDOCReceiver implements JCoServerFunctionHandler, JCoServerF
                 LOGGER.warn("  ✗ Could not set export parameters: {}", e.getMessage());
             }
 
+        } catch (AbapException e) {
+            throw e;
+        } catch (SenderRejectedException e) {
+            // Not an error of the IDocs: SAP retries the LUW once the sender has slots again
+            LOGGER.warn("RFC {} (TID {}) from {} rejected: {}", functionName, tid, senderSystem, e.getMessage());
+            throw new AbapException("SENDER_BUSY", e.getMessage());
+        } catch (MemoryBudgetExceededException e) {
+            LOGGER.warn("RFC {} (TID {}) from {} rejected: {}", functionName, tid, senderSystem, e.getMessage());
+            throw new AbapException("MEMORY_BUDGET_EXCEEDED", e.getMessage());
         } catch (Exception e) {
             LOGGER.error("╔══════════════════════════════════════════════════════════════╗");
             LOGGER.error("║            ERROR HANDLING RFC FUNCTION                      ║");
@@ -242,16 +295,13 @@ public class UnifiedIDOCReceiver implements JCoServerFunctionHandler, JCoServerF
                 return;
             }
 
-            // Publish each IDOC to Kafka
+            // Publish the IDOCs to Kafka, one publish task per IDOC
             LOGGER.info("→ Publishing {} IDOC(s) to Kafka...", idocs.size());
-            for (SAPIDOCDocument idoc : idocs) {
-                try {
-                    idocPublisher.publishSAPDocument(idoc);
-                    LOGGER.info("  ✓ Published IDOC: {}", idoc.getMessageType());
-                } catch (Exception e) {
-                    LOGGER.error("  ✗ Failed to publish IDOC: {}", e.getMessage(), e);
-                    throw e;
-                }
+            try {
+                idocPublisher.publishTransaction(idocs);
+            } catch (Exception e) {
+                LOGGER.error("  ✗ Failed to publish IDOCs: {}", e.getMessage(), e);
+                throw e;
             }
             LOGGER.info("← All IDOCs published to Kafka successfully");
 
@@ -267,12 +317,13 @@ public class UnifiedIDOCReceiver implements JCoServerFunctionHandler, JCoServerF
 
     /**
      * Extracts IDOC documents from IDocDocumentList (SAP IDoc API).
+     * Also used by the replay of archived IDocs (IDocReplayer).
      *
      * @param idocList the IDocDocumentList containing IDoc documents
      * @param senderSystem the SAP system ID
      * @return list of extracted IDOC documents
      */
-    private List<SAPIDOCDocument> extractIdocsFromDocumentList(IDocDocumentList idocList, String senderSystem) {
+    public List<SAPIDOCDocument> extractIdocsFromDocumentList(IDocDocumentList idocList, String senderSystem) {
         List<SAPIDOCDocument> idocs = new ArrayList<>();
 
         try {
@@ -295,10 +346,20 @@ public class UnifiedIDOCReceiver implements JCoServerFunctionHandler, JCoServerF
                     sapIdoc.setMessageType(messageType);
                     sapIdoc.setSenderSystem(senderSystem);
                     sapIdoc.setTimestamp(System.currentTimeMillis());
+                    sapIdoc.setSourceDocument(idoc);
+
+                    if ("tree".equalsIgnoreCase(segmentOutput)) {
+                        // Keep the segment tree, it is streamed as nested JSON when publishing
+                        IDocSegment rootSegment = idoc.getRootSegment();
+                        sapIdoc.setSegmentTree(rootSegment);
+                        idocs.add(sapIdoc);
+                        LOGGER.info("  ✓ IDoc extracted: {} segments (tree)", rootSegment.getNumDescendants());
+                        continue;
+                    }
 
                     // Extract all segment data as strings
                     List<String> segments = new ArrayList<>();
-                    extractSegmentDataToList(idoc.getRootSegment(), segments, 0);
+                    SegmentLines.extract(idoc.getRootSegment(), segments);
                     sapIdoc.setSegmentData(segments);  // Use setSegmentData()
 
                     idocs.add(sapIdoc);
@@ -317,47 +378,39 @@ public class UnifiedIDOCReceiver implements JCoServerFunctionHandler, JCoServerF
     }
 
     /**
-     * Recursively extracts data from IDoc segments into a List of strings.
-     *
-     * @param segment the IDoc segment to extract data from
-     * @param segments the list to store extracted segment data
-     * @param level the nesting level (for indentation)
+     * Returns the size of the table parameters of the call, rows times row length.
      */
-    private void extractSegmentDataToList(IDocSegment segment, List<String> segments, int level) {
-        if (segment == null) {
-            return;
+    private static long tableBytes(JCoFunction function) {
+        JCoParameterList tables = function.getTableParameterList();
+        if (tables == null) {
+            return 0;
         }
+        long bytes = 0;
+        for (int i = 0; i < tables.getFieldCount(); i++) {
+            JCoTable table = tables.getTable(i);
+            bytes += (long) table.getNumRows() * table.getRecordMetaData().getRecordLength();
+        }
+        return bytes;
+    }
 
-        try {
-            String segmentType = segment.getType();
-            String indent = "  ".repeat(level);
-
-            // Add segment header with full record data
-            segments.add(indent + "SEGMENT: " + segmentType);
-
-            // Extract the segment as string (contains all field data)
-            try {
-                String segmentData = segment.toString();
-                if (segmentData != null && !segmentData.trim().isEmpty()) {
-                    segments.add(indent + "  DATA: " + segmentData);
-                }
-            } catch (Exception e) {
-                LOGGER.debug("Could not convert segment to string: {}", e.getMessage());
-            }
-
-            // Process child segments recursively
-            for (int i = 0; i < segment.getNumChildren(); i++) {
-                try {
-                    IDocSegment childSegment = segment.getChild(i);
-                    extractSegmentDataToList(childSegment, segments, level + 1);
-                } catch (Exception e) {
-                    LOGGER.debug("Error processing child segment {}: {}", i, e.getMessage());
-                }
+    /**
+     * Returns the message types (MESTYP) of the control records of the call.
+     */
+    private static List<String> messageTypes(JCoFunction function) {
+        List<String> messageTypes = new ArrayList<>();
+        JCoParameterList tables = function.getTableParameterList();
+        if (tables == null || tables.getListMetaData().indexOf("IDOC_CONTROL_REC_40") < 0) {
+            return messageTypes;
+        }
+        JCoTable controlRecords = tables.getTable("IDOC_CONTROL_REC_40");
+        for (int i = 0; i < controlRecords.getNumRows(); i++) {
+            controlRecords.setRow(i);
+            String messageType = controlRecords.getString("MESTYP");
+            if (!messageTypes.contains(messageType)) {
+                messageTypes.add(messageType);
             }
-
-        } catch (Exception e) {
-            LOGGER.error("Error extracting segment data: {}", e.getMessage(), e);
         }
+        return messageTypes;
     }
 
     /**
@@ -390,34 +443,49 @@ public class UnifiedIDOCReceiver implements JCoServerFunctionHandler, JCoServerF
                     LOGGER.info("Found IDOC_CONTROL_REC_40 table with {} rows", controlRecordTable.getNumRows());
                     LOGGER.info("Found IDOC_DATA_REC_40 table with {} rows", dataRecordTable != null ? dataRecordTable.getNumRows() : 0);
 
-                    // Group data records by document number (control record grouping)
+                    // Group data records by document number (control record grouping). Only the
+                    // flat-file codec writes the EDI_DD40 rows field by field; otherwise DOCNUM and
+                    // SDATA are read and no rows are kept next to the segment lines.
                     Map<String, List<String>> documentDataMap = new HashMap<>();
+                    Map<String, List<Map<String, String>>> documentRecordMap = new HashMap<>();
                     if (dataRecordTable != null && dataRecordTable.getNumRows() > 0) {
-                        for (int i = 0; i < dataRecordTable.getNumRows(); i++) {
-                            dataRecordTable.setRow(i);
-                            String documentNumber = dataRecordTable.getString("DOCNUM");
-                            String appData = dataRecordTable.getString("SDATA");
-                            documentDataMap.computeIfAbsent(documentNumber, k -> new ArrayList<>()).add(appData);
+                        if (codecRegistry.isConfigured(FlatFilePayloadCodec.NAME)) {
+                            for (TableRowView dataRow : TableRowView.forTable(dataRecordTable)) {
+                                String documentNumber = dataRow.get("DOCNUM");
+                                // The segment line is the row's SDATA string, not a copy
+                                documentDataMap.computeIfAbsent(documentNumber, k -> new ArrayList<>()).add(dataRow.get("SDATA"));
+                                documentRecordMap.computeIfAbsent(documentNumber, k -> new ArrayList<>()).add(dataRow);
+                            }
+                        } else {
+                            int docnumField = dataRecordTable.getRecordMetaData().indexOf("DOCNUM");
+                            int sdataField = dataRecordTable.getRecordMetaData().indexOf("SDATA");
+                            for (int row = 0; row < dataRecordTable.getNumRows(); row++) {
+                                dataRecordTable.setRow(row);
+                                documentDataMap.computeIfAbsent(dataRecordTable.getString(docnumField), k -> new ArrayList<>())
+                                        .add(dataRecordTable.getString(sdataField));
+                            }
                         }
                     }
 
-                    // Create an IDOC document for each control record
-                    for (int i = 0; i < controlRecordTable.getNumRows(); i++) {
-                        controlRecordTable.setRow(i);
-                        String documentNumber = controlRecordTable.getString("DOCNUM");
-                        String messageType = controlRecordTable.getString("MESTYP");
+                    // Create an IDOC document for each control record, backed by a copy of its row
+                    TableRowView[] controlRecords = TableRowView.forTable(controlRecordTable);
+                    for (TableRowView controlRecordView : controlRecords) {
+                        String documentNumber = controlRecordView.get("DOCNUM");
+                        String messageType = controlRecordView.get("MESTYP");
 
                         SAPIDOCDocument idoc = new SAPIDOCDocument();
+                        idoc.setControlRecord(controlRecordView);
+                        idoc.setDataRecords(documentRecordMap.get(documentNumber));
                         idoc.setMessageType(messageType);
-                        idoc.setMessageTypeVersion(controlRecordTable.getString("MESCOD"));
+                        idoc.setMessageTypeVersion(controlRecordView.get("MESCOD"));
                         idoc.setSenderSystem(senderSystem);
 
                         // Add control record as segment
                         StringBuilder controlRecord = new StringBuilder();
                         controlRecord.append("EDI_DC40|");
-                        controlRecord.append(controlRecordTable.getString("TABNAM")).append("|");
-                        controlRecord.append(controlRecordTable.getString("DOCNUM")).append("|");
-                        controlRecord.append(controlRecordTable.getString("MESTYP")).append("|");
+                        controlRecord.append(controlRecordView.get("TABNAM")).append("|");
+                        controlRecord.append(documentNumber).append("|");
+                        controlRecord.append(messageType).append("|");
                         controlRecord.append(messageType);
                         idoc.addSegment(controlRecord.toString());
 
@@ -1,8 +1,12 @@
 package org.dataingest.rfc.server.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.sap.conn.idoc.IDocDocument;
+import com.sap.conn.idoc.IDocSegment;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a SAP IDOC document received from SAP system via RFC call.
@@ -17,13 +21,17 @@ public class SAPIDOCDocument implements Serializable {
     private String documentNumber;      // DOCNUM
     private String messageType;          // IDOCTYP (e.g., ORDERS, INVOIC)
     private String messageTypeVersion;   // IDOCVER (e.g., 01, 05)
-    private String senderParty;         // SNDPRT
+    private String senderParty;         // SNDPRN
     private String senderPort;          // SNDPOR
     private String senderSystem;        // SNDSYS
-    private String receiverParty;       // RCVPRT
+    private String receiverParty;       // RCVPRN
     private String receiverPort;        // RCVPOR
     private String receiverSystem;      // RCVSYS
     private List<String> segmentData;   // Raw segment data
+    private transient IDocSegment segmentTree; // Root segment (idoc.segment.output=tree)
+    private Map<String, String> controlRecord; // EDI_DC40 fields by name
+    private transient List<Map<String, String>> dataRecords; // EDI_DD40 rows (RFC tables)
+    private transient IDocDocument sourceDocument; // Received document (IDoc API)
     private String transactionID;       // tRFC/qRFC transaction ID
     private long timestamp;             // When received
 
@@ -34,7 +42,7 @@ public class SAPIDOCDocument implements Serializable {
 
     // Getters and Setters
     public String getDocumentNumber() {
-        return documentNumber;
+        return documentNumber != null ? documentNumber : controlField("DOCNUM");
     }
 
     public void setDocumentNumber(String documentNumber) {
@@ -58,7 +66,7 @@ public class SAPIDOCDocument implements Serializable {
     }
 
     public String getSenderParty() {
-        return senderParty;
+        return senderParty != null ? senderParty : controlField("SNDPRN");
     }
 
     public void setSenderParty(String senderParty) {
@@ -66,7 +74,7 @@ public class SAPIDOCDocument implements Serializable {
     }
 
     public String getSenderPort() {
-        return senderPort;
+        return senderPort != null ? senderPort : controlField("SNDPOR");
     }
 
     public void setSenderPort(String senderPort) {
@@ -82,7 +90,7 @@ public class SAPIDOCDocument implements Serializable {
     }
 
     public String getReceiverParty() {
-        return receiverParty;
+        return receiverParty != null ? receiverParty : controlField("RCVPRN");
     }
 
     public void setReceiverParty(String receiverParty) {
@@ -90,7 +98,7 @@ public class SAPIDOCDocument implements Serializable {
     }
 
     public String getReceiverPort() {
-        return receiverPort;
+        return receiverPort != null ? receiverPort : controlField("RCVPOR");
     }
 
     public void setReceiverPort(String receiverPort) {
@@ -117,6 +125,60 @@ public class SAPIDOCDocument implements Serializable {
         this.segmentData.add(segment);
     }
 
+    /**
+     * Root segment of the received IDoc when segments are published as a tree.
+     * Serialized as nested JSON (segment, fields, children); only valid while the
+     * IDocDocumentList it was taken from is still being processed.
+     */
+    public IDocSegment getSegmentTree() {
+        return segmentTree;
+    }
+
+    public void setSegmentTree(IDocSegment segmentTree) {
+        this.segmentTree = segmentTree;
+    }
+
+    /**
+     * Full EDI_DC40 control record (DOCNUM, SNDPRN, RCVPRN, CREDAT, SERIAL, ...).
+     * Attributes that were not set explicitly are read from this record.
+     */
+    public Map<String, String> getControlRecord() {
+        return controlRecord;
+    }
+
+    public void setControlRecord(Map<String, String> controlRecord) {
+        this.controlRecord = controlRecord;
+    }
+
+    /**
+     * EDI_DD40 data records as received in IDOC_DATA_REC_40 (flat-file output only).
+     */
+    @JsonIgnore
+    public List<Map<String, String>> getDataRecords() {
+        return dataRecords;
+    }
+
+    public void setDataRecords(List<Map<String, String>> dataRecords) {
+        this.dataRecords = dataRecords;
+    }
+
+    /**
+     * Document received through the IDoc API (flat-file output only). Only valid while
+     * the IDocDocumentList it was taken from is still being processed.
+     */
+    @JsonIgnore
+    public IDocDocument getSourceDocument() {
+        return sourceDocument;
+    }
+
+    public void setSourceDocument(IDocDocument sourceDocument) {
+        this.sourceDocument = sourceDocument;
+    }
+
+    private String controlField(String name) {
+        return controlRecord != null ? controlRecord.get(name) : null;
+    }
+
     public String getTransactionID() {
         return transactionID;
     }
@@ -148,7 +210,7 @@ public class SAPIDOCDocument implements Serializable {
     @Override
     public String toString() {
         return "SAPIDOCDocument{" +
-                "documentNumber='" + documentNumber + '\'' +
+                "documentNumber='" + getDocumentNumber() + '\'' +
                 ", messageType='" + messageType + '\'' +
                 ", messageTypeVersion='" + messageTypeVersion + '\'' +
                 ", senderSystem='" + senderSystem + '\'' +
@@ -0,0 +1,371 @@
+package org.dataingest.rfc.server.outbound;
+
+import com.sap.conn.idoc.IDocRepository;
+import com.sap.conn.jco.JCoException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.config.ApplicationConfiguration;
+import org.dataingest.rfc.server.sap.SAPDestinationManager;
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound sender consuming IDoc XML records from Kafka and sending them to SAP.
+ *
+ * Each poll is split by partition onto parallel sender lanes (OutboundLane), which pack
+ * the IDocs into IDocDocumentList packets and send them with JCoIDoc.send. Offsets are
+ * committed after all lanes finished, and only up to records whose transaction SAP
+ * confirmed. Partitions with a failed packet are rewound and retried after a back-off.
+ *
+ * Handles:
+ * - Packets of up to idoc.outbound.packet-size IDocs (a record's IDocs stay together)
+ * - One lane per SAP queue: with idoc.outbound.queue-prefix set, lane n sends qRFC into
+ *   queue {prefix}{n}; otherwise all lanes send tRFC
+ * - Partition order is kept, a partition always maps to the same lane
+ * - At-least-once delivery: a crash between confirmation and commit resends the packet
+ * - Connections are leased from SAPDestinationManager, at most one per lane
+ * - Rebalancing and shutdown: for revoked partitions the last offset known to be safe
+ *   is committed before they move, i.e. the end of the confirmed records or the first
+ *   record to retry; records of a batch still being sent, or of a batch that failed,
+ *   are never committed
+ * - Restart after a consumer failure with a new consumer, backing off exponentially
+ *   from idoc.outbound.retry-backoff-ms up to one minute; the status shows whether the
+ *   consumer is actually running
+ *
+ * Configuration:
+ * - idoc.outbound.enabled: start the sender (default: false)
+ * - idoc.outbound.topics: comma separated topics with IDoc XML records
+ * - idoc.outbound.group-id: consumer group (default: rfc-server-idoc-outbound)
+ * - idoc.outbound.destination: JCo client destination (default: SAP_CLIENT)
+ * - idoc.outbound.packet-size, idoc.outbound.senders, idoc.outbound.retry-backoff-ms
+ */
+@Component
+public class IDocOutboundSender {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IDocOutboundSender.class);
+
+    @Autowired
+    private SAPDestinationManager destinationManager;
+
+    @Value("${idoc.outbound.enabled:false}")
+    private boolean enabled;
+
+    @Value("${idoc.outbound.topics:SAP.IDOCS.OUTBOUND}")
+    private String topics;
+
+    @Value("${idoc.outbound.group-id:rfc-server-idoc-outbound}")
+    private String groupId;
+
+    @Value("${idoc.outbound.destination:SAP_CLIENT}")
+    private String destinationName;
+
+    @Value("${idoc.outbound.packet-size:100}")
+    private int packetSize;
+
+    @Value("${idoc.outbound.senders:4}")
+    private int senders;
+
+    @Value("${idoc.outbound.queue-prefix:}")
+    private String queuePrefix;
+
+    @Value("${idoc.outbound.retry-backoff-ms:5000}")
+    private long retryBackoffMs;
+
+    @Autowired
+    private Environment environment;
+
+    private static final long MAX_RESTART_BACKOFF_MS = 60_000;
+
+    private volatile Consumer<String, byte[]> consumer;
+    private ExecutorService laneExecutor;
+    private OutboundLane[] lanes;
+    private Thread poller;
+    private volatile boolean running;
+    private volatile boolean consuming;
+    private volatile String lastError;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    // Per partition the offset up to which everything is sent or skipped; poller thread only
+    private final Map<TopicPartition, Long> safeOffsets = new HashMap<>();
+
+    private IDocRepository repository;
+
+    private final AtomicLong sentDocuments = new AtomicLong();
+    private final AtomicLong sentPackets = new AtomicLong();
+    private final AtomicLong skippedRecords = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        lanes = new OutboundLane[senders];
+        for (int i = 0; i < senders; i++) {
+            lanes[i] = createLane(i, queuePrefix.isEmpty() ? null : queuePrefix + i);
+        }
+        laneExecutor = Executors.newFixedThreadPool(senders, r -> {
+            Thread thread = new Thread(r, "idoc-outbound-lane");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        running = true;
+        poller = new Thread(this::run, "idoc-outbound");
+        poller.start();
+        LOGGER.info("IDoc outbound sender started: topics {}, {} lanes, packets of {} IDocs, {}", topics,
+                senders, packetSize, queuePrefix.isEmpty() ? "tRFC" : "qRFC queues " + queuePrefix + "0..");
+    }
+
+    /**
+     * Creates a sender lane; package-private, like createConsumer, so tests can run the
+     * sender without SAP and Kafka.
+     */
+    OutboundLane createLane(int lane, String queueName) {
+        return new OutboundLane(lane, queueName, packetSize);
+    }
+
+    Consumer<String, byte[]> createConsumer() {
+        Properties props = ApplicationConfiguration.clientProperties(environment);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        // A full packet per lane if the polled partitions spread evenly over the lanes;
+        // lanes are chosen by partition, so a single busy partition fills only its own lane
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, packetSize * senders);
+        return new KafkaConsumer<>(props);
+    }
+
+    /**
+     * Runs the consumer, restarting it with a new consumer after every failure.
+     */
+    private void run() {
+        long backoffMs = Math.max(1, retryBackoffMs);
+        try {
+            while (running) {
+                try {
+                    consumer = createConsumer();
+                    safeOffsets.clear();
+                    if (!running) {
+                        // Shut down while the consumer was created, its wakeup was missed
+                        break;
+                    }
+                    consumer.subscribe(Arrays.asList(topics.split("\\s*,\\s*")), new CommitOnRevoke());
+                    consuming = true;
+                    while (running) {
+                        ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(500));
+                        if (!records.isEmpty()) {
+                            sendBatch(records);
+                        }
+                        // Polled (and sent) without failure: the next failure starts over
+                        backoffMs = Math.max(1, retryBackoffMs);
+                    }
+                } catch (WakeupException e) {
+                    // Shutdown
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    lastError = e.toString();
+                    restarts.incrementAndGet();
+                    LOGGER.error("IDoc outbound consumer failed, restarting in {} ms: {}",
+                            backoffMs, e.getMessage(), e);
+                } finally {
+                    consuming = false;
+                    if (consumer != null) {
+                        consumer.close();
+                        consumer = null;
+                    }
+                }
+                if (stopped.await(backoffMs, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_RESTART_BACKOFF_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            laneExecutor.shutdownNow();
+            LOGGER.info("IDoc outbound sender stopped");
+        }
+    }
+
+    /**
+     * Commits the safe offsets of revoked partitions, so their new owner continues there.
+     * The consumer's position is not used: during a batch, or after a batch failed with
+     * an exception, it is past records that were never confirmed by SAP.
+     */
+    private final class CommitOnRevoke implements ConsumerRebalanceListener {
+
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            for (TopicPartition partition : partitions) {
+                Long offset = safeOffsets.remove(partition);
+                if (offset != null) {
+                    offsets.put(partition, new OffsetAndMetadata(offset));
+                }
+            }
+            if (!offsets.isEmpty()) {
+                try {
+                    consumer.commitSync(offsets);
+                    LOGGER.info("Committed {} revoked partition(s) before rebalancing", offsets.size());
+                } catch (Exception e) {
+                    LOGGER.warn("Committing revoked partitions failed, their records may be resent: {}",
+                            e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void onPartitionsLost(Collection<TopicPartition> partitions) {
+            // Already owned by another consumer, nothing can be committed
+            partitions.forEach(safeOffsets::remove);
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            LOGGER.info("IDoc outbound consumer assigned {} partition(s)", partitions.size());
+        }
+    }
+
+    /**
+     * Sends one poll through the lanes and commits the confirmed offsets.
+     */
+    private void sendBatch(ConsumerRecords<String, byte[]> records) throws Exception {
+        // Everything before the first polled record was committed or confirmed by an earlier batch
+        for (TopicPartition partition : records.partitions()) {
+            safeOffsets.putIfAbsent(partition, records.records(partition).get(0).offset());
+        }
+        try {
+            initDestination();
+        } catch (JCoException e) {
+            LOGGER.error("Destination {} not available, retrying in {} ms: {}",
+                    destinationName, retryBackoffMs, e.getMessage());
+            for (TopicPartition partition : records.partitions()) {
+                consumer.seek(partition, records.records(partition).get(0).offset());
+            }
+            Thread.sleep(retryBackoffMs);
+            return;
+        }
+
+        List<List<ConsumerRecord<String, byte[]>>> laneRecords = new ArrayList<>(senders);
+        for (int i = 0; i < senders; i++) {
+            laneRecords.add(new ArrayList<>());
+        }
+        // In a fixed partition order, so a retried poll builds the same packets again
+        List<TopicPartition> partitions = new ArrayList<>(records.partitions());
+        partitions.sort(Comparator.comparing(TopicPartition::topic).thenComparingInt(TopicPartition::partition));
+        for (TopicPartition partition : partitions) {
+            int lane = Math.floorMod(partition.hashCode(), senders);
+            laneRecords.get(lane).addAll(records.records(partition));
+        }
+
+        List<Future<OutboundLane.Result>> results = new ArrayList<>(senders);
+        for (int i = 0; i < senders; i++) {
+            OutboundLane lane = lanes[i];
+            List<ConsumerRecord<String, byte[]>> batch = laneRecords.get(i);
+            Callable<OutboundLane.Result> task = () -> lane.send(batch, destinationManager, destinationName, repository);
+            results.add(batch.isEmpty() ? null : laneExecutor.submit(task));
+        }
+
+        Map<TopicPartition, OffsetAndMetadata> commits = new HashMap<>();
+        Map<TopicPartition, Long> retries = new HashMap<>();
+        for (Future<OutboundLane.Result> future : results) {
+            if (future == null) {
+                continue;
+            }
+            OutboundLane.Result result = future.get();
+            result.commitOffsets.forEach((partition, offset) -> commits.put(partition, new OffsetAndMetadata(offset)));
+            retries.putAll(result.retryOffsets);
+            sentDocuments.addAndGet(result.documents);
+            sentPackets.addAndGet(result.packets);
+            skippedRecords.addAndGet(result.skipped);
+        }
+
+        if (!commits.isEmpty()) {
+            consumer.commitSync(commits);
+            commits.forEach((partition, offset) -> safeOffsets.put(partition, offset.offset()));
+        }
+        if (!retries.isEmpty()) {
+            retries.forEach(consumer::seek);
+            safeOffsets.putAll(retries);
+            LOGGER.warn("Retrying {} partition(s) in {} ms", retries.size(), retryBackoffMs);
+            Thread.sleep(retryBackoffMs);
+        }
+    }
+
+    private void initDestination() throws JCoException {
+        if (repository == null) {
+            repository = destinationManager.getIDocRepository(destinationName);
+        }
+    }
+
+    /**
+     * Returns the sender counters for status endpoints.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("running", consuming);
+        status.put("restarts", restarts.get());
+        if (lastError != null) {
+            status.put("lastError", lastError);
+        }
+        status.put("sentDocuments", sentDocuments.get());
+        status.put("sentPackets", sentPackets.get());
+        status.put("skippedRecords", skippedRecords.get());
+        return status;
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        if (poller == null) {
+            return;
+        }
+        running = false;
+        stopped.countDown();
+        Consumer<String, byte[]> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+        try {
+            poller.join(30000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.dataingest.rfc.server.outbound;
+
+import com.sap.conn.idoc.IDocDocumentIterator;
+import com.sap.conn.idoc.IDocDocumentList;
+import com.sap.conn.idoc.IDocFactory;
+import com.sap.conn.idoc.IDocRepository;
+import com.sap.conn.idoc.IDocXMLProcessor;
+import com.sap.conn.idoc.jco.JCoIDoc;
+import com.sap.conn.jco.JCoDestination;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.dataingest.rfc.server.sap.SAPDestinationManager;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One sender lane of the outbound IDoc sender.
+ *
+ * Sends the records of one poll that belong to its partitions, in offset order, as
+ * IDoc packets. A record is never split across packets. Each packet goes out as one
+ * tRFC transaction (or, with a queue name, qRFC in the lane's SAP queue) and its
+ * records only count as sent after the TID is confirmed.
+ *
+ * The lane stops at the first failed packet: records after it are left for the next
+ * poll, so the order within a partition is kept. The TID of the failed packet is kept:
+ * when the next run builds a packet of exactly the same records, it is resent under
+ * the same TID, so SAP executes it only once even if the failure hit after SAP had
+ * committed it. The TID is confirmed only after a successful send; a failed
+ * confirmation does not fail the packet, as SAP already has it.
+ */
+class OutboundLane {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboundLane.class);
+
+    /**
+     * Outcome of one lane run: per partition the next offset to commit, and for
+     * partitions with unsent records the offset to resume from.
+     */
+    static final class Result {
+        final Map<TopicPartition, Long> commitOffsets = new HashMap<>();
+        final Map<TopicPartition, Long> retryOffsets = new HashMap<>();
+        int documents;
+        int packets;
+        int skipped;
+    }
+
+    private final int lane;
+    private final String queueName;
+    private final int packetSize;
+    private IDocXMLProcessor xmlProcessor;
+    private List<String> failedPacket;
+    private String failedPacketTid;
+
+    OutboundLane(int lane, String queueName, int packetSize) {
+        this.lane = lane;
+        this.queueName = queueName;
+        this.packetSize = packetSize;
+    }
+
+    Result send(List<ConsumerRecord<String, byte[]>> records, SAPDestinationManager destinations,
+                String destination, IDocRepository repository) {
+        Result result = new Result();
+        IDocDocumentList packet = createPacket(repository);
+        List<ConsumerRecord<String, byte[]>> packetRecords = new ArrayList<>();
+
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            IDocDocumentList documents;
+            try {
+                documents = parse(repository, record.value());
+            } catch (Exception e) {
+                // Unparsable records never succeed, retrying them would block the partition
+                LOGGER.error("Skipping unparsable IDoc record {}-{}@{}: {}",
+                        record.topic(), record.partition(), record.offset(), e.getMessage());
+                result.skipped++;
+                if (packetRecords.isEmpty()) {
+                    done(result, record);
+                } else {
+                    packetRecords.add(record);
+                }
+                continue;
+            }
+
+            if (!packetRecords.isEmpty() && packet.size() + documents.size() > packetSize) {
+                int first = i - packetRecords.size();
+                if (!sendPacket(packet, packetRecords, destinations, destination, result)) {
+                    retryFrom(result, records, first);
+                    return result;
+                }
+                packet = createPacket(repository);
+            }
+            IDocDocumentIterator iterator = documents.iterator();
+            while (iterator.hasNext()) {
+                packet.add(iterator.next());
+            }
+            packetRecords.add(record);
+
+            if (packet.size() >= packetSize) {
+                int first = i + 1 - packetRecords.size();
+                if (!sendPacket(packet, packetRecords, destinations, destination, result)) {
+                    retryFrom(result, records, first);
+                    return result;
+                }
+                packet = createPacket(repository);
+            }
+        }
+        int first = records.size() - packetRecords.size();
+        if (!packetRecords.isEmpty() && !sendPacket(packet, packetRecords, destinations, destination, result)) {
+            retryFrom(result, records, first);
+        }
+        return result;
+    }
+
+    /**
+     * Sends one packet as a single transaction and marks its records as done once confirmed.
+     */
+    private boolean sendPacket(IDocDocumentList packet, List<ConsumerRecord<String, byte[]>> packetRecords,
+                               SAPDestinationManager destinations, String destination, Result result) {
+        if (packet.isEmpty()) {
+            // Only unparsable records
+            packetRecords.forEach(record -> done(result, record));
+            packetRecords.clear();
+            return true;
+        }
+        List<String> key = packetKey(packetRecords);
+        String tid = key.equals(failedPacket) ? failedPacketTid : null;
+        try {
+            if (tid == null) {
+                tid = destinations.execute(destination, jcoDestination -> jcoDestination.createTID());
+            }
+            String packetTid = tid;
+            destinations.execute(destination, jcoDestination -> {
+                send(packet, jcoDestination, packetTid);
+                return null;
+            });
+        } catch (Exception e) {
+            LOGGER.error("Lane {}: sending packet of {} IDocs failed{}: {}", lane, packet.size(),
+                    tid != null ? " (TID " + tid + " kept for the retry)" : "", e.getMessage(), e);
+            failedPacket = tid != null ? key : null;
+            failedPacketTid = tid;
+            packetRecords.clear();
+            return false;
+        }
+        failedPacket = null;
+        failedPacketTid = null;
+
+        String confirmedTid = tid;
+        try {
+            destinations.execute(destination, jcoDestination -> {
+                jcoDestination.confirmTID(confirmedTid);
+                return null;
+            });
+        } catch (Exception e) {
+            // SAP has the packet; an unconfirmed TID is only cleaned up later on the SAP side
+            LOGGER.warn("Lane {}: confirming TID {} failed: {}", lane, tid, e.getMessage());
+        }
+
+        LOGGER.debug("Lane {}: sent {} IDocs from {} records (TID {}{})", lane, packet.size(),
+                packetRecords.size(), tid, queueName != null ? ", queue " + queueName : "");
+        result.documents += packet.size();
+        result.packets++;
+        packetRecords.forEach(record -> done(result, record));
+        packetRecords.clear();
+        return true;
+    }
+
+    /**
+     * Parses the IDoc XML of a record. This and the two methods below are the lane's
+     * only IDoc API calls; package-private so tests can run the lane without SAP.
+     */
+    IDocDocumentList parse(IDocRepository repository, byte[] xml) throws Exception {
+        if (xmlProcessor == null) {
+            xmlProcessor = JCoIDoc.getIDocFactory().getIDocXMLProcessor();
+        }
+        return xmlProcessor.parse(repository, new ByteArrayInputStream(xml), 0);
+    }
+
+    IDocDocumentList createPacket(IDocRepository repository) {
+        return JCoIDoc.getIDocFactory().createIDocDocumentList(repository);
+    }
+
+    void send(IDocDocumentList packet, JCoDestination destination, String tid) throws Exception {
+        if (queueName != null) {
+            JCoIDoc.send(packet, IDocFactory.IDOC_VERSION_QUEUED, destination, tid, queueName);
+        } else {
+            JCoIDoc.send(packet, IDocFactory.IDOC_VERSION_DEFAULT, destination, tid);
+        }
+    }
+
+    /**
+     * Identifies a packet by its records: the same records always make the same packet.
+     */
+    private static List<String> packetKey(List<ConsumerRecord<String, byte[]>> packetRecords) {
+        List<String> key = new ArrayList<>(packetRecords.size());
+        for (ConsumerRecord<String, byte[]> record : packetRecords) {
+            key.add(record.topic() + "-" + record.partition() + "@" + record.offset());
+        }
+        return key;
+    }
+
+    private static void done(Result result, ConsumerRecord<String, byte[]> record) {
+        result.commitOffsets.put(new TopicPartition(record.topic(), record.partition()), record.offset() + 1);
+    }
+
+    /**
+     * Records, per partition, the first offset that was not sent.
+     */
+    private static void retryFrom(Result result, List<ConsumerRecord<String, byte[]>> records, int first) {
+        for (int i = first; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            result.retryOffsets.putIfAbsent(new TopicPartition(record.topic(), record.partition()), record.offset());
+        }
+    }
+}
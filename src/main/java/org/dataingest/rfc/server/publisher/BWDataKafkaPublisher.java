@@ -1,6 +1,5 @@
 package org.dataingest.rfc.server.publisher;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
@@ -8,9 +7,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.codec.IPayloadCodec;
+import org.dataingest.rfc.server.codec.PayloadCodecRegistry;
 import org.dataingest.rfc.server.exception.KafkaPublishException;
 import org.dataingest.rfc.server.model.SAPBWDataRequest;
 import org.dataingest.rfc.server.util.BWDataTopicNameUtil;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Publisher for SAP BW (Business Warehouse) Data Source requests to Kafka topics.
@@ -19,7 +21,7 @@ import org.dataingest.rfc.server.util.BWDataTopicNameUtil;
  * with synchronous publishing to guarantee delivery.
  *
  * Handles:
- * - JSON serialization of BW data requests
+ * - Serialization (JSON or schema-driven binary) of BW data requests
  * - Topic name generation based on data source name
  * - Synchronous publishing with configurable timeout
  * - Error handling with exception propagation
@@ -30,10 +32,10 @@ public class BWDataKafkaPublisher {
     private static final Logger LOGGER = LoggerFactory.getLogger(BWDataKafkaPublisher.class);
 
     @Autowired
-    protected Producer<String, String> kafkaProducer;
+    protected Producer<String, byte[]> kafkaProducer;
 
     @Autowired
-    protected ObjectMapper objectMapper;
+    protected PayloadCodecRegistry codecRegistry;
 
     @Autowired
     protected BWDataTopicNameUtil topicNameUtil;
@@ -44,8 +46,8 @@ public class BWDataKafkaPublisher {
     /**
      * Publishes a BW data request to Kafka.
      *
-     * The request is serialized to JSON and published to a topic based on the data source name.
-     * Publishing is synchronous to guarantee delivery before returning to SAP.
+     * The request is serialized with the payload codec configured for its topic and published to a topic
+     * based on the data source name. Publishing is synchronous to guarantee delivery before returning to SAP.
      *
      * Topic Pattern: SAP.DATASOURCES.{DATA_SOURCE_NAME}
      * Example: SAP.DATASOURCES.0MATERIAL_ATTR
@@ -63,15 +65,18 @@ public class BWDataKafkaPublisher {
             // Determine topic name based on data source name using configurable prefix
             String topicName = topicNameUtil.getTopicName(request.getDataSourceName());
 
-            // Serialize BW data request to JSON
-            String requestJson = objectMapper.writeValueAsString(request);
+            // Serialize BW data request with the payload codec configured for the topic
+            IPayloadCodec codec = codecRegistry.getCodecForTopic(topicName);
+            byte[] requestBytes = codec.encode(request);
 
             // Create Kafka producer record
-            ProducerRecord<String, String> record = new ProducerRecord<>(
+            ProducerRecord<String, byte[]> record = new ProducerRecord<>(
                 topicName,
                 request.getRequestId(),  // Use request ID as key for ordering
-                requestJson
+                requestBytes
             );
+            record.headers().add(PayloadCodecRegistry.CONTENT_TYPE_HEADER,
+                codec.getContentType().getBytes(StandardCharsets.UTF_8));
 
             // Send synchronously with timeout to ensure delivery
             try {
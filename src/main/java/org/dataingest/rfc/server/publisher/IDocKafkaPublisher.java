@@ -1,16 +1,28 @@
 package org.dataingest.rfc.server.publisher;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.kafka.clients.producer.Producer;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.codec.IPayloadCodec;
+import org.dataingest.rfc.server.codec.PayloadCodecRegistry;
 import org.dataingest.rfc.server.exception.KafkaPublishException;
 import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import org.dataingest.rfc.server.scheduling.PriorityLanes;
+import org.dataingest.rfc.server.scheduling.PublishExecutor;
+import org.dataingest.rfc.server.scheduling.PublishRingBuffer;
 import org.dataingest.rfc.server.util.IDocTopicNameUtil;
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Publisher for SAP IDOC data to Kafka topics.
@@ -19,10 +31,23 @@ import org.dataingest.rfc.server.util.IDocTopicNameUtil;
  * with synchronous publishing to guarantee delivery before SAP transaction commit.
  *
  * Handles:
- * - JSON serialization of IDOC documents
+ * - Serialization (JSON, schema-driven binary or SAP flat file) of IDOC documents
  * - Topic name generation based on IDOC type and version
  * - Synchronous publishing with configurable timeout
+ * - Priority lanes: latency-critical message types are sent by their lane's threads and producer
+ * - Transactions: one publish task per IDOC, run by the PublishExecutor (calling, platform or virtual threads),
+ *   or handed through the PublishRingBuffer to batching publisher threads. Ring and priority lanes
+ *   exclude each other per transaction: a transaction with a lane is published by its lane's
+ *   threads, only transactions without lane go through the ring
  * - Error handling with transaction rollback support
+ *
+ * Configuration:
+ * - publish.ring.enabled: hand transactions through the ring buffer (default: false)
+ * - publish.ring.size: ring slots, a power of two (default: 4096)
+ * - publish.ring.consumers: publisher threads taking IDocs from the ring (default: 2)
+ * - publish.ring.batch-size: IDocs a publisher thread takes at once (default: 256)
+ * - publish.ring.wait-strategy: blocking, sleeping, yielding or busy-spin (default: blocking)
+ * - publish.ring.timeout-ms: wait for the acknowledgements of a transaction (default: 120000)
  */
 @Component
 public class IDocKafkaPublisher {
@@ -30,22 +55,56 @@ public class IDocKafkaPublisher {
     private static final Logger LOGGER = LoggerFactory.getLogger(IDocKafkaPublisher.class);
 
     @Autowired
-    protected Producer<String, String> kafkaProducer;
+    protected PayloadCodecRegistry codecRegistry;
 
     @Autowired
-    protected ObjectMapper objectMapper;
+    protected IDocTopicNameUtil topicNameUtil;
 
     @Autowired
-    protected IDocTopicNameUtil topicNameUtil;
+    protected PriorityLanes priorityLanes;
+
+    @Autowired
+    protected PublishExecutor publishExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     @Value("${kafka.request.timeout.ms:30000}")
     private int kafkaTimeoutMs;
 
+    @Value("${publish.ring.enabled:false}")
+    private boolean ringEnabled;
+
+    @Value("${publish.ring.size:4096}")
+    private int ringSize;
+
+    @Value("${publish.ring.consumers:2}")
+    private int ringConsumers;
+
+    @Value("${publish.ring.batch-size:256}")
+    private int ringBatchSize;
+
+    @Value("${publish.ring.wait-strategy:blocking}")
+    private String ringWaitStrategy;
+
+    @Value("${publish.ring.timeout-ms:120000}")
+    private long ringTimeoutMs;
+
+    private PublishRingBuffer ringBuffer;
+
+    @PostConstruct
+    public void init() {
+        if (ringEnabled) {
+            ringBuffer = new PublishRingBuffer(ringSize, ringConsumers, ringBatchSize, ringWaitStrategy,
+                this::sendAsync, meterRegistry);
+        }
+    }
+
     /**
      * Publishes a single IDOC document to Kafka.
      *
-     * The document is serialized to JSON and published to a topic based on the
-     * IDOC type and version. Publishing is synchronous to guarantee delivery
+     * The document is serialized with the payload codec configured for its topic and published to a topic
+     * based on the IDOC type and version. Publishing is synchronous to guarantee delivery
      * before the SAP transaction is committed.
      *
      * Topic Pattern: SAP.IDOCS.{TYPE}_{VERSION}
@@ -64,20 +123,17 @@ public class IDocKafkaPublisher {
             // Determine topic name based on IDOC type and version using configurable prefix
             String topicName = topicNameUtil.getTopicName(document);
 
-            // Serialize IDOC document to JSON
-            String documentJson = objectMapper.writeValueAsString(document);
+            // Serialize IDOC document with the payload codec configured for the topic
+            IPayloadCodec codec = codecRegistry.getCodecForTopic(topicName);
+            byte[] documentBytes = codec.encode(document);
 
-            // Create Kafka producer record
-            // Use document number as key to ensure ordering for same IDOC
-            ProducerRecord<String, String> record = new ProducerRecord<>(
-                topicName,
-                document.getDocumentNumber(),  // Message key
-                documentJson                   // Message value
-            );
+            ProducerRecord<String, byte[]> record = toRecord(document, topicName, codec, documentBytes);
 
-            // Send synchronously with timeout to ensure delivery before commit
+            // Send synchronously with timeout to ensure delivery before commit,
+            // latency-critical message types with the producer of their priority lane
             try {
-                kafkaProducer.send(record).get();
+                priorityLanes.execute(priorityLanes.getLane(document.getMessageType()),
+                    () -> priorityLanes.getProducer().send(record).get());
                 LOGGER.info("Published IDOC {} to topic {}",
                     document.getDocumentNumber(), topicName);
             } catch (Exception e) {
@@ -95,6 +151,96 @@ public class IDocKafkaPublisher {
         }
     }
 
+    /**
+     * Publishes the IDOC documents of one transaction and waits until all are acknowledged.
+     *
+     * Each document is a separate publish task of the PublishExecutor, so their waits for
+     * the Kafka acknowledgement overlap. The transaction fails if any document fails; the
+     * failure is thrown once all tasks finished and SAP then retries the whole transaction.
+     * With the ring buffer enabled, transactions without priority lane go through the ring.
+     *
+     * @param documents the documents of the transaction
+     * @throws KafkaPublishException if any document fails to publish
+     */
+    public void publishTransaction(List<SAPIDOCDocument> documents) throws KafkaPublishException {
+        // The documents are published by other threads, their rows must not read the JCo tables anymore
+        if (ringBuffer != null && !hasLane(documents)) {
+            try {
+                ringBuffer.publish(documents).await(ringTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KafkaPublishException("Interrupted while publishing transaction", e);
+            } catch (KafkaPublishException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new KafkaPublishException("Failed to publish transaction of " + documents.size()
+                    + " IDOC(s): " + e.getMessage(), e);
+            }
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(documents.size());
+        for (SAPIDOCDocument document : documents) {
+            tasks.add(() -> {
+                publishSAPDocument(document);
+                return null;
+            });
+        }
+        try {
+            publishExecutor.invokeAll(tasks);
+        } catch (KafkaPublishException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new KafkaPublishException("Failed to publish transaction of " + documents.size()
+                + " IDOC(s): " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns true if a document of the transaction has a priority lane.
+     */
+    private boolean hasLane(List<SAPIDOCDocument> documents) {
+        for (SAPIDOCDocument document : documents) {
+            if (priorityLanes.getLane(document.getMessageType()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Publishing stage of the ring buffer: sends one IDOC without waiting, the
+     * acknowledgement completes it in its transaction.
+     */
+    private void sendAsync(SAPIDOCDocument document, PublishRingBuffer.Completion completion) throws Exception {
+        String topicName = topicNameUtil.getTopicName(document);
+        IPayloadCodec codec = codecRegistry.getCodecForTopic(topicName);
+        ProducerRecord<String, byte[]> record = toRecord(document, topicName, codec, codec.encode(document));
+        // Transactions with a priority lane never reach the ring: always the default producer
+        priorityLanes.getProducer().send(record, (metadata, e) -> {
+            if (e != null) {
+                LOGGER.error("Failed to publish IDOC {} to topic {}: {}",
+                    document.getDocumentNumber(), topicName, e.getMessage(), e);
+            }
+            completion.complete(e);
+        });
+    }
+
+    /**
+     * Creates the Kafka record of a serialized IDOC.
+     */
+    private static ProducerRecord<String, byte[]> toRecord(SAPIDOCDocument document, String topicName,
+            IPayloadCodec codec, byte[] documentBytes) {
+        // Use document number as key to ensure ordering for same IDOC
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(
+            topicName,
+            document.getDocumentNumber(),  // Message key
+            documentBytes                  // Message value
+        );
+        record.headers().add(PayloadCodecRegistry.CONTENT_TYPE_HEADER,
+            codec.getContentType().getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
     /**
      * Publishes multiple IDOC documents in batch.
      *
@@ -131,4 +277,11 @@ public class IDocKafkaPublisher {
                 lastException);
         }
     }
+
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        if (ringBuffer != null) {
+            ringBuffer.shutdown();
+        }
+    }
 }
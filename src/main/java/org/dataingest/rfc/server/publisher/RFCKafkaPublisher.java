@@ -0,0 +1,204 @@
+package org.dataingest.rfc.server.publisher;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.conn.jco.JCoFunction;
+import com.sap.conn.jco.JCoTable;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.codec.PayloadBuffer;
+import org.dataingest.rfc.server.codec.PayloadCodecRegistry;
+import org.dataingest.rfc.server.exception.KafkaPublishException;
+import org.dataingest.rfc.server.rfc.FunctionRoute;
+import org.dataingest.rfc.server.rfc.RecordLayout;
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publisher for generic RFC function calls to Kafka topics.
+ *
+ * Serializes the import, changing and table parameters of any bridged function module
+ * straight from the JCo records into JSON, following the layout cached for the function.
+ *
+ * Handles:
+ * - One record per call, or one record per row of a configured table parameter
+ * - Rows are sent without waiting for each other and acknowledged together before
+ *   returning to SAP, so large tables stream at producer batching speed
+ * - Function name and TID travel as record headers (rfc-function, rfc-tid)
+ * - Request/reply calls carry the correlation ID and reply topic as headers
+ *   (rfc-correlation-id, rfc-reply-to) and are sent without waiting, the reply confirms them
+ * - Error handling with exception propagation, so SAP retries the transaction
+ */
+@Component
+public class RFCKafkaPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RFCKafkaPublisher.class);
+
+    public static final String FUNCTION_HEADER = "rfc-function";
+    public static final String TID_HEADER = "rfc-tid";
+    public static final String CORRELATION_HEADER = "rfc-correlation-id";
+    public static final String REPLY_TO_HEADER = "rfc-reply-to";
+
+    private static final byte[] CONTENT_TYPE = "application/json".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    protected Producer<String, byte[]> kafkaProducer;
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @Value("${kafka.request.timeout.ms:30000}")
+    private int kafkaTimeoutMs;
+
+    private JsonFactory jsonFactory;
+
+    private final ThreadLocal<PayloadBuffer> buffers = PayloadBuffer.threadLocal(64 * 1024);
+
+    @PostConstruct
+    public void init() {
+        jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Publishes an RFC function call to Kafka along its route.
+     *
+     * Publishing is synchronous: the method returns once every record of the call has
+     * been acknowledged, so SAP only sees success for delivered data.
+     *
+     * Topic Pattern: SAP.RFC.{FUNCTION_NAME}
+     * Example: SAP.RFC.Z_SALES_ORDER_CREATE
+     *
+     * @param route the cached route of the function
+     * @param function the called function with the parameters sent by SAP
+     * @param tid the transaction ID for tRFC/qRFC calls, null for synchronous calls
+     * @return the number of records published
+     * @throws KafkaPublishException if serializing or publishing fails
+     */
+    public int publishFunctionCall(FunctionRoute route, JCoFunction function, String tid)
+            throws KafkaPublishException {
+        String functionName = route.getLayout().getName();
+        try {
+            List<Future<RecordMetadata>> sends = route.isSplit()
+                    ? sendRows(route, function, tid)
+                    : sendCall(route, function, tid);
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(kafkaTimeoutMs);
+            for (Future<RecordMetadata> send : sends) {
+                send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            LOGGER.debug("Published {} record(s) of RFC {} (TID {}) to topic {}",
+                    sends.size(), functionName, tid, route.getTopic());
+            return sends.size();
+
+        } catch (Exception e) {
+            String errorMsg = String.format("Failed to publish RFC %s (TID %s) to topic %s: %s",
+                    functionName, tid, route.getTopic(), e.getMessage());
+            LOGGER.error(errorMsg, e);
+            throw new KafkaPublishException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Publishes the request of a request/reply RFC call without waiting for the acknowledgement.
+     *
+     * A failed send completes the reply future exceptionally with a KafkaPublishException,
+     * so the waiting call fails right away instead of running into its reply timeout.
+     *
+     * @param route the cached route of the function
+     * @param function the called function with the parameters sent by SAP
+     * @param correlationId the correlation ID the reply must carry
+     * @param replyTopic the topic the reply is expected on
+     * @param reply the future completed by the reply
+     * @throws KafkaPublishException if serializing the request fails
+     */
+    public void publishRequest(FunctionRoute route, JCoFunction function, String correlationId,
+                               String replyTopic, CompletableFuture<byte[]> reply) throws KafkaPublishException {
+        String functionName = route.getLayout().getName();
+        try {
+            PayloadBuffer buffer = buffers.get();
+            buffer.reset();
+            try (JsonGenerator gen = jsonFactory.createGenerator(buffer)) {
+                route.getLayout().writeCall(function, null, gen);
+            }
+            String key = route.getKeyField() != null
+                    ? route.getLayout().getImportValue(function, route.getKeyField())
+                    : correlationId;
+            ProducerRecord<String, byte[]> record = record(route, key, buffer.toByteArray(), null);
+            record.headers().add(CORRELATION_HEADER, correlationId.getBytes(StandardCharsets.UTF_8));
+            record.headers().add(REPLY_TO_HEADER, replyTopic.getBytes(StandardCharsets.UTF_8));
+
+            kafkaProducer.send(record, (metadata, e) -> {
+                if (e != null) {
+                    reply.completeExceptionally(new KafkaPublishException(String.format(
+                            "Failed to publish RFC %s request %s to topic %s: %s",
+                            functionName, correlationId, route.getTopic(), e.getMessage()), e));
+                }
+            });
+        } catch (Exception e) {
+            String errorMsg = String.format("Failed to publish RFC %s request %s to topic %s: %s",
+                    functionName, correlationId, route.getTopic(), e.getMessage());
+            LOGGER.error(errorMsg, e);
+            throw new KafkaPublishException(errorMsg, e);
+        }
+    }
+
+    private List<Future<RecordMetadata>> sendCall(FunctionRoute route, JCoFunction function, String tid)
+            throws IOException {
+        PayloadBuffer buffer = buffers.get();
+        buffer.reset();
+        try (JsonGenerator gen = jsonFactory.createGenerator(buffer)) {
+            route.getLayout().writeCall(function, tid, gen);
+        }
+
+        String key = route.getKeyField() != null
+                ? route.getLayout().getImportValue(function, route.getKeyField())
+                : tid;
+        List<Future<RecordMetadata>> sends = new ArrayList<>(1);
+        sends.add(kafkaProducer.send(record(route, key, buffer.toByteArray(), tid)));
+        return sends;
+    }
+
+    private List<Future<RecordMetadata>> sendRows(FunctionRoute route, JCoFunction function, String tid)
+            throws IOException {
+        JCoTable table = route.getLayout().getTable(function, route.getSplitTable());
+        int rows = table != null ? table.getNumRows() : 0;
+        RecordLayout rowLayout = route.getRowLayout();
+        int keyIndex = route.getKeyField() != null ? rowLayout.indexOf(route.getKeyField()) : -1;
+        PayloadBuffer buffer = buffers.get();
+
+        List<Future<RecordMetadata>> sends = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            table.setRow(row);
+            buffer.reset();
+            try (JsonGenerator gen = jsonFactory.createGenerator(buffer)) {
+                rowLayout.writeObject(table, gen);
+            }
+            String key = keyIndex >= 0 ? table.getString(keyIndex) : tid;
+            sends.add(kafkaProducer.send(record(route, key, buffer.toByteArray(), tid)));
+        }
+        return sends;
+    }
+
+    private ProducerRecord<String, byte[]> record(FunctionRoute route, String key, byte[] value, String tid) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(route.getTopic(), key, value);
+        record.headers().add(PayloadCodecRegistry.CONTENT_TYPE_HEADER, CONTENT_TYPE);
+        record.headers().add(FUNCTION_HEADER, route.getLayout().getName().getBytes(StandardCharsets.UTF_8));
+        if (tid != null) {
+            record.headers().add(TID_HEADER, tid.getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+}
@@ -0,0 +1,32 @@
+package org.dataingest.rfc.server.replay;
+
+import org.dataingest.rfc.server.archive.ArchiveSegments;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Replay source reading a segmented IDoc archive (SegmentedArchive).
+ *
+ * Segments are read oldest first, each through a single read-only memory mapping
+ * (ArchiveSegments.scanMapped). The open segment is read up to its last complete record.
+ */
+public class ArchiveReplaySource implements IReplaySource {
+
+    private final Path dir;
+
+    public ArchiveReplaySource(Path dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public String getName() {
+        return "archive " + dir;
+    }
+
+    @Override
+    public void read(ArchiveSegments.RecordVisitor visitor) throws IOException {
+        for (Path segment : ArchiveSegments.list(dir)) {
+            ArchiveSegments.scanMapped(segment, visitor);
+        }
+    }
+}
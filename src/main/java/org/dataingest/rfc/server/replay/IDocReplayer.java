@@ -0,0 +1,345 @@
+package org.dataingest.rfc.server.replay;
+
+import com.sap.conn.idoc.IDocDocumentList;
+import com.sap.conn.idoc.IDocRepository;
+import com.sap.conn.idoc.IDocXMLProcessor;
+import com.sap.conn.idoc.jco.JCoIDoc;
+import com.sap.conn.jco.JCoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.archive.ArchiveRecord;
+import org.dataingest.rfc.server.archive.ArchiveSegments;
+import org.dataingest.rfc.server.exception.KafkaPublishException;
+import org.dataingest.rfc.server.idoc.UnifiedIDOCReceiver;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import org.dataingest.rfc.server.publisher.IDocKafkaPublisher;
+import org.dataingest.rfc.server.sap.SAPDestinationManager;
+import org.dataingest.rfc.server.util.IDocTopicNameUtil;
+import org.dataingest.rfc.server.xml.IDocXmlReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays archived IDocs into the Kafka publishing pipeline, e.g. to rebuild topics
+ * after a consumer bug without re-sending from SAP.
+ *
+ * Pipeline:
+ * 1. Reader: reads archived transactions in arrival order (memory-mapped)
+ * 2. Parsers: parse the IDoc XML and extract SAPIDOCDocuments in parallel, either
+ *    with the SAP IDoc XML processor and the same extraction as live IDocs
+ *    (UnifiedIDOCReceiver) or with the streaming IDocXmlReader (no SAP connection)
+ * 3. Dispatcher: takes the parse results in arrival order, applies the topic filter
+ *    and the rate limit, and routes every document to a lane by its key (DOCNUM)
+ * 4. Lanes: each lane serializes and publishes its documents in order
+ *    (IDocKafkaPublisher), so ordering is preserved per key while lanes run in parallel
+ *
+ * All hand-offs are bounded queues, so a slow Kafka cluster throttles reading instead
+ * of filling the heap. Unparseable transactions are counted and skipped; a publish
+ * failure fails the replay, since later documents of the same key must not overtake it.
+ *
+ * Configuration:
+ * - replay.parser: sap (IDoc API, needs the repository destination) or stax (runs without
+ *   SAP; uses the repository destination for the segment lines if reachable) (default: sap)
+ * - replay.parse-threads: parser threads (default: 0 = number of processors)
+ * - replay.publish-lanes: parallel ordered publishing lanes (default: 8)
+ * - replay.queue-size: capacity of each hand-off queue (default: 1024)
+ * - replay.sender-system: sender system of replayed documents (default: REPLAY)
+ */
+@Component
+public class IDocReplayer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IDocReplayer.class);
+
+    /** Marks the end of the parse results and lane queues */
+    private static final SAPIDOCDocument END = new SAPIDOCDocument();
+    private static final Future<List<SAPIDOCDocument>> END_OF_SOURCE =
+            CompletableFuture.completedFuture(Collections.singletonList(END));
+
+    private static final long POLL_MS = 100;
+
+    private static final String PARSER_STAX = "stax";
+
+    @Autowired
+    private UnifiedIDOCReceiver idocReceiver;
+
+    @Autowired
+    private IDocKafkaPublisher idocPublisher;
+
+    @Autowired
+    private IDocTopicNameUtil topicNameUtil;
+
+    @Autowired
+    private SAPDestinationManager destinationManager;
+
+    @Value("${replay.parse-threads:0}")
+    private int parseThreads;
+
+    @Value("${replay.publish-lanes:8}")
+    private int publishLanes;
+
+    @Value("${replay.queue-size:1024}")
+    private int queueSize;
+
+    @Value("${replay.parser:sap}")
+    private String parser;
+
+    @Value("${replay.sender-system:REPLAY}")
+    private String senderSystem;
+
+    @Value("${jco.server.repository_destination:SAP_CLIENT}")
+    private String repositoryDestination;
+
+    private final ThreadLocal<IDocXMLProcessor> xmlProcessors =
+            ThreadLocal.withInitial(() -> JCoIDoc.getIDocFactory().getIDocXMLProcessor());
+
+    private volatile ReplayJob currentJob;
+
+    /**
+     * Starts a replay in the background.
+     *
+     * @param source an archive directory (segmented archive) or a directory of IDoc XML files
+     * @param rate maximum documents per second (0 = as fast as possible)
+     * @param topic only replay documents of this topic (null or empty = all)
+     * @param from arrival time window start (epoch millis, inclusive)
+     * @param to arrival time window end (epoch millis, exclusive)
+     * @return the started job
+     * @throws IOException if the source directory cannot be read
+     * @throws IllegalStateException if a replay is already running
+     */
+    public synchronized ReplayJob start(Path source, double rate, String topic, long from, long to) throws IOException {
+        if (currentJob != null && currentJob.isRunning()) {
+            throw new IllegalStateException("A replay is already running");
+        }
+        IReplaySource replaySource = ArchiveSegments.list(source).isEmpty()
+                ? new XmlFileReplaySource(source)
+                : new ArchiveReplaySource(source);
+
+        ReplayJob job = new ReplayJob(replaySource.getName(), rate, topic, from, to);
+        currentJob = job;
+        new Thread(() -> run(job, replaySource), "idoc-replay").start();
+        LOGGER.info("Replay started: {}", job.toMap());
+        return job;
+    }
+
+    /**
+     * Returns the running or last finished replay, or null if none was started.
+     */
+    public ReplayJob getCurrentJob() {
+        return currentJob;
+    }
+
+    private void run(ReplayJob job, IReplaySource source) {
+        int threads = parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger parserNumber = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(threads,
+                r -> new Thread(r, "idoc-replay-parse-" + parserNumber.incrementAndGet()));
+        BlockingQueue<Future<List<SAPIDOCDocument>>> parsed = new ArrayBlockingQueue<>(queueSize);
+        IDocRepository staxRepository = PARSER_STAX.equalsIgnoreCase(parser) ? optionalRepository() : null;
+
+        Lane[] lanes = new Lane[Math.max(1, publishLanes)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(job, i);
+            lanes[i].start();
+        }
+        Thread dispatcher = new Thread(() -> dispatch(job, parsed, lanes), "idoc-replay-dispatch");
+        dispatcher.start();
+
+        try {
+            source.read(record -> {
+                if (!job.isRunning()) {
+                    throw new InterruptedIOException("Replay stopped");
+                }
+                if (job.acceptsTime(record.getTimestamp())) {
+                    job.transactionRead();
+                    offer(job, parsed, parsers.submit(() -> parse(job, record, staxRepository)));
+                }
+            });
+            offer(job, parsed, END_OF_SOURCE);
+            dispatcher.join();
+            for (Lane lane : lanes) {
+                lane.join();
+            }
+            job.complete();
+        } catch (InterruptedIOException e) {
+            LOGGER.info("Replay of {} stopped: {}", source.getName(), job.getState());
+        } catch (IOException e) {
+            LOGGER.error("Replay of {} failed: {}", source.getName(), e.getMessage(), e);
+            job.fail("Cannot read source: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.cancel();
+        } finally {
+            parsers.shutdownNow();
+        }
+        LOGGER.info("Replay finished: {}", job.toMap());
+    }
+
+    /**
+     * Parses one archived transaction and extracts its documents (runs on a parser thread).
+     *
+     * @param staxRepository segment metadata for the stax parser (null = fields as NAME=value)
+     */
+    private List<SAPIDOCDocument> parse(ReplayJob job, ArchiveRecord record, IDocRepository staxRepository) {
+        try {
+            List<SAPIDOCDocument> documents;
+            if (PARSER_STAX.equalsIgnoreCase(parser)) {
+                List<SAPIDOCDocument> read = new ArrayList<>();
+                IDocXmlReader.readAll(new ByteArrayInputStream(record.getPayload()), senderSystem, staxRepository,
+                        read::add);
+                documents = read;
+            } else {
+                IDocDocumentList idocList = xmlProcessors.get().parse(getRepository(),
+                        new ByteArrayInputStream(record.getPayload()), 0);
+                documents = idocReceiver.extractIdocsFromDocumentList(idocList, senderSystem);
+            }
+            for (SAPIDOCDocument document : documents) {
+                document.setTransactionID(record.getTid());
+                document.setTimestamp(record.getTimestamp());
+            }
+            return documents;
+        } catch (Exception e) {
+            LOGGER.warn("Skipping archived transaction {}: {}", record.getTid(), e.getMessage());
+            job.transactionFailed();
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Hands the parse results in arrival order to the lanes, applying filter and rate limit.
+     */
+    private void dispatch(ReplayJob job, BlockingQueue<Future<List<SAPIDOCDocument>>> parsed, Lane[] lanes) {
+        long intervalNanos = job.getRate() > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / job.getRate()) : 0;
+        long nextSend = System.nanoTime();
+        try {
+            while (true) {
+                Future<List<SAPIDOCDocument>> result = parsed.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    if (!job.isRunning()) {
+                        break;
+                    }
+                    continue;
+                }
+                for (SAPIDOCDocument document : result.get()) {
+                    if (document == END) {
+                        return;
+                    }
+                    if (!job.acceptsTopic(topicNameUtil.getTopicName(document))) {
+                        job.documentSkipped();
+                        continue;
+                    }
+                    if (intervalNanos > 0) {
+                        long now = System.nanoTime();
+                        if (nextSend > now) {
+                            LockSupport.parkNanos(nextSend - now);
+                        }
+                        nextSend = Math.max(nextSend, now) + intervalNanos;
+                    }
+                    String key = document.getDocumentNumber();
+                    Lane lane = lanes[key == null ? 0 : (key.hashCode() & Integer.MAX_VALUE) % lanes.length];
+                    offer(job, lane.queue, document);
+                }
+            }
+        } catch (InterruptedIOException e) {
+            // Replay stopped while a lane was full
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.cancel();
+        } catch (ExecutionException e) {
+            job.fail("Parser failed: " + e.getCause());
+        } finally {
+            endLanes(job, lanes);
+        }
+    }
+
+    private static void endLanes(ReplayJob job, Lane[] lanes) {
+        for (Lane lane : lanes) {
+            try {
+                offer(job, lane.queue, END);
+            } catch (InterruptedIOException e) {
+                // Replay stopped, the lanes exit without the end marker
+            }
+        }
+    }
+
+    private static <T> void offer(ReplayJob job, BlockingQueue<T> queue, T element) throws InterruptedIOException {
+        try {
+            while (!queue.offer(element, POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (!job.isRunning()) {
+                    throw new InterruptedIOException("Replay stopped");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Replay interrupted");
+        }
+    }
+
+    private IDocRepository getRepository() throws JCoException {
+        return destinationManager.getIDocRepository(repositoryDestination);
+    }
+
+    /**
+     * Returns the IDoc repository if the repository destination is reachable, else null.
+     */
+    private IDocRepository optionalRepository() {
+        try {
+            return getRepository();
+        } catch (JCoException | RuntimeException e) {
+            LOGGER.info("IDoc repository {} unavailable, stax replay writes segment fields as NAME=value: {}",
+                    repositoryDestination, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ordered publishing lane: publishes the documents routed to it one after another.
+     */
+    private final class Lane extends Thread {
+        private final ReplayJob job;
+        private final BlockingQueue<SAPIDOCDocument> queue = new ArrayBlockingQueue<>(queueSize);
+
+        Lane(ReplayJob job, int number) {
+            super("idoc-replay-lane-" + number);
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    SAPIDOCDocument document = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                    if (document == END || !job.isRunning()) {
+                        return;
+                    }
+                    if (document == null) {
+                        continue;
+                    }
+                    idocPublisher.publishSAPDocument(document);
+                    job.documentPublished();
+                }
+            } catch (KafkaPublishException e) {
+                job.fail(e.getMessage());
+            } catch (InterruptedException e) {
+                job.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.dataingest.rfc.server.replay;
+
+import org.dataingest.rfc.server.archive.ArchiveSegments;
+import java.io.IOException;
+
+/**
+ * Source of archived IDoc transactions for a replay.
+ *
+ * Delivers the transactions (TID, arrival time and rendered IDoc XML) in their
+ * original arrival order.
+ */
+public interface IReplaySource {
+
+    /**
+     * Returns a description of the source for logging and status output.
+     */
+    String getName();
+
+    /**
+     * Reads all transactions in arrival order.
+     *
+     * @param visitor receives every transaction; may throw to abort reading
+     * @throws IOException if the source cannot be read
+     */
+    void read(ArchiveSegments.RecordVisitor visitor) throws IOException;
+}
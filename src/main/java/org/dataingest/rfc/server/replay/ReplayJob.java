@@ -0,0 +1,133 @@
+package org.dataingest.rfc.server.replay;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State and progress of a single replay run.
+ *
+ * Filters:
+ * - from/to: arrival time window of the transactions (epoch millis, to exclusive)
+ * - topic: only documents published to this topic (empty = all)
+ * - rate: maximum documents per second (0 = as fast as possible)
+ */
+public class ReplayJob {
+
+    public enum State {
+        RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+
+    private final String source;
+    private final double rate;
+    private final String topic;
+    private final long from;
+    private final long to;
+    private final long startTime = System.currentTimeMillis();
+
+    private final AtomicLong transactionsRead = new AtomicLong();
+    private final AtomicLong transactionsFailed = new AtomicLong();
+    private final AtomicLong documentsPublished = new AtomicLong();
+    private final AtomicLong documentsSkipped = new AtomicLong();
+
+    private volatile State state = State.RUNNING;
+    private volatile long endTime;
+    private volatile String error;
+
+    public ReplayJob(String source, double rate, String topic, long from, long to) {
+        this.source = source;
+        this.rate = rate;
+        this.topic = topic;
+        this.from = from;
+        this.to = to;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    /**
+     * Returns whether a transaction received at the given time is part of the replay.
+     */
+    public boolean acceptsTime(long timestamp) {
+        return timestamp >= from && timestamp < to;
+    }
+
+    /**
+     * Returns whether documents for the given topic are part of the replay.
+     */
+    public boolean acceptsTopic(String topicName) {
+        return topic == null || topic.isEmpty() || topic.equals(topicName);
+    }
+
+    void transactionRead() {
+        transactionsRead.incrementAndGet();
+    }
+
+    void transactionFailed() {
+        transactionsFailed.incrementAndGet();
+    }
+
+    void documentPublished() {
+        documentsPublished.incrementAndGet();
+    }
+
+    void documentSkipped() {
+        documentsSkipped.incrementAndGet();
+    }
+
+    /**
+     * Stops the replay. Documents being published complete, queued documents are dropped.
+     */
+    public synchronized void cancel() {
+        finish(State.CANCELLED, null);
+    }
+
+    synchronized void fail(String message) {
+        finish(State.FAILED, message);
+    }
+
+    synchronized void complete() {
+        finish(State.COMPLETED, null);
+    }
+
+    private void finish(State newState, String message) {
+        if (state == State.RUNNING) {
+            error = message;
+            endTime = System.currentTimeMillis();
+            state = newState;
+        }
+    }
+
+    /**
+     * Returns the job status for the REST API.
+     */
+    public Map<String, Object> toMap() {
+        long elapsed = (state == State.RUNNING ? System.currentTimeMillis() : endTime) - startTime;
+        long published = documentsPublished.get();
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state);
+        status.put("source", source);
+        status.put("topic", topic);
+        status.put("rate", rate > 0 ? rate : "max");
+        status.put("transactionsRead", transactionsRead.get());
+        status.put("transactionsFailed", transactionsFailed.get());
+        status.put("documentsPublished", published);
+        status.put("documentsSkipped", documentsSkipped.get());
+        status.put("elapsedMs", elapsed);
+        status.put("documentsPerSecond", elapsed > 0 ? published * 1000 / elapsed : 0);
+        if (error != null) {
+            status.put("error", error);
+        }
+        return status;
+    }
+}
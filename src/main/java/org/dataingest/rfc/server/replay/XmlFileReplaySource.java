@@ -0,0 +1,67 @@
+package org.dataingest.rfc.server.replay;
+
+import org.dataingest.rfc.server.archive.ArchiveRecord;
+import org.dataingest.rfc.server.archive.ArchiveSegments;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Replay source reading one IDoc XML file per transaction, as written by the "file"
+ * XML sink or older SimpleIDocCapture versions ({TID}_idoc.xml).
+ *
+ * Files are read in modification time order, each with one plain read: the parsers
+ * need the XML as an array, so mapping the file would only add a copy.
+ * The TID is taken from the file name; the offset of a record is the file's position
+ * in that order.
+ */
+public class XmlFileReplaySource implements IReplaySource {
+
+    private static final String FILE_SUFFIX = "_idoc.xml";
+
+    private final Path dir;
+
+    public XmlFileReplaySource(Path dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public String getName() {
+        return "XML files " + dir;
+    }
+
+    @Override
+    public void read(ArchiveSegments.RecordVisitor visitor) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.xml")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(Comparator.comparingLong(XmlFileReplaySource::lastModified).thenComparing(Path::getFileName));
+
+        long position = 0;
+        for (Path file : files) {
+            visitor.record(new ArchiveRecord(0, position++, lastModified(file), tid(file), 0, Files.readAllBytes(file)));
+        }
+    }
+
+    private static String tid(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(FILE_SUFFIX)
+                ? name.substring(0, name.length() - FILE_SUFFIX.length())
+                : name.substring(0, name.length() - ".xml".length());
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
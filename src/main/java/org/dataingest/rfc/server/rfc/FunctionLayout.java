@@ -0,0 +1,112 @@
+package org.dataingest.rfc.server.rfc;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sap.conn.jco.JCoFunction;
+import com.sap.conn.jco.JCoFunctionTemplate;
+import com.sap.conn.jco.JCoParameterList;
+import com.sap.conn.jco.JCoTable;
+import java.io.IOException;
+
+/**
+ * JSON layout of an RFC function module, derived once from its JCoFunctionTemplate.
+ *
+ * A call is written as:
+ *
+ * { "function": "Z_...", "tid": "...", "import": {...}, "changing": {...}, "tables": { "T": [...] } }
+ *
+ * Sections without parameters are omitted; "tid" is null for synchronous calls.
+ *
+ * Replies to request/reply calls use the same sections for the parameters returned
+ * to SAP: { "export": {...}, "changing": {...}, "tables": {...} }
+ */
+public final class FunctionLayout {
+
+    private final String name;
+    private final RecordLayout importLayout;
+    private final RecordLayout exportLayout;
+    private final RecordLayout changingLayout;
+    private final RecordLayout tableLayout;
+
+    public FunctionLayout(JCoFunctionTemplate template) {
+        this.name = template.getName();
+        this.importLayout = RecordLayout.of(template.getImportParameterList());
+        this.exportLayout = RecordLayout.of(template.getExportParameterList());
+        this.changingLayout = RecordLayout.of(template.getChangingParameterList());
+        this.tableLayout = RecordLayout.of(template.getTableParameterList());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Writes the parameters SAP sent with the call.
+     */
+    public void writeCall(JCoFunction function, String tid, JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("function", name);
+        gen.writeStringField("tid", tid);
+        writeSection("import", importLayout, function.getImportParameterList(), gen);
+        writeSection("changing", changingLayout, function.getChangingParameterList(), gen);
+        writeSection("tables", tableLayout, function.getTableParameterList(), gen);
+        gen.writeEndObject();
+    }
+
+    /**
+     * Fills the export, changing and table parameters returned to SAP from a JSON reply.
+     */
+    public void readReply(JsonNode reply, JCoFunction function) throws IOException {
+        readSection(reply.get("export"), exportLayout, function.getExportParameterList());
+        readSection(reply.get("changing"), changingLayout, function.getChangingParameterList());
+        readSection(reply.get("tables"), tableLayout, function.getTableParameterList());
+    }
+
+    /**
+     * Returns the named table parameter of the call, or null if the function has no such table.
+     */
+    public JCoTable getTable(JCoFunction function, String table) {
+        JCoParameterList tables = function.getTableParameterList();
+        if (tables == null || tableLayout == null) {
+            return null;
+        }
+        int index = tableLayout.indexOf(table);
+        return index >= 0 ? tables.getTable(index) : null;
+    }
+
+    /**
+     * Returns the layout of the rows of the named table parameter.
+     */
+    public RecordLayout getRowLayout(String table) {
+        return tableLayout != null ? tableLayout.nestedLayout(table) : null;
+    }
+
+    /**
+     * Returns the value of an import parameter as string, or null if there is no such parameter.
+     */
+    public String getImportValue(JCoFunction function, String parameter) {
+        JCoParameterList imports = function.getImportParameterList();
+        if (imports == null || importLayout == null) {
+            return null;
+        }
+        int index = importLayout.indexOf(parameter);
+        return index >= 0 ? imports.getString(index) : null;
+    }
+
+    private static void writeSection(String section, RecordLayout layout, JCoParameterList parameters,
+                                     JsonGenerator gen) throws IOException {
+        if (layout == null || parameters == null) {
+            return;
+        }
+        gen.writeFieldName(section);
+        layout.writeObject(parameters, gen);
+    }
+
+    private static void readSection(JsonNode section, RecordLayout layout, JCoParameterList parameters)
+            throws IOException {
+        if (section == null || layout == null || parameters == null) {
+            return;
+        }
+        layout.readObject(section, parameters);
+    }
+}
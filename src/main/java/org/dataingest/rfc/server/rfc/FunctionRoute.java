@@ -0,0 +1,77 @@
+package org.dataingest.rfc.server.rfc;
+
+/**
+ * Kafka routing of one bridged RFC function module.
+ *
+ * Combines the cached JSON layout of the function with its configured target:
+ * - topic: the Kafka topic the calls (or table rows) are published to
+ * - keyField: import parameter (or, when splitting, row field) used as record key;
+ *   null to key by TID
+ * - splitTable: table parameter published as one record per row; null to publish
+ *   the whole call as one record
+ * - replyTimeoutMs: for request/reply functions, how long to wait for the reply
+ *   carrying the export parameters; 0 for one-way functions
+ */
+public final class FunctionRoute {
+
+    private final FunctionLayout layout;
+    private final String topic;
+    private final String keyField;
+    private final String splitTable;
+    private final RecordLayout rowLayout;
+    private final long replyTimeoutMs;
+
+    public FunctionRoute(FunctionLayout layout, String topic, String keyField, String splitTable) {
+        this(layout, topic, keyField, splitTable, 0);
+    }
+
+    public FunctionRoute(FunctionLayout layout, String topic, String keyField, String splitTable,
+                         long replyTimeoutMs) {
+        this.layout = layout;
+        this.topic = topic;
+        this.keyField = keyField;
+        this.splitTable = splitTable;
+        this.rowLayout = splitTable != null ? layout.getRowLayout(splitTable) : null;
+        if (splitTable != null && rowLayout == null) {
+            throw new IllegalArgumentException("Function " + layout.getName()
+                    + " has no table parameter " + splitTable);
+        }
+        if (splitTable != null && replyTimeoutMs > 0) {
+            throw new IllegalArgumentException("Function " + layout.getName()
+                    + " cannot split table " + splitTable + " in request/reply mode");
+        }
+        this.replyTimeoutMs = replyTimeoutMs;
+    }
+
+    public FunctionLayout getLayout() {
+        return layout;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public String getKeyField() {
+        return keyField;
+    }
+
+    public String getSplitTable() {
+        return splitTable;
+    }
+
+    public RecordLayout getRowLayout() {
+        return rowLayout;
+    }
+
+    public boolean isSplit() {
+        return splitTable != null;
+    }
+
+    public long getReplyTimeoutMs() {
+        return replyTimeoutMs;
+    }
+
+    public boolean isRequestReply() {
+        return replyTimeoutMs > 0;
+    }
+}
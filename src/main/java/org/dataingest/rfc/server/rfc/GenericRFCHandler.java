@@ -0,0 +1,219 @@
+package org.dataingest.rfc.server.rfc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.conn.jco.AbapClassException;
+import com.sap.conn.jco.AbapException;
+import com.sap.conn.jco.JCoFunction;
+import com.sap.conn.jco.JCoParameterList;
+import com.sap.conn.jco.JCoTable;
+import com.sap.conn.jco.server.JCoServerContext;
+import com.sap.conn.jco.server.JCoServerFunctionHandler;
+import com.sap.conn.jco.server.JCoServerFunctionHandlerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.exception.KafkaPublishException;
+import org.dataingest.rfc.server.exception.MemoryBudgetExceededException;
+import org.dataingest.rfc.server.exception.SenderRejectedException;
+import org.dataingest.rfc.server.publisher.RFCKafkaPublisher;
+import org.dataingest.rfc.server.scheduling.AdmissionController;
+import org.dataingest.rfc.server.scheduling.MemoryBudget;
+import org.dataingest.rfc.server.scheduling.SenderScheduler;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Generic handler bridging inbound RFC function calls to Kafka.
+ *
+ * Serves every function configured in RFCBridgeRegistry, whatever its signature:
+ * the import, changing and table parameters are published through the cached
+ * layout of the function. IDoc functions stay with the IDoc handler of the server.
+ *
+ * Handles:
+ * - Call handler factory for the RFC server (unknown functions are refused by JCo)
+ * - Synchronous publishing, a failed publish is raised to SAP as ABAP exception
+ *   KAFKA_PUBLISH_FAILED so the tRFC/qRFC LUW is retried
+ * - Request/reply functions: the call waits for the reply correlated by
+ *   RFCReplyCorrelator and returns its export, changing and table parameters to SAP.
+ *   A missing reply raises REPLY_TIMEOUT, an error reply raises the ABAP exception it names.
+ * - Publishing slots per sender system (SenderScheduler), a rejected call raises SENDER_BUSY
+ * - Load shedding: transactional calls raise KAFKA_OVERLOADED while Kafka is overloaded
+ * - In-flight memory budget for the table parameters, MEMORY_BUDGET_EXCEEDED when none is left
+ * - Round-trip latency per function as metric rfc.bridge.reply.latency (p50/p95/p99),
+ *   timeouts as rfc.bridge.reply.timeouts
+ */
+@Component
+public class GenericRFCHandler implements JCoServerFunctionHandler, JCoServerFunctionHandlerFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GenericRFCHandler.class);
+
+    @Autowired
+    private RFCBridgeRegistry registry;
+
+    @Autowired
+    private RFCKafkaPublisher publisher;
+
+    @Autowired
+    private RFCReplyCorrelator correlator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SenderScheduler senderScheduler;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    private final Map<String, Timer> replyLatency = new ConcurrentHashMap<>();
+    private final Map<String, Counter> replyTimeouts = new ConcurrentHashMap<>();
+
+    /**
+     * Returns true if at least one function is bridged.
+     */
+    public boolean isEnabled() {
+        return registry.isEnabled();
+    }
+
+    /**
+     * Returns true if calls of the given function are bridged to Kafka.
+     *
+     * @param functionName the RFC function module name
+     * @return true if this handler serves the function
+     */
+    public boolean handles(String functionName) {
+        return registry.handles(functionName);
+    }
+
+    @Override
+    public JCoServerFunctionHandler getCallHandler(JCoServerContext serverCtx, String functionName) {
+        return registry.handles(functionName) ? this : null;
+    }
+
+    @Override
+    public void sessionClosed(JCoServerContext serverCtx, String message, boolean error) {
+        // Bridged calls are stateless
+    }
+
+    @Override
+    public void handleRequest(JCoServerContext serverCtx, JCoFunction function)
+            throws AbapException, AbapClassException {
+        String tid = serverCtx.getTID();
+        String senderSystem = serverCtx.getConnectionAttributes().getSystemID();
+        if (tid != null && !admissionController.admit(null)) {
+            // Refused before any work, SAP reschedules the LUW instead of holding the connection
+            LOGGER.warn("RFC {} (TID {}) from {} refused, Kafka is overloaded", function.getName(), tid, senderSystem);
+            throw new AbapException("KAFKA_OVERLOADED", "Kafka is overloaded, retry later");
+        }
+        try (MemoryBudget.Reservation reservation = memoryBudget.reserve(tableBytes(function));
+             SenderScheduler.Permit permit = senderScheduler.acquire(senderSystem)) {
+            FunctionRoute route = registry.getRoute(function);
+            if (route.isRequestReply()) {
+                handleRequestReply(route, function);
+                return;
+            }
+            int records = publisher.publishFunctionCall(route, function, tid);
+            LOGGER.info("Bridged RFC {} (TID {}) as {} record(s) to topic {}",
+                    function.getName(), tid, records, route.getTopic());
+        } catch (KafkaPublishException e) {
+            throw new AbapException("KAFKA_PUBLISH_FAILED", e.getMessage());
+        } catch (SenderRejectedException e) {
+            LOGGER.warn("RFC {} (TID {}) from {} rejected: {}", function.getName(), tid, senderSystem, e.getMessage());
+            throw new AbapException("SENDER_BUSY", e.getMessage());
+        } catch (MemoryBudgetExceededException e) {
+            LOGGER.warn("RFC {} (TID {}) from {} rejected: {}", function.getName(), tid, senderSystem, e.getMessage());
+            throw new AbapException("MEMORY_BUDGET_EXCEEDED", e.getMessage());
+        } catch (RuntimeException e) {
+            LOGGER.error("Cannot bridge RFC {} (TID {}): {}", function.getName(), tid, e.getMessage(), e);
+            throw new AbapException("RFC_BRIDGE_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the size of the table parameters of the call, rows times row length.
+     */
+    private static long tableBytes(JCoFunction function) {
+        JCoParameterList tables = function.getTableParameterList();
+        if (tables == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (int i = 0; i < tables.getFieldCount(); i++) {
+            JCoTable table = tables.getTable(i);
+            bytes += (long) table.getNumRows() * table.getRecordMetaData().getRecordLength();
+        }
+        return bytes;
+    }
+
+    /**
+     * Publishes the call as request and fills the parameters returned to SAP from the reply.
+     */
+    private void handleRequestReply(FunctionRoute route, JCoFunction function) throws AbapException {
+        String functionName = function.getName();
+        if (!correlator.isReady()) {
+            throw new AbapException("REPLY_CONSUMER_NOT_READY",
+                    "Reply consumer on " + correlator.getReplyTopic() + " is not ready");
+        }
+
+        long start = System.nanoTime();
+        String correlationId = correlator.register();
+        byte[] reply;
+        try {
+            CompletableFuture<byte[]> future = correlator.getReply(correlationId);
+            publisher.publishRequest(route, function, correlationId, correlator.getReplyTopic(), future);
+            reply = future.get(route.getReplyTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            replyTimeouts.computeIfAbsent(functionName, name -> Counter.builder("rfc.bridge.reply.timeouts")
+                    .tag("function", name)
+                    .register(meterRegistry)).increment();
+            LOGGER.warn("No reply for RFC {} request {} within {} ms",
+                    functionName, correlationId, route.getReplyTimeoutMs());
+            throw new AbapException("REPLY_TIMEOUT", "No reply for " + functionName + " within "
+                    + route.getReplyTimeoutMs() + " ms");
+        } catch (KafkaPublishException e) {
+            throw new AbapException("KAFKA_PUBLISH_FAILED", e.getMessage());
+        } catch (ExecutionException e) {
+            throw new AbapException("KAFKA_PUBLISH_FAILED", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbapException("REPLY_INTERRUPTED", "Interrupted waiting for reply to " + functionName);
+        } finally {
+            correlator.remove(correlationId);
+        }
+
+        replyLatency.computeIfAbsent(functionName, name -> Timer.builder("rfc.bridge.reply.latency")
+                .tag("function", name)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        try {
+            JsonNode replyNode = objectMapper.readTree(reply);
+            JsonNode error = replyNode.get("error");
+            if (error != null && !error.isNull()) {
+                throw new AbapException(error.path("key").asText("REPLY_ERROR"), error.path("message").asText());
+            }
+            route.getLayout().readReply(replyNode, function);
+        } catch (IOException e) {
+            LOGGER.error("Invalid reply for RFC {} request {}: {}", functionName, correlationId, e.getMessage(), e);
+            throw new AbapException("INVALID_REPLY", e.getMessage());
+        }
+        LOGGER.debug("Answered RFC {} request {} in {} ms", functionName, correlationId,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
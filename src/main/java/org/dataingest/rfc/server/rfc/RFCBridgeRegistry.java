@@ -0,0 +1,149 @@
+package org.dataingest.rfc.server.rfc;
+
+import com.sap.conn.jco.JCoFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.util.RFCTopicNameUtil;
+import javax.annotation.PostConstruct;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the RFC function modules bridged to Kafka.
+ *
+ * Functions are on-boarded by configuration only. The layout of a function is derived
+ * from its JCoFunctionTemplate on the first call and cached together with its route,
+ * so later calls only stream field values.
+ *
+ * Configuration:
+ * - rfc.bridge.functions: comma separated function names, or * for every function
+ *   except the IDoc inbound functions (empty: bridge disabled)
+ * - rfc.bridge.topic.{FUNCTION}: topic override (default: kafka.rfc.topic.prefix + function name)
+ * - rfc.bridge.key.{FUNCTION}: import parameter (or row field when splitting) used as record key
+ * - rfc.bridge.split.{FUNCTION}: table parameter published as one record per row
+ * - rfc.bridge.reply.functions: comma separated functions answered synchronously over
+ *   Kafka (request/reply), bridged in addition to rfc.bridge.functions
+ * - rfc.bridge.reply.timeout-ms: reply timeout (default: 30000), per function
+ *   rfc.bridge.reply.timeout-ms.{FUNCTION}
+ */
+@Component
+public class RFCBridgeRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RFCBridgeRegistry.class);
+
+    /** Functions served by the IDoc server, never bridged generically */
+    private static final Set<String> IDOC_FUNCTIONS = Set.of(
+            "IDOC_INBOUND_ASYNCHRONOUS", "IDOC_INBOUND_IN_QUEUE", "INBOUND_IDOC_PROCESS");
+
+    @Value("${rfc.bridge.functions:}")
+    private String functionList;
+
+    @Value("${rfc.bridge.reply.functions:}")
+    private String replyFunctionList;
+
+    @Value("${rfc.bridge.reply.timeout-ms:30000}")
+    private long replyTimeoutMs;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private RFCTopicNameUtil topicNameUtil;
+
+    private final Set<String> functions = new HashSet<>();
+    private final Set<String> replyFunctions = new HashSet<>();
+    private boolean allFunctions;
+    private final Map<String, FunctionRoute> routes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (String name : functionList.split(",")) {
+            String trimmed = name.trim();
+            if ("*".equals(trimmed)) {
+                allFunctions = true;
+            } else if (!trimmed.isEmpty()) {
+                functions.add(trimmed);
+            }
+        }
+        for (String name : replyFunctionList.split(",")) {
+            if (!name.trim().isEmpty()) {
+                replyFunctions.add(name.trim());
+            }
+        }
+        if (isEnabled()) {
+            LOGGER.info("RFC bridge enabled for functions: {}, request/reply: {}",
+                    allFunctions ? "*" : functions, replyFunctions);
+        }
+    }
+
+    /**
+     * Returns true if at least one function is bridged.
+     */
+    public boolean isEnabled() {
+        return allFunctions || !functions.isEmpty() || hasReplyFunctions();
+    }
+
+    /**
+     * Returns true if at least one function is answered over Kafka (request/reply).
+     */
+    public boolean hasReplyFunctions() {
+        return !replyFunctions.isEmpty();
+    }
+
+    /**
+     * Returns true if calls of the given function are bridged to Kafka.
+     *
+     * @param functionName the RFC function module name
+     * @return true if the function is configured for the bridge
+     */
+    public boolean handles(String functionName) {
+        if (functionName == null || IDOC_FUNCTIONS.contains(functionName)) {
+            return false;
+        }
+        return allFunctions || functions.contains(functionName) || replyFunctions.contains(functionName);
+    }
+
+    /**
+     * Returns the route of the given function, deriving its layout on first use.
+     *
+     * @param function the called function
+     * @return the cached route
+     * @throws IllegalArgumentException if the configured split table does not exist
+     */
+    public FunctionRoute getRoute(JCoFunction function) {
+        FunctionRoute route = routes.get(function.getName());
+        if (route != null) {
+            return route;
+        }
+        return routes.computeIfAbsent(function.getName(), name -> buildRoute(function));
+    }
+
+    private FunctionRoute buildRoute(JCoFunction function) {
+        String name = function.getName();
+        FunctionLayout layout = new FunctionLayout(function.getFunctionTemplate());
+        String topic = environment.getProperty("rfc.bridge.topic." + name, topicNameUtil.getTopicName(name));
+        String keyField = emptyToNull(environment.getProperty("rfc.bridge.key." + name));
+        String splitTable = emptyToNull(environment.getProperty("rfc.bridge.split." + name));
+
+        long timeoutMs = replyFunctions.contains(name)
+                ? environment.getProperty("rfc.bridge.reply.timeout-ms." + name, Long.class, replyTimeoutMs)
+                : 0;
+
+        FunctionRoute route = new FunctionRoute(layout, topic, keyField, splitTable, timeoutMs);
+        LOGGER.info("RFC bridge route for {}: topic {}, key {}, {}", name, topic,
+                keyField != null ? keyField : (timeoutMs > 0 ? "correlation ID" : "TID"),
+                timeoutMs > 0 ? "request/reply, timeout " + timeoutMs + " ms"
+                        : splitTable != null ? "one record per row of " + splitTable : "one record per call");
+        return route;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+}
@@ -0,0 +1,259 @@
+package org.dataingest.rfc.server.rfc;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.config.ApplicationConfiguration;
+import org.dataingest.rfc.server.publisher.RFCKafkaPublisher;
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Correlates replies of request/reply RFC calls with the waiting SAP calls.
+ *
+ * Requests carry a correlation ID (header rfc-correlation-id) and the reply topic
+ * (header rfc-reply-to). The answering service publishes its reply to the reply topic
+ * with the same correlation ID header (or as record key) and a JSON value:
+ *
+ * { "export": {...}, "changing": {...}, "tables": {...} }
+ *
+ * or, to raise an ABAP exception in the caller: { "error": { "key": "...", "message": "..." } }
+ *
+ * Handles:
+ * - A dedicated reply consumer thread, assigned to every partition of the reply topic
+ *   without a consumer group: each server instance sees all replies and picks its own
+ * - Pending calls in a concurrent correlation map, completed by the consumer thread
+ *   without any further locking
+ * - Short fetch waits (rfc.bridge.reply.fetch-max-wait-ms) for low round-trip latency
+ * - Same connection and security settings as the producers (kafka.security.*, sasl, ssl)
+ * - Restart after a failure (broker unreachable, reply topic missing or without
+ *   partitions) with a new consumer, backing off exponentially up to one minute;
+ *   not ready while restarting, so reply calls fail fast instead of waiting for replies
+ *   that cannot arrive
+ *
+ * Configuration:
+ * - rfc.bridge.reply.topic: reply topic (default: SAP.RFC.REPLIES)
+ * - rfc.bridge.reply.fetch-max-wait-ms: broker fetch wait of the reply consumer (default: 5)
+ * - rfc.bridge.reply.restart-backoff-ms: first wait before restarting the consumer (default: 1000)
+ */
+@Component
+public class RFCReplyCorrelator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RFCReplyCorrelator.class);
+
+    private static final long MAX_RESTART_BACKOFF_MS = 60_000;
+
+    @Autowired
+    private RFCBridgeRegistry registry;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${rfc.bridge.reply.topic:SAP.RFC.REPLIES}")
+    private String replyTopic;
+
+    @Value("${rfc.bridge.reply.fetch-max-wait-ms:5}")
+    private int fetchMaxWaitMs;
+
+    @Value("${rfc.bridge.reply.restart-backoff-ms:1000}")
+    private long restartBackoffMs;
+
+    private final Map<String, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+    private final String idPrefix = UUID.randomUUID().toString().substring(0, 8) + "-";
+    private final AtomicLong sequence = new AtomicLong();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private volatile Consumer<String, byte[]> consumer;
+    private Thread poller;
+    private volatile boolean running;
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void init() {
+        if (!registry.hasReplyFunctions()) {
+            return;
+        }
+        running = true;
+        poller = new Thread(this::poll, "rfc-reply-consumer");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    public String getReplyTopic() {
+        return replyTopic;
+    }
+
+    /**
+     * Returns true once the reply consumer is positioned on the reply topic.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Registers a new pending call.
+     *
+     * @return the correlation ID to send with the request
+     */
+    public String register() {
+        String correlationId = idPrefix + Long.toString(sequence.incrementAndGet(), 36);
+        pending.put(correlationId, new CompletableFuture<>());
+        return correlationId;
+    }
+
+    /**
+     * Returns the reply future of a pending call, or null if the call is not pending.
+     */
+    public CompletableFuture<byte[]> getReply(String correlationId) {
+        return pending.get(correlationId);
+    }
+
+    /**
+     * Removes a call that was answered, timed out or failed. Late replies are dropped.
+     */
+    public void remove(String correlationId) {
+        pending.remove(correlationId);
+    }
+
+    /**
+     * Creates the reply consumer; package-private so tests can supply a mock consumer.
+     */
+    Consumer<String, byte[]> createConsumer() {
+        Properties props = ApplicationConfiguration.clientProperties(environment);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 1);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, fetchMaxWaitMs);
+        return new KafkaConsumer<>(props);
+    }
+
+    /**
+     * Runs the reply consumer, restarting it with a new consumer after every failure.
+     */
+    private void poll() {
+        long backoffMs = Math.max(1, restartBackoffMs);
+        while (running) {
+            try {
+                consumer = createConsumer();
+                if (!running) {
+                    // Shut down while the consumer was created, its wakeup was missed
+                    break;
+                }
+                consume();
+            } catch (WakeupException e) {
+                // Shutdown
+            } catch (Exception e) {
+                if (ready) {
+                    // Failed after running fine, start over with the shortest wait
+                    backoffMs = Math.max(1, restartBackoffMs);
+                }
+                LOGGER.error("Reply consumer on {} failed, restarting in {} ms: {}",
+                        replyTopic, backoffMs, e.getMessage(), e);
+            } finally {
+                ready = false;
+                if (consumer != null) {
+                    consumer.close();
+                    consumer = null;
+                }
+            }
+            try {
+                if (stopped.await(backoffMs, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            backoffMs = Math.min(backoffMs * 2, MAX_RESTART_BACKOFF_MS);
+        }
+    }
+
+    /**
+     * Positions the consumer on the end of every reply topic partition and completes
+     * replies until shutdown or a failure.
+     */
+    private void consume() {
+        List<PartitionInfo> partitionInfos = consumer.partitionsFor(replyTopic);
+        if (partitionInfos == null || partitionInfos.isEmpty()) {
+            throw new IllegalStateException("Reply topic " + replyTopic + " does not exist or has no partitions");
+        }
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (PartitionInfo partition : partitionInfos) {
+            partitions.add(new TopicPartition(replyTopic, partition.partition()));
+        }
+        consumer.assign(partitions);
+        consumer.seekToEnd(partitions);
+        // Resolve the end offsets now, replies to the first calls must not be skipped
+        for (TopicPartition partition : partitions) {
+            consumer.position(partition);
+        }
+        ready = true;
+        LOGGER.info("Reply consumer ready on {} ({} partitions)", replyTopic, partitions.size());
+
+        while (running) {
+            ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(100));
+            for (ConsumerRecord<String, byte[]> record : records) {
+                complete(record);
+            }
+        }
+    }
+
+    private void complete(ConsumerRecord<String, byte[]> record) {
+        Header header = record.headers().lastHeader(RFCKafkaPublisher.CORRELATION_HEADER);
+        String correlationId = header != null ? new String(header.value(), StandardCharsets.UTF_8) : record.key();
+        CompletableFuture<byte[]> reply = correlationId != null ? pending.get(correlationId) : null;
+        if (reply != null) {
+            reply.complete(record.value());
+        } else if (correlationId != null && correlationId.startsWith(idPrefix)) {
+            LOGGER.warn("Dropping late reply {} (offset {})", correlationId, record.offset());
+        }
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        if (poller == null) {
+            return;
+        }
+        running = false;
+        Consumer<String, byte[]> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+        stopped.countDown();
+        try {
+            poller.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IllegalStateException closed = new IllegalStateException("RFC server is shutting down");
+        pending.values().forEach(reply -> reply.completeExceptionally(closed));
+    }
+}
@@ -0,0 +1,189 @@
+package org.dataingest.rfc.server.rfc;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sap.conn.jco.JCoMetaData;
+import com.sap.conn.jco.JCoRecord;
+import com.sap.conn.jco.JCoTable;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Precomputed JSON layout of a JCo record (parameter list, structure or table row).
+ *
+ * Field names, ABAP types and the layouts of nested structures and tables are resolved
+ * once from the metadata, so writing a record only walks arrays and reads every field
+ * by index with the getter matching its type.
+ *
+ * JSON mapping:
+ * - CHAR, NUM, DATE, TIME, STRING: string
+ * - INT, INT1, INT2, INT8, FLOAT: number
+ * - BCD (packed): decimal number, without loss of precision
+ * - BYTE, XSTRING: base64 string
+ * - STRUCTURE: object, TABLE: array of row objects
+ *
+ * The same mapping is used in reverse to fill records from JSON replies.
+ */
+public final class RecordLayout {
+
+    private final String[] names;
+    private final int[] types;
+    private final RecordLayout[] nested;
+
+    private RecordLayout(JCoMetaData metaData) {
+        int count = metaData.getFieldCount();
+        names = new String[count];
+        types = new int[count];
+        nested = new RecordLayout[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = metaData.getName(i);
+            types[i] = metaData.getType(i);
+            if (metaData.isStructure(i) || metaData.isTable(i)) {
+                nested[i] = new RecordLayout(metaData.getRecordMetaData(i));
+            }
+        }
+    }
+
+    /**
+     * Builds the layout for the given metadata, or returns null for no metadata.
+     */
+    public static RecordLayout of(JCoMetaData metaData) {
+        return metaData != null ? new RecordLayout(metaData) : null;
+    }
+
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the layout of a structure or table field, or null if there is no such field.
+     */
+    public RecordLayout nestedLayout(String name) {
+        int index = indexOf(name);
+        return index >= 0 ? nested[index] : null;
+    }
+
+    /**
+     * Writes the fields of the record as a JSON object.
+     */
+    public void writeObject(JCoRecord record, JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        writeFields(record, gen);
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes all rows of the table as a JSON array of objects.
+     */
+    public void writeRows(JCoTable table, JsonGenerator gen) throws IOException {
+        gen.writeStartArray();
+        int rows = table.getNumRows();
+        for (int row = 0; row < rows; row++) {
+            table.setRow(row);
+            writeObject(table, gen);
+        }
+        gen.writeEndArray();
+    }
+
+    /**
+     * Writes the fields of the record into the current JSON object.
+     */
+    public void writeFields(JCoRecord record, JsonGenerator gen) throws IOException {
+        for (int i = 0; i < names.length; i++) {
+            gen.writeFieldName(names[i]);
+            writeValue(record, i, gen);
+        }
+    }
+
+    private void writeValue(JCoRecord record, int i, JsonGenerator gen) throws IOException {
+        switch (types[i]) {
+            case JCoMetaData.TYPE_INT:
+            case JCoMetaData.TYPE_INT1:
+            case JCoMetaData.TYPE_INT2:
+                gen.writeNumber(record.getInt(i));
+                break;
+            case JCoMetaData.TYPE_INT8:
+                gen.writeNumber(record.getLong(i));
+                break;
+            case JCoMetaData.TYPE_FLOAT:
+                gen.writeNumber(record.getDouble(i));
+                break;
+            case JCoMetaData.TYPE_BCD:
+                gen.writeNumber(record.getBigDecimal(i));
+                break;
+            case JCoMetaData.TYPE_BYTE:
+            case JCoMetaData.TYPE_XSTRING:
+                byte[] bytes = record.getByteArray(i);
+                if (bytes == null) {
+                    gen.writeNull();
+                } else {
+                    gen.writeBinary(bytes);
+                }
+                break;
+            case JCoMetaData.TYPE_STRUCTURE:
+                nested[i].writeObject(record.getStructure(i), gen);
+                break;
+            case JCoMetaData.TYPE_TABLE:
+                nested[i].writeRows(record.getTable(i), gen);
+                break;
+            default:
+                gen.writeString(record.getString(i));
+        }
+    }
+
+    /**
+     * Sets the fields of the record from a JSON object. Fields missing in the object
+     * keep their value, table fields are replaced by the rows of the array.
+     */
+    public void readObject(JsonNode object, JCoRecord record) throws IOException {
+        for (int i = 0; i < names.length; i++) {
+            JsonNode value = object.get(names[i]);
+            if (value == null || value.isNull()) {
+                continue;
+            }
+            readValue(value, record, i);
+        }
+    }
+
+    private void readValue(JsonNode value, JCoRecord record, int i) throws IOException {
+        switch (types[i]) {
+            case JCoMetaData.TYPE_INT:
+            case JCoMetaData.TYPE_INT1:
+            case JCoMetaData.TYPE_INT2:
+                record.setValue(i, (Object) value.asInt());
+                break;
+            case JCoMetaData.TYPE_INT8:
+                record.setValue(i, (Object) value.asLong());
+                break;
+            case JCoMetaData.TYPE_FLOAT:
+                record.setValue(i, (Object) value.asDouble());
+                break;
+            case JCoMetaData.TYPE_BCD:
+                record.setValue(i, (Object) (value.isNumber() ? value.decimalValue() : new BigDecimal(value.asText())));
+                break;
+            case JCoMetaData.TYPE_BYTE:
+            case JCoMetaData.TYPE_XSTRING:
+                record.setValue(i, (Object) value.binaryValue());
+                break;
+            case JCoMetaData.TYPE_STRUCTURE:
+                nested[i].readObject(value, record.getStructure(i));
+                break;
+            case JCoMetaData.TYPE_TABLE:
+                JCoTable table = record.getTable(i);
+                table.deleteAllRows();
+                table.ensureBufferCapacity(value.size());
+                for (JsonNode row : value) {
+                    table.appendRow();
+                    nested[i].readObject(row, table);
+                }
+                break;
+            default:
+                record.setValue(i, value.asText());
+        }
+    }
+}
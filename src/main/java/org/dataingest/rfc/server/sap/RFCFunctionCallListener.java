@@ -6,14 +6,12 @@ import com.sap.conn.jco.server.JCoServerFunctionHandler;
 import com.sap.conn.jco.JCoFunction;
 import com.sap.conn.jco.AbapException;
 import org.dataingest.rfc.server.idoc.UnifiedIDOCReceiver;
+import org.dataingest.rfc.server.rfc.GenericRFCHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 /**
  * Listener for incoming RFC function calls on the server.
  *
@@ -25,11 +23,13 @@ import java.util.concurrent.Executors;
 public class RFCFunctionCallListener implements JCoServerFunctionHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RFCFunctionCallListener.class);
-    private static final ExecutorService executorService = Executors.newFixedThreadPool(4);
 
     @Autowired
     private UnifiedIDOCReceiver unifiedIDOCReceiver;
 
+    @Autowired
+    private GenericRFCHandler genericRFCHandler;
+
     /**
      * This method is called by SAP JCo when a function call is received on the RFC server.
      *
@@ -48,9 +48,13 @@ public class RFCFunctionCallListener implements JCoServerFunctionHandler {
         LOGGER.error("Function Name: {}", function.getName());
         LOGGER.error("TID: {}", serverCtx.getTID());
 
-        // Delegate to UnifiedIDOCReceiver to process the actual RFC function
+        // Bridged functions go to the generic handler, IDoc functions to UnifiedIDOCReceiver
         try {
-            unifiedIDOCReceiver.handleRequest(serverCtx, function);
+            if (genericRFCHandler.handles(function.getName())) {
+                genericRFCHandler.handleRequest(serverCtx, function);
+            } else {
+                unifiedIDOCReceiver.handleRequest(serverCtx, function);
+            }
             System.err.println("✓ Successfully processed RFC function call");
             LOGGER.error("✓ Successfully processed RFC function call");
         } catch (AbapException e) {
@@ -0,0 +1,272 @@
+package org.dataingest.rfc.server.sap;
+
+import com.sap.conn.idoc.IDocRepository;
+import com.sap.conn.idoc.jco.JCoIDoc;
+import com.sap.conn.jco.JCoDestination;
+import com.sap.conn.jco.JCoDestinationManager;
+import com.sap.conn.jco.JCoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.config.SAPClientDataProvider;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Management of the JCo client destinations used by this server.
+ *
+ * Destinations and their IDoc repositories are looked up once per name and cached.
+ * Calls through execute() lease a connection slot of the destination first: the slots
+ * are sized to the destination's peak limit, so JCo's own pool never blocks and the
+ * time spent waiting for a connection becomes measurable.
+ *
+ * Handles:
+ * - Connection warm-up at startup: pool_capacity concurrent pings per destination
+ *   plus the repository, so the first calls find open connections and cached metadata
+ * - Metrics per destination: sap.destination.wait (time to get a connection slot),
+ *   sap.destination.exhausted (calls that found every slot in use),
+ *   sap.destination.timeouts and the gauges sap.destination.connections.in-use/.limit
+ *
+ * Configuration:
+ * - jco.destinations: destinations to warm up (default: SAP_CLIENT)
+ * - jco.destination.warm-up: open connections at startup (default: true)
+ * - jco.destination.warm-up-timeout-ms: time the pings of one destination may take,
+ *   unfinished pings are cancelled (default: 30000)
+ */
+@Component
+public class SAPDestinationManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SAPDestinationManager.class);
+
+    /**
+     * A call made with a leased connection of a destination.
+     */
+    public interface DestinationCall<T> {
+        T call(JCoDestination destination) throws Exception;
+    }
+
+    @Autowired
+    private SAPClientDataProvider clientDataProvider;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jco.destination.warm-up:true}")
+    private boolean warmUp;
+
+    @Value("${jco.destination.warm-up-timeout-ms:30000}")
+    private long warmUpTimeoutMs;
+
+    private final Map<String, ManagedDestination> destinations = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the destination with the given name.
+     *
+     * @param name the destination name
+     * @return the cached destination
+     * @throws JCoException if the destination cannot be created
+     */
+    public JCoDestination getDestination(String name) throws JCoException {
+        return managed(name).destination;
+    }
+
+    /**
+     * Returns the IDoc repository of the destination, loading it on first use.
+     *
+     * @param name the destination name
+     * @return the cached IDoc repository
+     * @throws JCoException if the repository cannot be loaded
+     */
+    public IDocRepository getIDocRepository(String name) throws JCoException {
+        ManagedDestination managed = managed(name);
+        IDocRepository repository = managed.idocRepository;
+        if (repository == null) {
+            synchronized (managed) {
+                if (managed.idocRepository == null) {
+                    managed.idocRepository = JCoIDoc.getIDocRepository(managed.destination);
+                }
+                repository = managed.idocRepository;
+            }
+        }
+        return repository;
+    }
+
+    /**
+     * Runs a call with a leased connection slot of the destination.
+     *
+     * @param name the destination name
+     * @param call the call to run
+     * @return the result of the call
+     * @throws JCoException if no connection slot is free within max_get_client_time
+     * @throws Exception if the call fails
+     */
+    public <T> T execute(String name, DestinationCall<T> call) throws Exception {
+        ManagedDestination managed = managed(name);
+        if (!managed.slots.tryAcquire()) {
+            managed.exhausted.increment();
+            long start = System.nanoTime();
+            boolean acquired = managed.slots.tryAcquire(managed.maxWaitMs, TimeUnit.MILLISECONDS);
+            managed.wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!acquired) {
+                managed.timeouts.increment();
+                throw new JCoException(0, "RESOURCE_EXHAUSTED", "No connection of destination " + name
+                        + " free within " + managed.maxWaitMs + " ms");
+            }
+        } else {
+            managed.wait.record(0, TimeUnit.NANOSECONDS);
+        }
+        try {
+            return call.call(managed.destination);
+        } finally {
+            managed.slots.release();
+        }
+    }
+
+    /**
+     * Opens the pooled connections of the configured destinations and loads their repositories.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmUp) {
+            return;
+        }
+        for (String name : clientDataProvider.getDestinationNames()) {
+            try {
+                ManagedDestination managed = managed(name);
+                int connections = managed.poolCapacity;
+                ExecutorService pingers = Executors.newFixedThreadPool(connections);
+                List<Future<Object>> pings = new ArrayList<>(connections);
+                int failed = 0;
+                long start = System.nanoTime();
+                try {
+                    // Concurrent pings hold one connection each, so the pool is filled to its capacity
+                    for (int i = 0; i < connections; i++) {
+                        pings.add(pingers.submit(() -> execute(name, destination -> {
+                            destination.ping();
+                            return null;
+                        })));
+                    }
+                    long deadline = start + TimeUnit.MILLISECONDS.toNanos(warmUpTimeoutMs);
+                    for (Future<Object> ping : pings) {
+                        try {
+                            ping.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                        } catch (ExecutionException e) {
+                            failed++;
+                            LOGGER.warn("Warm-up ping of destination {} failed: {}", name,
+                                    e.getCause().getMessage());
+                        } catch (TimeoutException e) {
+                            failed++;
+                            ping.cancel(true);
+                            LOGGER.warn("Warm-up ping of destination {} not finished within {} ms, cancelled",
+                                    name, warmUpTimeoutMs);
+                        }
+                    }
+                } finally {
+                    pingers.shutdownNow();
+                }
+                managed.destination.getRepository();
+                LOGGER.info("Destination {} warmed up: {} of {} connections in {} ms", name,
+                        connections - failed, connections, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.warn("Warm-up of destination {} failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the connection slot usage per destination for status endpoints.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        destinations.forEach((name, managed) -> {
+            Map<String, Object> destination = new HashMap<>();
+            destination.put("inUse", managed.peakLimit - managed.slots.availablePermits());
+            destination.put("limit", managed.peakLimit);
+            destination.put("exhausted", (long) managed.exhausted.count());
+            destination.put("timeouts", (long) managed.timeouts.count());
+            destination.put("maxWaitMs", managed.wait.max(TimeUnit.MILLISECONDS));
+            status.put(name, destination);
+        });
+        return status;
+    }
+
+    private ManagedDestination managed(String name) throws JCoException {
+        ManagedDestination managed = destinations.get(name);
+        if (managed != null) {
+            return managed;
+        }
+        synchronized (destinations) {
+            managed = destinations.get(name);
+            if (managed == null) {
+                managed = new ManagedDestination(name, lookupDestination(name),
+                        clientDataProvider.getDestinationProperties(name));
+                destinations.put(name, managed);
+            }
+            return managed;
+        }
+    }
+
+    /**
+     * Looks up a destination in JCo; package-private so tests can supply destinations.
+     */
+    JCoDestination lookupDestination(String name) throws JCoException {
+        return JCoDestinationManager.getDestination(name);
+    }
+
+    /**
+     * A destination with its cached repository, connection slots and meters.
+     */
+    private final class ManagedDestination {
+        final JCoDestination destination;
+        final int poolCapacity;
+        final int peakLimit;
+        final long maxWaitMs;
+        final Semaphore slots;
+        final Timer wait;
+        final Counter exhausted;
+        final Counter timeouts;
+        volatile IDocRepository idocRepository;
+
+        ManagedDestination(String name, JCoDestination destination, Properties properties) {
+            this.destination = destination;
+            this.poolCapacity = Integer.parseInt(properties.getProperty("jco.destination.pool_capacity", "1"));
+            this.peakLimit = Integer.parseInt(properties.getProperty("jco.destination.peak_limit", "10"));
+            this.maxWaitMs = Long.parseLong(properties.getProperty("jco.destination.max_get_client_time", "30000"));
+            this.slots = new Semaphore(peakLimit);
+            this.wait = Timer.builder("sap.destination.wait")
+                    .tag("destination", name)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            this.exhausted = Counter.builder("sap.destination.exhausted").tag("destination", name).register(meterRegistry);
+            this.timeouts = Counter.builder("sap.destination.timeouts").tag("destination", name).register(meterRegistry);
+            Gauge.builder("sap.destination.connections.in-use", slots, s -> peakLimit - s.availablePermits())
+                    .tag("destination", name)
+                    .register(meterRegistry);
+            Gauge.builder("sap.destination.connections.limit", () -> peakLimit)
+                    .tag("destination", name)
+                    .register(meterRegistry);
+        }
+    }
+}
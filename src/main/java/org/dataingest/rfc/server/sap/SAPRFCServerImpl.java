@@ -14,6 +14,10 @@ import com.sap.conn.idoc.jco.JCoIDocHandler;
 import com.sap.conn.idoc.jco.JCoIDocHandlerFactory;
 import com.sap.conn.idoc.jco.JCoIDocServerContext;
 import com.sap.conn.idoc.IDocDocumentList;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,17 +27,45 @@ import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.context.event.EventListener;
 import org.dataingest.rfc.server.publisher.IDocKafkaPublisher;
 import org.dataingest.rfc.server.config.SAPEnvironmentInitializer;
+import org.dataingest.rfc.server.codec.FlatRecordLayout;
+import org.dataingest.rfc.server.config.SAPServerDataProvider;
+import org.dataingest.rfc.server.exception.MemoryBudgetExceededException;
+import org.dataingest.rfc.server.exception.SenderRejectedException;
+import org.dataingest.rfc.server.rfc.GenericRFCHandler;
+import org.dataingest.rfc.server.scheduling.AdmissionController;
+import org.dataingest.rfc.server.scheduling.MemoryBudget;
+import org.dataingest.rfc.server.scheduling.PriorityLanes;
+import org.dataingest.rfc.server.scheduling.SenderScheduler;
+import org.dataingest.rfc.server.xml.IDocXmlRenderer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
 
 /**
  * SAP RFC Server Implementation using SAP JCo (Java Connector) 3.0.
  *
- * This component initializes and manages the RFC Server connection to SAP Gateway.
+ * This component initializes and manages the RFC Server connections to SAP Gateway.
  * When enabled, it registers with SAP Gateway and listens for incoming IDOC calls,
  * which are then published to Kafka topics.
  *
- * Configuration:
+ * One server is started per name in jco.servers (default: jco.server.progid), so a
+ * single process can serve several SAP systems, gateways or program IDs. Every
+ * server has its own JCo worker threads, handler factory and meters
+ * (rfc.server.idocs, rfc.server.errors, rfc.server.handle, rfc.server.threads.used,
+ * rfc.server.connections, tagged by server) and shares the publishing pipeline.
+ * Publishing slots are scheduled per sender system by SenderScheduler, latency-critical
+ * message types are published by their PriorityLanes lane and low-priority transactions
+ * are refused while Kafka is overloaded (AdmissionController). Packets hold in-flight
+ * memory budget (MemoryBudget) until they are published. The IDoc handler cannot raise
+ * ABAP exceptions, so its refusals reach SAP as system failures whose message starts
+ * with KAFKA_OVERLOADED, SENDER_BUSY or MEMORY_BUDGET_EXCEEDED; SAP retries the LUW either way.
+ *
+ * Configuration (per server, see SAPServerDataProvider):
  * - Gateway Host: SAP Gateway hostname/IP where server registers
  * - Gateway Service: SAP Gateway port or service name
  * - Program ID: Unique identifier for this RFC server in SAP
@@ -58,6 +90,12 @@ public class SAPRFCServerImpl {
     @Autowired
     private IDOCServerTIDHandler tidHandler;
 
+    @Autowired
+    private IDocXmlRenderer idocXmlRenderer;
+
+    @Autowired
+    private GenericRFCHandler genericRFCHandler;
+
     // NOT USED - Commenting out to simplify
     // @Autowired
     // private RFCFunctionCallListener rfcFunctionCallListener;
@@ -66,33 +104,27 @@ public class SAPRFCServerImpl {
     // @Autowired(required = false)
     // private SAPEnvironmentInitializer sapEnvironmentInitializer;
 
-    // RFC Server Configuration
-    @Value("${jco.server.enabled:false}")
-    private boolean enabled;
-
-    @Value("${jco.server.gwhost:localhost}")
-    private String gwhost;
-
-    @Value("${jco.server.gwserv:3300}")
-    private String gwserv;
+    @Autowired
+    private SAPServerDataProvider serverDataProvider;
 
-    @Value("${jco.server.progid:KAFKA_RFC}")
-    private String progid;
+    @Autowired
+    private SenderScheduler senderScheduler;
 
-    @Value("${jco.server.connection_count:4}")
-    private int connectionCount;
+    @Autowired
+    private PriorityLanes priorityLanes;
 
-    @Value("${jco.server.worker_thread_count:#{null}}")
-    private Integer workerThreadCount;
+    @Autowired
+    private AdmissionController admissionController;
 
-    @Value("${jco.server.worker_thread_min_count:#{null}}")
-    private Integer workerThreadMinCount;
+    @Autowired
+    private MemoryBudget memoryBudget;
 
-    @Value("${jco.server.saprouter:}")
-    private String saprouter;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
-    @Value("${jco.server.trace:0}")
-    private int trace;
+    // RFC Server Configuration
+    @Value("${jco.server.enabled:false}")
+    private boolean enabled;
 
     // NOT USED - Client config not needed for simple IDoc receive
     // @Value("${jco.client.ashost:localhost}")
@@ -110,11 +142,11 @@ public class SAPRFCServerImpl {
     // @Value("${jco.client.trace:0}")
     // private int clientTrace;
 
-    private JCoIDocServer rfcServer;  // Changed from JCoServer to JCoIDocServer
-    private boolean serverStarted = false;
+    private List<String> serverNames = Collections.emptyList();
+    private final Map<String, JCoIDocServer> rfcServers = new ConcurrentHashMap<>();  // Started servers by name
 
     /**
-     * Initializes the RFC Server on application startup.
+     * Initializes the RFC Servers on application startup.
      * Called automatically by Spring after the bean is created.
      */
     @PostConstruct
@@ -125,157 +157,162 @@ public class SAPRFCServerImpl {
             return;
         }
 
-        LOGGER.info("================================================");
-        LOGGER.info("SAP RFC Server Configuration:");
-        LOGGER.info("  Gateway Host: {}", gwhost);
-        LOGGER.info("  Gateway Service: {}", gwserv);
-        LOGGER.info("  Program ID: {}", progid);
-        LOGGER.info("  Connection Count: {}", connectionCount);
-        LOGGER.info("  SAP Router: {}", saprouter.isEmpty() ? "Not configured" : saprouter);
-        LOGGER.info("  Trace Level: {}", trace);
-        LOGGER.info("================================================");
+        serverNames = serverDataProvider.getServerNames();
+        for (String serverName : serverNames) {
+            Properties props = serverDataProvider.getServerProperties(serverName);
+            LOGGER.info("================================================");
+            LOGGER.info("SAP RFC Server Configuration ({}):", serverName);
+            LOGGER.info("  Gateway Host: {}", props.getProperty("jco.server.gwhost"));
+            LOGGER.info("  Gateway Service: {}", props.getProperty("jco.server.gwserv"));
+            LOGGER.info("  Program ID: {}", props.getProperty("jco.server.progid"));
+            LOGGER.info("  Connection Count: {}", props.getProperty("jco.server.connection_count"));
+            LOGGER.info("  Worker Threads: {}", props.getProperty("jco.server.worker_thread_count", "JCo default"));
+            LOGGER.info("  SAP Router: {}", props.getProperty("jco.server.saprouter", "Not configured"));
+            LOGGER.info("  Trace Level: {}", props.getProperty("jco.server.trace"));
+            LOGGER.info("================================================");
 
-        try {
-            startRFCServer();
-        } catch (Exception e) {
-            LOGGER.error("Failed to start SAP RFC Server: {}", e.getMessage(), e);
-            LOGGER.warn("Application will continue without RFC Server. IDOC data must be published directly.");
+            // A server that cannot start does not keep the others from serving
+            try {
+                startRFCServer(serverName);
+            } catch (Exception e) {
+                LOGGER.error("Failed to start SAP RFC Server {}: {}", serverName, e.getMessage(), e);
+                LOGGER.warn("Application will continue without RFC Server {}. IDOC data must be published directly.",
+                        serverName);
+            }
         }
     }
 
     /**
-     * Starts the SAP RFC Server and registers with gateway.
+     * Starts one SAP RFC Server and registers with its gateway.
      *
-     * Creates a JCoServer instance, registers the handler factory,
-     * and starts listening on the SAP Gateway.
+     * Creates a JCoIDocServer instance with its own handler factory and meters,
+     * and starts listening on the SAP Gateway. Every server runs its calls on its
+     * own JCo worker threads (jco.server.worker_thread_count); received IDocs go to
+     * the shared XML renderer and sinks.
      *
      * Note: The SAPEnvironmentInitializer must have already registered the
      * ServerDataProvider with the SAP environment.
      */
-    private void startRFCServer() throws Exception {
-        LOGGER.info("Starting SAP RFC Server with Program ID: {}", progid);
-        LOGGER.debug("  Gateway Host: {}", gwhost);
-        LOGGER.debug("  Gateway Service: {}", gwserv);
-        LOGGER.debug("  Connection Count: {}", connectionCount);
+    private void startRFCServer(String serverName) throws Exception {
+        LOGGER.info("Starting SAP RFC Server: {}", serverName);
 
         try {
             // EXACTLY like SAP's IDocServerExample.java
-            rfcServer = JCoIDoc.getServer(progid);
-            rfcServer.setIDocHandlerFactory(new MyIDocHandlerFactory());
+            JCoIDocServer rfcServer = JCoIDoc.getServer(serverName);
+            rfcServer.setIDocHandlerFactory(new MyIDocHandlerFactory(serverName));
             rfcServer.setTIDHandler(tidHandler);
+            if (genericRFCHandler.isEnabled()) {
+                // Non-IDoc functions configured in rfc.bridge.functions are bridged to Kafka
+                rfcServer.setCallHandlerFactory(genericRFCHandler);
+            }
             rfcServer.addServerErrorListener((JCoServerErrorListener) (server, msg, info, error) -> {
-                LOGGER.error("SAP JCo SERVER ERROR: {}", msg, error);
+                LOGGER.error("SAP JCo SERVER ERROR ({}): {}", serverName, msg, error);
             });
             rfcServer.addServerExceptionListener((JCoServerExceptionListener) (server, msg, info, exception) -> {
-                LOGGER.error("SAP JCo SERVER EXCEPTION: {}", msg, exception);
+                LOGGER.error("SAP JCo SERVER EXCEPTION ({}): {}", serverName, msg, exception);
             });
             rfcServer.start();
-            serverStarted = true;
+            rfcServers.put(serverName, rfcServer);
+            registerMeters(serverName, rfcServer);
 
             LOGGER.info("================================================");
             LOGGER.info("SAP RFC Server STARTED - Pattern: SAP IDocServerExample");
-            LOGGER.info("  Program ID: {}", progid);
-            LOGGER.info("  Gateway: {}:{}", gwhost, gwserv);
+            LOGGER.info("  Server: {}", serverName);
+            LOGGER.info("  Program ID: {}", rfcServer.getProgramID());
+            LOGGER.info("  Gateway: {}:{}", rfcServer.getGatewayHost(), rfcServer.getGatewayService());
             LOGGER.info("================================================");
 
         } catch (Exception e) {
-            LOGGER.error("Failed to start RFC Server: {}", e.getMessage(), e);
-            serverStarted = false;
+            LOGGER.error("Failed to start RFC Server {}: {}", serverName, e.getMessage(), e);
             throw new Exception("RFC Server initialization failed: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Builds the complete property set for RFC Server initialization.
-     *
-     * Note: These properties are now provided by SAPServerDataProvider
-     * instead of being used directly.
-     *
-     * @return Properties object with all RFC server settings
+     * Registers the thread and connection gauges of a started server.
      */
-    private Properties buildServerProperties() {
-        Properties props = new Properties();
-
-        // Gateway Connection Settings
-        props.setProperty("jco.server.gwhost", gwhost);
-        props.setProperty("jco.server.gwserv", gwserv);
-        props.setProperty("jco.server.progid", progid);
-        props.setProperty("jco.server.connection_count", String.valueOf(connectionCount));
-
-        // Optional Worker Thread Settings
-        if (workerThreadCount != null) {
-            props.setProperty("jco.server.worker_thread_count", String.valueOf(workerThreadCount));
-        }
-        if (workerThreadMinCount != null) {
-            props.setProperty("jco.server.worker_thread_min_count", String.valueOf(workerThreadMinCount));
-        }
-
-        // SAP Router (if behind firewall)
-        if (!saprouter.isEmpty()) {
-            props.setProperty("jco.server.saprouter", saprouter);
-        }
-
-        // Trace Settings
-        props.setProperty("jco.server.trace", String.valueOf(trace));
-
-        // Client Authentication Settings
-        props.setProperty("jco.client.ashost", ashost);
-        props.setProperty("jco.client.client", client);
-        props.setProperty("jco.client.lang", lang);
-        props.setProperty("jco.client.user", user);
-        props.setProperty("jco.client.passwd", passwd);
-        props.setProperty("jco.client.sysnr", sysnr);
-        props.setProperty("jco.client.trace", String.valueOf(clientTrace));
-
-        return props;
+    private void registerMeters(String serverName, JCoIDocServer rfcServer) {
+        Gauge.builder("rfc.server.threads.used", rfcServer, s -> s.getMonitor().getUsedServerThreadCount())
+                .tag("server", serverName)
+                .register(meterRegistry);
+        Gauge.builder("rfc.server.connections", rfcServer, JCoServer::getConnectionCount)
+                .tag("server", serverName)
+                .register(meterRegistry);
     }
 
     /**
-     * Returns the current status of the RFC Server.
+     * Returns the current status of the RFC Servers.
      */
     public String getServerInfo() {
-        String status = enabled ? (serverStarted ? "RUNNING" : "FAILED") : "DISABLED";
-        return String.format("RFC Server Status: %s (Program ID: %s, Gateway: %s:%s)",
-                status, progid, gwhost, gwserv);
+        if (!enabled) {
+            return "RFC Server Status: DISABLED";
+        }
+        StringBuilder info = new StringBuilder();
+        for (String serverName : serverNames) {
+            JCoIDocServer rfcServer = rfcServers.get(serverName);
+            if (info.length() > 0) {
+                info.append("; ");
+            }
+            if (rfcServer != null) {
+                info.append(String.format("RFC Server Status: RUNNING (Server: %s, Program ID: %s, Gateway: %s:%s)",
+                        serverName, rfcServer.getProgramID(), rfcServer.getGatewayHost(), rfcServer.getGatewayService()));
+            } else {
+                info.append(String.format("RFC Server Status: FAILED (Server: %s)", serverName));
+            }
+        }
+        return info.toString();
     }
 
     /**
-     * Stops the RFC Server gracefully on application shutdown.
+     * Stops the RFC Servers gracefully on application shutdown.
      */
     @EventListener
     public void onApplicationShutdown(ContextClosedEvent event) {
-        if (enabled && serverStarted) {
-            LOGGER.info("Stopping SAP RFC Server (Program ID: {})", progid);
-            try {
-                stopRFCServer();
-                serverStarted = false;
-            } catch (Exception e) {
-                LOGGER.error("Error stopping RFC Server: {}", e.getMessage(), e);
+        for (String serverName : serverNames) {
+            JCoIDocServer rfcServer = rfcServers.remove(serverName);
+            if (rfcServer != null) {
+                LOGGER.info("Stopping SAP RFC Server {}", serverName);
+                try {
+                    stopRFCServer(rfcServer);
+                } catch (Exception e) {
+                    LOGGER.error("Error stopping RFC Server {}: {}", serverName, e.getMessage(), e);
+                }
             }
         }
     }
 
     /**
-     * Stops the RFC Server.
+     * Stops an RFC Server.
      */
-    private void stopRFCServer() throws Exception {
-        LOGGER.info("Stopping RFC Server");
-        if (rfcServer != null) {
-            try {
-                rfcServer.stop();
-                LOGGER.info("RFC Server stopped successfully");
-            } catch (Exception e) {
-                LOGGER.error("Error stopping RFC Server: {}", e.getMessage(), e);
-                throw e;
-            }
+    private void stopRFCServer(JCoIDocServer rfcServer) throws Exception {
+        try {
+            rfcServer.stop();
+            LOGGER.info("RFC Server {} stopped successfully", rfcServer.getProgramID());
+        } catch (Exception e) {
+            LOGGER.error("Error stopping RFC Server: {}", e.getMessage(), e);
+            throw e;
         }
     }
 
     /**
-     * Returns whether the RFC Server is currently enabled and running.
+     * Returns whether the RFC Server is enabled and at least one server is running.
      */
     public boolean isRunning() {
-        return enabled && serverStarted && rfcServer != null;
+        return enabled && !rfcServers.isEmpty();
+    }
+
+    /**
+     * Returns the names of the configured servers, in configuration order.
+     */
+    public List<String> getServerNames() {
+        return serverNames;
+    }
+
+    /**
+     * Returns the running JCo server with the given name, or null if it is not running.
+     */
+    public JCoServer getServer(String serverName) {
+        return rfcServers.get(serverName);
     }
 
     // ========================================================================
@@ -286,7 +323,11 @@ public class SAPRFCServerImpl {
      * IDoc Handler Factory - exactly like SAP's MyIDocHandlerFactory
      */
     class MyIDocHandlerFactory implements JCoIDocHandlerFactory {
-        private JCoIDocHandler handler = new MyIDocReceiveHandler();
+        private final JCoIDocHandler handler;
+
+        MyIDocHandlerFactory(String serverName) {
+            this.handler = new MyIDocReceiveHandler(serverName);
+        }
 
         @Override
         public JCoIDocHandler getIDocHandler(JCoIDocServerContext serverCtx) {
@@ -301,6 +342,21 @@ public class SAPRFCServerImpl {
      * IDoc Receive Handler - EXACTLY like SAP's MyIDocReceiveHandler
      */
     class MyIDocReceiveHandler implements JCoIDocHandler {
+        private final String serverName;
+        private final Counter idocs;
+        private final Counter errors;
+        private final Timer handleTime;
+
+        MyIDocReceiveHandler(String serverName) {
+            this.serverName = serverName;
+            this.idocs = Counter.builder("rfc.server.idocs").tag("server", serverName).register(meterRegistry);
+            this.errors = Counter.builder("rfc.server.errors").tag("server", serverName).register(meterRegistry);
+            this.handleTime = Timer.builder("rfc.server.handle")
+                    .tag("server", serverName)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+        }
+
         @Override
         public void handleRequest(JCoServerContext serverCtx, IDocDocumentList idocList) {
             System.err.println("!!!!! IDoc Handler Called!");
@@ -308,28 +364,62 @@ public class SAPRFCServerImpl {
             LOGGER.error("!!!!! TID: {}", serverCtx.getTID());
             LOGGER.error("!!!!! IDoc Count: {}", idocList.getNumDocuments());
 
-            // EXACTLY like SAP example - save to XML file
-            java.io.FileOutputStream fos = null;
-            java.io.OutputStreamWriter osw = null;
-            try {
-                com.sap.conn.idoc.IDocXMLProcessor xmlProcessor = JCoIDoc.getIDocFactory().getIDocXMLProcessor();
-                String filename = serverCtx.getTID() + "_idoc.xml";
-                fos = new java.io.FileOutputStream(filename);
-                osw = new java.io.OutputStreamWriter(fos, "UTF8");
-                xmlProcessor.render(idocList, osw, com.sap.conn.idoc.IDocXMLProcessor.RENDER_WITH_TABS_AND_CRLF);
-                osw.flush();
-                LOGGER.error("!!!!! IDoc saved to: {}", filename);
-                System.err.println("!!!!! IDoc saved to: " + filename);
+            // Render once into the thread's XML buffer and hand it to the configured sinks,
+            // within the publishing slots of the sender system
+            long start = System.nanoTime();
+            String senderSystem = serverCtx.getConnectionAttributes().getSystemID();
+            // Latency-critical message types are published by their own priority lane,
+            // low-priority transactions are refused fast while Kafka is overloaded
+            PriorityLanes.Lane lane = priorityLanes.getLane(messageTypes(idocList));
+            if (!admissionController.admit(lane)) {
+                // JCoIDocHandler.handleRequest cannot throw AbapException: JCo returns the runtime
+                // exception to SAP as a system failure, the LUW stays in SM58 and is resent by
+                // the tRFC retry (RSARFCEX), so the message is all that tells it was load shedding
+                LOGGER.warn("IDocs of TID {} from {} refused, Kafka is overloaded", serverCtx.getTID(), senderSystem);
+                throw new RuntimeException("KAFKA_OVERLOADED: TID " + serverCtx.getTID() + " refused, retry later");
+            }
+            try (MemoryBudget.Reservation reservation = memoryBudget.reserve(payloadBytes(idocList));
+                 SenderScheduler.Permit permit = senderScheduler.acquire(senderSystem)) {
+                priorityLanes.execute(lane, () -> {
+                    idocXmlRenderer.render(serverCtx.getTID(), idocList);
+                    return null;
+                });
+                idocs.increment(idocList.getNumDocuments());
+                LOGGER.info("IDoc XML of TID {} ({}) written to sinks", serverCtx.getTID(), serverName);
+            } catch (SenderRejectedException | MemoryBudgetExceededException e) {
+                LOGGER.warn("IDocs of TID {} from {} rejected: {}", serverCtx.getTID(), senderSystem, e.getMessage());
+                String reason = e instanceof SenderRejectedException ? "SENDER_BUSY" : "MEMORY_BUDGET_EXCEEDED";
+                throw new RuntimeException(reason + ": " + e.getMessage(), e);
             } catch (Exception e) {
-                LOGGER.error("Error saving IDoc: {}", e.getMessage(), e);
+                errors.increment();
+                LOGGER.error("Error writing IDoc XML ({}): {}", serverName, e.getMessage(), e);
+                throw new RuntimeException("IDoc XML output error: " + e.getMessage(), e);
             } finally {
-                try {
-                    if (osw != null) osw.close();
-                    if (fos != null) fos.close();
-                } catch (Exception e) {
-                    LOGGER.error("Error closing file: {}", e.getMessage());
+                handleTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * Estimates the payload size of a packet as its flat-file size.
+         */
+        private long payloadBytes(IDocDocumentList idocList) {
+            long segments = 0;
+            for (int i = 0; i < idocList.getNumDocuments(); i++) {
+                segments += idocList.get(i).getNumSegments();
+            }
+            return idocList.getNumDocuments() * (long) FlatRecordLayout.EDI_DC40.getWidth()
+                    + segments * FlatRecordLayout.EDI_DD40.getWidth();
+        }
+
+        private List<String> messageTypes(IDocDocumentList idocList) {
+            List<String> messageTypes = new ArrayList<>();
+            for (int i = 0; i < idocList.getNumDocuments(); i++) {
+                String messageType = idocList.get(i).getMessageType();
+                if (!messageTypes.contains(messageType)) {
+                    messageTypes.add(messageType);
                 }
             }
+            return messageTypes;
         }
     }
 }
@@ -0,0 +1,240 @@
+package org.dataingest.rfc.server.sap;
+
+import com.sap.conn.jco.server.JCoServer;
+import com.sap.conn.jco.server.JCoServerMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.config.SAPServerDataProvider;
+import javax.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts the registered gateway connections and worker threads of the RFC servers to load.
+ *
+ * Samples the monitor of every running server each second, every server is scaled
+ * on its own (the CPU limit applies to the host). When SAP is waiting for us, all registered
+ * connections are busy: calls then queue at the gateway, so the share of busy
+ * connections is used as queue wait signal. Every evaluation interval:
+ * - average busy share above the scale-up threshold and CPU below the limit:
+ *   one more connection (and worker thread), up to the maximum
+ * - CPU above the limit: one connection less, the host cannot take more work
+ * - average busy share below the scale-down threshold for three intervals in a row:
+ *   one connection less, down to the minimum
+ *
+ * Changes are applied through SAPServerDataProvider.updateServerProperties, so the
+ * server is reconfigured without restart.
+ *
+ * Configuration:
+ * - jco.server.autoscale.enabled (default: false)
+ * - jco.server.autoscale.min-connections / max-connections (default: 2 / 16)
+ * - jco.server.autoscale.interval-ms: evaluation interval (default: 30000)
+ * - jco.server.autoscale.scale-up-utilization / scale-down-utilization (default: 0.8 / 0.3)
+ * - jco.server.autoscale.max-cpu: system CPU load limit for scaling up (default: 0.85)
+ */
+@Component
+public class ServerAutoscaler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerAutoscaler.class);
+
+    private static final int SCALE_DOWN_INTERVALS = 3;
+
+    @Autowired
+    private SAPRFCServerImpl rfcServer;
+
+    @Autowired
+    private SAPServerDataProvider serverDataProvider;
+
+    @Value("${jco.server.autoscale.enabled:false}")
+    private boolean enabled;
+
+    @Value("${jco.server.autoscale.min-connections:2}")
+    private int minConnections;
+
+    @Value("${jco.server.autoscale.max-connections:16}")
+    private int maxConnections;
+
+    @Value("${jco.server.autoscale.interval-ms:30000}")
+    private long intervalMs;
+
+    @Value("${jco.server.autoscale.scale-up-utilization:0.8}")
+    private double scaleUpUtilization;
+
+    @Value("${jco.server.autoscale.scale-down-utilization:0.3}")
+    private double scaleDownUtilization;
+
+    @Value("${jco.server.autoscale.max-cpu:0.85}")
+    private double maxCpu;
+
+    private ScheduledExecutorService scheduler;
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final Method cpuLoad = cpuLoadMethod(os);
+
+    private int samplesPerInterval;
+    private final Map<String, ScaleState> states = new ConcurrentHashMap<>();
+    private volatile double lastCpu;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        samplesPerInterval = (int) Math.max(1, intervalMs / 1000);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rfc-server-autoscaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sample, 1, 1, TimeUnit.SECONDS);
+        LOGGER.info("Server autoscaling enabled: {}..{} connections per server, evaluated every {} ms",
+                minConnections, maxConnections, intervalMs);
+    }
+
+    private void sample() {
+        double cpu = -1;
+        for (String serverName : rfcServer.getServerNames()) {
+            try {
+                JCoServer server = rfcServer.getServer(serverName);
+                if (server == null) {
+                    continue;
+                }
+                ScaleState state = states.computeIfAbsent(serverName, n -> new ScaleState());
+                JCoServerMonitor monitor = server.getMonitor();
+                int connections = Math.max(1, server.getConnectionCount());
+                state.busySum += Math.min(1.0, (double) monitor.getUsedServerThreadCount() / connections);
+                if (++state.samples < samplesPerInterval) {
+                    continue;
+                }
+                double utilization = state.busySum / state.samples;
+                state.busySum = 0;
+                state.samples = 0;
+                if (cpu < 0) {
+                    cpu = systemCpuLoad();
+                    lastCpu = cpu;
+                }
+                evaluate(serverName, server, state, connections, utilization, cpu);
+            } catch (Exception e) {
+                LOGGER.warn("Autoscaler sample of server {} failed: {}", serverName, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void evaluate(String serverName, JCoServer server, ScaleState state,
+                          int connections, double utilization, double cpu) {
+        state.lastUtilization = utilization;
+
+        int target = connections;
+        if (cpu > maxCpu) {
+            target = connections - 1;
+            state.idleIntervals = 0;
+        } else if (utilization >= scaleUpUtilization) {
+            target = connections + 1;
+            state.idleIntervals = 0;
+        } else if (utilization <= scaleDownUtilization) {
+            if (++state.idleIntervals >= SCALE_DOWN_INTERVALS) {
+                target = connections - 1;
+                state.idleIntervals = 0;
+            }
+        } else {
+            state.idleIntervals = 0;
+        }
+        target = Math.max(minConnections, Math.min(maxConnections, target));
+        if (target == connections) {
+            state.lastDecision = "hold at " + connections;
+            return;
+        }
+
+        Map<String, String> changes = new HashMap<>();
+        changes.put("jco.server.connection_count", String.valueOf(target));
+        // Every registered connection needs a worker thread to run its calls
+        if (server.getWorkerThreadCount() < target) {
+            changes.put("jco.server.worker_thread_count", String.valueOf(target));
+        }
+        state.lastDecision = String.format("%d -> %d connections (utilization %.2f, cpu %.2f)",
+                connections, target, utilization, cpu);
+        LOGGER.info("Autoscaling server {}: {}", serverName, state.lastDecision);
+        serverDataProvider.updateServerProperties(serverName, changes);
+    }
+
+    /**
+     * Finds the system CPU load of the JDK's OperatingSystemMXBean: getCpuLoad() since
+     * Java 14, the deprecated getSystemCpuLoad() before. Called reflectively, so the
+     * Java 11 build compiles without deprecation warnings on newer JDKs.
+     */
+    private static Method cpuLoadMethod(OperatingSystemMXBean os) {
+        if (!(os instanceof com.sun.management.OperatingSystemMXBean)) {
+            return null;
+        }
+        for (String name : new String[] {"getCpuLoad", "getSystemCpuLoad"}) {
+            try {
+                return com.sun.management.OperatingSystemMXBean.class.getMethod(name);
+            } catch (NoSuchMethodException e) {
+                // Try the older name
+            }
+        }
+        return null;
+    }
+
+    private double systemCpuLoad() {
+        if (cpuLoad != null) {
+            try {
+                double load = (Double) cpuLoad.invoke(os);
+                if (load >= 0) {
+                    return load;
+                }
+            } catch (ReflectiveOperationException e) {
+                LOGGER.debug("CPU load not available: {}", e.getMessage());
+            }
+        }
+        double loadAverage = os.getSystemLoadAverage();
+        return loadAverage >= 0 ? loadAverage / os.getAvailableProcessors() : 0;
+    }
+
+    /**
+     * Returns the last autoscaling inputs and decision for status endpoints.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("cpu", lastCpu);
+        Map<String, Object> servers = new HashMap<>();
+        states.forEach((serverName, state) -> {
+            Map<String, Object> serverStatus = new HashMap<>();
+            serverStatus.put("utilization", state.lastUtilization);
+            serverStatus.put("lastDecision", state.lastDecision);
+            servers.put(serverName, serverStatus);
+        });
+        status.put("servers", servers);
+        return status;
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Samples and last decision of one server; sums are touched by the scheduler thread only.
+     */
+    private static final class ScaleState {
+        double busySum;
+        int samples;
+        int idleIntervals;
+        volatile double lastUtilization;
+        volatile String lastDecision = "none";
+    }
+}
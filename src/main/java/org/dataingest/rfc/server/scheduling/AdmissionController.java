@@ -0,0 +1,232 @@
+package org.dataingest.rfc.server.scheduling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load shedding of new transactions while Kafka cannot keep up.
+ *
+ * A slow Kafka cluster otherwise keeps every JCo worker thread (and with it a gateway
+ * connection) blocked in send().get() until the delivery timeout expires. The controller
+ * samples the metrics of all producers and turns overloaded when any of them exceeds
+ * its threshold:
+ * - buffer usage: share of the producer buffer memory holding unsent or unacknowledged records
+ * - in-flight bytes: buffer memory in use, summed over all producers
+ * - ack latency: record queue time plus request latency (producer averages)
+ *
+ * While overloaded, new low-priority transactions are refused right away, so SAP
+ * reschedules them instead of holding a connection. Transactions of the protected
+ * priority lanes are always admitted. The controller recovers on its own once every
+ * metric is below its threshold times the recovery ratio.
+ *
+ * Handles:
+ * - Metrics: rfc.admission.shed (refused transactions, by lane) and the gauges
+ *   rfc.admission.overloaded, rfc.admission.buffer-usage, rfc.admission.ack-latency-ms
+ *
+ * Configuration:
+ * - admission.enabled (default: false)
+ * - admission.sample-ms: producer metrics sample interval (default: 500)
+ * - admission.max-buffer-usage (default: 0.8)
+ * - admission.max-in-flight-bytes (default: 0 = not checked)
+ * - admission.max-ack-latency-ms (default: 5000)
+ * - admission.recovery-ratio (default: 0.7)
+ * - admission.protected-lanes: priority lanes never shed (default: the first lane)
+ */
+@Component
+public class AdmissionController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionController.class);
+
+    private static final String PRODUCER_METRICS = "producer-metrics";
+
+    /** Lane name used for metrics of transactions published without priority lane */
+    private static final String NO_LANE = "none";
+
+    @Autowired
+    private PriorityLanes priorityLanes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${admission.enabled:false}")
+    private boolean enabled;
+
+    @Value("${admission.sample-ms:500}")
+    private long sampleMs;
+
+    @Value("${admission.max-buffer-usage:0.8}")
+    private double maxBufferUsage;
+
+    @Value("${admission.max-in-flight-bytes:0}")
+    private long maxInFlightBytes;
+
+    @Value("${admission.max-ack-latency-ms:5000}")
+    private double maxAckLatencyMs;
+
+    @Value("${admission.recovery-ratio:0.7}")
+    private double recoveryRatio;
+
+    @Value("${admission.protected-lanes:}")
+    private String protectedLaneNames;
+
+    private final Set<String> protectedLanes = new HashSet<>();
+    private final Map<String, Counter> shed = new HashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean overloaded;
+    private volatile double bufferUsage;
+    private volatile long inFlightBytes;
+    private volatile double ackLatencyMs;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        for (String name : protectedLaneNames.split(",")) {
+            if (!name.trim().isEmpty()) {
+                protectedLanes.add(name.trim());
+            }
+        }
+        if (protectedLanes.isEmpty() && priorityLanes.getFirstLane() != null) {
+            protectedLanes.add(priorityLanes.getFirstLane().getName());
+        }
+        Gauge.builder("rfc.admission.overloaded", this, c -> c.overloaded ? 1 : 0).register(meterRegistry);
+        Gauge.builder("rfc.admission.buffer-usage", this, c -> c.bufferUsage).register(meterRegistry);
+        Gauge.builder("rfc.admission.ack-latency-ms", this, c -> c.ackLatencyMs).register(meterRegistry);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "admission-controller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sample, sampleMs, sampleMs, TimeUnit.MILLISECONDS);
+        LOGGER.info("Admission control enabled: buffer usage {}, in-flight bytes {}, ack latency {} ms, protected lanes {}",
+                maxBufferUsage, maxInFlightBytes, maxAckLatencyMs, protectedLanes);
+    }
+
+    /**
+     * Decides whether a new transaction is processed.
+     *
+     * @param lane the priority lane of the transaction (null: published without lane)
+     * @return false if the transaction is to be refused for a later retry by SAP
+     */
+    public boolean admit(PriorityLanes.Lane lane) {
+        if (!overloaded || (lane != null && protectedLanes.contains(lane.getName()))) {
+            return true;
+        }
+        String laneName = lane != null ? lane.getName() : NO_LANE;
+        Counter counter;
+        synchronized (shed) {
+            counter = shed.computeIfAbsent(laneName, name -> Counter.builder("rfc.admission.shed")
+                    .tag("lane", name)
+                    .register(meterRegistry));
+        }
+        counter.increment();
+        return false;
+    }
+
+    /**
+     * Returns true while new low-priority transactions are refused.
+     */
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+
+    private void sample() {
+        try {
+            double usage = 0;
+            long bytes = 0;
+            double latency = 0;
+            for (Producer<String, byte[]> producer : priorityLanes.getProducers()) {
+                Map<MetricName, ? extends Metric> metrics = producer.metrics();
+                double total = value(metrics, "buffer-total-bytes");
+                double available = value(metrics, "buffer-available-bytes");
+                if (total > 0) {
+                    usage = Math.max(usage, (total - available) / total);
+                    bytes += (long) (total - available);
+                }
+                latency = Math.max(latency, value(metrics, "record-queue-time-avg") + value(metrics, "request-latency-avg"));
+            }
+            bufferUsage = usage;
+            inFlightBytes = bytes;
+            ackLatencyMs = latency;
+            update(usage, bytes, latency);
+        } catch (Exception e) {
+            LOGGER.warn("Admission control sample failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void update(double usage, long bytes, double latency) {
+        if (!overloaded) {
+            if (usage > maxBufferUsage || (maxInFlightBytes > 0 && bytes > maxInFlightBytes) || latency > maxAckLatencyMs) {
+                overloaded = true;
+                LOGGER.warn("Kafka overloaded (buffer usage {}, in-flight bytes {}, ack latency {} ms): "
+                        + "refusing new low-priority transactions", format(usage), bytes, format(latency));
+            }
+        } else if (usage <= maxBufferUsage * recoveryRatio
+                && (maxInFlightBytes <= 0 || bytes <= maxInFlightBytes * recoveryRatio)
+                && latency <= maxAckLatencyMs * recoveryRatio) {
+            overloaded = false;
+            LOGGER.info("Kafka recovered (buffer usage {}, in-flight bytes {}, ack latency {} ms): admitting all transactions",
+                    format(usage), bytes, format(latency));
+        }
+    }
+
+    private static double value(Map<MetricName, ? extends Metric> metrics, String name) {
+        for (Map.Entry<MetricName, ? extends Metric> entry : metrics.entrySet()) {
+            MetricName metricName = entry.getKey();
+            if (name.equals(metricName.name()) && PRODUCER_METRICS.equals(metricName.group())) {
+                Object value = entry.getValue().metricValue();
+                if (value instanceof Number && !Double.isNaN(((Number) value).doubleValue())) {
+                    return ((Number) value).doubleValue();
+                }
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static String format(double value) {
+        return String.format("%.2f", value);
+    }
+
+    /**
+     * Returns the admission state and the sampled producer metrics for status endpoints.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("overloaded", overloaded);
+        status.put("bufferUsage", bufferUsage);
+        status.put("inFlightBytes", inFlightBytes);
+        status.put("ackLatencyMs", ackLatencyMs);
+        return status;
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.dataingest.rfc.server.scheduling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.exception.MemoryBudgetExceededException;
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Byte-accounted budget for payloads received but not yet published.
+ *
+ * Every inbound transaction reserves its payload size before it is processed and
+ * returns it once published (or failed). When the budget is used up, new work waits
+ * for budget to be returned and is rejected after the maximum wait, so concurrent large
+ * packets on all server connections can no longer pile up in the heap.
+ *
+ * The budget is a fair semaphore of 1 KiB units: reservations are served in arrival
+ * order, so a large packet is not starved by a stream of small ones. A payload larger
+ * than the whole budget reserves the whole budget, i.e. it runs alone.
+ *
+ * Handles:
+ * - Metrics: gauges rfc.memory.budget.max-bytes / rfc.memory.budget.used-bytes,
+ *   rfc.memory.budget.wait (time to get budget) and rfc.memory.budget.rejected
+ *
+ * Configuration:
+ * - memory.budget.max-bytes: budget for in-flight payloads (default: 0 = unlimited, e.g. 268435456)
+ * - memory.budget.max-wait-ms: wait for budget before the call is rejected (default: 30000)
+ */
+@Component
+public class MemoryBudget {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryBudget.class);
+
+    private static final int UNIT = 1024;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${memory.budget.max-bytes:0}")
+    private long maxBytes;
+
+    @Value("${memory.budget.max-wait-ms:30000}")
+    private long maxWaitMs;
+
+    private final Reservation noReservation = new Reservation(0);
+    private int totalUnits;
+    private Semaphore units;
+    private Timer wait;
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() {
+        if (maxBytes <= 0) {
+            LOGGER.info("In-flight memory budget disabled (memory.budget.max-bytes=0)");
+            return;
+        }
+        totalUnits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxBytes / UNIT));
+        units = new Semaphore(totalUnits, true);
+        wait = Timer.builder("rfc.memory.budget.wait").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        rejected = Counter.builder("rfc.memory.budget.rejected").register(meterRegistry);
+        Gauge.builder("rfc.memory.budget.max-bytes", () -> (long) totalUnits * UNIT).register(meterRegistry);
+        Gauge.builder("rfc.memory.budget.used-bytes", this, MemoryBudget::getUsedBytes).register(meterRegistry);
+        LOGGER.info("In-flight memory budget: {} bytes, max wait {} ms", (long) totalUnits * UNIT, maxWaitMs);
+    }
+
+    /**
+     * Reserves budget for a received payload, waiting while the budget is used up.
+     *
+     * @param bytes the (estimated) payload size
+     * @return the reservation, to be closed once the payload is published or dropped
+     * @throws MemoryBudgetExceededException if no budget was returned within the maximum wait
+     */
+    public Reservation reserve(long bytes) throws MemoryBudgetExceededException {
+        if (units == null || bytes <= 0) {
+            return noReservation;
+        }
+        int needed = (int) Math.min(totalUnits, (bytes + UNIT - 1) / UNIT);
+        long start = System.nanoTime();
+        try {
+            if (!units.tryAcquire(needed, maxWaitMs, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new MemoryBudgetExceededException("No memory budget for " + bytes + " bytes within "
+                        + maxWaitMs + " ms (" + getUsedBytes() + " of " + (long) totalUnits * UNIT + " bytes in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MemoryBudgetExceededException("Interrupted waiting for memory budget");
+        }
+        wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Reservation(needed);
+    }
+
+    /**
+     * Returns the bytes currently reserved by in-flight payloads.
+     */
+    public long getUsedBytes() {
+        return units == null ? 0 : (long) (totalUnits - units.availablePermits()) * UNIT;
+    }
+
+    /**
+     * Returns the budget and its usage for status endpoints.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", units != null);
+        if (units != null) {
+            status.put("maxBytes", (long) totalUnits * UNIT);
+            status.put("usedBytes", getUsedBytes());
+            status.put("waiting", units.getQueueLength());
+            status.put("rejected", (long) rejected.count());
+        }
+        return status;
+    }
+
+    /**
+     * Budget held by one payload. Closing it returns the budget.
+     */
+    public final class Reservation implements AutoCloseable {
+        private final int reserved;
+        private boolean closed;
+
+        private Reservation(int reserved) {
+            this.reserved = reserved;
+        }
+
+        @Override
+        public void close() {
+            if (reserved == 0 || closed) {
+                return;
+            }
+            closed = true;
+            units.release(reserved);
+        }
+    }
+}
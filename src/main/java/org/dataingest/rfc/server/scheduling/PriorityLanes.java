@@ -0,0 +1,341 @@
+package org.dataingest.rfc.server.scheduling;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.config.ApplicationConfiguration;
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Priority lanes for IDoc publishing by message type.
+ *
+ * Every configured priority class gets its own hand-off queue, publisher threads and
+ * Kafka producer. The calling thread hands the publishing work of a transaction to
+ * the lane of its message type and waits for the result, so the transaction is still
+ * confirmed to SAP only after Kafka acknowledged it. Latency-critical message types
+ * thereby overtake bulk loads both in the process (no shared queue or threads) and on
+ * the wire (no shared producer buffer, batches and in-flight requests).
+ *
+ * Lanes are listed in priority order; a transaction with several message types runs
+ * in the first lane matching any of them. Unlisted message types are published by the
+ * calling thread with the default producer, as without lanes.
+ *
+ * Handles:
+ * - Producer of the current thread for sinks and publishers (getProducer)
+ * - Metrics per lane: rfc.lane.wait (time queued before a publisher thread takes the
+ *   work) and the gauge rfc.lane.queued
+ *
+ * Configuration:
+ * - priority.lanes: lane names in priority order (empty = no lanes)
+ * - priority.lane.{NAME}.message-types: message types (MESTYP) of the lane
+ * - priority.lane.{NAME}.threads: publisher threads (default: 2)
+ * - priority.lane.{NAME}.queue-size: hand-off queue capacity, callers block when full (default: 64)
+ * - priority.lane.{NAME}.producer.{setting}: producer settings of the lane, e.g. linger.ms
+ *   or batch.size, on top of the kafka.* settings
+ * - kafka.request.timeout.ms: longest wait for a full lane queue, and then for the work (default: 30000)
+ */
+@Component
+public class PriorityLanes {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PriorityLanes.class);
+
+    /** Producer settings that can be set per lane */
+    private static final String[] PRODUCER_SETTINGS = {
+        "linger.ms", "batch.size", "compression.type", "buffer.memory", "max.in.flight.requests.per.connection", "acks"
+    };
+
+    @Autowired
+    private Producer<String, byte[]> kafkaProducer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${priority.lanes:}")
+    private String laneNames;
+
+    @Value("${kafka.request.timeout.ms:30000}")
+    private long kafkaTimeoutMs;
+
+    private volatile boolean closed;
+
+    private final List<Lane> lanes = new ArrayList<>();
+    private final Map<String, Lane> lanesByMessageType = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (String name : laneNames.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            Lane lane = new Lane(name, lanes.size());
+            for (String messageType : environment.getProperty("priority.lane." + name + ".message-types", "").split(",")) {
+                if (!messageType.trim().isEmpty()) {
+                    lanesByMessageType.putIfAbsent(messageType.trim().toUpperCase(), lane);
+                }
+            }
+            lanes.add(lane);
+            LOGGER.info("Priority lane {}: {} thread(s), queue {}, message types {}",
+                    name, lane.threads.size(), lane.queue.remainingCapacity(),
+                    environment.getProperty("priority.lane." + name + ".message-types", ""));
+        }
+    }
+
+    /**
+     * Returns the lane of the given message type.
+     *
+     * @param messageType the IDoc message type (MESTYP)
+     * @return the lane, or null if the message type is published by the calling thread
+     */
+    public Lane getLane(String messageType) {
+        if (messageType == null || lanesByMessageType.isEmpty()) {
+            return null;
+        }
+        return lanesByMessageType.get(messageType.trim().toUpperCase());
+    }
+
+    /**
+     * Returns the lane with the highest priority of the given message types.
+     *
+     * @param messageTypes the message types of one transaction
+     * @return the lane, or null if none of the message types has a lane
+     */
+    public Lane getLane(Iterable<String> messageTypes) {
+        Lane result = null;
+        for (String messageType : messageTypes) {
+            Lane lane = getLane(messageType);
+            if (lane != null && (result == null || lane.priority < result.priority)) {
+                result = lane;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs the publishing work on a publisher thread of the lane and waits for its result.
+     *
+     * Without lane, or when already called on a lane thread, the work runs on the calling thread.
+     * The caller waits at most kafka.request.timeout.ms for the hand-off and again for the
+     * result; work that has not started by then is dropped.
+     *
+     * @param lane the lane (may be null)
+     * @param work the publishing work
+     * @return the result of the work
+     * @throws IOException if the lane is shut down, full or does not finish the work in time
+     * @throws Exception the exception thrown by the work
+     */
+    public <T> T execute(Lane lane, Callable<T> work) throws Exception {
+        if (lane == null || Thread.currentThread() instanceof LaneThread) {
+            return work.call();
+        }
+        if (closed) {
+            throw new IOException("Priority lane " + lane.name + " is shut down");
+        }
+        QueuedTask<T> task = new QueuedTask<>(work);
+        try {
+            if (!lane.queue.offer(task, kafkaTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Priority lane " + lane.name + " did not take the work within "
+                        + kafkaTimeoutMs + " ms");
+            }
+            return task.get(kafkaTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        } catch (InterruptedException e) {
+            task.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for priority lane " + lane.name, e);
+        } catch (TimeoutException e) {
+            task.cancel(false);
+            throw new IOException("Priority lane " + lane.name + " did not finish the work within "
+                    + kafkaTimeoutMs + " ms", e);
+        }
+    }
+
+    /**
+     * Returns the producer for the current thread: the lane's own producer on a
+     * publisher thread of a lane, the default producer otherwise.
+     */
+    public Producer<String, byte[]> getProducer() {
+        Thread thread = Thread.currentThread();
+        return thread instanceof LaneThread ? ((LaneThread) thread).lane.producer : kafkaProducer;
+    }
+
+    /**
+     * Returns the producer of the given lane, or the default producer without lane.
+     *
+     * @param lane the lane (may be null)
+     */
+    public Producer<String, byte[]> getProducer(Lane lane) {
+        return lane != null ? lane.producer : kafkaProducer;
+    }
+
+    /**
+     * Returns the default producer and the producers of all lanes.
+     */
+    public List<Producer<String, byte[]>> getProducers() {
+        List<Producer<String, byte[]>> producers = new ArrayList<>();
+        producers.add(kafkaProducer);
+        for (Lane lane : lanes) {
+            producers.add(lane.producer);
+        }
+        return producers;
+    }
+
+    /**
+     * Returns the lane with the highest priority, or null if no lanes are configured.
+     */
+    public Lane getFirstLane() {
+        return lanes.isEmpty() ? null : lanes.get(0);
+    }
+
+    /**
+     * Returns the queue length per lane for status endpoints.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        for (Lane lane : lanes) {
+            status.put(lane.name, lane.queue.size());
+        }
+        return status;
+    }
+
+    /**
+     * Stops the publisher threads and fails the work still queued, so no caller waits for it.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        closed = true;
+        for (Lane lane : lanes) {
+            List<QueuedTask<?>> remaining = new ArrayList<>();
+            lane.queue.drainTo(remaining);
+            for (QueuedTask<?> task : remaining) {
+                task.fail(new IOException("Priority lane " + lane.name + " shut down before publishing"));
+            }
+            if (!remaining.isEmpty()) {
+                LOGGER.warn("Priority lane {} shut down with {} transaction(s) queued", lane.name, remaining.size());
+            }
+            for (Thread thread : lane.threads) {
+                thread.interrupt();
+            }
+            lane.producer.close(Duration.ofSeconds(5));
+        }
+    }
+
+    /**
+     * A priority class: hand-off queue, publisher threads and producer.
+     */
+    public final class Lane {
+        private final String name;
+        private final int priority;
+        private final BlockingQueue<QueuedTask<?>> queue;
+        private final List<Thread> threads = new ArrayList<>();
+        private final Producer<String, byte[]> producer;
+        private final Timer wait;
+
+        private Lane(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+            String prefix = "priority.lane." + name + ".";
+            this.queue = new ArrayBlockingQueue<>(environment.getProperty(prefix + "queue-size", Integer.class, 64));
+
+            Properties props = ApplicationConfiguration.producerProperties(environment);
+            for (String setting : PRODUCER_SETTINGS) {
+                String value = environment.getProperty(prefix + "producer." + setting);
+                if (value != null) {
+                    props.put(setting, value);
+                }
+            }
+            props.put("client.id", "rfc-server-lane-" + name);
+            this.producer = new KafkaProducer<>(props);
+
+            this.wait = Timer.builder("rfc.lane.wait")
+                    .tag("lane", name)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            Gauge.builder("rfc.lane.queued", queue, BlockingQueue::size).tag("lane", name).register(meterRegistry);
+
+            int numThreads = Math.max(1, environment.getProperty(prefix + "threads", Integer.class, 2));
+            for (int i = 0; i < numThreads; i++) {
+                Thread thread = new LaneThread(this, "priority-lane-" + name + "-" + i);
+                thread.start();
+                threads.add(thread);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        private void run() {
+            try {
+                // Work interrupted by shutdown clears the interrupt flag, closed still stops the thread
+                while (!closed && !Thread.currentThread().isInterrupted()) {
+                    QueuedTask<?> task = queue.take();
+                    wait.record(System.nanoTime() - task.queuedAt, TimeUnit.NANOSECONDS);
+                    task.run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Publisher thread of a lane.
+     */
+    private static final class LaneThread extends Thread {
+        private final Lane lane;
+
+        LaneThread(Lane lane, String name) {
+            super(lane::run, name);
+            this.lane = lane;
+            setDaemon(true);
+        }
+    }
+
+    /**
+     * Publishing work handed to a lane, with its hand-off time.
+     */
+    private static final class QueuedTask<T> extends FutureTask<T> {
+        private final long queuedAt = System.nanoTime();
+
+        QueuedTask(Callable<T> work) {
+            super(work);
+        }
+
+        void fail(Exception e) {
+            setException(e);
+        }
+    }
+}
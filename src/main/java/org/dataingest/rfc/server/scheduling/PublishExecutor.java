@@ -0,0 +1,243 @@
+package org.dataingest.rfc.server.scheduling;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Execution mode for the per-IDoc publish tasks of a transaction.
+ *
+ * A transaction's IDocs are published as separate tasks whose blocking waits (Kafka
+ * acknowledgement, lane hand-off) overlap, while the calling JCo thread coordinates
+ * the transaction and confirms it only once every task finished. Modes:
+ * - caller: the tasks run one after another on the calling thread (no fan-out)
+ * - platform: a fixed pool of platform threads, sized by guesswork as any blocking pool
+ * - virtual: one virtual thread per task, no pool to size; needs a JDK with virtual
+ *   threads (21+), looked up at runtime as the code is built for Java 11. Without
+ *   them the platform mode is used.
+ *
+ * A virtual thread blocked inside a synchronized block pins its carrier thread. The
+ * pinning diagnostics make the JDK (21 to 23) print the stack of such blocking calls;
+ * the JFR event jdk.VirtualThreadPinned reports them on every JDK with virtual threads.
+ * PublishModeBenchmark (test sources) compares the modes under load.
+ *
+ * Handles:
+ * - Metrics: rfc.publish.task (task run time) and the gauge rfc.publish.tasks.running,
+ *   both tagged with the active mode
+ *
+ * Configuration:
+ * - publish.threads.mode: caller, platform or virtual (default: caller)
+ * - publish.threads.platform-size: threads of the platform mode (default: 16)
+ * - publish.threads.pinning-diagnostics: trace virtual threads pinned while blocking (default: false)
+ */
+@Component
+public class PublishExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PublishExecutor.class);
+
+    public static final String MODE_CALLER = "caller";
+    public static final String MODE_PLATFORM = "platform";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${publish.threads.mode:caller}")
+    private String mode = MODE_CALLER;
+
+    @Value("${publish.threads.platform-size:16}")
+    private int platformSize = 16;
+
+    @Value("${publish.threads.pinning-diagnostics:false}")
+    private boolean pinningDiagnostics;
+
+    private final AtomicInteger running = new AtomicInteger();
+    private String activeMode = MODE_CALLER;
+    private ExecutorService executor;
+    private Timer taskTime;
+
+    public PublishExecutor() {
+    }
+
+    /**
+     * Creates an executor outside the application context, e.g. for benchmarks.
+     *
+     * @param mode caller, platform or virtual
+     * @param platformSize threads of the platform mode
+     * @param pinningDiagnostics trace virtual threads pinned while blocking
+     */
+    public PublishExecutor(String mode, int platformSize, boolean pinningDiagnostics) {
+        this.mode = mode;
+        this.platformSize = platformSize;
+        this.pinningDiagnostics = pinningDiagnostics;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        String requested = mode.trim().toLowerCase();
+        if (MODE_VIRTUAL.equals(requested)) {
+            executor = newVirtualThreadExecutor();
+            if (executor != null) {
+                activeMode = MODE_VIRTUAL;
+            } else {
+                LOGGER.warn("Virtual threads need JDK 21 or later (running {}), using {} platform threads",
+                        System.getProperty("java.version"), platformSize);
+                requested = MODE_PLATFORM;
+            }
+        }
+        if (MODE_PLATFORM.equals(requested)) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(Math.max(1, platformSize), r -> {
+                Thread thread = new Thread(r, "idoc-publish-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            activeMode = MODE_PLATFORM;
+        } else if (!MODE_VIRTUAL.equals(requested) && !MODE_CALLER.equals(requested)) {
+            throw new IllegalStateException("Unknown publish.threads.mode '" + mode
+                    + "', expected caller, platform or virtual");
+        }
+
+        if (meterRegistry != null) {
+            taskTime = Timer.builder("rfc.publish.task")
+                    .tag("mode", activeMode)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            Gauge.builder("rfc.publish.tasks.running", running, AtomicInteger::get)
+                    .tag("mode", activeMode)
+                    .register(meterRegistry);
+        }
+        LOGGER.info("Publish tasks run in {} mode", activeMode);
+    }
+
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            if (pinningDiagnostics && System.getProperty("jdk.tracePinnedThreads") == null) {
+                // Read once when the first virtual thread is created
+                System.setProperty("jdk.tracePinnedThreads", "short");
+            }
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "idoc-publish-vt-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.debug("Virtual threads not available: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Runs the tasks of one transaction and waits until all of them finished.
+     *
+     * In caller mode (or for a single task) the tasks run in order on the calling thread
+     * and the first failure stops the rest. Otherwise all tasks run in parallel and the
+     * failure of the first failed task (in list order) is thrown once all finished.
+     *
+     * @param tasks the tasks
+     * @return the results, in task order
+     * @throws Exception the exception thrown by the first failed task
+     */
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws Exception {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (executor == null || tasks.size() <= 1) {
+            for (Callable<T> task : tasks) {
+                results.add(run(task));
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(() -> run(task)));
+        }
+        Exception failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    failure = (Exception) cause;
+                }
+                results.add(null);
+            } catch (InterruptedException e) {
+                for (Future<T> pending : futures) {
+                    pending.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private <T> T run(Callable<T> task) throws Exception {
+        running.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            return task.call();
+        } finally {
+            running.decrementAndGet();
+            if (taskTime != null) {
+                taskTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Returns the active mode: caller, platform or virtual.
+     */
+    public String getActiveMode() {
+        return activeMode;
+    }
+
+    /**
+     * Returns the configured and active mode and the running tasks for status endpoints.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("mode", mode);
+        status.put("activeMode", activeMode);
+        status.put("running", running.get());
+        if (MODE_PLATFORM.equals(activeMode)) {
+            status.put("platformSize", platformSize);
+        }
+        return status;
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
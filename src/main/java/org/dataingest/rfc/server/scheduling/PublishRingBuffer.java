@@ -0,0 +1,423 @@
+package org.dataingest.rfc.server.scheduling;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.dataingest.rfc.server.exception.KafkaPublishException;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock-free hand-off of IDocs from the JCo receive threads to the publishing threads.
+ *
+ * A pre-allocated ring of reused slots, each holding an IDoc and the completion handle
+ * of its transaction. Every slot carries a sequence number that tells producers and
+ * consumers whether it is free or filled for the current round, so neither side takes
+ * a lock: producers (JCo threads) claim slots with a CAS on the producer position,
+ * consumers claim a whole run of filled slots with one CAS on the consumer position
+ * and hand the batch to the handler after freeing the slots. The IDocs are read on
+ * the consumer threads, so they must not refer to state of the JCo call any more
+ * (table rows are copied into TableRowView instances on the JCo thread).
+ *
+ * A full ring holds producers back, an empty ring idles consumers, both through the
+ * configured wait strategy:
+ * - blocking: park on a lock condition, woken by the other side (lowest CPU use)
+ * - sleeping: spin, then yield, then park for 100 microseconds
+ * - yielding: spin, then yield the CPU (low latency, burns a core per waiting thread)
+ * - busy-spin: spin only (lowest latency, only with a core per thread to spare)
+ *
+ * Handles:
+ * - Metrics: gauge rfc.publish.ring.used (filled slots) and rfc.publish.ring.batch
+ *   (slots per consumer batch)
+ */
+public class PublishRingBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PublishRingBuffer.class);
+
+    /**
+     * Publishing stage of the ring, called on a consumer thread for every IDoc.
+     */
+    public interface Handler {
+
+        /**
+         * Publishes one IDoc; the completion is to be completed once it is acknowledged or failed.
+         *
+         * @param document the IDoc
+         * @param completion the completion handle of its transaction
+         * @throws Exception if the IDoc cannot be handed to publishing (completes it as failed)
+         */
+        void onEvent(SAPIDOCDocument document, Completion completion) throws Exception;
+    }
+
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final int batchSize;
+    private final Handler handler;
+    private final WaitStrategy notEmpty;
+    private final WaitStrategy notFull;
+    private final AtomicLong producerPosition = new AtomicLong();
+    private final AtomicLong consumerPosition = new AtomicLong();
+    private final List<Thread> consumers = new ArrayList<>();
+    private final DistributionSummary batches;
+    private volatile boolean running = true;
+
+    /**
+     * Creates the ring and starts its consumer threads.
+     *
+     * @param size number of slots, rounded up to a power of two
+     * @param numConsumers consumer threads
+     * @param batchSize maximum slots a consumer takes at once
+     * @param waitStrategy blocking, sleeping, yielding or busy-spin
+     * @param handler the publishing stage
+     * @param meterRegistry registry for the ring metrics (may be null)
+     */
+    public PublishRingBuffer(int size, int numConsumers, int batchSize, String waitStrategy, Handler handler,
+            MeterRegistry meterRegistry) {
+        int capacity = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+        this.slots = new Slot[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.batchSize = Math.max(1, batchSize);
+        this.handler = handler;
+        this.notEmpty = waitStrategy(waitStrategy);
+        this.notFull = waitStrategy(waitStrategy);
+
+        if (meterRegistry != null) {
+            Gauge.builder("rfc.publish.ring.used", this, PublishRingBuffer::getUsed).register(meterRegistry);
+            batches = DistributionSummary.builder("rfc.publish.ring.batch").register(meterRegistry);
+        } else {
+            batches = null;
+        }
+        for (int i = 0; i < Math.max(1, numConsumers); i++) {
+            Thread consumer = new Thread(this::consume, "idoc-publish-ring-" + i);
+            consumer.setDaemon(true);
+            consumer.start();
+            consumers.add(consumer);
+        }
+        LOGGER.info("Publish ring buffer: {} slots, {} consumer(s), batches of up to {}, {} wait strategy",
+                capacity, consumers.size(), this.batchSize, waitStrategy);
+    }
+
+    /**
+     * Hands the IDocs of one transaction to the consumers, waiting while the ring is full.
+     *
+     * @param documents the IDocs of the transaction
+     * @return the completion handle of the transaction
+     * @throws InterruptedException if interrupted while waiting for free slots
+     */
+    public Completion publish(List<SAPIDOCDocument> documents) throws InterruptedException {
+        Completion completion = new Completion(documents.size());
+        for (SAPIDOCDocument document : documents) {
+            long position = claim();
+            int index = (int) position & mask;
+            Slot slot = slots[index];
+            slot.document = document;
+            slot.completion = completion;
+            sequences.set(index, position + 1);
+        }
+        notEmpty.signal();
+        return completion;
+    }
+
+    private long claim() throws InterruptedException {
+        int attempt = 0;
+        while (true) {
+            long position = producerPosition.get();
+            long sequence = sequences.get((int) position & mask);
+            if (sequence == position) {
+                if (producerPosition.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (sequence < position) {
+                // Slot still holds the IDoc of the previous round: ring is full
+                if (!running) {
+                    throw new IllegalStateException("Publish ring buffer is shut down");
+                }
+                notFull.await(attempt++);
+            }
+        }
+    }
+
+    private void consume() {
+        SAPIDOCDocument[] documents = new SAPIDOCDocument[batchSize];
+        Completion[] completions = new Completion[batchSize];
+        int attempt = 0;
+        try {
+            while (running) {
+                long position = consumerPosition.get();
+                int count = 0;
+                while (count < batchSize && sequences.get((int) (position + count) & mask) == position + count + 1) {
+                    count++;
+                }
+                if (count == 0) {
+                    notEmpty.await(attempt++);
+                    continue;
+                }
+                if (!consumerPosition.compareAndSet(position, position + count)) {
+                    continue;
+                }
+                attempt = 0;
+
+                // Take the batch out of the ring and free its slots for the producers
+                for (int i = 0; i < count; i++) {
+                    int index = (int) (position + i) & mask;
+                    Slot slot = slots[index];
+                    documents[i] = slot.document;
+                    completions[i] = slot.completion;
+                    slot.document = null;
+                    slot.completion = null;
+                    sequences.set(index, position + i + slots.length);
+                }
+                notFull.signal();
+                if (batches != null) {
+                    batches.record(count);
+                }
+
+                for (int i = 0; i < count; i++) {
+                    try {
+                        handler.onEvent(documents[i], completions[i]);
+                    } catch (Exception e) {
+                        completions[i].complete(e);
+                    } catch (Throwable t) {
+                        // Errors too: the transaction must fail, and the consumer keeps running
+                        LOGGER.error("Publishing IDoc {} failed: {}", documents[i].getDocumentNumber(), t, t);
+                        completions[i].complete(new KafkaPublishException("Publishing failed: " + t, t));
+                    }
+                    documents[i] = null;
+                    completions[i] = null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of filled slots not yet taken by a consumer.
+     */
+    public long getUsed() {
+        return Math.max(0, producerPosition.get() - consumerPosition.get());
+    }
+
+    /**
+     * Stops the consumers and fails the IDocs still in the ring.
+     */
+    public void shutdown() {
+        running = false;
+        for (Thread consumer : consumers) {
+            consumer.interrupt();
+        }
+        for (Thread consumer : consumers) {
+            try {
+                consumer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        IllegalStateException shutDown = new IllegalStateException("Publish ring buffer shut down");
+        for (long position = consumerPosition.get(); position < producerPosition.get(); position++) {
+            int index = (int) position & mask;
+            if (sequences.get(index) == position + 1 && slots[index].completion != null) {
+                slots[index].completion.complete(shutDown);
+                slots[index].document = null;
+                slots[index].completion = null;
+            }
+        }
+    }
+
+    /**
+     * Completion handle of one transaction: counts its IDocs down as they are acknowledged.
+     */
+    public static final class Completion {
+        private final CountDownLatch remaining;
+        private volatile Exception failure;
+
+        /**
+         * Creates the handle of a transaction.
+         *
+         * @param documents number of IDocs of the transaction
+         */
+        public Completion(int documents) {
+            this.remaining = new CountDownLatch(documents);
+        }
+
+        /**
+         * Completes one IDoc of the transaction.
+         *
+         * @param error the publish failure, or null if the IDoc was acknowledged
+         */
+        public void complete(Exception error) {
+            if (error != null && failure == null) {
+                failure = error;
+            }
+            remaining.countDown();
+        }
+
+        /**
+         * Waits until all IDocs of the transaction completed.
+         *
+         * @param timeout the maximum wait
+         * @param unit the unit of the timeout
+         * @throws KafkaPublishException if IDocs of the transaction are still not completed after the timeout
+         * @throws Exception the first publish failure of the transaction
+         */
+        public void await(long timeout, TimeUnit unit) throws Exception {
+            if (!remaining.await(timeout, unit)) {
+                throw new KafkaPublishException(remaining.getCount() + " IDoc(s) of the transaction not acknowledged within "
+                        + unit.toMillis(timeout) + " ms");
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * A reused ring slot.
+     */
+    private static final class Slot {
+        private SAPIDOCDocument document;
+        private Completion completion;
+    }
+
+    private static WaitStrategy waitStrategy(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "blocking":
+                return new BlockingWait();
+            case "sleeping":
+                return new SleepingWait();
+            case "yielding":
+                return new YieldingWait();
+            case "busy-spin":
+                return new BusySpinWait();
+            default:
+                throw new IllegalStateException("Unknown ring buffer wait strategy '" + name
+                        + "', expected blocking, sleeping, yielding or busy-spin");
+        }
+    }
+
+    /**
+     * How a thread waits for the other side of the ring.
+     */
+    private interface WaitStrategy {
+
+        /**
+         * Waits once; the caller checks the ring again afterwards.
+         *
+         * @param attempt consecutive unsuccessful checks so far
+         */
+        void await(int attempt) throws InterruptedException;
+
+        /**
+         * Wakes waiting threads after the ring changed.
+         */
+        void signal();
+    }
+
+    private static final class BlockingWait implements WaitStrategy {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        @Override
+        public void await(int attempt) throws InterruptedException {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+                return;
+            }
+            lock.lock();
+            try {
+                waiters.incrementAndGet();
+                // Timed, as a signal between the caller's check and this wait is not seen
+                changed.await(1, TimeUnit.MILLISECONDS);
+            } finally {
+                waiters.decrementAndGet();
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void signal() {
+            if (waiters.get() > 0) {
+                lock.lock();
+                try {
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private static final class SleepingWait implements WaitStrategy {
+
+        @Override
+        public void await(int attempt) throws InterruptedException {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else if (attempt < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(100_000);
+            }
+            checkInterrupt();
+        }
+
+        @Override
+        public void signal() {
+        }
+    }
+
+    private static final class YieldingWait implements WaitStrategy {
+
+        @Override
+        public void await(int attempt) throws InterruptedException {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+            checkInterrupt();
+        }
+
+        @Override
+        public void signal() {
+        }
+    }
+
+    private static final class BusySpinWait implements WaitStrategy {
+
+        @Override
+        public void await(int attempt) throws InterruptedException {
+            Thread.onSpinWait();
+            checkInterrupt();
+        }
+
+        @Override
+        public void signal() {
+        }
+    }
+
+    private static void checkInterrupt() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package org.dataingest.rfc.server.scheduling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.exception.SenderRejectedException;
+import javax.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bulkheads per sender system with weighted fair scheduling of the publishing slots.
+ *
+ * Inbound calls (IDocs and bridged RFCs) take a permit before they publish. A sender
+ * system (SID of the calling SAP system) runs at most its own number of calls at once
+ * and keeps at most its queue size of calls waiting; further calls are rejected right
+ * away, so SAP retries them later. A runaway sender therefore never holds more server
+ * worker threads than its limit plus its queue.
+ *
+ * When the publishing slots shared by all senders are taken, waiting calls are
+ * admitted by start-time fair queueing: every call gets a virtual start tag, advancing
+ * by 1/weight per call of its sender, and the waiting call with the lowest tag runs
+ * next. Senders busy at the same time get slots in proportion to their weights,
+ * whatever their call rates are.
+ *
+ * Handles:
+ * - Metrics per sender: rfc.sender.calls (admitted), rfc.sender.rejected,
+ *   rfc.sender.wait (time to get a slot), rfc.sender.service (time holding a slot)
+ *   and the gauges rfc.sender.in-flight / rfc.sender.queued
+ *
+ * Configuration:
+ * - sender.bulkhead.enabled (default: false)
+ * - sender.bulkhead.total-concurrent: publishing slots shared by all senders (default: 16)
+ * - sender.bulkhead.max-concurrent[.{SID}]: calls running per sender (default: 8)
+ * - sender.bulkhead.queue-size[.{SID}]: calls waiting per sender (default: 16)
+ * - sender.bulkhead.weight[.{SID}]: share of the slots under contention (default: 1)
+ * - sender.bulkhead.max-wait-ms: wait for a slot before the call is rejected (default: 60000)
+ */
+@Component
+public class SenderScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SenderScheduler.class);
+
+    /** Sender name for calls whose system ID is not known */
+    public static final String UNKNOWN_SENDER = "UNKNOWN";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${sender.bulkhead.enabled:false}")
+    private boolean enabled;
+
+    @Value("${sender.bulkhead.total-concurrent:16}")
+    private int totalConcurrent;
+
+    @Value("${sender.bulkhead.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${sender.bulkhead.queue-size:16}")
+    private int queueSize;
+
+    @Value("${sender.bulkhead.weight:1}")
+    private double weight;
+
+    @Value("${sender.bulkhead.max-wait-ms:60000}")
+    private long maxWaitMs;
+
+    private final Permit noPermit = new Permit(null, 0);
+    private final Map<String, Sender> senders = new ConcurrentHashMap<>();
+
+    // Scheduler state, guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private int running;
+    private int waiting;
+    private double virtualTime;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            LOGGER.info("Sender bulkheads enabled: {} slots, {} running and {} queued calls per sender",
+                    totalConcurrent, maxConcurrent, queueSize);
+        }
+    }
+
+    /**
+     * Returns true if calls are scheduled per sender.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Waits for a publishing slot for a call of the given sender system.
+     *
+     * @param senderSystem the system ID of the calling SAP system (null: unknown)
+     * @return the permit, to be closed when the call is done
+     * @throws SenderRejectedException if the sender's queue is full or no slot was free in time
+     */
+    public Permit acquire(String senderSystem) throws SenderRejectedException {
+        if (!enabled) {
+            return noPermit;
+        }
+        Sender sender = getSender(senderSystem);
+        long begin = System.nanoTime();
+        Waiter waiter;
+
+        lock.lock();
+        try {
+            // Calls already waiting for this sender come first; their tags are only
+            // committed to the sender when they are granted, so rejected calls cost nothing
+            Waiter last = sender.queue.peekLast();
+            double start = Math.max(virtualTime, last != null ? last.start + 1 / sender.weight : sender.lastFinish);
+            if (waiting == 0 && running < totalConcurrent && sender.running < sender.limit) {
+                grant(sender, start);
+                sender.wait.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+                return new Permit(sender, System.nanoTime());
+            }
+            if (sender.queue.size() >= sender.queueSize) {
+                sender.rejected.increment();
+                throw new SenderRejectedException("Sender " + sender.name + " has " + sender.queue.size()
+                        + " calls waiting already");
+            }
+            waiter = new Waiter(start, lock.newCondition());
+            sender.queue.addLast(waiter);
+            waiting++;
+            dispatch();
+
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            while (!waiter.granted && remaining > 0) {
+                remaining = waiter.ready.awaitNanos(remaining);
+            }
+            if (!waiter.granted) {
+                sender.queue.remove(waiter);
+                waiting--;
+                sender.rejected.increment();
+                throw new SenderRejectedException("No slot for sender " + sender.name + " within " + maxWaitMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(sender);
+            throw new SenderRejectedException("Interrupted waiting for a slot for sender " + sender.name);
+        } finally {
+            lock.unlock();
+        }
+
+        sender.wait.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+        return new Permit(sender, System.nanoTime());
+    }
+
+    /**
+     * Gives up the waiter of the current thread after an interrupt, or the slot it was granted meanwhile.
+     */
+    private void abandon(Sender sender) {
+        for (Waiter waiter : sender.queue) {
+            if (waiter.thread == Thread.currentThread()) {
+                sender.queue.remove(waiter);
+                waiting--;
+                sender.rejected.increment();
+                return;
+            }
+        }
+        // Granted while being interrupted: hand the slot on
+        release(sender);
+    }
+
+    /**
+     * Admits waiting calls while slots are free, lowest start tag first. Called with the lock held.
+     */
+    private void dispatch() {
+        while (running < totalConcurrent && waiting > 0) {
+            Sender next = null;
+            for (Sender sender : senders.values()) {
+                Waiter head = sender.queue.peekFirst();
+                if (head != null && sender.running < sender.limit
+                        && (next == null || head.start < next.queue.peekFirst().start)) {
+                    next = sender;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Waiter waiter = next.queue.pollFirst();
+            waiting--;
+            grant(next, waiter.start);
+            waiter.granted = true;
+            waiter.ready.signal();
+        }
+    }
+
+    private void grant(Sender sender, double start) {
+        running++;
+        sender.running++;
+        sender.calls.increment();
+        sender.lastFinish = start + 1 / sender.weight;
+        virtualTime = Math.max(virtualTime, start);
+    }
+
+    private void release(Sender sender) {
+        lock.lock();
+        try {
+            running--;
+            sender.running--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Sender getSender(String senderSystem) {
+        String name = senderSystem == null || senderSystem.trim().isEmpty() ? UNKNOWN_SENDER : senderSystem.trim();
+        Sender sender = senders.get(name);
+        if (sender != null) {
+            return sender;
+        }
+        return senders.computeIfAbsent(name, Sender::new);
+    }
+
+    /**
+     * Returns running and waiting calls per sender for status endpoints.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        if (!enabled) {
+            return status;
+        }
+        lock.lock();
+        try {
+            status.put("running", running);
+            status.put("waiting", waiting);
+            for (Sender sender : senders.values()) {
+                Map<String, Object> senderStatus = new HashMap<>();
+                senderStatus.put("running", sender.running);
+                senderStatus.put("queued", sender.queue.size());
+                senderStatus.put("limit", sender.limit);
+                senderStatus.put("weight", sender.weight);
+                senderStatus.put("calls", (long) sender.calls.count());
+                senderStatus.put("rejected", (long) sender.rejected.count());
+                status.put(sender.name, senderStatus);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return status;
+    }
+
+    /**
+     * A publishing slot held by a call. Closing it admits the next waiting call.
+     */
+    public final class Permit implements AutoCloseable {
+        private final Sender sender;
+        private final long grantedAt;
+        private boolean closed;
+
+        private Permit(Sender sender, long grantedAt) {
+            this.sender = sender;
+            this.grantedAt = grantedAt;
+        }
+
+        @Override
+        public void close() {
+            if (sender == null || closed) {
+                return;
+            }
+            closed = true;
+            sender.service.record(System.nanoTime() - grantedAt, TimeUnit.NANOSECONDS);
+            release(sender);
+        }
+    }
+
+    /**
+     * Bulkhead of one sender system: limits, queue, fair-queueing tag and meters.
+     */
+    private final class Sender {
+        final String name;
+        final int limit;
+        final int queueSize;
+        final double weight;
+        final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        final Counter calls;
+        final Counter rejected;
+        final Timer wait;
+        final Timer service;
+        int running;
+        double lastFinish;
+
+        Sender(String name) {
+            this.name = name;
+            this.limit = environment.getProperty("sender.bulkhead.max-concurrent." + name, Integer.class, maxConcurrent);
+            this.queueSize = environment.getProperty("sender.bulkhead.queue-size." + name, Integer.class, SenderScheduler.this.queueSize);
+            this.weight = Math.max(0.01, environment.getProperty("sender.bulkhead.weight." + name, Double.class,
+                    SenderScheduler.this.weight));
+            this.calls = Counter.builder("rfc.sender.calls").tag("sender", name).register(meterRegistry);
+            this.rejected = Counter.builder("rfc.sender.rejected").tag("sender", name).register(meterRegistry);
+            this.wait = Timer.builder("rfc.sender.wait")
+                    .tag("sender", name)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            this.service = Timer.builder("rfc.sender.service").tag("sender", name).register(meterRegistry);
+            Gauge.builder("rfc.sender.in-flight", this, s -> s.running).tag("sender", name).register(meterRegistry);
+            Gauge.builder("rfc.sender.queued", queue, ArrayDeque::size).tag("sender", name).register(meterRegistry);
+            LOGGER.info("Sender {}: {} running, {} queued calls, weight {}", name, limit, queueSize, weight);
+        }
+    }
+
+    /**
+     * A call waiting for a slot.
+     */
+    private static final class Waiter {
+        final double start;
+        final Condition ready;
+        final Thread thread = Thread.currentThread();
+        boolean granted;
+
+        Waiter(double start, Condition ready) {
+            this.start = start;
+            this.ready = ready;
+        }
+    }
+}
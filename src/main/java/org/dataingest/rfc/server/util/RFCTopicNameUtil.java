@@ -0,0 +1,53 @@
+package org.dataingest.rfc.server.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Utility for generating Kafka topic names for bridged RFC function calls.
+ *
+ * Topic names follow the pattern configured in application.properties (kafka.rfc.topic.prefix)
+ * plus {FUNCTION_NAME} where special characters (e.g., namespace slashes) are replaced with
+ * underscores.
+ *
+ * Default pattern: SAP.RFC.{FUNCTION_NAME}
+ * Examples:
+ * - SAP.RFC.Z_SALES_ORDER_CREATE
+ * - SAP.RFC.BIC_ZMATERIAL_PUSH (for /BIC/ZMATERIAL_PUSH)
+ */
+@Component
+public class RFCTopicNameUtil {
+
+    @Value("${kafka.rfc.topic.prefix:SAP.RFC}")
+    private String topicPrefix;
+
+    /**
+     * Generates a Kafka topic name for the given RFC function module.
+     *
+     * Topic format: {prefix}.{FUNCTION_NAME}
+     *
+     * @param functionName the RFC function module name (e.g., Z_SALES_ORDER_CREATE)
+     * @return the topic name (e.g., SAP.RFC.Z_SALES_ORDER_CREATE)
+     */
+    public String getTopicName(String functionName) {
+        return topicPrefix + "." + sanitize(functionName);
+    }
+
+    /**
+     * Converts a string to a valid Kafka topic name by replacing invalid characters.
+     *
+     * @param name the string to sanitize
+     * @return the sanitized topic name component
+     */
+    private String sanitize(String name) {
+        if (name == null || name.isEmpty()) {
+            return "UNKNOWN";
+        }
+
+        // Valid characters: a-z, A-Z, 0-9, _, -, .
+        String sanitized = name.replaceAll("[^a-zA-Z0-9_.-]", "_");
+        sanitized = sanitized.replaceAll("^_+|_+$", "");
+
+        return sanitized.isEmpty() ? "UNKNOWN" : sanitized;
+    }
+}
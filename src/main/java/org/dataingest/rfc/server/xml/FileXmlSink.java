@@ -0,0 +1,39 @@
+package org.dataingest.rfc.server.xml;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes the XML of each transaction to {dir}/{TID}_idoc.xml.
+ *
+ * Configuration:
+ * - idoc.xml.sink.file.dir: target directory (default: working directory)
+ */
+@Component
+public class FileXmlSink implements IIDocXmlSink {
+
+    public static final String NAME = "file";
+
+    @Value("${idoc.xml.sink.file.dir:.}")
+    private String dir;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void write(String tid, int numDocuments, ByteBuffer data) throws IOException {
+        File target = new File(dir, tid + "_idoc.xml");
+        try (FileOutputStream out = new FileOutputStream(target); FileChannel channel = out.getChannel()) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.dataingest.rfc.server.xml;
+
+import com.sap.conn.idoc.IDocDocumentList;
+import com.sap.conn.idoc.IDocXMLProcessor;
+import org.dataingest.rfc.server.codec.DirectBufferPool;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Off-heap buffer holding the rendered XML of one transaction.
+ *
+ * IDocXMLProcessor.render writes through a UTF-8 writer into a direct buffer taken
+ * from the DirectBufferPool; when the XML outgrows it, the content moves to a buffer
+ * of the next size class. The XML of large transactions thereby never lives in the
+ * heap. The buffer must be closed once all sinks are done, which returns it to the pool.
+ */
+public final class IDocXmlBuffer implements AutoCloseable {
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private final DirectBufferPool pool;
+    private final Writer writer;
+    private DirectBufferPool.PooledBuffer pooled;
+    private ByteBuffer bytes;
+
+    private IDocXmlBuffer(DirectBufferPool pool) {
+        this.pool = pool;
+        this.pooled = pool.acquire(INITIAL_CAPACITY);
+        this.bytes = pooled.buffer();
+        this.writer = new OutputStreamWriter(new BufferOutputStream(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Renders an IDoc list into a buffer from the pool.
+     *
+     * @param pool the pool to take the buffer from
+     * @param processor the IDoc XML processor
+     * @param idocList the IDocs to render
+     * @param options IDocXMLProcessor render options (0 for compact output)
+     * @return the buffer holding the rendered XML, to be closed by the caller
+     * @throws IOException if rendering fails
+     */
+    public static IDocXmlBuffer render(DirectBufferPool pool, IDocXMLProcessor processor, IDocDocumentList idocList,
+            int options) throws IOException {
+        IDocXmlBuffer buffer = new IDocXmlBuffer(pool);
+        try {
+            processor.render(idocList, buffer.writer, options);
+            buffer.writer.flush();
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a new view of the rendered XML, positioned at its start.
+     *
+     * Each consumer needs its own view, as reading advances its position. The view is
+     * only valid until the buffer is closed.
+     */
+    public ByteBuffer data() {
+        ByteBuffer view = bytes.duplicate();
+        view.flip();
+        return view;
+    }
+
+    /**
+     * Returns the length of the rendered XML in bytes.
+     */
+    public int size() {
+        return bytes.position();
+    }
+
+    /**
+     * Returns the buffer to the pool.
+     */
+    @Override
+    public void close() {
+        if (pooled != null) {
+            pooled.close();
+            pooled = null;
+        }
+    }
+
+    private void ensureRemaining(int length) {
+        if (bytes.remaining() >= length) {
+            return;
+        }
+        DirectBufferPool.PooledBuffer larger = pool.acquire((int) Math.min(Integer.MAX_VALUE - 8,
+                Math.max((long) bytes.capacity() * 2, (long) bytes.position() + length)));
+        bytes.flip();
+        larger.buffer().put(bytes);
+        pooled.close();
+        pooled = larger;
+        bytes = larger.buffer();
+    }
+
+    /**
+     * Stream the writer encodes into, appends to the current direct buffer.
+     */
+    private final class BufferOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+            ensureRemaining(1);
+            bytes.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureRemaining(len);
+            bytes.put(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package org.dataingest.rfc.server.xml;
+
+import com.sap.conn.idoc.IDocDocument;
+import com.sap.conn.idoc.IDocException;
+import com.sap.conn.idoc.IDocRepository;
+import com.sap.conn.idoc.IDocRuntimeException;
+import com.sap.conn.idoc.IDocSegment;
+import com.sap.conn.idoc.jco.JCoIDoc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.dataingest.rfc.server.idoc.IIDOCDocumentReader;
+import org.dataingest.rfc.server.idoc.SegmentLines;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming reader turning IDoc XML back into SAPIDOCDocuments, one IDoc at a time.
+ *
+ * Reads the standard IDoc XML layout rendered by SAP and the IDoc XML sinks: a root
+ * element named after the basic type (e.g. ORDERS05) holding one IDOC element per
+ * document, each with an EDI_DC40 control record followed by its segment elements
+ * (SEGMENT="1"), whose fields precede their child segments.
+ *
+ * Handles:
+ * - StAX pull parsing: memory is bounded by the largest single IDoc, not the file
+ * - Control record: every EDI_DC40 field, message type (MESTYP) and code (MESCOD)
+ *   as for IDocs received as RFC tables
+ * - Segments: elements with a SEGMENT attribute, nested to any depth without recursion;
+ *   written as SEGMENT/DATA lines (SegmentLines) like the IDoc API receiver's flat
+ *   output, starting with the root segment named after the root element
+ * - No DTDs or external entities are resolved
+ *
+ * The DATA line of a segment is IDocSegment.toString(), which needs the segment
+ * metadata. With an IDoc repository the segments are rebuilt through the IDoc API,
+ * so the lines equal those of IDocs received through the IDoc API. Without one (or
+ * if the repository does not know the IDoc type) the DATA line lists the fields as
+ * NAME=value instead. Either way the field widths are unknown to the reader, so the
+ * documents carry no data records for the flat-file codec.
+ *
+ * Not thread-safe; use one reader per stream.
+ */
+public class IDocXmlReader implements IIDOCDocumentReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IDocXmlReader.class);
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static final String IDOC = "IDOC";
+    private static final String CONTROL_RECORD = "EDI_DC40";
+    private static final String SEGMENT_ATTRIBUTE = "SEGMENT";
+
+    /**
+     * Receives the documents read from a stream.
+     */
+    public interface DocumentHandler {
+        void document(SAPIDOCDocument document) throws IOException;
+    }
+
+    private final XMLStreamReader xml;
+    private final String senderSystem;
+    private final IDocRepository repository;
+    private String rootType;
+    private boolean rootKnown;
+
+    /**
+     * Creates a reader; the encoding is taken from the XML declaration (default UTF-8).
+     *
+     * @param in the IDoc XML
+     * @param senderSystem sender system set on the documents
+     * @throws IOException if the stream is not XML
+     */
+    public IDocXmlReader(InputStream in, String senderSystem) throws IOException {
+        this(in, null, senderSystem);
+    }
+
+    /**
+     * Creates a reader for XML without (or overriding) an XML declaration.
+     *
+     * @param in the IDoc XML
+     * @param encoding the character encoding, null to detect it
+     * @param senderSystem sender system set on the documents
+     * @throws IOException if the stream is not XML
+     */
+    public IDocXmlReader(InputStream in, String encoding, String senderSystem) throws IOException {
+        this(in, encoding, senderSystem, (IDocRepository) null);
+    }
+
+    /**
+     * Creates a reader writing the segment lines through the IDoc API.
+     *
+     * @param in the IDoc XML
+     * @param encoding the character encoding, null to detect it
+     * @param senderSystem sender system set on the documents
+     * @param repository the IDoc repository for the segment metadata (may be null)
+     * @throws IOException if the stream is not XML
+     */
+    public IDocXmlReader(InputStream in, String encoding, String senderSystem, IDocRepository repository)
+            throws IOException {
+        try {
+            this.xml = encoding != null ? FACTORY.createXMLStreamReader(in, encoding) : FACTORY.createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot read IDoc XML: " + e.getMessage(), e);
+        }
+        this.senderSystem = senderSystem;
+        this.repository = repository;
+    }
+
+    /**
+     * Creates a reader for IDOC elements cut out of their file (IDocXmlSplitter),
+     * which lack the root element naming the root segment. The element wrapping
+     * them is not taken as the root element.
+     *
+     * @param in the IDoc XML
+     * @param encoding the character encoding, null to detect it
+     * @param senderSystem sender system set on the documents
+     * @param rootType the name of the file's root element, null if it has none
+     * @throws IOException if the stream is not XML
+     */
+    IDocXmlReader(InputStream in, String encoding, String senderSystem, String rootType) throws IOException {
+        this(in, encoding, senderSystem, (IDocRepository) null);
+        this.rootType = rootType;
+        this.rootKnown = true;
+    }
+
+    /**
+     * Reads all IDocs of a stream.
+     *
+     * @param in the IDoc XML
+     * @param senderSystem sender system set on the documents
+     * @param handler receives every document in file order
+     * @return the number of documents read
+     * @throws IOException if the XML is malformed or the handler fails
+     */
+    public static int readAll(InputStream in, String senderSystem, DocumentHandler handler) throws IOException {
+        return readAll(in, senderSystem, null, handler);
+    }
+
+    /**
+     * Reads all IDocs of a stream, writing the segment lines through the IDoc API.
+     *
+     * @param in the IDoc XML
+     * @param senderSystem sender system set on the documents
+     * @param repository the IDoc repository for the segment metadata (may be null)
+     * @param handler receives every document in file order
+     * @return the number of documents read
+     * @throws IOException if the XML is malformed or the handler fails
+     */
+    public static int readAll(InputStream in, String senderSystem, IDocRepository repository,
+                              DocumentHandler handler) throws IOException {
+        int count = 0;
+        try (IDocXmlReader reader = new IDocXmlReader(in, null, senderSystem, repository)) {
+            SAPIDOCDocument document;
+            while ((document = reader.read()) != null) {
+                handler.document(document);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public SAPIDOCDocument read() throws IOException {
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT) {
+                    if (IDOC.equals(xml.getLocalName())) {
+                        return readIDoc();
+                    }
+                    if (rootType == null && !rootKnown) {
+                        // Root element, named after the IDoc type
+                        rootType = xml.getLocalName();
+                    }
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed IDoc XML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the content of an IDOC element, positioned on its start tag.
+     */
+    private SAPIDOCDocument readIDoc() throws XMLStreamException {
+        SAPIDOCDocument document = new SAPIDOCDocument();
+        document.setSenderSystem(senderSystem);
+        Map<String, String> controlRecord = new LinkedHashMap<>();
+        List<String> segments = new ArrayList<>();
+        // Open segments; a segment's lines are written once its fields are complete
+        List<Segment> open = new ArrayList<>();
+        IDocDocument apiDocument = null;
+        boolean useApi = repository != null;
+
+        while (true) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if (CONTROL_RECORD.equals(name) && open.isEmpty()) {
+                    readFields(controlRecord);
+                } else if (xml.getAttributeValue(null, SEGMENT_ATTRIBUTE) != null) {
+                    if (useApi && apiDocument == null) {
+                        apiDocument = createDocument(controlRecord);
+                        useApi = apiDocument != null;
+                    }
+                    IDocSegment apiSegment = null;
+                    if (useApi) {
+                        IDocSegment parent = open.isEmpty()
+                                ? apiDocument.getRootSegment()
+                                : open.get(open.size() - 1).apiSegment;
+                        apiSegment = addChild(parent, name);
+                        useApi = apiSegment != null;
+                    }
+                    if (!open.isEmpty()) {
+                        open.get(open.size() - 1).flush(segments);
+                    }
+                    open.add(new Segment(name, open.size() + 1, apiSegment));
+                } else if (!open.isEmpty()) {
+                    Segment segment = open.get(open.size() - 1);
+                    String value = xml.getElementText();
+                    segment.addField(name, value);
+                    if (useApi) {
+                        useApi = setValue(segment.apiSegment, name, value);
+                    }
+                } else {
+                    skipElement();
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (open.isEmpty()) {
+                    // </IDOC>
+                    break;
+                }
+                open.remove(open.size() - 1).flush(segments);
+            } else if (event == XMLStreamConstants.END_DOCUMENT) {
+                throw new XMLStreamException("Unexpected end of IDoc XML inside IDOC element");
+            }
+        }
+
+        List<String> lines = new ArrayList<>(segments.size() + 1);
+        if (useApi && apiDocument != null) {
+            try {
+                SegmentLines.extract(apiDocument.getRootSegment(), lines);
+            } catch (IOException e) {
+                throw new XMLStreamException(e.getMessage(), e);
+            }
+        } else {
+            SegmentLines.add(lines, 0, rootType(controlRecord), null);
+            lines.addAll(segments);
+        }
+
+        document.setControlRecord(controlRecord);
+        document.setDocumentNumber(controlRecord.get("DOCNUM"));
+        document.setMessageType(controlRecord.get("MESTYP"));
+        document.setMessageTypeVersion(controlRecord.get("MESCOD"));
+        document.setSegmentData(lines);
+        return document;
+    }
+
+    /**
+     * Returns the type of the root segment: the root element, else the IDoc type of the control record.
+     */
+    private String rootType(Map<String, String> controlRecord) {
+        if (rootType != null) {
+            return rootType;
+        }
+        String extension = controlRecord.get("CIMTYP");
+        return extension != null && !extension.trim().isEmpty() ? extension : controlRecord.get("IDOCTYP");
+    }
+
+    /**
+     * Creates the IDoc API document of the IDoc type, or returns null if the repository does not know it.
+     */
+    private IDocDocument createDocument(Map<String, String> controlRecord) {
+        String idocType = controlRecord.get("IDOCTYP");
+        if (idocType == null || idocType.trim().isEmpty()) {
+            LOGGER.debug("No IDOCTYP in the control record, writing fields as NAME=value");
+            return null;
+        }
+        try {
+            return JCoIDoc.getIDocFactory().createIDocDocument(repository, idocType.trim());
+        } catch (IDocException | IDocRuntimeException e) {
+            LOGGER.debug("Segment metadata of IDoc type {} unavailable, writing fields as NAME=value: {}",
+                    idocType, e.getMessage());
+            return null;
+        }
+    }
+
+    private static IDocSegment addChild(IDocSegment parent, String type) {
+        try {
+            return parent.addChild(type);
+        } catch (IDocException | IDocRuntimeException e) {
+            LOGGER.debug("Segment {} unknown to the IDoc API, writing fields as NAME=value: {}", type, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean setValue(IDocSegment segment, String field, String value) {
+        try {
+            segment.setValue(field, value);
+            return true;
+        } catch (IDocException | IDocRuntimeException e) {
+            LOGGER.debug("Field {} of segment {} rejected by the IDoc API, writing fields as NAME=value: {}",
+                    field, segment.getType(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads the text-only child elements of the current element into a map.
+     */
+    private void readFields(Map<String, String> fields) throws XMLStreamException {
+        while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String name = xml.getLocalName();
+            fields.put(name, xml.getElementText());
+        }
+    }
+
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * A segment whose SEGMENT/DATA lines have not been written yet.
+     */
+    private static final class Segment {
+        private final String type;
+        private final int depth;
+        private final IDocSegment apiSegment;
+        private final StringBuilder data = new StringBuilder();
+        private boolean flushed;
+
+        Segment(String type, int depth, IDocSegment apiSegment) {
+            this.type = type;
+            this.depth = depth;
+            this.apiSegment = apiSegment;
+        }
+
+        void addField(String name, String value) {
+            if (data.length() > 0) {
+                data.append(", ");
+            }
+            data.append(name).append('=').append(value);
+        }
+
+        void flush(List<String> segments) {
+            if (flushed) {
+                return;
+            }
+            flushed = true;
+            SegmentLines.add(segments, depth, type, data.toString());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.dataingest.rfc.server.xml;
+
+import com.sap.conn.idoc.IDocDocumentList;
+import com.sap.conn.idoc.IDocXMLProcessor;
+import com.sap.conn.idoc.jco.JCoIDoc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.codec.DirectBufferPool;
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * XML output stage for IDocs received through the IDoc API.
+ *
+ * Renders each IDocDocumentList once into an off-heap IDocXmlBuffer from the
+ * DirectBufferPool and hands the same bytes to every enabled sink, without
+ * intermediate Strings or copies. The buffer goes back to the pool once the last
+ * sink has written (or failed).
+ *
+ * Configuration:
+ * - idoc.xml.sinks: comma-separated sink names: archive, file, kafka (default: archive)
+ * - idoc.xml.pretty: render with tabs and CRLF for debugging (default: false)
+ */
+@Component
+public class IDocXmlRenderer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IDocXmlRenderer.class);
+
+    @Autowired
+    private List<IIDocXmlSink> sinks;
+
+    @Autowired
+    private DirectBufferPool bufferPool;
+
+    @Value("${idoc.xml.sinks:archive}")
+    private String sinkNames;
+
+    @Value("${idoc.xml.pretty:false}")
+    private boolean pretty;
+
+    private final List<IIDocXmlSink> activeSinks = new ArrayList<>();
+    private volatile IDocXMLProcessor xmlProcessor;
+
+    @PostConstruct
+    public void init() {
+        Map<String, IIDocXmlSink> sinksByName = new LinkedHashMap<>();
+        for (IIDocXmlSink sink : sinks) {
+            sinksByName.put(sink.getName(), sink);
+        }
+        for (String name : sinkNames.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            IIDocXmlSink sink = sinksByName.get(name);
+            if (sink == null) {
+                throw new IllegalStateException("Unknown IDoc XML sink '" + name
+                        + "', available: " + sinksByName.keySet());
+            }
+            activeSinks.add(sink);
+        }
+        LOGGER.info("IDoc XML sinks enabled: {} (pretty print: {})", sinkNames, pretty);
+    }
+
+    /**
+     * Renders the IDocs of one transaction and writes them to all enabled sinks.
+     *
+     * @param tid the transaction ID
+     * @param idocList the received IDocs
+     * @throws IOException if rendering or any sink fails
+     */
+    public void render(String tid, IDocDocumentList idocList) throws IOException {
+        if (activeSinks.isEmpty()) {
+            return;
+        }
+        int options = pretty ? IDocXMLProcessor.RENDER_WITH_TABS_AND_CRLF : 0;
+        try (IDocXmlBuffer xml = IDocXmlBuffer.render(bufferPool, getXmlProcessor(), idocList, options)) {
+            for (IIDocXmlSink sink : activeSinks) {
+                sink.write(tid, idocList.getNumDocuments(), xml.data());
+            }
+            LOGGER.debug("Rendered {} IDoc(s) of TID {} ({} bytes) to {}",
+                    idocList.getNumDocuments(), tid, xml.size(), sinkNames);
+        }
+    }
+
+    private IDocXMLProcessor getXmlProcessor() {
+        IDocXMLProcessor processor = xmlProcessor;
+        if (processor == null) {
+            processor = JCoIDoc.getIDocFactory().getIDocXMLProcessor();
+            xmlProcessor = processor;
+        }
+        return processor;
+    }
+}
@@ -0,0 +1,285 @@
+package org.dataingest.rfc.server.xml;
+
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel reader for large multi-IDoc XML files.
+ *
+ * The file is memory-mapped and split at IDOC element boundaries with a byte scan;
+ * runs of consecutive IDOC elements (up to 1 MB, and at most an eighth of the
+ * window) are then parsed by an IDocXmlReader each on the given executor, so the
+ * cost of creating a parser is shared by many small IDocs. Documents are handed to
+ * the handler in file order and equal those of IDocXmlReader.readAll on the whole
+ * file: the root element, which the runs lack, is passed to every parser to name
+ * the root segment.
+ *
+ * Handles:
+ * - About "window" IDocs (plus one run) are parsed ahead of the handler, bounding memory
+ * - The encoding of the XML declaration is applied to every IDOC element
+ *   (the byte scan requires an ASCII-compatible encoding such as UTF-8 or ISO-8859-1)
+ * - Files up to 2 GB; use IDocXmlReader directly for larger files
+ */
+public final class IDocXmlSplitter {
+
+    private static final byte[] IDOC_START = "<IDOC".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDOC_END = "</IDOC>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BATCH_START = "<IDOCS>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BATCH_END = "</IDOCS>".getBytes(StandardCharsets.US_ASCII);
+    private static final int BATCH_BYTES = 1024 * 1024;
+    private static final byte[] TAG_START = "<".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ENCODING = "encoding=".getBytes(StandardCharsets.US_ASCII);
+
+    private IDocXmlSplitter() {
+    }
+
+    /**
+     * Reads all IDocs of a file in parallel.
+     *
+     * @param file the IDoc XML file
+     * @param senderSystem sender system set on the documents
+     * @param executor runs the parsing of the single IDOC elements
+     * @param window maximum number of IDocs parsed ahead of the handler
+     * @param handler receives every document in file order
+     * @return the number of documents read
+     * @throws IOException if the file cannot be read, an IDoc is malformed or the handler fails
+     */
+    public static int read(Path file, String senderSystem, ExecutorService executor, int window,
+                           IDocXmlReader.DocumentHandler handler) throws IOException {
+        ByteBuffer xml;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("IDoc XML file " + file.getFileName() + " is too large to map");
+            }
+            xml = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        String encoding = declaredEncoding(xml);
+        String rootType = rootElement(xml);
+
+        int batchSize = Math.max(1, window / 8);
+        Deque<Future<List<SAPIDOCDocument>>> pending = new ArrayDeque<>();
+        int pendingDocuments = 0;
+        int count = 0;
+        int from = 0;
+        int batchStart = -1;
+        int batchDocuments = 0;
+        try {
+            while (true) {
+                int start = indexOfElement(xml, from);
+                if (start >= 0) {
+                    int end = indexOf(xml, IDOC_END, start);
+                    if (end < 0) {
+                        throw new IOException("Unterminated IDOC element at byte " + start);
+                    }
+                    from = end + IDOC_END.length;
+                    if (batchStart < 0) {
+                        batchStart = start;
+                    }
+                    batchDocuments++;
+                }
+                if (batchStart >= 0 && (start < 0 || batchDocuments >= batchSize || from - batchStart >= BATCH_BYTES)) {
+                    ByteBuffer batch = xml.duplicate().position(batchStart).limit(from).slice();
+                    pending.add(executor.submit(() -> parse(batch, encoding, senderSystem, rootType)));
+                    pendingDocuments += batchDocuments;
+                    batchStart = -1;
+                    batchDocuments = 0;
+                }
+                if (start < 0) {
+                    break;
+                }
+
+                while (pendingDocuments >= window) {
+                    List<SAPIDOCDocument> documents = next(pending);
+                    pendingDocuments -= documents.size();
+                    count += handle(documents, handler);
+                }
+            }
+            while (!pending.isEmpty()) {
+                count += handle(next(pending), handler);
+            }
+        } finally {
+            for (Future<List<SAPIDOCDocument>> future : pending) {
+                future.cancel(true);
+            }
+        }
+        return count;
+    }
+
+    private static int handle(List<SAPIDOCDocument> documents, IDocXmlReader.DocumentHandler handler)
+            throws IOException {
+        for (SAPIDOCDocument document : documents) {
+            handler.document(document);
+        }
+        return documents.size();
+    }
+
+    /**
+     * Parses a run of IDOC elements, wrapped in an element so they form one XML document.
+     */
+    private static List<SAPIDOCDocument> parse(ByteBuffer batch, String encoding, String senderSystem,
+                                               String rootType) throws IOException {
+        InputStream in = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(BATCH_START), new ByteBufferInputStream(batch),
+                new ByteArrayInputStream(BATCH_END))));
+        List<SAPIDOCDocument> documents = new ArrayList<>();
+        try (IDocXmlReader reader = new IDocXmlReader(in, encoding, senderSystem, rootType)) {
+            SAPIDOCDocument document;
+            while ((document = reader.read()) != null) {
+                documents.add(document);
+            }
+        }
+        return documents;
+    }
+
+    private static List<SAPIDOCDocument> next(Deque<Future<List<SAPIDOCDocument>>> pending) throws IOException {
+        try {
+            return pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading IDoc XML", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Returns the encoding of the XML declaration, or UTF-8.
+     */
+    private static String declaredEncoding(ByteBuffer xml) {
+        int prologEnd = indexOf(xml, "?>".getBytes(StandardCharsets.US_ASCII), 0);
+        if (prologEnd < 0 || prologEnd > 256) {
+            return StandardCharsets.UTF_8.name();
+        }
+        int attribute = indexOf(xml, ENCODING, 0);
+        if (attribute < 0 || attribute > prologEnd) {
+            return StandardCharsets.UTF_8.name();
+        }
+        int quote = attribute + ENCODING.length;
+        int end = quote + 1;
+        while (end < prologEnd && xml.get(end) != xml.get(quote)) {
+            end++;
+        }
+        byte[] name = new byte[end - quote - 1];
+        xml.duplicate().position(quote + 1).get(name);
+        return new String(name, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the name of the root element, or null if the file starts with an IDOC
+     * element (the readers then take the IDoc type of the control record).
+     */
+    private static String rootElement(ByteBuffer xml) {
+        int from = 0;
+        while (true) {
+            int start = indexOf(xml, TAG_START, from);
+            if (start < 0 || start + 1 >= xml.limit()) {
+                return null;
+            }
+            byte first = xml.get(start + 1);
+            if (first == '?' || first == '!') {
+                // XML declaration, comment or DOCTYPE
+                from = start + 1;
+                continue;
+            }
+            int end = start + 1;
+            while (end < xml.limit() && !isNameEnd(xml.get(end))) {
+                end++;
+            }
+            byte[] name = new byte[end - start - 1];
+            xml.duplicate().position(start + 1).get(name);
+            String root = new String(name, StandardCharsets.US_ASCII);
+            return "IDOC".equals(root) ? null : root;
+        }
+    }
+
+    private static boolean isNameEnd(byte b) {
+        return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Finds the next IDOC start tag (not IDOCTYP or other names starting with IDOC).
+     */
+    private static int indexOfElement(ByteBuffer xml, int from) {
+        while (true) {
+            int start = indexOf(xml, IDOC_START, from);
+            if (start < 0) {
+                return -1;
+            }
+            int next = start + IDOC_START.length;
+            if (next < xml.limit()) {
+                byte b = xml.get(next);
+                if (b == '>' || b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                    return start;
+                }
+            }
+            from = next;
+        }
+    }
+
+    private static int indexOf(ByteBuffer data, byte[] pattern, int from) {
+        int last = data.limit() - pattern.length;
+        byte first = pattern[0];
+        for (int i = from; i <= last; i++) {
+            if (data.get(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < pattern.length && data.get(i + j) == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * InputStream over a ByteBuffer slice, without copying.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.dataingest.rfc.server.xml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Destination for rendered IDoc XML (Kafka topic, file, archive).
+ *
+ * The data buffer is a view of the renderer's pooled off-heap buffer: sinks write or
+ * copy the bytes within write() and must not keep a reference to the buffer afterwards,
+ * as it is returned to the pool once all sinks are done.
+ */
+public interface IIDocXmlSink {
+
+    /**
+     * Gets the name used to enable this sink (idoc.xml.sinks).
+     *
+     * @return the sink name
+     */
+    String getName();
+
+    /**
+     * Writes the XML of one tRFC transaction.
+     *
+     * @param tid the transaction ID
+     * @param numDocuments number of IDocs contained in the XML
+     * @param data the UTF-8 encoded XML, between position and limit
+     * @throws IOException if the XML cannot be written
+     */
+    void write(String tid, int numDocuments, ByteBuffer data) throws IOException;
+}
@@ -0,0 +1,68 @@
+package org.dataingest.rfc.server.xml;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.dataingest.rfc.server.codec.PayloadCodecRegistry;
+import org.dataingest.rfc.server.scheduling.PriorityLanes;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes the XML of each transaction to a Kafka topic, keyed by TID.
+ *
+ * Publishing is synchronous so the transaction is only confirmed to SAP after
+ * Kafka acknowledged the record. The producer takes byte[] values, so the rendered
+ * bytes are copied once from the off-heap buffer into an exactly sized array; the
+ * pooled buffer itself is released by the renderer after the last sink. On a priority
+ * lane thread the lane's own producer is used.
+ *
+ * Configuration:
+ * - idoc.xml.sink.kafka.topic: target topic (default: SAP.IDOCS.XML)
+ * - kafka.request.timeout.ms: maximum wait for the acknowledgement (default: 30000)
+ */
+@Component
+public class KafkaXmlSink implements IIDocXmlSink {
+
+    public static final String NAME = "kafka";
+
+    private static final byte[] CONTENT_TYPE = "application/xml".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    protected PriorityLanes priorityLanes;
+
+    @Value("${idoc.xml.sink.kafka.topic:SAP.IDOCS.XML}")
+    private String topic;
+
+    @Value("${kafka.request.timeout.ms:30000}")
+    private int kafkaTimeoutMs;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void write(String tid, int numDocuments, ByteBuffer data) throws IOException {
+        byte[] value = new byte[data.remaining()];
+        data.get(value);
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, tid, value);
+        record.headers().add(PayloadCodecRegistry.CONTENT_TYPE_HEADER, CONTENT_TYPE);
+        try {
+            priorityLanes.getProducer().send(record).get(kafkaTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while publishing IDoc XML of TID " + tid, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to publish IDoc XML of TID " + tid + " to topic " + topic, e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("No acknowledgement for IDoc XML of TID " + tid + " from topic " + topic
+                    + " within " + kafkaTimeoutMs + " ms", e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.dataingest.rfc.server.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsRecordOffsetsByTidDocnumAndMessageType() throws IOException {
+        ArchivePosition orders;
+        ArchivePosition invoice;
+        try (SegmentedArchive archive = archive()) {
+            orders = append(archive, "TID1", idoc("0000000000000001", "ORDERS") + idoc("0000000000000002", "ORDERS"));
+            invoice = append(archive, "TID2", idoc("0000000000000003", "INVOIC"));
+        }
+        Path indexFile = dir.resolve(ArchiveSegments.fileName(orders.getSegmentId(), ArchiveIndex.INDEX_SUFFIX));
+        assertTrue(Files.exists(indexFile));
+
+        ArchiveIndex index = ArchiveIndex.open(indexFile);
+        assertEquals(orders.getSegmentId(), index.getSegmentId());
+        assertEquals(2, index.size(ArchiveIndex.Section.TID));
+        assertEquals(3, index.size(ArchiveIndex.Section.DOCNUM));
+        assertArrayEquals(new long[] {invoice.getOffset()}, index.find(ArchiveIndex.Section.TID, "TID2"));
+        assertArrayEquals(new long[] {orders.getOffset()},
+                index.find(ArchiveIndex.Section.DOCNUM, "0000000000000002"));
+        // Both IDocs of the first record are ORDERS, the offset is returned once
+        assertArrayEquals(new long[] {orders.getOffset()}, index.find(ArchiveIndex.Section.MESTYP, "ORDERS"));
+        assertEquals(0, index.find(ArchiveIndex.Section.TID, "TID3").length);
+    }
+
+    @Test
+    void lookupSearchesSealedAndOpenSegmentsNewestFirst() throws IOException {
+        try (SegmentedArchive archive = new SegmentedArchive(dir, 300, 0, ArchiveCompression.NONE, 0, 0, false,
+                3_600_000L)) {
+            append(archive, "TID1", idoc("0000000000000001", "ORDERS"));
+            append(archive, "TID2", idoc("0000000000000002", "ORDERS"));
+            append(archive, "TID3", idoc("0000000000000003", "INVOIC"));
+        }
+        try (SegmentedArchive archive = archive()) {
+            append(archive, "TID4", idoc("0000000000000004", "ORDERS"));
+
+            ArchiveLookup lookup = new ArchiveLookup(dir);
+            List<ArchiveRecord> byType = lookup.findByMessageType("ORDERS", 10);
+            assertEquals(3, byType.size());
+            assertEquals("TID4", byType.get(0).getTid());
+            assertEquals("TID1", byType.get(2).getTid());
+            assertEquals(2, lookup.findByMessageType("ORDERS", 2).size());
+
+            List<ArchiveRecord> byDocnum = lookup.findByDocumentNumber("0000000000000003", 10);
+            assertEquals(1, byDocnum.size());
+            assertEquals("TID3", byDocnum.get(0).getTid());
+            assertEquals(1, lookup.findByTid("TID2", 10).size());
+        }
+    }
+
+    @Test
+    void searchesTheOpenSegmentThroughItsInMemoryIndex() throws IOException {
+        ArchivePosition first;
+        try (SegmentedArchive archive = archive()) {
+            first = append(archive, "TID1", idoc("0000000000000001", "ORDERS") + idoc("0000000000000002", "ORDERS"));
+            ArchivePosition resent = append(archive, "TID1", idoc("0000000000000001", "ORDERS"));
+            append(archive, "TID2", idoc("0000000000000003", "INVOIC"));
+
+            OpenSegmentIndex openIndex = archive.openIndex(first.getSegmentId());
+            assertArrayEquals(new long[] {first.getOffset(), resent.getOffset()},
+                    openIndex.find(ArchiveIndex.Section.TID, "TID1"));
+            assertArrayEquals(new long[] {first.getOffset(), resent.getOffset()},
+                    openIndex.find(ArchiveIndex.Section.MESTYP, "ORDERS"));
+
+            ArchiveLookup lookup = new ArchiveLookup(archive);
+            List<ArchiveRecord> newest = lookup.findByTid("TID1", 1);
+            assertEquals(1, newest.size());
+            assertEquals(resent.getOffset(), newest.get(0).getOffset());
+            assertEquals(2, lookup.findByTid("TID1", 10).size());
+            assertEquals("TID2", lookup.findByDocumentNumber("0000000000000003", 1).get(0).getTid());
+            assertEquals(first.getOffset(), lookup.findByDocumentNumber("0000000000000002", 1).get(0).getOffset());
+        }
+    }
+
+    @Test
+    void dropsTheInMemoryIndexOnceTheSegmentIsSealed() throws IOException {
+        SegmentedArchive archive = archive();
+        ArchivePosition position = append(archive, "TID1", idoc("0000000000000001", "ORDERS"));
+        assertTrue(archive.openIndex(position.getSegmentId()) != null);
+
+        archive.close();
+
+        assertNull(archive.openIndex(position.getSegmentId()));
+        assertEquals(1, new ArchiveLookup(archive).findByTid("TID1", 1).size());
+    }
+
+    @Test
+    void rebuildsAMissingIndexOnLookup() throws IOException {
+        ArchivePosition position;
+        try (SegmentedArchive archive = archive()) {
+            position = append(archive, "TID1", idoc("0000000000000001", "ORDERS"));
+        }
+        Path indexFile = dir.resolve(ArchiveSegments.fileName(position.getSegmentId(), ArchiveIndex.INDEX_SUFFIX));
+        Files.delete(indexFile);
+
+        List<ArchiveRecord> records = new ArchiveLookup(dir).findByTid("TID1", 10);
+
+        assertEquals(1, records.size());
+        assertTrue(Files.exists(indexFile));
+    }
+
+    @Test
+    void isolatesOneIdocOfATransaction() throws IOException {
+        try (SegmentedArchive archive = archive()) {
+            append(archive, "TID1", idoc("0000000000000001", "ORDERS") + idoc("0000000000000002", "ORDERS"));
+        }
+        ArchiveRecord record = new ArchiveLookup(dir).findByDocumentNumber("0000000000000002", 1).get(0);
+
+        assertEquals(idoc("0000000000000002", "ORDERS"),
+                new String(ArchiveLookup.idocXml(record, "0000000000000002"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void mapsTheIndexOfASealedSegmentOnce() throws IOException {
+        ArchivePosition position;
+        try (SegmentedArchive archive = archive()) {
+            position = append(archive, "TID1", idoc("0000000000000001", "ORDERS"));
+        }
+        Path indexFile = dir.resolve(ArchiveSegments.fileName(position.getSegmentId(), ArchiveIndex.INDEX_SUFFIX));
+        ArchiveLookup lookup = new ArchiveLookup(dir);
+        assertEquals(1, lookup.findByTid("TID1", 1).size());
+
+        Files.delete(indexFile);
+
+        // Served from the mapping, the index is neither reopened nor rebuilt
+        assertEquals(1, lookup.findByTid("TID1", 1).size());
+        assertFalse(Files.exists(indexFile));
+    }
+
+    private SegmentedArchive archive() {
+        return new SegmentedArchive(dir, 1 << 20, 0, ArchiveCompression.NONE, 0, 0, false, 3_600_000L);
+    }
+
+    private static ArchivePosition append(SegmentedArchive archive, String tid, String idocs) throws IOException {
+        byte[] xml = ("<IDOCS>" + idocs + "</IDOCS>").getBytes(StandardCharsets.UTF_8);
+        return archive.append(tid, 1, xml, 0, xml.length);
+    }
+
+    private static String idoc(String docnum, String mestyp) {
+        return "<IDOC BEGIN=\"1\"><EDI_DC40 SEGMENT=\"1\"><DOCNUM>" + docnum + "</DOCNUM><MESTYP>" + mestyp
+                + "</MESTYP></EDI_DC40><E1EDK01 SEGMENT=\"1\"/></IDOC>";
+    }
+}
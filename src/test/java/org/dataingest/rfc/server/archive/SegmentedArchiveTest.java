@@ -0,0 +1,141 @@
+package org.dataingest.rfc.server.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedArchiveTest {
+
+    private static final long HOUR_MS = 3_600_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackAppendedRecords() throws IOException {
+        try (SegmentedArchive archive = archive(1 << 20, ArchiveCompression.NONE)) {
+            ArchivePosition first = archive.append("TID1", 1, xml("first"));
+            ArchivePosition second = archive.append("TID2", 3, xml("second"));
+
+            ArchiveRecord record = archive.read(second);
+            assertEquals("TID2", record.getTid());
+            assertEquals(3, record.getNumDocuments());
+            assertArrayEquals(bytes(xml("second")), record.getPayload());
+            assertEquals("TID1", archive.read(first).getTid());
+            assertEquals(first.getSegmentId(), second.getSegmentId());
+        }
+    }
+
+    @Test
+    void leavesTheBufferPositionUnchanged() throws IOException {
+        try (SegmentedArchive archive = archive(1 << 20, ArchiveCompression.DEFLATE)) {
+            ByteBuffer data = ByteBuffer.allocateDirect(64);
+            data.put("<IDOC/>".getBytes(StandardCharsets.UTF_8)).flip();
+
+            ArchivePosition position = archive.append("TID1", 1, data);
+
+            assertEquals(0, data.position());
+            assertArrayEquals("<IDOC/>".getBytes(StandardCharsets.UTF_8), archive.read(position).getPayload());
+        }
+    }
+
+    @Test
+    void inflatesDeflatedRecords() throws IOException {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            large.append("<E1EDP01><POSEX>").append(i).append("</POSEX></E1EDP01>");
+        }
+        try (SegmentedArchive archive = archive(1 << 20, ArchiveCompression.DEFLATE)) {
+            ArchivePosition position = archive.append("TID1", 1, xml(large.toString()));
+
+            assertArrayEquals(bytes(xml(large.toString())), archive.read(position).getPayload());
+            assertTrue(Files.size(archive.segmentFile(position.getSegmentId())) < large.length() / 4);
+        }
+    }
+
+    @Test
+    void rollsSegmentsBySizeAndSealsThemOnClose() throws IOException {
+        SegmentedArchive archive = archive(200, ArchiveCompression.NONE);
+        ArchivePosition first = archive.append("TID1", 1, xml("a".repeat(300)));
+        ArchivePosition second = archive.append("TID2", 1, xml("small"));
+        archive.close();
+
+        assertEquals(first.getSegmentId() + 1, second.getSegmentId());
+        List<Path> segments = ArchiveSegments.list(dir);
+        assertEquals(2, segments.size());
+        for (Path segment : segments) {
+            assertTrue(ArchiveSegments.isSealed(segment));
+            long id = ArchiveSegments.segmentId(segment);
+            assertTrue(Files.exists(dir.resolve(ArchiveSegments.fileName(id, ArchiveSegments.CHECKSUM_SUFFIX))));
+        }
+    }
+
+    @Test
+    void continuesAfterTheLastSegmentWhenReopened() throws IOException {
+        ArchivePosition first;
+        try (SegmentedArchive archive = archive(1 << 20, ArchiveCompression.NONE)) {
+            first = archive.append("TID1", 1, xml("first"));
+        }
+        try (SegmentedArchive archive = archive(1 << 20, ArchiveCompression.NONE)) {
+            ArchivePosition second = archive.append("TID2", 1, xml("second"));
+
+            assertEquals(first.getSegmentId() + 1, second.getSegmentId());
+            assertEquals("TID1", archive.read(first).getTid());
+        }
+    }
+
+    @Test
+    void truncatesATornRecordOfACrashedSegment() throws IOException {
+        SegmentedArchive crashed = archive(1 << 20, ArchiveCompression.NONE);
+        ArchivePosition kept = crashed.append("TID1", 1, xml("kept"));
+        Path open = crashed.segmentFile(kept.getSegmentId());
+        long validEnd = Files.size(open);
+        try (FileChannel channel = FileChannel.open(open, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x52, 0x45, 0x43, 0x31, 0, 0, 1}));
+        }
+
+        // A second instance on the same directory recovers the segment as after a crash
+        try (SegmentedArchive archive = archive(1 << 20, ArchiveCompression.NONE)) {
+            ArchivePosition next = archive.append("TID2", 1, xml("next"));
+
+            assertEquals("TID1", archive.read(kept).getTid());
+            assertEquals(kept.getSegmentId() + 1, next.getSegmentId());
+            assertEquals(validEnd, Files.size(archive.segmentFile(kept.getSegmentId())));
+        }
+    }
+
+    @Test
+    void rejectsAppendsAfterClose() throws IOException {
+        SegmentedArchive archive = archive(1 << 20, ArchiveCompression.NONE);
+        archive.append("TID1", 1, xml("first"));
+        archive.close();
+
+        assertThrows(IOException.class, () -> archive.append("TID2", 1, xml("second")));
+    }
+
+    private SegmentedArchive archive(long maxSegmentBytes, ArchiveCompression compression) {
+        return new SegmentedArchive(dir, maxSegmentBytes, 0, compression, 0, 0, false, HOUR_MS);
+    }
+
+    private static ByteBuffer xml(String content) {
+        return ByteBuffer.wrap(("<IDOC>" + content + "</IDOC>").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
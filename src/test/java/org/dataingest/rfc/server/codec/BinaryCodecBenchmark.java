@@ -0,0 +1,113 @@
+package org.dataingest.rfc.server.codec;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.config.ApplicationConfiguration;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary Codec Benchmark
+ *
+ * Compares the schema-driven BinaryPayloadCodec with the JsonPayloadCodec on IDocs
+ * received as RFC tables: encoding time, bytes allocated and record size. The schema
+ * is registered in a temporary store directory before the measurement, so only the
+ * cached lookup is timed.
+ *
+ * Not a unit test (only *Test classes run in the build); run its main method with the
+ * test classpath:
+ *
+ *   BinaryCodecBenchmark [iterations] [segments per IDoc]
+ *
+ * Prints per codec the time per IDoc, the bytes allocated per IDoc and the record size.
+ */
+public class BinaryCodecBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int segments = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("org.dataingest")).setLevel(Level.WARN);
+
+        ObjectMapper objectMapper = new ApplicationConfiguration().objectMapper();
+        JsonWriterFactory writerFactory = new JsonWriterFactory();
+        writerFactory.objectMapper = objectMapper;
+        ReflectionTestUtils.setField(writerFactory, "generatedWritersEnabled", true);
+        JsonPayloadCodec json = new JsonPayloadCodec();
+        json.objectMapper = objectMapper;
+        json.writerFactory = writerFactory;
+
+        Path storeDir = Files.createTempDirectory("schemas");
+        SchemaRegistry schemaRegistry = new SchemaRegistry();
+        schemaRegistry.objectMapper = objectMapper;
+        schemaRegistry.kafkaProducer = new MockProducer<>();
+        ReflectionTestUtils.setField(schemaRegistry, "storeDir", storeDir.toString());
+        ReflectionTestUtils.setField(schemaRegistry, "schemaTopic", "");
+        schemaRegistry.init();
+        BinaryPayloadCodec binary = new BinaryPayloadCodec();
+        binary.schemaRegistry = schemaRegistry;
+
+        SAPIDOCDocument document = idoc(segments);
+        System.out.println("=== Binary Codec Benchmark ===");
+        System.out.printf("Iterations: %d, segments per IDoc: %d%n", iterations, segments);
+
+        for (int round = 0; round < 3; round++) {
+            boolean report = round == 2;
+            run(json, document, iterations, report);
+            run(binary, document, iterations, report);
+        }
+    }
+
+    private static void run(IPayloadCodec codec, SAPIDOCDocument document, int iterations, boolean report)
+            throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int size = 0;
+        for (int i = 0; i < iterations; i++) {
+            size = codec.encode(document).length;
+        }
+        long elapsedNs = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        if (report) {
+            System.out.printf("%-7s %8.0f ns/IDoc, %7d bytes allocated/IDoc, record %5d bytes, %6d ms total%n",
+                    codec.getName(), (double) elapsedNs / iterations, allocated / iterations, size,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNs));
+        }
+    }
+
+    private static SAPIDOCDocument idoc(int segments) {
+        Map<String, String> controlRecord = new HashMap<>();
+        controlRecord.put("TABNAM", "EDI_DC40");
+        controlRecord.put("DOCNUM", "0000000000000001");
+        controlRecord.put("IDOCTYP", "ORDERS05");
+        controlRecord.put("MESTYP", "ORDERS");
+        controlRecord.put("SNDPRN", "ERPCLNT100");
+        controlRecord.put("RCVPRN", "KAFKA");
+        List<String> segmentData = new ArrayList<>();
+        for (int segment = 1; segment <= segments; segment++) {
+            segmentData.add("E1EDP01 POSEX=" + segment + " MENGE=10.000 MENEE=PCE");
+        }
+
+        SAPIDOCDocument document = new SAPIDOCDocument();
+        document.setMessageType("ORDERS");
+        document.setMessageTypeVersion("05");
+        document.setSenderSystem("ERP");
+        document.setTransactionID("0A1B2C3D4E5F60718293A4B5");
+        document.setControlRecord(controlRecord);
+        document.setSegmentData(segmentData);
+        return document;
+    }
+}
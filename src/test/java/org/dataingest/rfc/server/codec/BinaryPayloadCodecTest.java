@@ -0,0 +1,78 @@
+package org.dataingest.rfc.server.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.model.SAPBWDataRequest;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BinaryPayloadCodecTest {
+
+    @TempDir
+    Path storeDir;
+
+    @Test
+    void writesVersionFingerprintAndFieldsInSchemaOrder() throws Exception {
+        BinaryPayloadCodec codec = codec();
+        SAPBWDataRequest request = new SAPBWDataRequest();
+        request.setDataSourceName("0MATERIAL/ATTR");
+        request.setRequestId("R1");
+        request.setParameters(Collections.singletonMap("K", "V"));
+        request.setTimestamp(-3);
+
+        byte[] encoded = codec.encode(request);
+
+        RecordSchema schema = codec.schemaRegistry.getSchema("SAPBWDataRequest.0MATERIAL_ATTR",
+                SAPBWDataRequest.class);
+        assertEquals(1, encoded[0]);
+        assertEquals(schema.getFingerprint(), ByteBuffer.wrap(encoded, 1, 8).getLong());
+        // dataSourceName, logicalSystem (null), parameters, requestData (null), requestId, timestamp;
+        // lengths and counts are written plus one, every varint zig-zag encoded
+        byte[] fields = {
+            30, '0', 'M', 'A', 'T', 'E', 'R', 'I', 'A', 'L', '/', 'A', 'T', 'T', 'R',
+            0,
+            4, 4, 'K', 4, 'V',
+            0,
+            6, 'R', '1',
+            5
+        };
+        assertArrayEquals(fields, Arrays.copyOfRange(encoded, 9, encoded.length));
+        assertEquals(1, codec.schemaRegistry.size());
+    }
+
+    @Test
+    void encodesLargeVarintsAcrossSeveralBytes() throws Exception {
+        BinaryPayloadCodec codec = codec();
+        SAPBWDataRequest request = new SAPBWDataRequest();
+        request.setTimestamp(Long.MIN_VALUE);
+
+        byte[] encoded = codec.encode(request);
+
+        // zig-zag of Long.MIN_VALUE is all ones: nine 0xFF bytes and a final 0x01
+        byte[] timestamp = Arrays.copyOfRange(encoded, encoded.length - 10, encoded.length);
+        byte[] expected = new byte[10];
+        Arrays.fill(expected, (byte) 0xFF);
+        expected[9] = 1;
+        assertArrayEquals(expected, timestamp);
+    }
+
+    private BinaryPayloadCodec codec() {
+        SchemaRegistry schemaRegistry = new SchemaRegistry();
+        schemaRegistry.objectMapper = new ObjectMapper();
+        schemaRegistry.kafkaProducer = new MockProducer<>();
+        ReflectionTestUtils.setField(schemaRegistry, "storeDir", storeDir.toString());
+        ReflectionTestUtils.setField(schemaRegistry, "schemaTopic", "");
+        schemaRegistry.init();
+        BinaryPayloadCodec codec = new BinaryPayloadCodec();
+        codec.schemaRegistry = schemaRegistry;
+        return codec;
+    }
+}
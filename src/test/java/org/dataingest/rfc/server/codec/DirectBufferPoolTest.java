@@ -0,0 +1,83 @@
+package org.dataingest.rfc.server.codec;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectBufferPoolTest {
+
+    private static final int KIB = 1024;
+
+    @Test
+    void roundsRequestsUpToPowerOfTwoClasses() {
+        DirectBufferPool pool = new DirectBufferPool();
+
+        try (DirectBufferPool.PooledBuffer small = pool.acquire(1);
+             DirectBufferPool.PooledBuffer exact = pool.acquire(128 * KIB);
+             DirectBufferPool.PooledBuffer above = pool.acquire(128 * KIB + 1)) {
+            assertEquals(64 * KIB, small.buffer().capacity());
+            assertEquals(128 * KIB, exact.buffer().capacity());
+            assertEquals(256 * KIB, above.buffer().capacity());
+            assertTrue(small.buffer().isDirect());
+            assertEquals((64L + 128 + 256) * KIB, pool.getStatus().get("inUseBytes"));
+        }
+        assertEquals(0L, pool.getStatus().get("inUseBytes"));
+    }
+
+    @Test
+    void reusesAReleasedBufferCleared() {
+        DirectBufferPool pool = new DirectBufferPool();
+        DirectBufferPool.PooledBuffer first = pool.acquire(100);
+        ByteBuffer buffer = first.buffer();
+        buffer.put(new byte[10]);
+        first.close();
+        first.close();
+
+        try (DirectBufferPool.PooledBuffer second = pool.acquire(200)) {
+            assertSame(buffer, second.buffer());
+            assertEquals(0, second.buffer().position());
+            assertEquals(0L, pool.getStatus().get("pooledBytes"));
+        }
+        assertEquals(64L * KIB, pool.getStatus().get("pooledBytes"));
+    }
+
+    @Test
+    void dropsBuffersAboveTheLargestClass() {
+        DirectBufferPool pool = new DirectBufferPool();
+        ReflectionTestUtils.setField(pool, "maxBufferSize", 64 * KIB);
+
+        DirectBufferPool.PooledBuffer large = pool.acquire(100 * KIB);
+        assertEquals(100 * KIB, large.buffer().capacity());
+        large.close();
+
+        assertEquals(0L, pool.getStatus().get("pooledBytes"));
+        try (DirectBufferPool.PooledBuffer next = pool.acquire(100 * KIB)) {
+            assertNotSame(large.buffer(), next.buffer());
+        }
+    }
+
+    @Test
+    void keepsAtMostTheConfiguredIdleBuffers() {
+        DirectBufferPool pool = new DirectBufferPool();
+        ReflectionTestUtils.setField(pool, "maxPooledPerClass", 2);
+        ReflectionTestUtils.setField(pool, "maxPooledBytes", 192L * KIB);
+
+        releaseAll(pool.acquire(KIB), pool.acquire(KIB), pool.acquire(KIB));
+        assertEquals(128L * KIB, pool.getStatus().get("pooledBytes"));
+
+        // A 128 KiB buffer would take the idle buffers above 192 KiB
+        releaseAll(pool.acquire(128 * KIB));
+        assertEquals(128L * KIB, pool.getStatus().get("pooledBytes"));
+    }
+
+    private static void releaseAll(DirectBufferPool.PooledBuffer... buffers) {
+        for (DirectBufferPool.PooledBuffer buffer : buffers) {
+            buffer.close();
+        }
+    }
+}
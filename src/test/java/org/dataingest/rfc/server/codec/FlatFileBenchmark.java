@@ -0,0 +1,174 @@
+package org.dataingest.rfc.server.codec;
+
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Flat File Benchmark
+ *
+ * Compares the flat-file codec writing an IDoc received as RFC tables with rendering
+ * the same IDoc as IDoc XML, the step consumers used to convert from. Both write
+ * into a buffer reused per thread. IDocXMLProcessor.render needs the SAP IDoc
+ * library and a repository with the segment metadata, so the XML side is written
+ * with the JDK's StAX writer in the same layout (EDI_DC40 and one element per
+ * segment, with an element per field).
+ *
+ * Not a unit test (only *Test classes run in the build); run its main method with the
+ * test classpath:
+ *
+ *   FlatFileBenchmark [iterations] [segments per IDoc]
+ *
+ * Prints per format the time per IDoc, the bytes allocated per IDoc and the size.
+ */
+public class FlatFileBenchmark {
+
+    private static final String[] SEGMENT_FIELDS = {"POSEX", "MENGE", "MENEE", "MATNR", "ARKTX"};
+    private static final int[] SEGMENT_LENGTHS = {6, 15, 3, 18, 40};
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int segments = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        FlatFilePayloadCodec flat = new FlatFilePayloadCodec();
+        ReflectionTestUtils.setField(flat, "charsetName", "UTF-8");
+        ReflectionTestUtils.setField(flat, "lineSeparatorName", "CRLF");
+        flat.init();
+        XMLOutputFactory xmlFactory = XMLOutputFactory.newFactory();
+        PayloadBuffer xmlBuffer = new PayloadBuffer(64 * 1024);
+
+        SAPIDOCDocument document = idoc(segments);
+        List<String[]> segmentValues = segmentValues(segments);
+        System.out.println("=== Flat File Benchmark ===");
+        System.out.printf("Iterations: %d, segments per IDoc: %d%n", iterations, segments);
+
+        for (int round = 0; round < 3; round++) {
+            boolean report = round == 2;
+            run("flat", iterations, report, () -> flat.encode(document));
+            run("xml", iterations, report, () -> {
+                xmlBuffer.reset();
+                renderXml(xmlFactory, document.getControlRecord(), segmentValues, xmlBuffer);
+                return xmlBuffer.toByteArray();
+            });
+        }
+    }
+
+    private interface Encoding {
+        byte[] encode() throws Exception;
+    }
+
+    private static void run(String name, int iterations, boolean report, Encoding encoding) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int size = 0;
+        for (int i = 0; i < iterations; i++) {
+            size = encoding.encode().length;
+        }
+        long elapsedNs = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        if (report) {
+            System.out.printf("%-5s %8.0f ns/IDoc, %7d bytes allocated/IDoc, %6d bytes/IDoc, %6d ms total%n",
+                    name, (double) elapsedNs / iterations, allocated / iterations, size,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNs));
+        }
+    }
+
+    private static void renderXml(XMLOutputFactory factory, Map<String, String> controlRecord,
+            List<String[]> segmentValues, PayloadBuffer out) throws XMLStreamException {
+        XMLStreamWriter xml = factory.createXMLStreamWriter(out, "UTF-8");
+        xml.writeStartDocument("UTF-8", "1.0");
+        xml.writeStartElement("ORDERS05");
+        xml.writeStartElement("IDOC");
+        xml.writeAttribute("BEGIN", "1");
+        xml.writeStartElement("EDI_DC40");
+        xml.writeAttribute("SEGMENT", "1");
+        for (Map.Entry<String, String> field : controlRecord.entrySet()) {
+            writeField(xml, field.getKey(), field.getValue());
+        }
+        xml.writeEndElement();
+        for (String[] values : segmentValues) {
+            xml.writeStartElement("E1EDP01");
+            xml.writeAttribute("SEGMENT", "1");
+            for (int i = 0; i < SEGMENT_FIELDS.length; i++) {
+                writeField(xml, SEGMENT_FIELDS[i], values[i]);
+            }
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.close();
+    }
+
+    private static void writeField(XMLStreamWriter xml, String name, String value) throws XMLStreamException {
+        if (value != null && !value.isEmpty()) {
+            xml.writeStartElement(name);
+            xml.writeCharacters(value);
+            xml.writeEndElement();
+        }
+    }
+
+    private static List<String[]> segmentValues(int segments) {
+        List<String[]> values = new ArrayList<>();
+        for (int segment = 1; segment <= segments; segment++) {
+            values.add(new String[] {
+                String.format("%06d", segment * 10), "10.000", "PCE", "MAT-" + segment, "Position " + segment});
+        }
+        return values;
+    }
+
+    private static SAPIDOCDocument idoc(int segments) {
+        String documentNumber = "0000000000000001";
+        Map<String, String> controlRecord = new LinkedHashMap<>();
+        controlRecord.put("TABNAM", "EDI_DC40");
+        controlRecord.put("MANDT", "100");
+        controlRecord.put("DOCNUM", documentNumber);
+        controlRecord.put("DOCREL", "754");
+        controlRecord.put("DIRECT", "1");
+        controlRecord.put("IDOCTYP", "ORDERS05");
+        controlRecord.put("MESTYP", "ORDERS");
+        controlRecord.put("SNDPOR", "SAPERP");
+        controlRecord.put("SNDPRT", "LS");
+        controlRecord.put("SNDPRN", "ERPCLNT100");
+        controlRecord.put("RCVPOR", "KAFKA");
+        controlRecord.put("RCVPRT", "LS");
+        controlRecord.put("RCVPRN", "KAFKA");
+        controlRecord.put("CREDAT", "20261018");
+        controlRecord.put("CRETIM", "120000");
+
+        List<Map<String, String>> dataRecords = new ArrayList<>();
+        int segmentNumber = 0;
+        for (String[] values : segmentValues(segments)) {
+            StringBuilder sdata = new StringBuilder();
+            for (int i = 0; i < values.length; i++) {
+                sdata.append(String.format("%-" + SEGMENT_LENGTHS[i] + "s", values[i]));
+            }
+            Map<String, String> dataRecord = new LinkedHashMap<>();
+            dataRecord.put("SEGNAM", "E1EDP01");
+            dataRecord.put("MANDT", "100");
+            dataRecord.put("DOCNUM", documentNumber);
+            dataRecord.put("SEGNUM", String.format("%06d", ++segmentNumber));
+            dataRecord.put("PSGNUM", "000000");
+            dataRecord.put("HLEVEL", "02");
+            dataRecord.put("SDATA", sdata.toString().stripTrailing());
+            dataRecords.add(dataRecord);
+        }
+
+        SAPIDOCDocument document = new SAPIDOCDocument();
+        document.setControlRecord(controlRecord);
+        document.setDataRecords(dataRecords);
+        document.setMessageType("ORDERS");
+        return document;
+    }
+}
@@ -0,0 +1,121 @@
+package org.dataingest.rfc.server.codec;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.model.SAPBWDataRequest;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FlatFilePayloadCodecTest {
+
+    @Test
+    void readsBackTheRecordsItWrites() throws IOException {
+        FlatFilePayloadCodec codec = codec("UTF-8", "CRLF");
+        SAPIDOCDocument first = idoc("0000000000000001", "EUR", "000010 Grüne Ware");
+        SAPIDOCDocument second = idoc("0000000000000002", "USD");
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(codec.encode(first));
+        file.write(codec.encode(second));
+
+        try (FlatFileReader reader = new FlatFileReader(new ByteArrayInputStream(file.toByteArray()),
+                StandardCharsets.UTF_8, "ERP")) {
+            for (SAPIDOCDocument written : List.of(first, second)) {
+                SAPIDOCDocument read = reader.read();
+                assertEquals(written.getDocumentNumber(), read.getDocumentNumber());
+                assertEquals(written.getMessageType(), read.getMessageType());
+                for (Map.Entry<String, String> field : written.getControlRecord().entrySet()) {
+                    assertEquals(field.getValue(), read.getControlRecord().get(field.getKey()), field.getKey());
+                }
+                assertEquals(written.getDataRecords(), read.getDataRecords());
+            }
+            assertNull(reader.read());
+        }
+    }
+
+    @Test
+    void writesFixedWidthRecordsWithTheConfiguredSeparator() throws IOException {
+        FlatFilePayloadCodec codec = codec("ISO-8859-1", "LF");
+
+        String[] lines = new String(codec.encode(idoc("0000000000000001", "EUR", "äöü")),
+                StandardCharsets.ISO_8859_1).split("\n", -1);
+
+        assertEquals(4, lines.length);
+        assertEquals(FlatRecordLayout.EDI_DC40.getWidth(), lines[0].length());
+        assertEquals(FlatRecordLayout.EDI_DD40.getWidth(), lines[1].length());
+        assertEquals("äöü", lines[2].substring(FlatRecordLayout.EDI_DD40.getOffset(FlatRecordLayout.SDATA)).trim());
+        assertEquals("", lines[3]);
+        assertEquals("application/x-sap-idoc-flat; charset=ISO-8859-1", codec.getContentType());
+    }
+
+    @Test
+    void truncatesValuesLongerThanTheirField() throws IOException {
+        FlatFilePayloadCodec codec = codec("UTF-8", "LF");
+        SAPIDOCDocument document = idoc("0000000000000001");
+        document.getControlRecord().put("MESCOD", "TOOLONG");
+
+        String control = new String(codec.encode(document), StandardCharsets.UTF_8).split("\n")[0];
+
+        int offset = FlatRecordLayout.EDI_DC40.getOffset(12);
+        assertEquals("MESCOD", FlatRecordLayout.EDI_DC40.getName(12));
+        assertEquals("TOO", control.substring(offset, offset + 3));
+        assertEquals(FlatRecordLayout.EDI_DC40.getWidth(), control.length());
+    }
+
+    @Test
+    void rejectsPayloadsItCannotWrite() {
+        FlatFilePayloadCodec codec = codec("UTF-8", "CRLF");
+
+        assertThrows(IOException.class, () -> codec.encode(new SAPBWDataRequest()));
+        assertThrows(IOException.class, () -> codec.encode(new SAPIDOCDocument()));
+    }
+
+    private static FlatFilePayloadCodec codec(String charset, String lineSeparator) {
+        FlatFilePayloadCodec codec = new FlatFilePayloadCodec();
+        ReflectionTestUtils.setField(codec, "charsetName", charset);
+        ReflectionTestUtils.setField(codec, "lineSeparatorName", lineSeparator);
+        codec.init();
+        return codec;
+    }
+
+    private static SAPIDOCDocument idoc(String documentNumber, String... segmentData) {
+        Map<String, String> controlRecord = new LinkedHashMap<>();
+        controlRecord.put("TABNAM", "EDI_DC40");
+        controlRecord.put("MANDT", "100");
+        controlRecord.put("DOCNUM", documentNumber);
+        controlRecord.put("IDOCTYP", "ORDERS05");
+        controlRecord.put("MESTYP", "ORDERS");
+        controlRecord.put("SNDPRN", "ERPCLNT100");
+        controlRecord.put("CREDAT", "20261018");
+
+        List<Map<String, String>> dataRecords = new ArrayList<>();
+        for (int i = 0; i < segmentData.length; i++) {
+            Map<String, String> dataRecord = new LinkedHashMap<>();
+            dataRecord.put("SEGNAM", i == 0 ? "E1EDK01" : "E1EDP01");
+            dataRecord.put("MANDT", "100");
+            dataRecord.put("DOCNUM", documentNumber);
+            dataRecord.put("SEGNUM", String.format("%06d", i + 1));
+            dataRecord.put("PSGNUM", "000000");
+            dataRecord.put("HLEVEL", "02");
+            dataRecord.put("SDATA", segmentData[i]);
+            dataRecords.add(dataRecord);
+        }
+
+        SAPIDOCDocument document = new SAPIDOCDocument();
+        document.setControlRecord(controlRecord);
+        document.setDataRecords(dataRecords);
+        document.setMessageType("ORDERS");
+        return document;
+    }
+}
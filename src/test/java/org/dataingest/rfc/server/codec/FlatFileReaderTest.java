@@ -0,0 +1,95 @@
+package org.dataingest.rfc.server.codec;
+
+import org.junit.jupiter.api.Test;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FlatFileReaderTest {
+
+    @Test
+    void groupsDataRecordsUnderTheirControlRecord() throws IOException {
+        String file = control("0000000000000001", "ORDERS") + "\r\n"
+                + data("E1EDK01", "0000000000000001", "EUR") + "\r\n"
+                + data("E1EDP01", "0000000000000001", "000010") + "\r\n"
+                + "\r\n"
+                + control("0000000000000002", "INVOIC") + "\n"
+                + data("E1EDK01", "0000000000000002", "USD") + "\n";
+
+        try (FlatFileReader reader = reader(file)) {
+            SAPIDOCDocument first = reader.read();
+            assertEquals("0000000000000001", first.getDocumentNumber());
+            assertEquals("ORDERS", first.getMessageType());
+            assertEquals("SENDER", first.getSenderSystem());
+            assertEquals("EDI_DC40", first.getControlRecord().get("TABNAM"));
+            assertEquals(2, first.getDataRecords().size());
+            assertEquals(List.of("EDI_DC40|EDI_DC40|0000000000000001|ORDERS|ORDERS", "EUR", "000010"),
+                    first.getSegmentData());
+
+            SAPIDOCDocument second = reader.read();
+            assertEquals("INVOIC", second.getMessageType());
+            Map<String, String> record = second.getDataRecords().get(0);
+            assertEquals("E1EDK01", record.get("SEGNAM"));
+            assertEquals("USD", record.get("SDATA"));
+
+            assertNull(reader.read());
+        }
+    }
+
+    @Test
+    void readsMissingTrailingPositionsAsBlanks() throws IOException {
+        // Records with their trailing blanks stripped, the data record right after MANDT
+        String file = control("0000000000000001", "ORDERS") + "\n" + pad("E1EDK01", 30) + "100" + "\n";
+
+        try (FlatFileReader reader = reader(file)) {
+            SAPIDOCDocument document = reader.read();
+
+            assertEquals("", document.getControlRecord().get("SERIAL"));
+            assertEquals("100", document.getDataRecords().get(0).get("MANDT"));
+            assertEquals("", document.getDataRecords().get(0).get("SDATA"));
+            assertEquals(1, document.getSegmentData().size());
+        }
+    }
+
+    @Test
+    void rejectsDataRecordsBeforeTheFirstControlRecord() {
+        FlatFileReader reader = reader(data("E1EDK01", "0000000000000001", "EUR") + "\n");
+
+        IOException e = assertThrows(IOException.class, reader::read);
+        assertEquals("Line 1: data record without control record", e.getMessage());
+    }
+
+    private static FlatFileReader reader(String file) {
+        return new FlatFileReader(new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8, "SENDER");
+    }
+
+    private static String control(String documentNumber, String messageType) {
+        return record(FlatRecordLayout.EDI_DC40, Map.of("TABNAM", "EDI_DC40", "MANDT", "100",
+                "DOCNUM", documentNumber, "MESTYP", messageType)).stripTrailing();
+    }
+
+    private static String data(String segment, String documentNumber, String segmentData) {
+        return record(FlatRecordLayout.EDI_DD40, Map.of("SEGNAM", segment, "MANDT", "100",
+                "DOCNUM", documentNumber, "SDATA", segmentData));
+    }
+
+    private static String record(FlatRecordLayout layout, Map<String, String> values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < layout.getNumFields(); i++) {
+            line.append(pad(values.getOrDefault(layout.getName(i), ""), layout.getLength(i)));
+        }
+        return line.toString();
+    }
+
+    private static String pad(String value, int length) {
+        return value + " ".repeat(length - value.length());
+    }
+}
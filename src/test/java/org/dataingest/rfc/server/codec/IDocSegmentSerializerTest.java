@@ -0,0 +1,82 @@
+package org.dataingest.rfc.server.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.conn.idoc.IDocSegment;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.config.ApplicationConfiguration;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+
+import static org.dataingest.rfc.server.idoc.TestSegments.add;
+import static org.dataingest.rfc.server.idoc.TestSegments.chain;
+import static org.dataingest.rfc.server.idoc.TestSegments.segment;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IDocSegmentSerializerTest {
+
+    private final ObjectMapper objectMapper = new ApplicationConfiguration().objectMapper();
+
+    @Test
+    void writesTheChildrenOfTheRootAsNestedSegments() throws Exception {
+        IDocSegment root = segment("ROOT");
+        IDocSegment header = add(root, segment("E1EDK01", "CURCY", "EUR", "BELNR", ""));
+        add(header, segment("E1EDK14", "QUALF", "006"));
+        IDocSegment item = add(root, segment("E1EDP01", "POSEX", "000010"));
+        add(item, segment("E1EDP19", "IDTNR", "MAT-1"));
+        add(item, segment("E1EDP19", "IDTNR", "MAT-2"));
+
+        String json = objectMapper.writeValueAsString(root);
+
+        assertEquals("["
+                + "{\"segment\":\"E1EDK01\",\"fields\":{\"CURCY\":\"EUR\"},\"children\":["
+                + "{\"segment\":\"E1EDK14\",\"fields\":{\"QUALF\":\"006\"}}]},"
+                + "{\"segment\":\"E1EDP01\",\"fields\":{\"POSEX\":\"000010\"},\"children\":["
+                + "{\"segment\":\"E1EDP19\",\"fields\":{\"IDTNR\":\"MAT-1\"}},"
+                + "{\"segment\":\"E1EDP19\",\"fields\":{\"IDTNR\":\"MAT-2\"}}]}]", json);
+    }
+
+    @Test
+    void writesAnEmptyArrayForARootWithoutChildren() throws Exception {
+        assertEquals("[]", objectMapper.writeValueAsString(segment("ROOT")));
+    }
+
+    @Test
+    void writesTheTreeOfADocumentInTreeOutputMode() throws Exception {
+        IDocSegment root = segment("ROOT");
+        add(root, segment("E1MARAM", "MATNR", "MAT-1"));
+        SAPIDOCDocument document = new SAPIDOCDocument();
+        document.setDocumentNumber("0000000000000001");
+        document.setMessageType("MATMAS");
+        document.setSegmentData(null);
+        document.setSegmentTree(root);
+
+        JsonWriterFactory writerFactory = new JsonWriterFactory();
+        writerFactory.objectMapper = objectMapper;
+        ReflectionTestUtils.setField(writerFactory, "generatedWritersEnabled", true);
+        JsonPayloadCodec codec = new JsonPayloadCodec();
+        codec.objectMapper = objectMapper;
+        codec.writerFactory = writerFactory;
+        byte[] encoded = codec.encode(document);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(document), encoded);
+        JsonNode tree = objectMapper.readTree(encoded).get("segmentTree");
+        assertEquals("E1MARAM", tree.get(0).get("segment").asText());
+        assertEquals("MAT-1", tree.get(0).get("fields").get("MATNR").asText());
+    }
+
+    @Test
+    void writesDeeplyNestedSegments() throws Exception {
+        JsonNode node = objectMapper.readTree(objectMapper.writeValueAsString(chain(500)));
+
+        int depth = 0;
+        while (node != null && node.size() > 0) {
+            JsonNode segment = node.get(0);
+            depth++;
+            assertEquals(String.valueOf(depth), segment.get("fields").get("LEVEL").asText());
+            node = segment.get("children");
+        }
+        assertEquals(500, depth);
+    }
+}
@@ -0,0 +1,103 @@
+package org.dataingest.rfc.server.codec;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.config.ApplicationConfiguration;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON Codec Benchmark
+ *
+ * Compares JsonPayloadCodec (generated writers streaming into a reused per-thread
+ * buffer) with the plain ObjectMapper.writeValueAsBytes used before, on IDocs
+ * received as RFC tables. Both produce the same bytes (see JsonPayloadCodecTest).
+ *
+ * Not a unit test (only *Test classes run in the build); run its main method with the
+ * test classpath:
+ *
+ *   JsonCodecBenchmark [iterations] [segments per IDoc]
+ *
+ * Prints per variant the time per IDoc and the bytes allocated per IDoc.
+ */
+public class JsonCodecBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int segments = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(JsonWriterFactory.class)).setLevel(Level.WARN);
+
+        ObjectMapper objectMapper = new ApplicationConfiguration().objectMapper();
+        JsonWriterFactory writerFactory = new JsonWriterFactory();
+        writerFactory.objectMapper = objectMapper;
+        ReflectionTestUtils.setField(writerFactory, "generatedWritersEnabled", true);
+        JsonPayloadCodec codec = new JsonPayloadCodec();
+        codec.objectMapper = objectMapper;
+        codec.writerFactory = writerFactory;
+
+        SAPIDOCDocument document = idoc(segments);
+        System.out.println("=== JSON Codec Benchmark ===");
+        System.out.printf("Iterations: %d, segments per IDoc: %d, payload: %d bytes%n",
+                iterations, segments, codec.encode(document).length);
+
+        for (int round = 0; round < 3; round++) {
+            boolean report = round == 2;
+            run("ObjectMapper", iterations, report, () -> objectMapper.writeValueAsBytes(document));
+            run("JsonPayloadCodec", iterations, report, () -> codec.encode(document));
+        }
+    }
+
+    private interface Encoding {
+        byte[] encode() throws Exception;
+    }
+
+    private static void run(String name, int iterations, boolean report, Encoding encoding) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            bytes += encoding.encode().length;
+        }
+        long elapsedNs = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        if (report) {
+            System.out.printf("%-16s %8.0f ns/IDoc, %7d bytes allocated/IDoc, %6d ms total (%d bytes written)%n",
+                    name, (double) elapsedNs / iterations, allocated / iterations,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNs), bytes);
+        }
+    }
+
+    private static SAPIDOCDocument idoc(int segments) {
+        Map<String, String> controlRecord = new HashMap<>();
+        controlRecord.put("TABNAM", "EDI_DC40");
+        controlRecord.put("DOCNUM", "0000000000000001");
+        controlRecord.put("IDOCTYP", "ORDERS05");
+        controlRecord.put("MESTYP", "ORDERS");
+        controlRecord.put("SNDPRN", "ERPCLNT100");
+        controlRecord.put("RCVPRN", "KAFKA");
+        List<String> segmentData = new ArrayList<>();
+        for (int segment = 1; segment <= segments; segment++) {
+            segmentData.add("E1EDP01 POSEX=" + segment + " MENGE=10.000 MENEE=PCE");
+        }
+
+        SAPIDOCDocument document = new SAPIDOCDocument();
+        document.setMessageType("ORDERS");
+        document.setMessageTypeVersion("05");
+        document.setSenderSystem("ERP");
+        document.setTransactionID("0A1B2C3D4E5F60718293A4B5");
+        document.setControlRecord(controlRecord);
+        document.setSegmentData(segmentData);
+        return document;
+    }
+}
@@ -0,0 +1,119 @@
+package org.dataingest.rfc.server.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.config.ApplicationConfiguration;
+import org.dataingest.rfc.server.model.SAPBWDataRequest;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class JsonPayloadCodecTest {
+
+    private final ObjectMapper objectMapper = new ApplicationConfiguration().objectMapper();
+
+    @Test
+    void writesTheSameJsonAsTheObjectMapper() throws Exception {
+        JsonPayloadCodec codec = codec(true);
+
+        for (Object payload : payloads()) {
+            assertArrayEquals(objectMapper.writeValueAsBytes(payload), codec.encode(payload),
+                    payload.getClass().getSimpleName());
+        }
+        assertEquals("null", new String(codec.encode(null), "UTF-8"));
+    }
+
+    @Test
+    void writesTheSameJsonWithTheObjectMapperFallback() throws Exception {
+        JsonPayloadCodec codec = codec(false);
+
+        for (Object payload : payloads()) {
+            assertArrayEquals(objectMapper.writeValueAsBytes(payload), codec.encode(payload),
+                    payload.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    void reusesTheBufferWithoutLeakingThePreviousPayload() throws Exception {
+        JsonPayloadCodec codec = codec(true);
+        List<Object> payloads = payloads();
+
+        byte[] large = codec.encode(payloads.get(0));
+        byte[] small = codec.encode(payloads.get(1));
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(payloads.get(1)), small);
+        assertArrayEquals(objectMapper.writeValueAsBytes(payloads.get(0)), codec.encode(payloads.get(0)));
+        assertEquals(large.length, codec.encode(payloads.get(0)).length);
+    }
+
+    @Test
+    void leavesTheCallersStreamOpen() throws Exception {
+        JsonPayloadCodec codec = codec(true);
+        List<Object> payloads = payloads();
+        TrackingStream out = new TrackingStream();
+
+        codec.encode(payloads.get(0), out);
+        codec.encode(payloads.get(1), out);
+
+        assertFalse(out.closed);
+        byte[] expected = (objectMapper.writeValueAsString(payloads.get(0))
+                + objectMapper.writeValueAsString(payloads.get(1))).getBytes("UTF-8");
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    private JsonPayloadCodec codec(boolean generatedWriters) {
+        JsonWriterFactory writerFactory = new JsonWriterFactory();
+        writerFactory.objectMapper = objectMapper;
+        ReflectionTestUtils.setField(writerFactory, "generatedWritersEnabled", generatedWriters);
+        JsonPayloadCodec codec = new JsonPayloadCodec();
+        codec.objectMapper = objectMapper;
+        codec.writerFactory = writerFactory;
+        return codec;
+    }
+
+    private static List<Object> payloads() {
+        Map<String, String> controlRecord = new LinkedHashMap<>();
+        controlRecord.put("TABNAM", "EDI_DC40");
+        controlRecord.put("DOCNUM", "0000000000123456");
+        controlRecord.put("MESTYP", "ORDERS");
+        controlRecord.put("SNDPRN", null);
+        SAPIDOCDocument document = new SAPIDOCDocument();
+        document.setMessageType("ORDERS");
+        document.setMessageTypeVersion("05");
+        document.setSenderSystem("ERP");
+        document.setTransactionID("0A1B2C3D4E5F60718293A4B5");
+        document.setControlRecord(controlRecord);
+        List<String> segments = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            segments.add("E1EDP01 \"POSEX\"=" + i + " äöü");
+        }
+        document.setSegmentData(segments);
+
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("LANGU", "EN");
+        SAPBWDataRequest request = new SAPBWDataRequest();
+        request.setRequestId("REQU_1");
+        request.setDataSourceName("0MATERIAL_ATTR");
+        request.setParameters(parameters);
+
+        return Arrays.asList(document, request, new SAPIDOCDocument());
+    }
+
+    private static final class TrackingStream extends ByteArrayOutputStream {
+        private boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.dataingest.rfc.server.codec;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadCodecRegistryTest {
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private final JsonPayloadCodec json = new JsonPayloadCodec();
+    private final BinaryPayloadCodec binary = new BinaryPayloadCodec();
+
+    @Test
+    void resolvesTheCodecPerTopic() {
+        environment.setProperty("kafka.payload.format.SAP.IDOCS.ORDERS_05", "binary");
+        PayloadCodecRegistry registry = registry("json");
+
+        assertSame(json, registry.getCodec());
+        assertSame(binary, registry.getCodecForTopic("SAP.IDOCS.ORDERS_05"));
+        assertSame(json, registry.getCodecForTopic("SAP.IDOCS.MATMAS_05"));
+        assertThrows(IllegalArgumentException.class, () -> registry.getCodec("avro"));
+    }
+
+    @Test
+    void reportsTheFormatsConfiguredForAnyTopic() {
+        environment.setProperty("kafka.payload.format.SAP.IDOCS.ORDERS_05", "binary");
+        PayloadCodecRegistry registry = registry("json");
+
+        assertTrue(registry.isConfigured("json"));
+        assertTrue(registry.isConfigured("binary"));
+        assertFalse(registry.isConfigured("flat"));
+    }
+
+    @Test
+    void rejectsAnUnknownDefaultFormat() {
+        assertThrows(IllegalStateException.class, () -> registry("avro"));
+    }
+
+    @Test
+    void rejectsSegmentTreesWithABinaryDefaultFormat() {
+        environment.setProperty("idoc.segment.output", "tree");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> registry("binary"));
+        assertTrue(thrown.getMessage().contains("kafka.payload.format"), thrown.getMessage());
+    }
+
+    @Test
+    void rejectsSegmentTreesWithABinaryTopicFormat() {
+        environment.setProperty("idoc.segment.output", "tree");
+        environment.setProperty("kafka.payload.format.SAP.IDOCS.ORDERS_05", "binary");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> registry("json"));
+        assertTrue(thrown.getMessage().contains("kafka.payload.format.SAP.IDOCS.ORDERS_05"), thrown.getMessage());
+    }
+
+    @Test
+    void acceptsSegmentTreesWithJson() {
+        environment.setProperty("idoc.segment.output", "tree");
+
+        assertSame(json, registry("json").getCodecForTopic("SAP.IDOCS.ORDERS_05"));
+    }
+
+    private PayloadCodecRegistry registry(String defaultFormat) {
+        PayloadCodecRegistry registry = new PayloadCodecRegistry();
+        ReflectionTestUtils.setField(registry, "codecs", Arrays.<IPayloadCodec>asList(json, binary));
+        ReflectionTestUtils.setField(registry, "defaultFormat", defaultFormat);
+        ReflectionTestUtils.setField(registry, "environment", environment);
+        registry.init();
+        return registry;
+    }
+}
@@ -0,0 +1,130 @@
+package org.dataingest.rfc.server.codec;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RecordSchemaTest {
+
+    @Test
+    void derivesSortedFieldsFromReadWriteProperties() {
+        RecordSchema schema = RecordSchema.forClass("Sample.V1", Sample.class);
+
+        List<String> names = schema.getFields().stream()
+                .map(RecordSchema.FieldSchema::getName)
+                .collect(Collectors.toList());
+        assertEquals(List.of("active", "attributes", "count", "name", "segments", "size"), names);
+        assertEquals(RecordSchema.FieldType.STRING_MAP, schema.getFields().get(1).getType());
+        assertEquals(RecordSchema.FieldType.LONG, schema.getFields().get(5).getType());
+        assertEquals("Sample", schema.getRecordName());
+    }
+
+    @Test
+    void fingerprintIsStableAndLayoutSensitive() {
+        RecordSchema first = RecordSchema.forClass("Sample.V1", Sample.class);
+        RecordSchema second = RecordSchema.forClass("Sample.V2", Sample.class);
+        RecordSchema other = RecordSchema.forClass("Other", Other.class);
+
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        assertEquals(RecordSchema.fingerprint(first.canonicalForm()), first.getFingerprint());
+        assertNotEquals(first.getFingerprint(), other.getFingerprint());
+    }
+
+    @Test
+    void withSubjectKeepsLayoutAndAccessors() {
+        RecordSchema schema = RecordSchema.forClass("Sample.V1", Sample.class);
+        RecordSchema copy = schema.withSubject("Sample.V9");
+
+        assertEquals("Sample.V9", copy.getSubject());
+        assertEquals(schema.getFingerprint(), copy.getFingerprint());
+        assertEquals(schema.getFields(), copy.getFields());
+        assertSame(schema.accessor(0), copy.accessor(0));
+    }
+
+    public static class Sample {
+        private String name;
+        private int count;
+        private long size;
+        private boolean active;
+        private List<String> segments;
+        private Map<String, String> attributes;
+        private Object unsupported;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public List<String> getSegments() {
+            return segments;
+        }
+
+        public void setSegments(List<String> segments) {
+            this.segments = segments;
+        }
+
+        public Map<String, String> getAttributes() {
+            return attributes;
+        }
+
+        public void setAttributes(Map<String, String> attributes) {
+            this.attributes = attributes;
+        }
+
+        public Object getUnsupported() {
+            return unsupported;
+        }
+
+        public void setUnsupported(Object unsupported) {
+            this.unsupported = unsupported;
+        }
+
+        public String getDerived() {
+            return name + count;
+        }
+    }
+
+    public static class Other {
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
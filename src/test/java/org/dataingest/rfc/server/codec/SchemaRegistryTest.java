@@ -0,0 +1,127 @@
+package org.dataingest.rfc.server.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaRegistryTest {
+
+    @TempDir
+    Path storeDir;
+
+    @Test
+    void persistsANewSchemaOnceAndCachesIt() throws Exception {
+        MockProducer<String, byte[]> producer = producer(true);
+        SchemaRegistry registry = registry(producer);
+
+        RecordSchema schema = registry.getSchema("Sample.V1", RecordSchemaTest.Sample.class);
+
+        assertSame(schema, registry.getSchema("Sample.V1", RecordSchemaTest.Sample.class));
+        assertEquals(1, producer.history().size());
+        assertEquals("Sample.V1", producer.history().get(0).key());
+        assertTrue(schemaFile(schema).isFile());
+    }
+
+    @Test
+    void waitsForTheSchemaTopicBeforeHandingOutTheSchema() throws Exception {
+        MockProducer<String, byte[]> producer = producer(false);
+        SchemaRegistry registry = registry(producer);
+
+        CompletableFuture<RecordSchema> schema = CompletableFuture.supplyAsync(() -> {
+            try {
+                return registry.getSchema("Sample.V1", RecordSchemaTest.Sample.class);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (producer.history().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(schema.isDone());
+        assertEquals(0, registry.size());
+
+        producer.completeNext();
+        assertTrue(schemaFile(schema.get(5, TimeUnit.SECONDS)).isFile());
+    }
+
+    @Test
+    void failsTheEncodeAndRetriesWhenTheSchemaTopicFails() throws Exception {
+        MockProducer<String, byte[]> producer = producer(false);
+        SchemaRegistry registry = registry(producer);
+
+        CompletableFuture<Void> failure = CompletableFuture.runAsync(() -> {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!producer.errorNext(new RuntimeException("Broker unavailable"))
+                    && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+        });
+        IOException thrown = assertThrows(IOException.class,
+                () -> registry.getSchema("Sample.V1", RecordSchemaTest.Sample.class));
+        failure.get(5, TimeUnit.SECONDS);
+
+        assertEquals("Broker unavailable", thrown.getCause().getMessage());
+        assertEquals(0, registry.size());
+        assertEquals(0, storeDir.toFile().list().length);
+
+        ReflectionTestUtils.setField(registry, "kafkaProducer", producer(true));
+        RecordSchema schema = registry.getSchema("Sample.V1", RecordSchemaTest.Sample.class);
+        assertTrue(schemaFile(schema).isFile());
+    }
+
+    @Test
+    void failsTheEncodeWhenTheSchemaTopicDoesNotAcknowledgeInTime() {
+        SchemaRegistry registry = registry(producer(false));
+        ReflectionTestUtils.setField(registry, "kafkaTimeoutMs", 50);
+
+        assertThrows(IOException.class, () -> registry.getSchema("Sample.V1", RecordSchemaTest.Sample.class));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void doesNotRepublishASchemaFoundInTheStore() throws Exception {
+        RecordSchema schema = registry(producer(true)).getSchema("Sample.V1", RecordSchemaTest.Sample.class);
+        MockProducer<String, byte[]> producer = producer(true);
+        SchemaRegistry restarted = registry(producer);
+
+        assertEquals(schema.getFingerprint(),
+                restarted.getSchema("Sample.V1", RecordSchemaTest.Sample.class).getFingerprint());
+        assertTrue(producer.history().isEmpty());
+    }
+
+    private File schemaFile(RecordSchema schema) {
+        return storeDir.resolve(schema.getSubject() + "." + Long.toHexString(schema.getFingerprint()) + ".json")
+                .toFile();
+    }
+
+    private SchemaRegistry registry(MockProducer<String, byte[]> producer) {
+        SchemaRegistry registry = new SchemaRegistry();
+        registry.objectMapper = new ObjectMapper();
+        registry.kafkaProducer = producer;
+        ReflectionTestUtils.setField(registry, "storeDir", storeDir.toString());
+        ReflectionTestUtils.setField(registry, "schemaTopic", "SAP.SCHEMAS");
+        ReflectionTestUtils.setField(registry, "kafkaTimeoutMs", 30000);
+        registry.init();
+        return registry;
+    }
+
+    private static MockProducer<String, byte[]> producer(boolean autoComplete) {
+        return new MockProducer<>(autoComplete, new StringSerializer(), new ByteArraySerializer());
+    }
+}
@@ -0,0 +1,74 @@
+package org.dataingest.rfc.server.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SAPClientDataProviderTest {
+
+    private final MockEnvironment environment = new MockEnvironment();
+
+    @Test
+    void addsThePoolSettingsToEveryDestination() {
+        Properties properties = provider().getDestinationProperties("SAP_CLIENT");
+
+        assertEquals("sap01", properties.getProperty("jco.client.ashost"));
+        assertEquals("5", properties.getProperty("jco.destination.pool_capacity"));
+        assertEquals("10", properties.getProperty("jco.destination.peak_limit"));
+        assertEquals("30000", properties.getProperty("jco.destination.max_get_client_time"));
+        assertEquals("600000", properties.getProperty("jco.destination.expiration_time"));
+        assertNull(properties.getProperty("jco.destination.repository_destination"));
+    }
+
+    @Test
+    void appliesTheSettingsOfANamedDestination() {
+        environment.setProperty("jco.client.repository_destination", "SAP_REPOSITORY");
+        environment.setProperty("jco.destinations.SAP_BW.ashost", "bw01");
+        environment.setProperty("jco.destinations.SAP_BW.client", "200");
+        environment.setProperty("jco.destinations.SAP_BW.pool_capacity", "2");
+        environment.setProperty("jco.destinations.SAP_BW.repository_destination", "SAP_BW");
+        SAPClientDataProvider provider = provider();
+
+        Properties bw = provider.getDestinationProperties("SAP_BW");
+        Properties client = provider.getDestinationProperties("SAP_CLIENT");
+
+        assertEquals("bw01", bw.getProperty("jco.client.ashost"));
+        assertEquals("200", bw.getProperty("jco.client.client"));
+        assertEquals("2", bw.getProperty("jco.destination.pool_capacity"));
+        assertEquals("SAP_BW", bw.getProperty("jco.destination.repository_destination"));
+        assertEquals("sap01", client.getProperty("jco.client.ashost"));
+        assertEquals("SAP_REPOSITORY", client.getProperty("jco.destination.repository_destination"));
+        assertEquals(Arrays.asList("SAP_CLIENT", "SAP_BW"), provider.getDestinationNames());
+    }
+
+    @Test
+    void raisesThePeakLimitToThePoolCapacity() {
+        environment.setProperty("jco.destinations.SAP_CLIENT.pool_capacity", "20");
+
+        Properties properties = provider().getDestinationProperties("SAP_CLIENT");
+
+        assertEquals("20", properties.getProperty("jco.destination.peak_limit"));
+    }
+
+    private SAPClientDataProvider provider() {
+        SAPClientDataProvider provider = new SAPClientDataProvider();
+        ReflectionTestUtils.setField(provider, "environment", environment);
+        ReflectionTestUtils.setField(provider, "destinationList", "SAP_CLIENT, SAP_BW");
+        ReflectionTestUtils.setField(provider, "ashost", "sap01");
+        ReflectionTestUtils.setField(provider, "client", "100");
+        ReflectionTestUtils.setField(provider, "lang", "en");
+        ReflectionTestUtils.setField(provider, "user", "rfc_user");
+        ReflectionTestUtils.setField(provider, "passwd", "");
+        ReflectionTestUtils.setField(provider, "sysnr", "00");
+        ReflectionTestUtils.setField(provider, "poolCapacity", 5);
+        ReflectionTestUtils.setField(provider, "peakLimit", 10);
+        ReflectionTestUtils.setField(provider, "maxGetClientTime", 30000L);
+        ReflectionTestUtils.setField(provider, "expirationTime", 600000L);
+        return provider;
+    }
+}
@@ -0,0 +1,155 @@
+package org.dataingest.rfc.server.config;
+
+import com.sap.conn.jco.ext.ServerDataEventListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SAPServerDataProviderTest {
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private final List<String> updated = new ArrayList<>();
+
+    @Test
+    void appliesARuntimeChangeAndAnnouncesIt() {
+        SAPServerDataProvider provider = provider();
+
+        provider.updateServerProperties("KAFKA_RFC", changes("jco.server.connection_count", "8"));
+
+        assertEquals("8", provider.getServerProperties("KAFKA_RFC").getProperty("jco.server.connection_count"));
+        assertEquals(Collections.singletonList("KAFKA_RFC"), updated);
+    }
+
+    @Test
+    void rejectsPropertiesThatCannotBeChangedAtRuntime() {
+        SAPServerDataProvider provider = provider();
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> provider.updateServerProperties("KAFKA_RFC", changes("jco.server.gwhost", "sap02")));
+
+        assertTrue(thrown.getMessage().contains("cannot be changed at runtime"), thrown.getMessage());
+        assertEquals("localhost", provider.getServerProperties("KAFKA_RFC").getProperty("jco.server.gwhost"));
+        assertTrue(updated.isEmpty());
+    }
+
+    @Test
+    void rejectsInvalidCountsWithoutApplyingAnyChange() {
+        SAPServerDataProvider provider = provider();
+        Map<String, String> changes = changes("jco.server.connection_count", "8");
+        changes.put("jco.server.worker_thread_count", "0");
+
+        assertThrows(IllegalArgumentException.class, () -> provider.updateServerProperties("KAFKA_RFC", changes));
+        assertThrows(NumberFormatException.class, () -> provider.updateServerProperties("KAFKA_RFC",
+                changes("jco.server.connection_count", "many")));
+
+        assertEquals("4", provider.getServerProperties("KAFKA_RFC").getProperty("jco.server.connection_count"));
+        assertTrue(updated.isEmpty());
+    }
+
+    @Test
+    void rejectsAMinimumAboveTheWorkerThreadCount() {
+        SAPServerDataProvider provider = provider();
+        ReflectionTestUtils.setField(provider, "workerThreadCount", 10);
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> provider
+                .updateServerProperties("KAFKA_RFC", changes("jco.server.worker_thread_min_count", "12")));
+
+        assertTrue(thrown.getMessage().contains("exceeds worker_thread_count 10"), thrown.getMessage());
+        assertNull(provider.getServerProperties("KAFKA_RFC").getProperty("jco.server.worker_thread_min_count"));
+    }
+
+    @Test
+    void failsWithoutAListenerRegisteredByJCo() {
+        SAPServerDataProvider provider = provider();
+        provider.setServerDataEventListener(null);
+
+        assertThrows(IllegalStateException.class, () -> provider.updateServerProperties("KAFKA_RFC",
+                changes("jco.server.connection_count", "8")));
+    }
+
+    @Test
+    void runsOneServerNamedAfterTheProgramIdWithoutAServerList() {
+        assertEquals(Collections.singletonList("KAFKA_RFC"), provider().getServerNames());
+    }
+
+    @Test
+    void listsEachConfiguredServerOnce() {
+        SAPServerDataProvider provider = provider();
+        ReflectionTestUtils.setField(provider, "serverList", "ERP_IDOC, CRM_IDOC,,ERP_IDOC");
+
+        assertEquals(Arrays.asList("ERP_IDOC", "CRM_IDOC"), provider.getServerNames());
+    }
+
+    @Test
+    void appliesTheSettingsOfANamedServer() {
+        environment.setProperty("jco.servers.CRM_IDOC.gwhost", "crm01");
+        environment.setProperty("jco.servers.CRM_IDOC.progid", "CRM_KAFKA");
+        environment.setProperty("jco.servers.CRM_IDOC.connection_count", "2");
+        SAPServerDataProvider provider = provider();
+
+        Properties crm = provider.getServerProperties("CRM_IDOC");
+        Properties erp = provider.getServerProperties("ERP_IDOC");
+
+        assertEquals("crm01", crm.getProperty("jco.server.gwhost"));
+        assertEquals("CRM_KAFKA", crm.getProperty("jco.server.progid"));
+        assertEquals("2", crm.getProperty("jco.server.connection_count"));
+        assertEquals("sapgw00", crm.getProperty("jco.server.gwserv"));
+        assertEquals("localhost", erp.getProperty("jco.server.gwhost"));
+        assertEquals("ERP_IDOC", erp.getProperty("jco.server.progid"));
+        assertEquals("4", erp.getProperty("jco.server.connection_count"));
+    }
+
+    @Test
+    void keepsARuntimeChangeToTheServerItWasMadeFor() {
+        environment.setProperty("jco.servers.CRM_IDOC.connection_count", "2");
+        SAPServerDataProvider provider = provider();
+
+        provider.updateServerProperties("CRM_IDOC", changes("jco.server.connection_count", "6"));
+
+        // The runtime value wins over the named server setting
+        assertEquals("6", provider.getServerProperties("CRM_IDOC").getProperty("jco.server.connection_count"));
+        assertEquals("4", provider.getServerProperties("ERP_IDOC").getProperty("jco.server.connection_count"));
+        assertEquals(Collections.singletonList("CRM_IDOC"), updated);
+    }
+
+    private static Map<String, String> changes(String property, String value) {
+        Map<String, String> changes = new HashMap<>();
+        changes.put(property, value);
+        return changes;
+    }
+
+    private SAPServerDataProvider provider() {
+        SAPServerDataProvider provider = new SAPServerDataProvider();
+        ReflectionTestUtils.setField(provider, "environment", environment);
+        ReflectionTestUtils.setField(provider, "serverList", "");
+        ReflectionTestUtils.setField(provider, "gwhost", "localhost");
+        ReflectionTestUtils.setField(provider, "gwserv", "sapgw00");
+        ReflectionTestUtils.setField(provider, "progid", "KAFKA_RFC");
+        ReflectionTestUtils.setField(provider, "connectionCount", 4);
+        ReflectionTestUtils.setField(provider, "saprouter", "");
+        ReflectionTestUtils.setField(provider, "repositoryDestination", "SAP_CLIENT");
+        provider.setServerDataEventListener(new ServerDataEventListener() {
+            @Override
+            public void updated(String serverName) {
+                updated.add(serverName);
+            }
+
+            @Override
+            public void deleted(String serverName) {
+            }
+        });
+        return provider;
+    }
+}
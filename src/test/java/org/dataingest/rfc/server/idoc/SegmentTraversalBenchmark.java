@@ -0,0 +1,127 @@
+package org.dataingest.rfc.server.idoc;
+
+import com.sap.conn.idoc.IDocSegment;
+import java.util.concurrent.TimeUnit;
+
+import static org.dataingest.rfc.server.idoc.TestSegments.add;
+import static org.dataingest.rfc.server.idoc.TestSegments.chain;
+import static org.dataingest.rfc.server.idoc.TestSegments.segment;
+
+/**
+ * Segment Traversal Benchmark
+ *
+ * Walks a 100,000-segment IDoc with SegmentTraversal and with the recursive walk it
+ * replaced (one call per level, a try/catch per child access). Each visit reads the
+ * segment type and content, as the segment extractors do. Two shapes are measured:
+ * a wide IDoc (items with three sub-segments each) and a deep one (every segment
+ * nested in the previous one). The segments are in-memory TestSegments, so no SAP
+ * connection is needed.
+ *
+ * Not a unit test (only *Test classes run in the build); run its main method with the
+ * test classpath:
+ *
+ *   SegmentTraversalBenchmark [segments] [iterations]
+ *
+ * Prints per shape and variant the time per IDoc, or the StackOverflowError of the
+ * recursive walk on the deep shape.
+ */
+public class SegmentTraversalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int segments = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        System.out.println("=== Segment Traversal Benchmark ===");
+        System.out.printf("Segments per IDoc: %d, iterations: %d%n", segments, iterations);
+
+        run("wide", wide(segments), iterations);
+        run("deep", chain(segments - 1), iterations);
+    }
+
+    private static void run(String shape, IDocSegment root, int iterations) throws Exception {
+        for (int round = 0; round < 3; round++) {
+            boolean report = round == 2;
+            long start = System.nanoTime();
+            long visited = 0;
+            for (int i = 0; i < iterations; i++) {
+                long[] count = new long[1];
+                SegmentTraversal.walk(root, new ISegmentVisitor() {
+                    @Override
+                    public boolean enterSegment(IDocSegment segment, int depth) {
+                        count[0] += visit(segment);
+                        return true;
+                    }
+
+                    @Override
+                    public void exitSegment(IDocSegment segment, int depth) {
+                    }
+                });
+                visited = count[0];
+            }
+            if (report) {
+                print(shape, "traversal", start, iterations, visited);
+            }
+
+            start = System.nanoTime();
+            try {
+                for (int i = 0; i < iterations; i++) {
+                    visited = walkRecursively(root, 0);
+                }
+                if (report) {
+                    print(shape, "recursive", start, iterations, visited);
+                }
+            } catch (StackOverflowError e) {
+                if (report) {
+                    System.out.printf("%-5s %-10s StackOverflowError%n", shape, "recursive");
+                }
+            }
+        }
+    }
+
+    private static int visit(IDocSegment segment) {
+        return segment.getType().length() + segment.toString().length() > 0 ? 1 : 0;
+    }
+
+    private static void print(String shape, String variant, long start, int iterations, long visited) {
+        long elapsedNs = System.nanoTime() - start;
+        System.out.printf("%-5s %-10s %8.2f ms/IDoc (%d segments)%n", shape, variant,
+                (double) TimeUnit.NANOSECONDS.toMicros(elapsedNs) / 1000 / iterations, visited);
+    }
+
+    /**
+     * The recursive walk used before SegmentTraversal.
+     */
+    private static long walkRecursively(IDocSegment segment, int level) {
+        if (segment == null) {
+            return 0;
+        }
+        long visited = 0;
+        try {
+            visited += visit(segment);
+            int numChildren = segment.getNumChildren();
+            for (int i = 0; i < numChildren; i++) {
+                try {
+                    visited += walkRecursively(segment.getChild(i), level + 1);
+                } catch (RuntimeException e) {
+                    // the old extractor logged and continued with the next child
+                }
+            }
+        } catch (RuntimeException e) {
+            // the old extractor logged and continued with the next segment
+        }
+        return visited;
+    }
+
+    private static IDocSegment wide(int segments) {
+        IDocSegment root = segment("ROOT");
+        int count = 1;
+        for (int item = 1; count < segments; item++) {
+            IDocSegment position = add(root, segment("E1EDP01", "POSEX", String.valueOf(item), "MENGE", "10.000"));
+            count++;
+            for (int child = 0; child < 3 && count < segments; child++, count++) {
+                add(position, segment("E1EDP19", "QUALF", "00" + child, "IDTNR", "MAT-" + item));
+            }
+        }
+        return root;
+    }
+}
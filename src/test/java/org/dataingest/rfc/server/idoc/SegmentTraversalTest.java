@@ -0,0 +1,119 @@
+package org.dataingest.rfc.server.idoc;
+
+import com.sap.conn.idoc.IDocSegment;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.dataingest.rfc.server.idoc.TestSegments.add;
+import static org.dataingest.rfc.server.idoc.TestSegments.chain;
+import static org.dataingest.rfc.server.idoc.TestSegments.segment;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SegmentTraversalTest {
+
+    @Test
+    void visitsSegmentsInDocumentOrderWithEnterAndExit() throws Exception {
+        IDocSegment root = segment("ROOT");
+        IDocSegment header = add(root, segment("E1EDK01"));
+        add(header, segment("E1EDK14"));
+        add(root, segment("E1EDP01"));
+
+        List<String> events = new ArrayList<>();
+        SegmentTraversal.walk(root, recorder(events, null));
+
+        assertEquals(List.of("enter ROOT 0", "enter E1EDK01 1", "enter E1EDK14 2", "exit E1EDK14 2",
+                "exit E1EDK01 1", "enter E1EDP01 1", "exit E1EDP01 1", "exit ROOT 0"), events);
+    }
+
+    @Test
+    void walksTheChildrenWithoutTheParent() throws Exception {
+        IDocSegment root = segment("ROOT");
+        IDocSegment header = add(root, segment("E1EDK01"));
+        add(header, segment("E1EDK14"));
+
+        List<String> events = new ArrayList<>();
+        SegmentTraversal.walkChildren(root, recorder(events, null));
+
+        assertEquals(List.of("enter E1EDK01 0", "enter E1EDK14 1", "exit E1EDK14 1", "exit E1EDK01 0"), events);
+    }
+
+    @Test
+    void skipsTheSubtreeOfASegmentTheVisitorDeclines() throws Exception {
+        IDocSegment root = segment("ROOT");
+        IDocSegment header = add(root, segment("E1EDK01"));
+        add(header, segment("E1EDK14"));
+        add(root, segment("E1EDP01"));
+
+        List<String> events = new ArrayList<>();
+        SegmentTraversal.walk(root, recorder(events, "E1EDK01"));
+
+        assertEquals(List.of("enter ROOT 0", "enter E1EDK01 1", "exit E1EDK01 1",
+                "enter E1EDP01 1", "exit E1EDP01 1", "exit ROOT 0"), events);
+    }
+
+    @Test
+    void walksNestingDeeperThanTheThreadStackAllowsForRecursion() throws Exception {
+        int depth = 100_000;
+        IDocSegment root = chain(depth);
+        int[] counts = new int[3];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // A recursive walk overflows a 256 KiB stack long before 100,000 levels
+        Thread walker = new Thread(null, () -> {
+            try {
+                SegmentTraversal.walk(root, new ISegmentVisitor() {
+                    @Override
+                    public boolean enterSegment(IDocSegment segment, int level) {
+                        counts[0]++;
+                        counts[2] = Math.max(counts[2], level);
+                        return true;
+                    }
+
+                    @Override
+                    public void exitSegment(IDocSegment segment, int level) {
+                        counts[1]++;
+                    }
+                });
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "segment-walker", 256 * 1024);
+        walker.start();
+        walker.join();
+
+        assertNull(failure.get());
+        assertEquals(depth + 1, counts[0]);
+        assertEquals(depth + 1, counts[1]);
+        assertEquals(depth, counts[2]);
+    }
+
+    @Test
+    void writesIndentedSegmentLines() throws Exception {
+        IDocSegment root = segment("ROOT");
+        IDocSegment header = add(root, segment("E1EDK01", "CURCY", "EUR"));
+        add(header, segment("E1EDK14", "QUALF", ""));
+
+        List<String> lines = new ArrayList<>();
+        SegmentLines.extract(root, lines);
+
+        assertEquals(List.of("SEGMENT: ROOT", "  SEGMENT: E1EDK01", "    DATA: EUR", "    SEGMENT: E1EDK14"), lines);
+    }
+
+    private static ISegmentVisitor recorder(List<String> events, String skippedType) {
+        return new ISegmentVisitor() {
+            @Override
+            public boolean enterSegment(IDocSegment segment, int depth) {
+                events.add("enter " + segment.getType() + " " + depth);
+                return !segment.getType().equals(skippedType);
+            }
+
+            @Override
+            public void exitSegment(IDocSegment segment, int depth) {
+                events.add("exit " + segment.getType() + " " + depth);
+            }
+        };
+    }
+}
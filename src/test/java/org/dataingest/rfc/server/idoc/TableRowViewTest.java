@@ -0,0 +1,117 @@
+package org.dataingest.rfc.server.idoc;
+
+import com.sap.conn.jco.JCoRecordMetaData;
+import com.sap.conn.jco.JCoTable;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableRowViewTest {
+
+    private static final String[] FIELDS = {"SEGNAM", "DOCNUM", "SDATA"};
+
+    @Test
+    void copiesEveryRowWithItsFields() {
+        String[][] rows = {
+            {"E1EDK01", "0000000000000001", "EUR"},
+            {"E1EDP01", "0000000000000001", "000010"},
+        };
+
+        TableRowView[] views = TableRowView.forTable(table(rows));
+
+        assertEquals(2, views.length);
+        assertEquals("E1EDP01", views[1].get("SEGNAM"));
+        assertEquals("EUR", views[0].get("SDATA"));
+        assertTrue(views[0].containsKey("DOCNUM"));
+        assertFalse(views[0].containsKey("MANDT"));
+        assertNull(views[0].get("MANDT"));
+        assertEquals(3, views[0].size());
+    }
+
+    @Test
+    void keepsFieldOrderAndMapEquality() {
+        TableRowView view = TableRowView.forTable(table(new String[][] {{"E1EDK01", "0000000000000001", null}}))[0];
+
+        assertEquals(List.of("SEGNAM", "DOCNUM", "SDATA"), new ArrayList<>(view.keySet()));
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("SEGNAM", "E1EDK01");
+        expected.put("DOCNUM", "0000000000000001");
+        expected.put("SDATA", null);
+        assertEquals(expected, view);
+    }
+
+    @Test
+    void staysValidWhenTheTableChangesAfterTheCall() {
+        String[][] rows = {{"E1EDK01", "0000000000000001", "EUR"}};
+        TableRowView view = TableRowView.forTable(table(rows))[0];
+
+        // JCo reuses the table buffers once the call has returned
+        rows[0][2] = "USD";
+
+        assertEquals("EUR", view.get("SDATA"));
+    }
+
+    @Test
+    void serializesAsADetachedMap() throws Exception {
+        TableRowView view = TableRowView.forTable(table(new String[][] {{"E1EDK01", "0000000000000001", "EUR"}}))[0];
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(view);
+        }
+        Object copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = in.readObject();
+        }
+
+        assertEquals(LinkedHashMap.class, copy.getClass());
+        assertEquals(view, copy);
+    }
+
+    /**
+     * A JCo table over the given rows, answering the calls TableRowView makes.
+     */
+    private static JCoTable table(String[][] rows) {
+        JCoRecordMetaData metaData = (JCoRecordMetaData) Proxy.newProxyInstance(
+                JCoRecordMetaData.class.getClassLoader(), new Class<?>[] {JCoRecordMetaData.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getFieldCount":
+                            return FIELDS.length;
+                        case "getName":
+                            return FIELDS[(Integer) args[0]];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        int[] current = new int[1];
+        return (JCoTable) Proxy.newProxyInstance(JCoTable.class.getClassLoader(), new Class<?>[] {JCoTable.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getRecordMetaData":
+                            return metaData;
+                        case "getNumRows":
+                            return rows.length;
+                        case "setRow":
+                            current[0] = (Integer) args[0];
+                            return null;
+                        case "getString":
+                            return rows[current[0]][(Integer) args[0]];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,142 @@
+package org.dataingest.rfc.server.idoc;
+
+import com.sap.conn.idoc.IDocSegment;
+import com.sap.conn.idoc.IDocSegmentIterator;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * In-memory IDoc segment trees for tests.
+ *
+ * Segments are dynamic proxies of the JCo IDocSegment interface answering the
+ * navigation and field accessors the traversal, serializers and extractors use;
+ * any other method fails with UnsupportedOperationException.
+ */
+public final class TestSegments {
+
+    private TestSegments() {
+    }
+
+    /**
+     * Creates a segment.
+     *
+     * @param type the segment type (e.g., E1EDP01)
+     * @param fields alternating field names and values
+     * @return the segment, add children with {@link #add(IDocSegment, IDocSegment)}
+     */
+    public static IDocSegment segment(String type, String... fields) {
+        return (IDocSegment) Proxy.newProxyInstance(IDocSegment.class.getClassLoader(),
+                new Class<?>[] {IDocSegment.class}, new Node(type, fields));
+    }
+
+    /**
+     * Appends a child to a segment created by {@link #segment(String, String...)}.
+     *
+     * @return the child
+     */
+    public static IDocSegment add(IDocSegment parent, IDocSegment child) {
+        node(parent).children.add(child);
+        node(child).parent = parent;
+        return child;
+    }
+
+    /**
+     * Creates a chain of nested segments, each the only child of the previous one.
+     *
+     * @param depth the number of segments below the returned root
+     * @return the root segment
+     */
+    public static IDocSegment chain(int depth) {
+        IDocSegment root = segment("ROOT");
+        IDocSegment current = root;
+        for (int i = 1; i <= depth; i++) {
+            current = add(current, segment("E1LEVEL", "LEVEL", String.valueOf(i)));
+        }
+        return root;
+    }
+
+    private static Node node(IDocSegment segment) {
+        return (Node) Proxy.getInvocationHandler(segment);
+    }
+
+    private static IDocSegmentIterator iterator(List<IDocSegment> segments) {
+        Iterator<IDocSegment> delegate = segments.iterator();
+        return (IDocSegmentIterator) Proxy.newProxyInstance(IDocSegmentIterator.class.getClassLoader(),
+                new Class<?>[] {IDocSegmentIterator.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hasNext":
+                            return delegate.hasNext();
+                        case "next":
+                            return delegate.next();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static final class Node implements InvocationHandler {
+        private final String type;
+        private final String[] fields;
+        private final List<IDocSegment> children = new ArrayList<>();
+        private IDocSegment parent;
+
+        Node(String type, String[] fields) {
+            this.type = type;
+            this.fields = fields;
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getType":
+                    return type;
+                case "getNumFields":
+                    return fields.length / 2;
+                case "getName":
+                    return fields[2 * (Integer) args[0]];
+                case "getString":
+                    if (args[0] instanceof Integer) {
+                        return fields[2 * (Integer) args[0] + 1];
+                    }
+                    for (int i = 0; i < fields.length; i += 2) {
+                        if (fields[i].equals(args[0])) {
+                            return fields[i + 1];
+                        }
+                    }
+                    return null;
+                case "getNumChildren":
+                    return children.size();
+                case "getChild":
+                    return children.get((Integer) args[0]);
+                case "getChildren":
+                    return children.toArray(new IDocSegment[0]);
+                case "getChildrenIterator":
+                    return iterator(children);
+                case "getParent":
+                    return parent;
+                case "isRoot":
+                    return parent == null;
+                case "isLeaf":
+                    return children.isEmpty();
+                case "isParent":
+                    return !children.isEmpty();
+                case "toString":
+                    StringBuilder data = new StringBuilder();
+                    for (int i = 1; i < fields.length; i += 2) {
+                        data.append(fields[i]);
+                    }
+                    return data.toString();
+                case "hashCode":
+                    return System.identityHashCode(target);
+                case "equals":
+                    return target == args[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.dataingest.rfc.server.outbound;
+
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IDocOutboundSenderTest {
+
+    private static final String TOPIC = "SAP.IDOCS.OUTBOUND";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    private final TestLane lane = new TestLane(0, null, 2);
+    private final RevokingConsumer consumer = new RevokingConsumer();
+    private IDocOutboundSender sender;
+
+    @AfterEach
+    void shutdown() {
+        if (sender != null) {
+            sender.shutdown();
+        }
+    }
+
+    @Test
+    void commitsTheConfirmedOffsetWhenThePartitionIsRevoked() throws Exception {
+        sender = sender("1", "1", "1");
+        waitFor(() -> lane.confirmed.size() == 2);
+
+        sender.shutdown();
+
+        // The batch commit, then the revocation on close
+        assertEquals(Collections.singletonMap(PARTITION, new OffsetAndMetadata(3)), consumer.commits.get(0));
+        assertEquals(Collections.singletonMap(PARTITION, new OffsetAndMetadata(3)), consumer.commits.get(1));
+    }
+
+    @Test
+    void doesNotCommitTheRecordsOfABatchThatFailed() throws Exception {
+        lane.packetFailure = new IllegalStateException("IDoc library failure");
+
+        sender = sender("1", "1", "1");
+        waitFor(consumer::closed);
+
+        // The position (3) is past records that were never sent
+        assertEquals(Collections.singletonList(Collections.singletonMap(PARTITION, new OffsetAndMetadata(0))),
+                consumer.commits);
+        assertEquals(1L, sender.getStatus().get("restarts"));
+    }
+
+    @Test
+    void doesNotCommitTheRecordsOfABatchWhoseCommitFailed() throws Exception {
+        consumer.failingCommits.set(1);
+
+        sender = sender("1", "1", "1");
+        waitFor(consumer::closed);
+
+        assertEquals(2, lane.confirmed.size());
+        // Resent by the next owner: sent at least once, never lost
+        assertEquals(Collections.singletonList(Collections.singletonMap(PARTITION, new OffsetAndMetadata(0))),
+                consumer.commits);
+    }
+
+    @Test
+    void commitsTheRetryOffsetAfterAFailedPacket() throws Exception {
+        // "1" goes alone, "2" fills the next packet, which fails
+        lane.failing = size -> size == 2;
+
+        sender = sender("1", "2", "1");
+        waitFor(() -> lane.sends.size() == 2);
+        sender.shutdown();
+
+        assertEquals(Collections.singletonMap(PARTITION, new OffsetAndMetadata(1)), consumer.commits.get(0));
+        assertEquals(Collections.singletonMap(PARTITION, new OffsetAndMetadata(1)),
+                consumer.commits.get(consumer.commits.size() - 1));
+    }
+
+    private IDocOutboundSender sender(String... values) {
+        consumer.updateBeginningOffsets(Collections.singletonMap(PARTITION, 0L));
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(Collections.singletonList(PARTITION));
+            for (ConsumerRecord<String, byte[]> record : OutboundLaneTest.records(PARTITION, 0, values)) {
+                consumer.addRecord(record);
+            }
+        });
+
+        AtomicInteger consumers = new AtomicInteger();
+        IDocOutboundSender outboundSender = new IDocOutboundSender() {
+            @Override
+            OutboundLane createLane(int index, String queueName) {
+                return lane;
+            }
+
+            @Override
+            Consumer<String, byte[]> createConsumer() {
+                // After a failure the sender restarts with a consumer without records
+                return consumers.getAndIncrement() == 0 ? consumer : new RevokingConsumer();
+            }
+        };
+        ReflectionTestUtils.setField(outboundSender, "destinationManager", lane.destinations());
+        ReflectionTestUtils.setField(outboundSender, "enabled", true);
+        ReflectionTestUtils.setField(outboundSender, "topics", TOPIC);
+        ReflectionTestUtils.setField(outboundSender, "groupId", "test");
+        ReflectionTestUtils.setField(outboundSender, "destinationName", "SAP_CLIENT");
+        ReflectionTestUtils.setField(outboundSender, "packetSize", 2);
+        ReflectionTestUtils.setField(outboundSender, "senders", 1);
+        ReflectionTestUtils.setField(outboundSender, "queuePrefix", "");
+        ReflectionTestUtils.setField(outboundSender, "retryBackoffMs", 10L);
+        outboundSender.init();
+        return outboundSender;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * MockConsumer that, like KafkaConsumer, revokes its partitions through the
+     * rebalance listener when it is closed, and records successful commits.
+     */
+    private static final class RevokingConsumer extends MockConsumer<String, byte[]> {
+
+        final List<Map<TopicPartition, OffsetAndMetadata>> commits = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger failingCommits = new AtomicInteger();
+        private ConsumerRebalanceListener listener;
+
+        RevokingConsumer() {
+            super(OffsetResetStrategy.EARLIEST);
+        }
+
+        @Override
+        public synchronized void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
+            this.listener = listener;
+            super.subscribe(topics, listener);
+        }
+
+        @Override
+        public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+            if (failingCommits.getAndDecrement() > 0) {
+                throw new CommitFailedException();
+            }
+            super.commitSync(offsets);
+            commits.add(offsets);
+        }
+
+        @Override
+        public ConsumerRecords<String, byte[]> poll(Duration timeout) {
+            ConsumerRecords<String, byte[]> records = super.poll(timeout);
+            if (records.isEmpty()) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return records;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed() && listener != null) {
+                listener.onPartitionsRevoked(assignment());
+            }
+            super.close();
+        }
+    }
+}
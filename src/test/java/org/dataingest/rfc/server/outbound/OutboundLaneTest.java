@@ -0,0 +1,104 @@
+package org.dataingest.rfc.server.outbound;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.dataingest.rfc.server.sap.SAPDestinationManager;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OutboundLaneTest {
+
+    private static final TopicPartition P0 = new TopicPartition("SAP.IDOCS.OUTBOUND", 0);
+    private static final TopicPartition P1 = new TopicPartition("SAP.IDOCS.OUTBOUND", 1);
+
+    private final TestLane lane = new TestLane(0, null, 4);
+    private final SAPDestinationManager destinations = lane.destinations();
+
+    @Test
+    void packsRecordsIntoPacketsWithoutSplittingARecord() throws Exception {
+        // 2 + 2 fill a packet, 3 does not fit next to 2, the last record exceeds the packet size alone
+        List<ConsumerRecord<String, byte[]>> records = records(P0, 0, "2", "2", "2", "3", "5");
+
+        OutboundLane.Result result = send(records);
+
+        assertEquals(Arrays.asList("TID1:4", "TID2:2", "TID3:3", "TID4:5"), lane.sends);
+        assertEquals(Arrays.asList("TID1", "TID2", "TID3", "TID4"), lane.confirmed);
+        assertEquals(14, result.documents);
+        assertEquals(4, result.packets);
+        assertEquals(Collections.singletonMap(P0, 5L), result.commitOffsets);
+        assertEquals(Collections.emptyMap(), result.retryOffsets);
+    }
+
+    @Test
+    void skipsUnparsableRecordsAndCommitsPastThem() throws Exception {
+        OutboundLane.Result result = send(records(P0, 10, "bad", "1", "bad"));
+
+        assertEquals(Collections.singletonList("TID1:1"), lane.sends);
+        assertEquals(2, result.skipped);
+        assertEquals(Collections.singletonMap(P0, 13L), result.commitOffsets);
+    }
+
+    @Test
+    void stopsAtAFailedPacketAndResendsItUnderTheSameTid() throws Exception {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>(records(P0, 0, "4", "3"));
+        records.addAll(records(P1, 7, "2"));
+        lane.failing = size -> size == 3;
+
+        OutboundLane.Result failed = send(records);
+
+        // The first packet is confirmed, the failed one and everything after it is retried
+        assertEquals(Arrays.asList("TID1:4", "TID2:3"), lane.sends);
+        assertEquals(Collections.singletonList("TID1"), lane.confirmed);
+        assertEquals(Collections.singletonMap(P0, 1L), failed.commitOffsets);
+        assertEquals(offsets(1L, 7L), failed.retryOffsets);
+
+        lane.failing = size -> false;
+        OutboundLane.Result retried = send(records.subList(1, records.size()));
+
+        assertEquals(Arrays.asList("TID1:4", "TID2:3", "TID2:3", "TID3:2"), lane.sends);
+        assertEquals(Arrays.asList("TID1", "TID2", "TID3"), lane.confirmed);
+        assertEquals(offsets(2L, 8L), retried.commitOffsets);
+        assertEquals(Collections.emptyMap(), retried.retryOffsets);
+    }
+
+    @Test
+    void usesANewTidWhenTheRetriedPacketDiffers() throws Exception {
+        lane.failing = size -> size == 3;
+        send(records(P0, 0, "3"));
+
+        lane.failing = size -> false;
+        // The record was followed by another one meanwhile, the packet is not the same
+        send(records(P0, 0, "3", "1"));
+
+        assertEquals(Arrays.asList("TID1:3", "TID2:4"), lane.sends);
+        assertEquals(Collections.singletonList("TID2"), lane.confirmed);
+    }
+
+    private OutboundLane.Result send(List<ConsumerRecord<String, byte[]>> records) throws Exception {
+        return lane.send(records, destinations, "SAP_CLIENT", destinations.getIDocRepository("SAP_CLIENT"));
+    }
+
+    private static Map<TopicPartition, Long> offsets(long p0, long p1) {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        offsets.put(P0, p0);
+        offsets.put(P1, p1);
+        return offsets;
+    }
+
+    static List<ConsumerRecord<String, byte[]>> records(TopicPartition partition, long firstOffset, String... values) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            records.add(new ConsumerRecord<>(partition.topic(), partition.partition(), firstOffset + i, null,
+                    values[i].getBytes(StandardCharsets.UTF_8)));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,129 @@
+package org.dataingest.rfc.server.outbound;
+
+import com.sap.conn.idoc.IDocDocument;
+import com.sap.conn.idoc.IDocDocumentIterator;
+import com.sap.conn.idoc.IDocDocumentList;
+import com.sap.conn.idoc.IDocRepository;
+import com.sap.conn.jco.JCoDestination;
+import com.sap.conn.jco.JCoException;
+import org.dataingest.rfc.server.sap.SAPDestinationManager;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Outbound lane sending to an in-memory SAP.
+ *
+ * A record value is the number of IDocs it holds ("3"), anything else is
+ * unparsable. Packets are lists of proxy IDocDocuments; every send is recorded as
+ * "TID:size", and sends whose packet size matches the failure predicate throw.
+ * {@link #destinations()} hands out TIDs and records confirmations.
+ */
+class TestLane extends OutboundLane {
+
+    final List<String> sends = Collections.synchronizedList(new ArrayList<>());
+    final List<String> confirmed = Collections.synchronizedList(new ArrayList<>());
+    volatile Predicate<Integer> failing = size -> false;
+    volatile RuntimeException packetFailure;
+    private final AtomicInteger tids = new AtomicInteger();
+
+    TestLane(int lane, String queueName, int packetSize) {
+        super(lane, queueName, packetSize);
+    }
+
+    /**
+     * Returns a destination manager whose calls run on a destination of this lane's SAP.
+     */
+    SAPDestinationManager destinations() {
+        JCoDestination destination = (JCoDestination) Proxy.newProxyInstance(JCoDestination.class.getClassLoader(),
+                new Class<?>[] {JCoDestination.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createTID":
+                            return "TID" + tids.incrementAndGet();
+                        case "confirmTID":
+                            confirmed.add((String) args[0]);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return new SAPDestinationManager() {
+            @Override
+            public IDocRepository getIDocRepository(String name) throws JCoException {
+                return (IDocRepository) Proxy.newProxyInstance(IDocRepository.class.getClassLoader(),
+                        new Class<?>[] {IDocRepository.class}, (proxy, method, args) -> {
+                            throw new UnsupportedOperationException(method.getName());
+                        });
+            }
+
+            @Override
+            public <T> T execute(String name, DestinationCall<T> call) throws Exception {
+                return call.call(destination);
+            }
+        };
+    }
+
+    @Override
+    IDocDocumentList parse(IDocRepository repository, byte[] xml) {
+        int documents = Integer.parseInt(new String(xml, StandardCharsets.UTF_8));
+        IDocDocumentList list = createPacket(repository);
+        for (int i = 0; i < documents; i++) {
+            list.add((IDocDocument) Proxy.newProxyInstance(IDocDocument.class.getClassLoader(),
+                    new Class<?>[] {IDocDocument.class}, (proxy, method, args) -> {
+                        throw new UnsupportedOperationException(method.getName());
+                    }));
+        }
+        return list;
+    }
+
+    @Override
+    IDocDocumentList createPacket(IDocRepository repository) {
+        if (packetFailure != null) {
+            throw packetFailure;
+        }
+        List<IDocDocument> documents = new ArrayList<>();
+        return (IDocDocumentList) Proxy.newProxyInstance(IDocDocumentList.class.getClassLoader(),
+                new Class<?>[] {IDocDocumentList.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "add":
+                            return documents.add((IDocDocument) args[0]);
+                        case "size":
+                        case "getNumDocuments":
+                            return documents.size();
+                        case "isEmpty":
+                            return documents.isEmpty();
+                        case "iterator":
+                            return iterator(documents.iterator());
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Override
+    void send(IDocDocumentList packet, JCoDestination destination, String tid) throws Exception {
+        sends.add(tid + ":" + packet.size());
+        if (failing.test(packet.size())) {
+            throw new JCoException(0, "COMMUNICATION_FAILURE", "Connection to SAP lost");
+        }
+    }
+
+    private static IDocDocumentIterator iterator(Iterator<IDocDocument> delegate) {
+        return (IDocDocumentIterator) Proxy.newProxyInstance(IDocDocumentIterator.class.getClassLoader(),
+                new Class<?>[] {IDocDocumentIterator.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hasNext":
+                            return delegate.hasNext();
+                        case "next":
+                            return delegate.next();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,223 @@
+package org.dataingest.rfc.server.publisher;
+
+import ch.qos.logback.classic.Level;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.codec.FlatFilePayloadCodec;
+import org.dataingest.rfc.server.codec.IPayloadCodec;
+import org.dataingest.rfc.server.codec.PayloadCodecRegistry;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import org.dataingest.rfc.server.scheduling.PriorityLanes;
+import org.dataingest.rfc.server.scheduling.PublishExecutor;
+import org.dataingest.rfc.server.util.IDocTopicNameUtil;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publish Mode Load Test
+ *
+ * Compares the caller, platform and virtual thread modes of PublishExecutor under the
+ * load of the receiving side: a number of concurrent JCo worker threads each publish
+ * transactions of several IDocs through IDocKafkaPublisher.publishTransaction, which
+ * encodes every IDoc as flat file and waits for its acknowledgement. The producer is
+ * a mock that acknowledges every record after the simulated Kafka latency, so no SAP
+ * or Kafka connection is needed.
+ *
+ * Not a unit test (only *Test classes run in the build); run its main method with the
+ * test classpath:
+ *
+ *   PublishModeBenchmark [workers] [transactions] [idocs per transaction] [ack ms] [platform threads]
+ *
+ * Prints per mode the elapsed time, the IDoc throughput and the peak number of
+ * platform threads. Virtual threads need JDK 21 or later, on older JDKs the virtual
+ * run falls back to platform threads (shown as the active mode).
+ */
+public class PublishModeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int transactions = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int idocsPerTransaction = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        long ackMs = args.length > 3 ? Long.parseLong(args[3]) : 20;
+        int platformThreads = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+
+        // One INFO line per published IDoc would measure the console
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(IDocKafkaPublisher.class)).setLevel(Level.WARN);
+
+        System.out.println("=== Publish Mode Load Test ===");
+        System.out.printf("Workers: %d, transactions: %d, IDocs per transaction: %d, ack latency: %d ms%n",
+                workers, transactions, idocsPerTransaction, ackMs);
+
+        List<SAPIDOCDocument> transaction = new ArrayList<>();
+        for (int i = 0; i < idocsPerTransaction; i++) {
+            transaction.add(idoc(i));
+        }
+        AckDelayProducer producer = new AckDelayProducer(ackMs);
+        try {
+            for (String mode : new String[] {
+                PublishExecutor.MODE_CALLER, PublishExecutor.MODE_PLATFORM, PublishExecutor.MODE_VIRTUAL}) {
+                PublishExecutor executor = new PublishExecutor(mode, platformThreads, false);
+                try {
+                    run(publisher(producer, executor), executor.getActiveMode(), workers, transactions, transaction);
+                } finally {
+                    executor.shutdown();
+                }
+            }
+        } finally {
+            producer.acknowledgements.shutdownNow();
+        }
+    }
+
+    private static void run(IDocKafkaPublisher publisher, String mode, int workers, int transactions,
+            List<SAPIDOCDocument> transaction) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        AtomicInteger remaining = new AtomicInteger(transactions);
+        AtomicInteger failed = new AtomicInteger();
+
+        long start = System.nanoTime();
+        List<Thread> jcoWorkers = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    try {
+                        publisher.publishTransaction(transaction);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            }, "jco-worker-" + i);
+            worker.start();
+            jcoWorkers.add(worker);
+        }
+        for (Thread worker : jcoWorkers) {
+            worker.join();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.printf("%-8s elapsed %6d ms, %9.0f IDocs/s, peak platform threads %4d, failed transactions %d%n",
+                mode, elapsedMs, (double) transactions * transaction.size() * 1000 / Math.max(1, elapsedMs),
+                threads.getPeakThreadCount(), failed.get());
+    }
+
+    /**
+     * Wires the publisher as the application context does, without priority lanes.
+     */
+    private static IDocKafkaPublisher publisher(AckDelayProducer producer, PublishExecutor executor) {
+        MockEnvironment environment = new MockEnvironment();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        FlatFilePayloadCodec codec = new FlatFilePayloadCodec();
+        ReflectionTestUtils.setField(codec, "charsetName", "UTF-8");
+        ReflectionTestUtils.setField(codec, "lineSeparatorName", "CRLF");
+        codec.init();
+        PayloadCodecRegistry codecRegistry = new PayloadCodecRegistry();
+        ReflectionTestUtils.setField(codecRegistry, "codecs", Collections.<IPayloadCodec>singletonList(codec));
+        ReflectionTestUtils.setField(codecRegistry, "defaultFormat", FlatFilePayloadCodec.NAME);
+        ReflectionTestUtils.setField(codecRegistry, "environment", environment);
+        codecRegistry.init();
+
+        IDocTopicNameUtil topicNameUtil = new IDocTopicNameUtil();
+        ReflectionTestUtils.setField(topicNameUtil, "topicPrefix", "SAP.IDOCS");
+
+        PriorityLanes priorityLanes = new PriorityLanes();
+        ReflectionTestUtils.setField(priorityLanes, "kafkaProducer", producer);
+        ReflectionTestUtils.setField(priorityLanes, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(priorityLanes, "environment", environment);
+        ReflectionTestUtils.setField(priorityLanes, "laneNames", "");
+        priorityLanes.init();
+
+        IDocKafkaPublisher publisher = new IDocKafkaPublisher();
+        publisher.codecRegistry = codecRegistry;
+        publisher.topicNameUtil = topicNameUtil;
+        publisher.priorityLanes = priorityLanes;
+        publisher.publishExecutor = executor;
+        ReflectionTestUtils.setField(publisher, "meterRegistry", meterRegistry);
+        publisher.init();
+        return publisher;
+    }
+
+    private static SAPIDOCDocument idoc(int number) {
+        String documentNumber = String.format("%016d", number + 1);
+        Map<String, String> controlRecord = new HashMap<>();
+        controlRecord.put("TABNAM", "EDI_DC40");
+        controlRecord.put("DOCNUM", documentNumber);
+        controlRecord.put("IDOCTYP", "ORDERS05");
+        controlRecord.put("MESTYP", "ORDERS");
+        List<Map<String, String>> dataRecords = new ArrayList<>();
+        for (int segment = 1; segment <= 20; segment++) {
+            Map<String, String> dataRecord = new HashMap<>();
+            dataRecord.put("SEGNAM", "E1EDP01");
+            dataRecord.put("DOCNUM", documentNumber);
+            dataRecord.put("SEGNUM", String.format("%06d", segment));
+            dataRecord.put("SDATA", "POSEX" + segment);
+            dataRecords.add(dataRecord);
+        }
+
+        SAPIDOCDocument document = new SAPIDOCDocument();
+        document.setDocumentNumber(documentNumber);
+        document.setMessageType("ORDERS");
+        document.setMessageTypeVersion("05");
+        document.setControlRecord(controlRecord);
+        document.setDataRecords(dataRecords);
+        return document;
+    }
+
+    /**
+     * Producer that acknowledges every record after a fixed latency, keeping no history.
+     */
+    private static final class AckDelayProducer extends MockProducer<String, byte[]> {
+        private final long ackMs;
+        private final ScheduledExecutorService acknowledgements = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "kafka-ack");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final AtomicLong offset = new AtomicLong();
+
+        AckDelayProducer(long ackMs) {
+            super(true, new StringSerializer(), new ByteArraySerializer());
+            this.ackMs = ackMs;
+        }
+
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<String, byte[]> record) {
+            return send(record, null);
+        }
+
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<String, byte[]> record, Callback callback) {
+            CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+            RecordMetadata metadata = new RecordMetadata(new TopicPartition(record.topic(), 0),
+                    offset.getAndIncrement(), 0, System.currentTimeMillis(), 16, record.value().length);
+            acknowledgements.schedule(() -> {
+                future.complete(metadata);
+                if (callback != null) {
+                    callback.onCompletion(metadata, null);
+                }
+            }, ackMs, TimeUnit.MILLISECONDS);
+            return future;
+        }
+    }
+}
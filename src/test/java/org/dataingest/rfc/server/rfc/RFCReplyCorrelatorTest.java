@@ -0,0 +1,172 @@
+package org.dataingest.rfc.server.rfc;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.publisher.RFCKafkaPublisher;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RFCReplyCorrelatorTest {
+
+    private static final String TOPIC = "SAP.RFC.REPLIES";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    private final ReplyConsumer consumer = new ReplyConsumer();
+    private RFCReplyCorrelator correlator;
+    private long nextOffset = 5;
+
+    @AfterEach
+    void shutdown() {
+        if (correlator != null) {
+            correlator.shutdown();
+        }
+    }
+
+    @Test
+    void completesTheCallWithTheReplyCarryingItsCorrelationId() throws Exception {
+        correlator = correlator();
+        String first = correlator.register();
+        String second = correlator.register();
+
+        reply(second, "{\"export\":{}}", true);
+        reply(first, "{\"error\":{\"key\":\"NOT_FOUND\"}}", false);
+
+        assertArrayEquals(bytes("{\"export\":{}}"), correlator.getReply(second).get(5, TimeUnit.SECONDS));
+        // Correlation ID as record key instead of header
+        assertArrayEquals(bytes("{\"error\":{\"key\":\"NOT_FOUND\"}}"),
+                correlator.getReply(first).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void leavesACallWithoutReplyPendingUntilTheCallerTimesOut() throws Exception {
+        correlator = correlator();
+        String correlationId = correlator.register();
+        // Reply of another server instance
+        reply("0000abcd-1", "{}", true);
+
+        CompletableFuture<byte[]> reply = correlator.getReply(correlationId);
+        assertThrows(TimeoutException.class, () -> reply.get(100, TimeUnit.MILLISECONDS));
+        correlator.remove(correlationId);
+
+        assertNull(correlator.getReply(correlationId));
+        assertFalse(reply.isDone());
+    }
+
+    @Test
+    void dropsALateReplyAndKeepsConsuming() throws Exception {
+        correlator = correlator();
+        String late = correlator.register();
+        CompletableFuture<byte[]> lateReply = correlator.getReply(late);
+        correlator.remove(late);
+        String next = correlator.register();
+
+        reply(late, "{\"export\":{\"A\":1}}", true);
+        reply(next, "{\"export\":{\"A\":2}}", true);
+
+        assertArrayEquals(bytes("{\"export\":{\"A\":2}}"), correlator.getReply(next).get(5, TimeUnit.SECONDS));
+        assertFalse(lateReply.isDone());
+        assertNull(correlator.getReply(late));
+    }
+
+    @Test
+    void failsPendingCallsOnShutdown() throws Exception {
+        correlator = correlator();
+        CompletableFuture<byte[]> reply = correlator.getReply(correlator.register());
+
+        correlator.shutdown();
+
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> reply.get(5, TimeUnit.SECONDS));
+        assertTrue(thrown.getCause() instanceof IllegalStateException);
+        assertFalse(correlator.isReady());
+    }
+
+    private RFCReplyCorrelator correlator() throws InterruptedException {
+        consumer.updatePartitions(TOPIC, Collections.singletonList(
+                new PartitionInfo(TOPIC, 0, Node.noNode(), new Node[0], new Node[0])));
+        consumer.updateEndOffsets(Collections.singletonMap(PARTITION, nextOffset));
+
+        RFCBridgeRegistry registry = new RFCBridgeRegistry();
+        ReflectionTestUtils.setField(registry, "functionList", "");
+        ReflectionTestUtils.setField(registry, "replyFunctionList", "Z_GET_PRICE");
+        registry.init();
+
+        RFCReplyCorrelator replyCorrelator = new RFCReplyCorrelator() {
+            @Override
+            Consumer<String, byte[]> createConsumer() {
+                return consumer;
+            }
+        };
+        ReflectionTestUtils.setField(replyCorrelator, "registry", registry);
+        ReflectionTestUtils.setField(replyCorrelator, "environment", new MockEnvironment());
+        ReflectionTestUtils.setField(replyCorrelator, "replyTopic", TOPIC);
+        ReflectionTestUtils.setField(replyCorrelator, "restartBackoffMs", 10L);
+        replyCorrelator.init();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!replyCorrelator.isReady() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(replyCorrelator.isReady());
+        assertEquals(nextOffset, consumer.position(PARTITION));
+        return replyCorrelator;
+    }
+
+    private void reply(String correlationId, String value, boolean asHeader) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(TOPIC, 0, nextOffset++,
+                asHeader ? null : correlationId, bytes(value));
+        if (asHeader) {
+            record.headers().add(RFCKafkaPublisher.CORRELATION_HEADER, bytes(correlationId));
+        }
+        consumer.addRecord(record);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * MockConsumer whose poll waits briefly when there is nothing to return, like the
+     * fetch wait of the real consumer, instead of spinning.
+     */
+    private static final class ReplyConsumer extends MockConsumer<String, byte[]> {
+
+        ReplyConsumer() {
+            super(OffsetResetStrategy.LATEST);
+        }
+
+        @Override
+        public ConsumerRecords<String, byte[]> poll(Duration timeout) {
+            ConsumerRecords<String, byte[]> records = super.poll(timeout);
+            if (records.isEmpty()) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return records;
+        }
+    }
+}
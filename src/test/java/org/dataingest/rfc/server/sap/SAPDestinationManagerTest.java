@@ -0,0 +1,192 @@
+package org.dataingest.rfc.server.sap;
+
+import com.sap.conn.jco.JCoDestination;
+import com.sap.conn.jco.JCoException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.config.SAPClientDataProvider;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SAPDestinationManagerTest {
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicInteger pings = new AtomicInteger();
+    private final AtomicInteger concurrentPings = new AtomicInteger();
+    private final AtomicInteger maxConcurrentPings = new AtomicInteger();
+    private volatile Ping ping = () -> { };
+
+    private interface Ping {
+        void ping() throws Exception;
+    }
+
+    @Test
+    void looksUpEachDestinationOnce() throws Exception {
+        SAPDestinationManager manager = manager();
+
+        JCoDestination first = manager.getDestination("SAP_CLIENT");
+
+        assertSame(first, manager.getDestination("SAP_CLIENT"));
+        assertSame(first, manager.execute("SAP_CLIENT", destination -> destination));
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    void leasesAConnectionSlotPerCall() throws Exception {
+        environment.setProperty("jco.destinations.SAP_CLIENT.peak_limit", "1");
+        environment.setProperty("jco.destinations.SAP_CLIENT.pool_capacity", "1");
+        environment.setProperty("jco.destinations.SAP_CLIENT.max_get_client_time", "5000");
+        SAPDestinationManager manager = manager();
+        CountDownLatch inCall = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> call(manager, () -> {
+            inCall.countDown();
+            release.await();
+        }));
+        assertTrue(inCall.await(5, TimeUnit.SECONDS));
+        assertEquals(1, destinationStatus(manager).get("inUse"));
+        CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> call(manager, () -> { }));
+        Thread.sleep(50);
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(0, destinationStatus(manager).get("inUse"));
+        assertEquals(1L, destinationStatus(manager).get("exhausted"));
+    }
+
+    @Test
+    void failsACallWhenNoSlotIsFreedInTime() throws Exception {
+        environment.setProperty("jco.destinations.SAP_CLIENT.peak_limit", "1");
+        environment.setProperty("jco.destinations.SAP_CLIENT.pool_capacity", "1");
+        environment.setProperty("jco.destinations.SAP_CLIENT.max_get_client_time", "50");
+        SAPDestinationManager manager = manager();
+
+        JCoException thrown = manager.execute("SAP_CLIENT", destination ->
+                assertThrows(JCoException.class, () -> manager.execute("SAP_CLIENT", nested -> null)));
+
+        assertTrue(thrown.getMessage().contains("No connection of destination SAP_CLIENT"), thrown.getMessage());
+        assertEquals(1L, destinationStatus(manager).get("timeouts"));
+        assertEquals(0, destinationStatus(manager).get("inUse"));
+    }
+
+    @Test
+    void warmsUpPoolCapacityConnectionsConcurrently() {
+        environment.setProperty("jco.destinations.SAP_CLIENT.pool_capacity", "4");
+        SAPDestinationManager manager = manager();
+        CountDownLatch allPinging = new CountDownLatch(4);
+        ping = () -> {
+            allPinging.countDown();
+            // Each ping holds its connection until all of them are open
+            allPinging.await(5, TimeUnit.SECONDS);
+        };
+
+        manager.warmUp();
+
+        assertEquals(4, pings.get());
+        assertEquals(4, maxConcurrentPings.get());
+        assertEquals(0, destinationStatus(manager).get("inUse"));
+    }
+
+    @Test
+    void finishesTheWarmUpWhenPingsFailOrHang() {
+        environment.setProperty("jco.destinations.SAP_CLIENT.pool_capacity", "3");
+        SAPDestinationManager manager = manager();
+        ReflectionTestUtils.setField(manager, "warmUpTimeoutMs", 200L);
+        AtomicInteger calls = new AtomicInteger();
+        ping = () -> {
+            int call = calls.incrementAndGet();
+            if (call == 1) {
+                throw new JCoException(0, "COMMUNICATION_FAILURE", "Connection refused");
+            }
+            if (call == 2) {
+                Thread.sleep(60_000);
+            }
+        };
+
+        long start = System.nanoTime();
+        manager.warmUp();
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertEquals(3, pings.get());
+    }
+
+    private static Object call(SAPDestinationManager manager, Ping work) {
+        try {
+            return manager.execute("SAP_CLIENT", destination -> {
+                work.ping();
+                return null;
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> destinationStatus(SAPDestinationManager manager) {
+        return (Map<String, Object>) manager.getStatus().get("SAP_CLIENT");
+    }
+
+    private SAPDestinationManager manager() {
+        SAPClientDataProvider clientDataProvider = new SAPClientDataProvider();
+        ReflectionTestUtils.setField(clientDataProvider, "environment", environment);
+        ReflectionTestUtils.setField(clientDataProvider, "destinationList", "SAP_CLIENT");
+        ReflectionTestUtils.setField(clientDataProvider, "ashost", "localhost");
+        ReflectionTestUtils.setField(clientDataProvider, "client", "100");
+        ReflectionTestUtils.setField(clientDataProvider, "lang", "en");
+        ReflectionTestUtils.setField(clientDataProvider, "user", "rfc_user");
+        ReflectionTestUtils.setField(clientDataProvider, "passwd", "");
+        ReflectionTestUtils.setField(clientDataProvider, "sysnr", "00");
+        ReflectionTestUtils.setField(clientDataProvider, "poolCapacity", 2);
+        ReflectionTestUtils.setField(clientDataProvider, "peakLimit", 10);
+        ReflectionTestUtils.setField(clientDataProvider, "maxGetClientTime", 30000L);
+        ReflectionTestUtils.setField(clientDataProvider, "expirationTime", 600000L);
+
+        SAPDestinationManager manager = new SAPDestinationManager() {
+            @Override
+            JCoDestination lookupDestination(String name) {
+                lookups.incrementAndGet();
+                return destination();
+            }
+        };
+        ReflectionTestUtils.setField(manager, "clientDataProvider", clientDataProvider);
+        ReflectionTestUtils.setField(manager, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(manager, "warmUp", true);
+        ReflectionTestUtils.setField(manager, "warmUpTimeoutMs", 5000L);
+        return manager;
+    }
+
+    private JCoDestination destination() {
+        return (JCoDestination) Proxy.newProxyInstance(JCoDestination.class.getClassLoader(),
+                new Class<?>[] {JCoDestination.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "ping":
+                            pings.incrementAndGet();
+                            maxConcurrentPings.accumulateAndGet(concurrentPings.incrementAndGet(), Math::max);
+                            try {
+                                ping.ping();
+                            } finally {
+                                concurrentPings.decrementAndGet();
+                            }
+                            return null;
+                        case "getRepository":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,143 @@
+package org.dataingest.rfc.server.scheduling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControllerTest {
+
+    private final MetricsProducer producer = new MetricsProducer();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PriorityLanes lanes;
+    private AdmissionController controller;
+
+    @AfterEach
+    void shutdown() {
+        if (controller != null) {
+            controller.shutdown();
+        }
+        if (lanes != null) {
+            lanes.shutdown();
+        }
+    }
+
+    @Test
+    void staysOverloadedUntilTheBufferUsageDropsBelowTheRecoveryLevel() {
+        controller = controller("");
+
+        sample(900, 0);
+        assertTrue(controller.isOverloaded());
+        assertFalse(controller.admit(null));
+
+        // Below the threshold (0.8), above the recovery level (0.8 * 0.7)
+        sample(600, 0);
+        assertTrue(controller.isOverloaded());
+
+        sample(500, 0);
+        assertFalse(controller.isOverloaded());
+        assertTrue(controller.admit(null));
+        assertEquals(1.0, meterRegistry.get("rfc.admission.shed").tag("lane", "none").counter().count());
+    }
+
+    @Test
+    void appliesTheHysteresisToTheAckLatency() {
+        controller = controller("");
+
+        sample(0, 4000);
+        assertFalse(controller.isOverloaded());
+        sample(0, 6000);
+        assertTrue(controller.isOverloaded());
+        sample(0, 4000);
+        assertTrue(controller.isOverloaded());
+        sample(0, 3000);
+        assertFalse(controller.isOverloaded());
+    }
+
+    @Test
+    void alwaysAdmitsTheProtectedLane() {
+        controller = controller("urgent,bulk");
+
+        sample(1000, 0);
+
+        assertTrue(controller.admit(lanes.getLane("ORDERS")));
+        assertFalse(controller.admit(lanes.getLane("MATMAS")));
+        assertFalse(controller.admit(null));
+    }
+
+    private void sample(long usedBytes, double latencyMs) {
+        producer.set("buffer-total-bytes", 1000);
+        producer.set("buffer-available-bytes", 1000 - usedBytes);
+        producer.set("record-queue-time-avg", latencyMs / 2);
+        producer.set("request-latency-avg", latencyMs / 2);
+        ReflectionTestUtils.invokeMethod(controller, "sample");
+    }
+
+    private AdmissionController controller(String laneNames) {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setProperty("priority.lane.urgent.message-types", "ORDERS");
+        environment.setProperty("priority.lane.urgent.threads", "1");
+        environment.setProperty("priority.lane.bulk.message-types", "MATMAS");
+        environment.setProperty("priority.lane.bulk.threads", "1");
+        lanes = new PriorityLanes();
+        ReflectionTestUtils.setField(lanes, "kafkaProducer", producer);
+        ReflectionTestUtils.setField(lanes, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(lanes, "environment", environment);
+        ReflectionTestUtils.setField(lanes, "laneNames", laneNames);
+        ReflectionTestUtils.setField(lanes, "kafkaTimeoutMs", 5000L);
+        lanes.init();
+
+        AdmissionController admissionController = new AdmissionController();
+        ReflectionTestUtils.setField(admissionController, "priorityLanes", lanes);
+        ReflectionTestUtils.setField(admissionController, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(admissionController, "enabled", true);
+        // Sampled by the tests only
+        ReflectionTestUtils.setField(admissionController, "sampleMs", 3_600_000L);
+        ReflectionTestUtils.setField(admissionController, "maxBufferUsage", 0.8);
+        ReflectionTestUtils.setField(admissionController, "maxInFlightBytes", 0L);
+        ReflectionTestUtils.setField(admissionController, "maxAckLatencyMs", 5000.0);
+        ReflectionTestUtils.setField(admissionController, "recoveryRatio", 0.7);
+        ReflectionTestUtils.setField(admissionController, "protectedLaneNames", "");
+        admissionController.init();
+        return admissionController;
+    }
+
+    /**
+     * MockProducer reporting the given producer metrics.
+     */
+    private static final class MetricsProducer extends MockProducer<String, byte[]> {
+
+        private final Map<MetricName, Metric> metrics = new HashMap<>();
+
+        void set(String name, double value) {
+            MetricName metricName = new MetricName(name, "producer-metrics", "", Collections.emptyMap());
+            metrics.put(metricName, new Metric() {
+                @Override
+                public MetricName metricName() {
+                    return metricName;
+                }
+
+                @Override
+                public Object metricValue() {
+                    return value;
+                }
+            });
+        }
+
+        @Override
+        public synchronized Map<MetricName, Metric> metrics() {
+            return metrics;
+        }
+    }
+}
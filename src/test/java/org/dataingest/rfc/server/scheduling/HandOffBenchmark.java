@@ -0,0 +1,144 @@
+package org.dataingest.rfc.server.scheduling;
+
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hand-off Benchmark
+ *
+ * Measures the hand-off of IDocs from concurrent receive threads to publisher threads:
+ * an ArrayBlockingQueue drained in batches against the PublishRingBuffer with each of
+ * its wait strategies. Every receive thread hands over transactions of several IDocs
+ * and waits for their completion; the publishing stage completes each IDoc at once, so
+ * only the hand-off itself is measured. Each variant runs a warm-up round first.
+ *
+ * Not a unit test (only *Test classes run in the build); run its main method with the
+ * test classpath:
+ *
+ *   HandOffBenchmark [producers] [consumers] [transactions] [idocs per transaction] [ring size]
+ *
+ * Prints per variant the elapsed time and the IDoc hand-off rate.
+ */
+public class HandOffBenchmark {
+
+    private static final String[] WAIT_STRATEGIES = {"blocking", "sleeping", "yielding", "busy-spin"};
+
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int consumers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int transactions = args.length > 2 ? Integer.parseInt(args[2]) : 200000;
+        int idocsPerTransaction = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int ringSize = args.length > 4 ? Integer.parseInt(args[4]) : 4096;
+
+        System.out.println("=== IDoc Hand-off Benchmark ===");
+        System.out.printf("Producers: %d, consumers: %d, transactions: %d, IDocs per transaction: %d, size: %d%n",
+                producers, consumers, transactions, idocsPerTransaction, ringSize);
+
+        List<SAPIDOCDocument> transaction = new ArrayList<>();
+        for (int i = 0; i < idocsPerTransaction; i++) {
+            transaction.add(new SAPIDOCDocument());
+        }
+
+        for (int round = 0; round < 2; round++) {
+            boolean warmUp = round == 0;
+            report("queue", warmUp, runQueue(producers, consumers, transactions, transaction, ringSize),
+                    transactions, idocsPerTransaction);
+            for (String waitStrategy : WAIT_STRATEGIES) {
+                PublishRingBuffer ring = new PublishRingBuffer(ringSize, consumers, 256, waitStrategy,
+                        (document, completion) -> completion.complete(null), null);
+                try {
+                    report("ring/" + waitStrategy, warmUp,
+                            runProducers(producers, transactions,
+                                    () -> ring.publish(transaction).await(1, TimeUnit.MINUTES)),
+                            transactions, idocsPerTransaction);
+                } finally {
+                    ring.shutdown();
+                }
+            }
+        }
+    }
+
+    private static long runQueue(int producers, int consumers, int transactions, List<SAPIDOCDocument> transaction,
+            int size) throws Exception {
+        BlockingQueue<PublishRingBuffer.Completion> queue = new ArrayBlockingQueue<>(size);
+        List<Thread> drainers = new ArrayList<>();
+        for (int i = 0; i < consumers; i++) {
+            Thread drainer = new Thread(() -> {
+                List<PublishRingBuffer.Completion> batch = new ArrayList<>(256);
+                try {
+                    while (true) {
+                        batch.add(queue.take());
+                        queue.drainTo(batch, 255);
+                        for (PublishRingBuffer.Completion completion : batch) {
+                            completion.complete(null);
+                        }
+                        batch.clear();
+                    }
+                } catch (InterruptedException e) {
+                    // Benchmark variant finished
+                }
+            }, "hand-off-queue-" + i);
+            drainer.setDaemon(true);
+            drainer.start();
+            drainers.add(drainer);
+        }
+        try {
+            return runProducers(producers, transactions, () -> {
+                PublishRingBuffer.Completion completion = new PublishRingBuffer.Completion(transaction.size());
+                for (int i = 0; i < transaction.size(); i++) {
+                    queue.put(completion);
+                }
+                completion.await(1, TimeUnit.MINUTES);
+            });
+        } finally {
+            for (Thread drainer : drainers) {
+                drainer.interrupt();
+            }
+        }
+    }
+
+    private static long runProducers(int producers, int transactions, HandOff handOff) throws InterruptedException {
+        AtomicInteger remaining = new AtomicInteger(transactions);
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < producers; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    while (remaining.getAndDecrement() > 0) {
+                        handOff.run();
+                    }
+                } catch (Exception e) {
+                    System.err.println("Hand-off failed: " + e);
+                }
+            }, "hand-off-producer-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String variant, boolean warmUp, long elapsedNanos, int transactions,
+            int idocsPerTransaction) {
+        if (warmUp) {
+            return;
+        }
+        long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        System.out.printf("%-18s elapsed %6d ms, %12.0f IDocs/s%n", variant, elapsedMs,
+                (double) transactions * idocsPerTransaction * 1000 / elapsedMs);
+    }
+
+    /**
+     * Hands over one transaction and waits for its completion.
+     */
+    private interface HandOff {
+        void run() throws Exception;
+    }
+}
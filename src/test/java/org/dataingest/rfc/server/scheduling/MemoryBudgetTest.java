@@ -0,0 +1,87 @@
+package org.dataingest.rfc.server.scheduling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.exception.MemoryBudgetExceededException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MemoryBudgetTest {
+
+    @Test
+    void reservesWholeKibibytesAndReturnsThemOnClose() throws Exception {
+        MemoryBudget budget = budget(64 * 1024, 0);
+
+        try (MemoryBudget.Reservation reservation = budget.reserve(1500)) {
+            assertEquals(2048, budget.getUsedBytes());
+            reservation.close();
+            assertEquals(0, budget.getUsedBytes());
+        }
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    void rejectsAPayloadWhenNoBudgetIsReturnedInTime() throws Exception {
+        MemoryBudget budget = budget(4096, 50);
+
+        try (MemoryBudget.Reservation reservation = budget.reserve(3072)) {
+            assertThrows(MemoryBudgetExceededException.class, () -> budget.reserve(2048));
+            assertEquals(1L, budget.getStatus().get("rejected"));
+        }
+        budget.reserve(2048).close();
+    }
+
+    @Test
+    void waitsForBudgetReturnedByAnotherPayload() throws Exception {
+        MemoryBudget budget = budget(4096, 5000);
+        MemoryBudget.Reservation first = budget.reserve(4096);
+
+        CompletableFuture<MemoryBudget.Reservation> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return budget.reserve(1024);
+            } catch (MemoryBudgetExceededException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(second.isDone());
+
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    void letsAPayloadLargerThanTheBudgetRunAlone() throws Exception {
+        MemoryBudget budget = budget(4096, 50);
+
+        try (MemoryBudget.Reservation reservation = budget.reserve(1 << 20)) {
+            assertEquals(4096, budget.getUsedBytes());
+            assertThrows(MemoryBudgetExceededException.class, () -> budget.reserve(1));
+        }
+    }
+
+    @Test
+    void reservesNothingWhenDisabled() throws Exception {
+        MemoryBudget budget = budget(0, 0);
+
+        try (MemoryBudget.Reservation reservation = budget.reserve(1 << 30)) {
+            assertEquals(0, budget.getUsedBytes());
+            assertEquals(false, budget.getStatus().get("enabled"));
+        }
+    }
+
+    private static MemoryBudget budget(long maxBytes, long maxWaitMs) {
+        MemoryBudget budget = new MemoryBudget();
+        ReflectionTestUtils.setField(budget, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(budget, "maxBytes", maxBytes);
+        ReflectionTestUtils.setField(budget, "maxWaitMs", maxWaitMs);
+        budget.init();
+        return budget;
+    }
+}
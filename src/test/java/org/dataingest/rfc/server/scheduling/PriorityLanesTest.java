@@ -0,0 +1,150 @@
+package org.dataingest.rfc.server.scheduling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriorityLanesTest {
+
+    private final MockProducer<String, byte[]> defaultProducer = new MockProducer<>();
+    private PriorityLanes lanes;
+
+    @AfterEach
+    void shutdown() {
+        if (lanes != null) {
+            lanes.shutdown();
+        }
+    }
+
+    @Test
+    void choosesTheLaneWithTheHighestPriority() {
+        lanes = lanes("urgent,bulk", "ORDERS,ORDRSP", "MATMAS");
+
+        assertEquals("urgent", lanes.getLane(" orders ").getName());
+        assertEquals("bulk", lanes.getLane("MATMAS").getName());
+        assertEquals("urgent", lanes.getLane(Arrays.asList("MATMAS", "ORDRSP")).getName());
+        assertNull(lanes.getLane("INVOIC"));
+        assertNull(lanes.getLane(Collections.singletonList("INVOIC")));
+        assertSame(lanes.getLane("ORDERS"), lanes.getFirstLane());
+    }
+
+    @Test
+    void runsWorkOnALaneThreadWithTheLaneProducer() throws Exception {
+        lanes = lanes("urgent", "ORDERS", null);
+        PriorityLanes.Lane lane = lanes.getLane("ORDERS");
+
+        String thread = lanes.execute(lane, () -> Thread.currentThread().getName());
+        Producer<String, byte[]> producer = lanes.execute(lane, () -> lanes.getProducer());
+
+        assertTrue(thread.startsWith("priority-lane-urgent-"), thread);
+        assertSame(lanes.getProducer(lane), producer);
+        assertNotSame(defaultProducer, producer);
+        assertEquals(2, lanes.getProducers().size());
+    }
+
+    @Test
+    void runsWorkWithoutLaneOnTheCallingThread() throws Exception {
+        lanes = lanes("urgent", "ORDERS", null);
+
+        assertSame(Thread.currentThread(), lanes.execute(null, Thread::currentThread));
+        assertSame(defaultProducer, lanes.getProducer());
+        assertSame(defaultProducer, lanes.getProducer(null));
+    }
+
+    @Test
+    void rethrowsTheExceptionOfTheWork() {
+        lanes = lanes("urgent", "ORDERS", null);
+        PriorityLanes.Lane lane = lanes.getLane("ORDERS");
+
+        IOException thrown = assertThrows(IOException.class, () -> lanes.execute(lane, () -> {
+            throw new IOException("Kafka unavailable");
+        }));
+        assertEquals("Kafka unavailable", thrown.getMessage());
+    }
+
+    @Test
+    void failsWorkThatIsNotFinishedInTime() throws Exception {
+        lanes = lanes("urgent", "ORDERS", null);
+        ReflectionTestUtils.setField(lanes, "kafkaTimeoutMs", 50L);
+        PriorityLanes.Lane lane = lanes.getLane("ORDERS");
+        CountDownLatch release = new CountDownLatch(1);
+
+        IOException thrown = assertThrows(IOException.class, () -> lanes.execute(lane, () -> release.await(5, TimeUnit.SECONDS)));
+
+        assertTrue(thrown.getMessage().contains("did not finish the work within 50 ms"), thrown.getMessage());
+        release.countDown();
+        // The lane thread is free again
+        assertEquals("done", lanes.execute(lane, () -> "done"));
+    }
+
+    @Test
+    void failsTheQueuedWorkOnShutdown() throws Exception {
+        lanes = lanes("urgent", "ORDERS", null);
+        PriorityLanes.Lane lane = lanes.getLane("ORDERS");
+        CountDownLatch running = new CountDownLatch(1);
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> execute(lane, () -> {
+            running.countDown();
+            return new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> queued = CompletableFuture.supplyAsync(() -> execute(lane, () -> "published"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Integer.valueOf(1).equals(lanes.getStatus().get("urgent")) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        lanes.shutdown();
+
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertTrue(thrown.getCause().getCause() instanceof IOException, String.valueOf(thrown.getCause()));
+        assertEquals(0, lanes.getStatus().get("urgent"));
+        assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThrows(IOException.class, () -> lanes.execute(lane, () -> "published"));
+    }
+
+    private Object execute(PriorityLanes.Lane lane, Callable<Object> work) {
+        try {
+            return lanes.execute(lane, work);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private PriorityLanes lanes(String names, String firstMessageTypes, String secondMessageTypes) {
+        MockEnvironment environment = new MockEnvironment();
+        String[] laneNames = names.split(",");
+        environment.setProperty("priority.lane." + laneNames[0] + ".message-types", firstMessageTypes);
+        environment.setProperty("priority.lane." + laneNames[0] + ".threads", "1");
+        if (secondMessageTypes != null) {
+            environment.setProperty("priority.lane." + laneNames[1] + ".message-types", secondMessageTypes);
+            environment.setProperty("priority.lane." + laneNames[1] + ".threads", "1");
+        }
+        PriorityLanes priorityLanes = new PriorityLanes();
+        ReflectionTestUtils.setField(priorityLanes, "kafkaProducer", defaultProducer);
+        ReflectionTestUtils.setField(priorityLanes, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(priorityLanes, "environment", environment);
+        ReflectionTestUtils.setField(priorityLanes, "laneNames", names);
+        ReflectionTestUtils.setField(priorityLanes, "kafkaTimeoutMs", 5000L);
+        priorityLanes.init();
+        return priorityLanes;
+    }
+}
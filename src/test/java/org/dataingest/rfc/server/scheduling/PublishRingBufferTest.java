@@ -0,0 +1,143 @@
+package org.dataingest.rfc.server.scheduling;
+
+import org.junit.jupiter.api.Test;
+import org.dataingest.rfc.server.exception.KafkaPublishException;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublishRingBufferTest {
+
+    @Test
+    void handsEveryIdocOfConcurrentTransactionsToTheHandler() throws Exception {
+        Set<SAPIDOCDocument> published = ConcurrentHashMap.newKeySet();
+        // Fewer slots than IDocs, so producers wait for the consumers to free slots
+        PublishRingBuffer ring = new PublishRingBuffer(16, 2, 4, "blocking", (document, completion) -> {
+            published.add(document);
+            completion.complete(null);
+        }, null);
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> transactions = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                List<SAPIDOCDocument> documents = documents(5);
+                transactions.add(producers.submit(() -> {
+                    ring.publish(documents).await(10, TimeUnit.SECONDS);
+                    return null;
+                }));
+            }
+            for (Future<?> transaction : transactions) {
+                transaction.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(1000, published.size());
+            assertEquals(0, ring.getUsed());
+        } finally {
+            producers.shutdownNow();
+            ring.shutdown();
+        }
+    }
+
+    @Test
+    void failsTheTransactionWithTheFirstFailure() throws Exception {
+        IOException failure = new IOException("Kafka unavailable");
+        PublishRingBuffer ring = new PublishRingBuffer(8, 1, 8, "sleeping", (document, completion) -> {
+            if ("2".equals(document.getDocumentNumber())) {
+                throw failure;
+            }
+            completion.complete(null);
+        }, null);
+        try {
+            PublishRingBuffer.Completion completion = ring.publish(documents(3));
+
+            assertSame(failure, assertThrows(IOException.class, () -> completion.await(10, TimeUnit.SECONDS)));
+        } finally {
+            ring.shutdown();
+        }
+    }
+
+    @Test
+    void failsTheTransactionOnAnErrorAndKeepsConsuming() throws Exception {
+        PublishRingBuffer ring = new PublishRingBuffer(8, 1, 8, "yielding", (document, completion) -> {
+            if ("1".equals(document.getDocumentNumber())) {
+                throw new AssertionError("codec bug");
+            }
+            completion.complete(null);
+        }, null);
+        try {
+            PublishRingBuffer.Completion failed = ring.publish(documents(1));
+            KafkaPublishException thrown = assertThrows(KafkaPublishException.class,
+                    () -> failed.await(10, TimeUnit.SECONDS));
+            assertTrue(thrown.getCause() instanceof AssertionError);
+
+            List<SAPIDOCDocument> next = documents(2);
+            next.remove(0);
+            ring.publish(next).await(10, TimeUnit.SECONDS);
+        } finally {
+            ring.shutdown();
+        }
+    }
+
+    @Test
+    void failsATransactionNotAcknowledgedInTime() throws Exception {
+        // The handler never completes: the acknowledgement is lost
+        PublishRingBuffer ring = new PublishRingBuffer(8, 1, 8, "blocking", (document, completion) -> {
+        }, null);
+        try {
+            PublishRingBuffer.Completion completion = ring.publish(documents(2));
+
+            KafkaPublishException thrown = assertThrows(KafkaPublishException.class,
+                    () -> completion.await(50, TimeUnit.MILLISECONDS));
+            assertTrue(thrown.getMessage().startsWith("2 IDoc(s)"), thrown.getMessage());
+        } finally {
+            ring.shutdown();
+        }
+    }
+
+    @Test
+    void failsTheIdocsLeftInTheRingOnShutdown() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PublishRingBuffer ring = new PublishRingBuffer(8, 1, 1, "blocking", (document, completion) -> {
+            blocked.countDown();
+            release.await();
+            completion.complete(null);
+        }, null);
+        ring.publish(documents(1));
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        PublishRingBuffer.Completion waiting = ring.publish(documents(2));
+
+        ring.shutdown();
+
+        assertThrows(IllegalStateException.class, () -> waiting.await(10, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class, () -> ring.publish(documents(16)));
+    }
+
+    @Test
+    void rejectsAnUnknownWaitStrategy() {
+        assertThrows(IllegalStateException.class, () -> new PublishRingBuffer(8, 1, 1, "spinning",
+                (document, completion) -> completion.complete(null), null));
+    }
+
+    private static List<SAPIDOCDocument> documents(int count) {
+        List<SAPIDOCDocument> documents = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            SAPIDOCDocument document = new SAPIDOCDocument();
+            document.setDocumentNumber(String.valueOf(i));
+            documents.add(document);
+        }
+        return documents;
+    }
+}
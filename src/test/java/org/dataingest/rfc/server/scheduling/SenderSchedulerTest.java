@@ -0,0 +1,146 @@
+package org.dataingest.rfc.server.scheduling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.dataingest.rfc.server.exception.SenderRejectedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SenderSchedulerTest {
+
+    private final MockEnvironment environment = new MockEnvironment();
+
+    @Test
+    void grantsEveryCallWhenDisabled() throws Exception {
+        SenderScheduler scheduler = scheduler(false, 1, 0, 0);
+
+        try (SenderScheduler.Permit first = scheduler.acquire("ERP");
+             SenderScheduler.Permit second = scheduler.acquire("ERP")) {
+            assertEquals(false, scheduler.getStatus().get("enabled"));
+        }
+    }
+
+    @Test
+    void rejectsACallWhenTheSenderQueueIsFull() throws Exception {
+        SenderScheduler scheduler = scheduler(true, 1, 0, 60_000);
+
+        try (SenderScheduler.Permit permit = scheduler.acquire("ERP")) {
+            assertThrows(SenderRejectedException.class, () -> scheduler.acquire("ERP"));
+            // Other senders keep their own slots
+            scheduler.acquire("CRM").close();
+        }
+        scheduler.acquire("ERP").close();
+    }
+
+    @Test
+    void admitsAWaitingCallWhenAPermitIsClosed() throws Exception {
+        SenderScheduler scheduler = scheduler(true, 1, 1, 60_000);
+        SenderScheduler.Permit first = scheduler.acquire("ERP");
+
+        CompletableFuture<SenderScheduler.Permit> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return scheduler.acquire("ERP");
+            } catch (SenderRejectedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waitForQueued(scheduler, "ERP", 1);
+        assertFalse(second.isDone());
+
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, senderStatus(scheduler, "ERP").get("running"));
+    }
+
+    @Test
+    void rejectsAWaitingCallAfterTheMaximumWait() throws Exception {
+        SenderScheduler scheduler = scheduler(true, 1, 1, 50);
+
+        try (SenderScheduler.Permit permit = scheduler.acquire("ERP")) {
+            assertThrows(SenderRejectedException.class, () -> scheduler.acquire("ERP"));
+            assertEquals(0, senderStatus(scheduler, "ERP").get("queued"));
+        }
+    }
+
+    @Test
+    void appliesLimitsConfiguredPerSender() throws Exception {
+        environment.setProperty("sender.bulkhead.max-concurrent.ERP", "2");
+        SenderScheduler scheduler = scheduler(true, 1, 0, 60_000);
+
+        try (SenderScheduler.Permit first = scheduler.acquire("ERP");
+             SenderScheduler.Permit second = scheduler.acquire("ERP")) {
+            assertEquals(2, senderStatus(scheduler, "ERP").get("running"));
+            assertThrows(SenderRejectedException.class, () -> scheduler.acquire("ERP"));
+        }
+    }
+
+    @Test
+    void doesNotChargeASenderForRejectedCalls() throws Exception {
+        SenderScheduler scheduler = scheduler(true, 1, 1, 20);
+        ReflectionTestUtils.setField(scheduler, "totalConcurrent", 1);
+        SenderScheduler.Permit crm = scheduler.acquire("CRM");
+        for (int i = 0; i < 3; i++) {
+            assertThrows(SenderRejectedException.class, () -> scheduler.acquire("ERP"));
+        }
+
+        ReflectionTestUtils.setField(scheduler, "maxWaitMs", 60_000L);
+        List<String> admitted = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> erp = CompletableFuture.runAsync(() -> admit(scheduler, "ERP", admitted));
+        waitForQueued(scheduler, "ERP", 1);
+        CompletableFuture<Void> crmAgain = CompletableFuture.runAsync(() -> admit(scheduler, "CRM", admitted));
+        waitForQueued(scheduler, "CRM", 1);
+        crm.close();
+
+        erp.get(5, TimeUnit.SECONDS);
+        crmAgain.get(5, TimeUnit.SECONDS);
+        // ERP has not run a call yet, CRM has: the timed-out calls must not push ERP back
+        assertEquals(Arrays.asList("ERP", "CRM"), admitted);
+    }
+
+    private static void admit(SenderScheduler scheduler, String sender, List<String> admitted) {
+        try (SenderScheduler.Permit permit = scheduler.acquire(sender)) {
+            admitted.add(sender);
+        } catch (SenderRejectedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private SenderScheduler scheduler(boolean enabled, int maxConcurrent, int queueSize, long maxWaitMs) {
+        SenderScheduler scheduler = new SenderScheduler();
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "environment", environment);
+        ReflectionTestUtils.setField(scheduler, "enabled", enabled);
+        ReflectionTestUtils.setField(scheduler, "totalConcurrent", 16);
+        ReflectionTestUtils.setField(scheduler, "maxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(scheduler, "queueSize", queueSize);
+        ReflectionTestUtils.setField(scheduler, "weight", 1.0);
+        ReflectionTestUtils.setField(scheduler, "maxWaitMs", maxWaitMs);
+        scheduler.init();
+        return scheduler;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> senderStatus(SenderScheduler scheduler, String sender) {
+        return (Map<String, Object>) scheduler.getStatus().get(sender);
+    }
+
+    private static void waitForQueued(SenderScheduler scheduler, String sender, int queued)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Integer.valueOf(queued).equals(senderStatus(scheduler, sender).get("queued"))
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.dataingest.rfc.server.xml;
+
+import org.junit.jupiter.api.Test;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IDocXmlReaderTest {
+
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<ORDERS05>"
+            + "<IDOC BEGIN=\"1\">"
+            + "<EDI_DC40 SEGMENT=\"1\"><TABNAM>EDI_DC40</TABNAM><DOCNUM>0000000000000042</DOCNUM>"
+            + "<IDOCTYP>ORDERS05</IDOCTYP><MESTYP>ORDERS</MESTYP><MESCOD>A1</MESCOD></EDI_DC40>"
+            + "<E1EDK01 SEGMENT=\"1\"><CURCY>EUR</CURCY><BSART>NB</BSART></E1EDK01>"
+            + "<E1EDP01 SEGMENT=\"1\"><POSEX>000010</POSEX>"
+            + "<E1EDP19 SEGMENT=\"1\"><QUALF>001</QUALF></E1EDP19>"
+            + "</E1EDP01>"
+            + "</IDOC>"
+            + "<IDOC BEGIN=\"1\">"
+            + "<EDI_DC40 SEGMENT=\"1\"><DOCNUM>0000000000000043</DOCNUM><MESTYP>ORDERS</MESTYP></EDI_DC40>"
+            + "</IDOC>"
+            + "</ORDERS05>";
+
+    @Test
+    void readsControlRecordAndSegmentLinesBelowTheRootSegment() throws IOException {
+        List<SAPIDOCDocument> documents = read(XML);
+
+        assertEquals(2, documents.size());
+        SAPIDOCDocument first = documents.get(0);
+        assertEquals("0000000000000042", first.getDocumentNumber());
+        assertEquals("ORDERS", first.getMessageType());
+        assertEquals("A1", first.getMessageTypeVersion());
+        assertEquals("SENDER", first.getSenderSystem());
+        assertEquals(List.of(
+                "SEGMENT: ORDERS05",
+                "  SEGMENT: E1EDK01",
+                "    DATA: CURCY=EUR, BSART=NB",
+                "  SEGMENT: E1EDP01",
+                "    DATA: POSEX=000010",
+                "    SEGMENT: E1EDP19",
+                "      DATA: QUALF=001"), first.getSegmentData());
+        assertEquals(List.of("SEGMENT: ORDERS05"), documents.get(1).getSegmentData());
+    }
+
+    @Test
+    void namesTheRootSegmentAfterTheIDocTypeWithoutRootElement() throws IOException {
+        String single = "<IDOC BEGIN=\"1\"><EDI_DC40 SEGMENT=\"1\"><IDOCTYP>DELVRY07</IDOCTYP></EDI_DC40>"
+                + "<E1EDL20 SEGMENT=\"1\"><VBELN>80000001</VBELN></E1EDL20></IDOC>";
+
+        List<String> lines = read(single).get(0).getSegmentData();
+
+        assertEquals(List.of("SEGMENT: DELVRY07", "  SEGMENT: E1EDL20", "    DATA: VBELN=80000001"), lines);
+    }
+
+    private static List<SAPIDOCDocument> read(String xml) throws IOException {
+        List<SAPIDOCDocument> documents = new ArrayList<>();
+        IDocXmlReader.readAll(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "SENDER",
+                documents::add);
+        return documents;
+    }
+}
@@ -0,0 +1,79 @@
+package org.dataingest.rfc.server.xml;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IDoc XML Splitter Benchmark
+ *
+ * Reads a large multi-IDoc XML file once with the sequential IDocXmlReader and once
+ * with IDocXmlSplitter on a pool of parser threads. The file is generated into a
+ * temporary directory with the layout of IDocXmlSplitterTest (root element, control
+ * record and three nested segments per IDoc) and deleted afterwards.
+ *
+ * Not a unit test (only *Test classes run in the build); run its main method with the
+ * test classpath:
+ *
+ *   IDocXmlSplitterBenchmark [IDocs in the file] [parser threads] [window]
+ *
+ * Prints per reader the time for the file and the IDoc throughput.
+ */
+public class IDocXmlSplitterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int idocs = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int window = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+
+        Path dir = Files.createTempDirectory("idoc-splitter");
+        Path file = dir.resolve("idocs.xml");
+        Files.write(file, IDocXmlSplitterTest.file("ORDERS05", idocs).getBytes(StandardCharsets.UTF_8));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        System.out.println("=== IDoc XML Splitter Benchmark ===");
+        System.out.printf("IDocs: %d (%d MB), parser threads: %d, window: %d%n",
+                idocs, Files.size(file) >> 20, threads, window);
+        try {
+            for (int round = 0; round < 3; round++) {
+                boolean report = round == 2;
+                run("reader", idocs, report, () -> {
+                    try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+                        return IDocXmlReader.readAll(in, "SENDER", document -> { });
+                    }
+                });
+                run("splitter", idocs, report,
+                        () -> IDocXmlSplitter.read(file, "SENDER", executor, window, document -> { }));
+            }
+        } finally {
+            executor.shutdownNow();
+            Files.delete(file);
+            Files.delete(dir);
+        }
+    }
+
+    private interface Read {
+        int read() throws Exception;
+    }
+
+    private static void run(String name, int idocs, boolean report, Read read) throws Exception {
+        AtomicLong count = new AtomicLong();
+        long start = System.nanoTime();
+        count.set(read.read());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (count.get() != idocs) {
+            throw new IllegalStateException(name + " read " + count.get() + " of " + idocs + " IDocs");
+        }
+
+        if (report) {
+            System.out.printf("%-8s %6d ms, %9.0f IDocs/s%n",
+                    name, elapsedMs, (double) idocs * 1000 / Math.max(1, elapsedMs));
+        }
+    }
+}
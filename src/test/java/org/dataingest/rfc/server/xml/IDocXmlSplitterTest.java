@@ -0,0 +1,115 @@
+package org.dataingest.rfc.server.xml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.dataingest.rfc.server.model.SAPIDOCDocument;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IDocXmlSplitterTest {
+
+    @TempDir
+    Path dir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void readsTheSameDocumentsAsTheSequentialReaderInFileOrder() throws IOException {
+        String xml = file("ORDERS05", 50);
+
+        List<SAPIDOCDocument> split = split(xml, 4);
+        List<SAPIDOCDocument> sequential = new ArrayList<>();
+        IDocXmlReader.readAll(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "SENDER",
+                sequential::add);
+
+        assertEquals(50, split.size());
+        for (int i = 0; i < split.size(); i++) {
+            assertEquals(sequential.get(i).getDocumentNumber(), split.get(i).getDocumentNumber());
+            assertEquals(sequential.get(i).getControlRecord(), split.get(i).getControlRecord());
+            assertEquals(sequential.get(i).getSegmentData(), split.get(i).getSegmentData());
+        }
+    }
+
+    @Test
+    void namesTheRootSegmentAfterTheRootElement() throws IOException {
+        // The control record names another type, the root element wins as in IDocXmlReader
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><!-- exported --><ZORDERS05>"
+                + idoc(1, "ORDERS05") + "</ZORDERS05>";
+
+        List<String> lines = split(xml, 1).get(0).getSegmentData();
+
+        assertEquals("SEGMENT: ZORDERS05", lines.get(0));
+    }
+
+    @Test
+    void takesTheIDocTypeWithoutRootElement() throws IOException {
+        List<String> lines = split(idoc(1, "DELVRY07"), 1).get(0).getSegmentData();
+
+        assertEquals("SEGMENT: DELVRY07", lines.get(0));
+    }
+
+    @Test
+    void appliesTheDeclaredEncodingToEveryIdoc() throws IOException {
+        String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><ORDERS05>"
+                + idoc(1, "ORDERS05").replace("EUR", "MÜNCHEN") + "</ORDERS05>";
+        Path file = dir.resolve("latin1.xml");
+        Files.write(file, xml.getBytes(StandardCharsets.ISO_8859_1));
+
+        List<SAPIDOCDocument> documents = new ArrayList<>();
+        IDocXmlSplitter.read(file, "SENDER", executor, 2, documents::add);
+
+        assertEquals("    DATA: CURCY=MÜNCHEN", documents.get(0).getSegmentData().get(2));
+    }
+
+    @Test
+    void failsOnAnUnterminatedIdoc() {
+        String xml = "<ORDERS05>" + idoc(1, "ORDERS05") + "<IDOC BEGIN=\"1\"><EDI_DC40 SEGMENT=\"1\">";
+
+        assertThrows(IOException.class, () -> split(xml, 2));
+    }
+
+    private List<SAPIDOCDocument> split(String xml, int window) throws IOException {
+        Path file = dir.resolve("idocs.xml");
+        Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+        List<SAPIDOCDocument> documents = new ArrayList<>();
+        int count = IDocXmlSplitter.read(file, "SENDER", executor, window, documents::add);
+        assertEquals(documents.size(), count);
+        return documents;
+    }
+
+    static String file(String rootType, int idocs) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<").append(rootType)
+                .append(">\n");
+        for (int i = 1; i <= idocs; i++) {
+            xml.append(idoc(i, rootType)).append('\n');
+        }
+        return xml.append("</").append(rootType).append(">\n").toString();
+    }
+
+    private static String idoc(int number, String idocType) {
+        return "<IDOC BEGIN=\"1\">"
+                + "<EDI_DC40 SEGMENT=\"1\"><TABNAM>EDI_DC40</TABNAM><DOCNUM>" + String.format("%016d", number)
+                + "</DOCNUM><IDOCTYP>" + idocType + "</IDOCTYP><MESTYP>ORDERS</MESTYP></EDI_DC40>"
+                + "<E1EDK01 SEGMENT=\"1\"><CURCY>EUR</CURCY></E1EDK01>"
+                + "<E1EDP01 SEGMENT=\"1\"><POSEX>000010</POSEX>"
+                + "<E1EDP19 SEGMENT=\"1\"><QUALF>001</QUALF></E1EDP19>"
+                + "</E1EDP01>"
+                + "</IDOC>";
+    }
+}